@@ -0,0 +1,45 @@
+package org.example.demo2;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Benchmark inputs built from a seeded {@link WorkloadGenerator}, so runs are comparable.
+ */
+final class FatTreeFixture {
+
+    final WorkloadGenerator generator;
+    final GraphData graph;
+    final DetectedFlowData[] detectedFlows;
+    // GUI nodes the way convertGraphNodes would produce them (layout is irrelevant here)
+    final List<Node> nodes = new ArrayList<>();
+
+    private FatTreeFixture(int k, int flowCount, long seed) {
+        WorkloadGenerator.Config config = new WorkloadGenerator.Config();
+        config.k = k;
+        config.flows = flowCount;
+        config.seed = seed;
+        generator = new WorkloadGenerator(config);
+        graph = generator.getGraphData();
+        detectedFlows = generator.getDetectedFlowData();
+
+        for (GraphData.Node n : graph.nodes) {
+            String ip = WorkloadGenerator.ipString(n.ip.get(0));
+            Node gui = new Node(ip, n.device_name, 0, 0, String.valueOf(n.vertex_type), n.is_up, n.is_enabled,
+                new ArrayList<>(List.of(ip)));
+            gui.dpid = n.dpid;
+            gui.layer = n.vertex_type == 1 ? "host" : n.device_layer == 0 ? "core" : n.device_layer == 1 ? "aggregation" : "edge";
+            nodes.add(gui);
+        }
+    }
+
+    static FatTreeFixture build(int k, int flowCount, long seed) {
+        return new FatTreeFixture(k, flowCount, seed);
+    }
+
+    /** Preprocessed playback layout, one topology snapshot per second. */
+    void writeHistories(File topoFile, File flowFile, int seconds) throws Exception {
+        generator.writeHistories(topoFile, flowFile, seconds, 1, true);
+    }
+}
@@ -0,0 +1,52 @@
+package org.example.demo2;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/**
+ * Real-time ingest path: API response -> GUI flows -> GUI links -> per-link flow sets.
+ */
+@State(Scope.Benchmark)
+public class IngestBenchmark {
+
+    @Param({"8", "16"})
+    public int k;
+
+    @Param({"1000", "10000", "50000"})
+    public int flowCount;
+
+    private NetworkTopologyApp app;
+    private FatTreeFixture fixture;
+    private FlowTable flows;
+    private List<Link> links;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        app = new NetworkTopologyApp();
+        fixture = FatTreeFixture.build(k, flowCount, 42L);
+        flows = app.convertDetectedFlows(fixture.detectedFlows, fixture.nodes);
+        links = app.convertGraphLinks(fixture.graph.edges, fixture.nodes, flows);
+    }
+
+    @Benchmark
+    public FlowTable convertDetectedFlows() {
+        return app.convertDetectedFlows(fixture.detectedFlows, fixture.nodes);
+    }
+
+    @Benchmark
+    public List<Link> convertGraphLinks() {
+        return app.convertGraphLinks(fixture.graph.edges, fixture.nodes, flows);
+    }
+
+    @Benchmark
+    public List<Link> assignFlowsToLinks() {
+        app.assignFlowsToLinks(flows, links, fixture.nodes);
+        return links;
+    }
+}
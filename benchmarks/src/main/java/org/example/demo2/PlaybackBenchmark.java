@@ -0,0 +1,79 @@
+package org.example.demo2;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Playback path: NDJSON indexing and random-access snapshot reads.
+ */
+@State(Scope.Benchmark)
+public class PlaybackBenchmark {
+
+    private static final long START_MS = new WorkloadGenerator.Config().startTimeMs;
+
+    @Param({"8"})
+    public int k;
+
+    @Param({"600"})
+    public int seconds;
+
+    @Param({"200", "2000"})
+    public int flowsPerSecond;
+
+    private File dir;
+    private File topoFile;
+    private File flowFile;
+    private File idxFile;
+    private PlaybackDataReader reader;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        dir = Files.createTempDirectory("ndt-bench").toFile();
+        topoFile = new File(dir, "topology.ndjson");
+        flowFile = new File(dir, "flow.ndjson");
+        idxFile = new File(dir, "scratch.idx");
+        FatTreeFixture.build(k, flowsPerSecond, 42L).writeHistories(topoFile, flowFile, seconds);
+
+        NdjsonIndexUtil.BuiltIndex flowIndex = NdjsonIndexUtil.buildIndex(flowFile, new File(dir, "flow.idx"));
+        NdjsonIndexUtil.BuiltIndex topoIndex = NdjsonIndexUtil.buildIndex(topoFile, new File(dir, "topology.idx"));
+        reader = new PlaybackDataReader(flowIndex, topoIndex, flowFile, topoFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) f.delete();
+        }
+        dir.delete();
+    }
+
+    private long randomTimestamp() {
+        return START_MS + ThreadLocalRandom.current().nextLong(seconds * 1000L);
+    }
+
+    @Benchmark
+    public NdjsonIndexUtil.BuiltIndex buildFlowIndex() throws Exception {
+        return NdjsonIndexUtil.buildIndex(flowFile, idxFile);
+    }
+
+    @Benchmark
+    public PlaybackDataReader.TopologySnapshot getTopologyAt() throws Exception {
+        return reader.getTopologyAt(randomTimestamp());
+    }
+
+    @Benchmark
+    public List<PlaybackDataReader.FlowSnapshot> getFlowsAt() throws Exception {
+        return reader.getFlowsAt(randomTimestamp(), 1000);
+    }
+}
@@ -0,0 +1,91 @@
+package org.example.demo2;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javafx.scene.paint.Color;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Per-frame work TopologyCanvas does before touching the GraphicsContext.
+ */
+@State(Scope.Benchmark)
+public class RenderPrepBenchmark {
+
+    @Param({"8", "16"})
+    public int k;
+
+    @Param({"1000", "10000", "50000"})
+    public int flowCount;
+
+    // 0 = no Top-K / filter active, otherwise only this many flows are visible
+    @Param({"0", "100"})
+    public int visibleCount;
+
+    private List<Node> nodes;
+    private List<Link> links;
+    private FlowTable flows;
+    private double[] flowPos;
+    private final FlowVisibilityMask visibility = new FlowVisibilityMask();
+    private final TopKFlowTracker topKTracker = new TopKFlowTracker(0.1);
+
+    @Setup(Level.Trial)
+    public void setup() {
+        NetworkTopologyApp app = new NetworkTopologyApp();
+        FatTreeFixture fixture = FatTreeFixture.build(k, flowCount, 42L);
+        nodes = fixture.nodes;
+        flows = app.convertDetectedFlows(fixture.detectedFlows, nodes);
+        links = app.convertGraphLinks(fixture.graph.edges, nodes, flows);
+        app.assignFlowsToLinks(flows, links, nodes);
+
+        Random random = new Random(7L);
+        flowPos = new double[flows.size()];
+        for (int i = 0; i < flowPos.length; i++) {
+            flowPos[i] = random.nextDouble();
+        }
+        if (visibleCount > 0) {
+            int[] visible = new int[Math.min(visibleCount, flows.size())];
+            for (int i = 0; i < visible.length; i++) {
+                visible[i] = random.nextInt(flows.size());
+            }
+            visibility.setLayer(FlowVisibilityMask.Layer.TOP_K, visible);
+        }
+    }
+
+    // Top-K reapply after each update, as TopologyCanvas.reapplyTopKFilter does
+    @Benchmark
+    public int[] selectTopK() {
+        return topKTracker.select(flows, 100);
+    }
+
+    @Benchmark
+    public Map<String, Integer> calculateLinkFlowCounts() {
+        return TopologyCanvas.calculateLinkFlowCounts(nodes, links, flows, flowPos);
+    }
+
+    // Off-thread rebuild after each update; replaces bucketing on every frame
+    @Benchmark
+    public FlowRenderModel buildRenderModel() {
+        return FlowRenderModel.build(0, nodes, links, flows, visibility, flow -> Color.GRAY);
+    }
+
+    @Benchmark
+    public void bucketFlowsByDirection(Blackhole bh) {
+        for (Link link : links) {
+            if (link.flow_set == null || link.flow_set.isEmpty()) continue;
+            FlowTable.Rows forwardFlows = new FlowTable.Rows();
+            FlowTable.Rows reverseFlows = new FlowTable.Rows();
+            bh.consume(TopologyCanvas.bucketRealtimeFlows(link, flows, visibility, forwardFlows, reverseFlows));
+            bh.consume(forwardFlows);
+            bh.consume(reverseFlows);
+        }
+    }
+}
@@ -12,8 +12,12 @@ module org.example.ndtanimation {
     requires com.almasb.fxgl.all;
     requires com.google.gson;
     requires com.fasterxml.jackson.databind;
+    requires com.fasterxml.jackson.dataformat.smile;
+    requires com.fasterxml.jackson.dataformat.cbor;
     requires org.apache.httpcomponents.httpcore;
     requires org.apache.httpcomponents.httpclient;
+    requires jdk.httpserver;
+    requires java.desktop;
 
     opens org.example.demo2 to javafx.fxml;
     exports org.example.demo2;
@@ -0,0 +1,200 @@
+package org.example.demo2;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Prepares directories of playback captures ahead of time, so opening them in the Playback panel
+ * skips preprocessing and indexing.
+ *
+ * Every capture gets exactly what the panel would otherwise build on open, in the same place:
+ * - .ndjson (recorded sessions, WorkloadGenerator output): the ".idx" sidecar
+ * - .json over 100 MB: preprocessed/<name>.ndjson plus its ".idx"
+ * - smaller .json: the ".flow.idx" / ".topo.idx" index
+ * Files are prepared in parallel, largest first. A file whose outputs are already newer than it is
+ * skipped, and outputs are only moved into place once complete, so an interrupted run can simply be
+ * started again and picks up where it stopped.
+ *
+ * Usage:
+ *   java -cp NDTanimation.jar org.example.demo2.CapturePreparer --dir captures/ [--dir more/] \
+ *       [--recursive true] [--threads N] [--force true]
+ */
+public class CapturePreparer {
+
+    public static class Config {
+        public final List<File> dirs = new ArrayList<>();
+        public boolean recursive = true;
+        public int threads = Runtime.getRuntime().availableProcessors();
+        public boolean force = false;        // redo files whose outputs are current
+    }
+
+    enum Outcome { PREPARED, UP_TO_DATE, NOT_A_CAPTURE, FAILED }
+
+    private final Config config;
+
+    public CapturePreparer(Config config) {
+        this.config = config;
+    }
+
+    /** Prepare every capture under the configured directories. Returns the number that failed. */
+    public int run() throws InterruptedException {
+        List<File> captures = new ArrayList<>();
+        for (File dir : config.dirs) {
+            collect(dir, captures);
+        }
+        // Largest first, so one big file doesn't start last and hold up the whole run
+        captures.sort((a, b) -> Long.compare(b.length(), a.length()));
+        int threads = Math.max(1, Math.min(config.threads, Math.max(1, captures.size())));
+        System.out.println("[PREPARE] " + captures.size() + " capture files, " + threads + " threads");
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "ndt-prepare-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        long startNanos = System.nanoTime();
+        AtomicInteger finished = new AtomicInteger();
+        List<Future<Outcome>> results = new ArrayList<>();
+        for (File capture : captures) {
+            results.add(pool.submit(() -> {
+                Outcome outcome = prepareLogged(capture);
+                System.out.println("[PREPARE] (" + finished.incrementAndGet() + "/" + captures.size() + ") "
+                    + outcome + " " + capture.getPath());
+                return outcome;
+            }));
+        }
+        int[] counts = new int[Outcome.values().length];
+        for (Future<Outcome> result : results) {
+            try {
+                counts[result.get().ordinal()]++;
+            } catch (java.util.concurrent.ExecutionException e) {
+                counts[Outcome.FAILED.ordinal()]++;
+            }
+        }
+        pool.shutdown();
+        System.out.printf("[PREPARE] Done in %.1f s: %d prepared, %d already up to date, %d not captures, %d failed%n",
+            (System.nanoTime() - startNanos) / 1e9, counts[Outcome.PREPARED.ordinal()],
+            counts[Outcome.UP_TO_DATE.ordinal()], counts[Outcome.NOT_A_CAPTURE.ordinal()],
+            counts[Outcome.FAILED.ordinal()]);
+        return counts[Outcome.FAILED.ordinal()];
+    }
+
+    private void collect(File dir, List<File> captures) {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            System.err.println("[PREPARE] Not a readable directory: " + dir);
+            return;
+        }
+        for (File child : children) {
+            String name = child.getName();
+            if (child.isDirectory()) {
+                // preprocessed/ holds our own outputs, which are indexed along with their source
+                if (config.recursive && !"preprocessed".equals(name)) collect(child, captures);
+            } else if (name.endsWith(".ndjson") || name.toLowerCase().endsWith(".json")) {
+                captures.add(child);
+            }
+        }
+    }
+
+    private Outcome prepareLogged(File capture) {
+        try {
+            return prepare(capture, config.force);
+        } catch (Exception e) {
+            System.err.println("[PREPARE] Failed " + capture.getPath() + ": " + e.getMessage());
+            return Outcome.FAILED;
+        }
+    }
+
+    /** Build whatever the Playback panel would build when {@code capture} is opened. */
+    static Outcome prepare(File capture, boolean force) throws Exception {
+        if (capture.getName().endsWith(".ndjson")) {
+            File idx = NdjsonIndexUtil.indexFileFor(capture);
+            if (!force && NdjsonIndexUtil.readIndex(capture, idx) != null) return Outcome.UP_TO_DATE;
+            NdjsonIndexUtil.buildIndex(capture, idx);
+            return Outcome.PREPARED;
+        }
+
+        boolean flow = isFlowCapture(capture);
+        if (capture.length() > JsonPreprocessor.PREPROCESS_THRESHOLD_BYTES) {
+            if (!force && JsonPreprocessor.findPreprocessed(capture) != null) return Outcome.UP_TO_DATE;
+            File outputDir = new File(capture.getParentFile(), "preprocessed");
+            outputDir.mkdirs();
+            JsonPreprocessor.PreprocessResult result = flow
+                ? JsonPreprocessor.preprocessFlowHistory(capture, outputDir)
+                : JsonPreprocessor.preprocessTopologyHistory(capture, outputDir);
+            NdjsonIndexUtil.buildIndex(result.ndjsonFile, NdjsonIndexUtil.indexFileFor(result.ndjsonFile));
+            return Outcome.PREPARED;
+        }
+
+        File idx = new File(capture.getParentFile(), capture.getName() + (flow ? ".flow.idx" : ".topo.idx"));
+        if (!force && NdjsonIndexUtil.readIndex(capture, idx) != null) return Outcome.UP_TO_DATE;
+        NdjsonIndexUtil.BuiltIndex index;
+        try {
+            index = NdjsonIndexUtil.buildIndexForSingleJson(capture, idx);
+        } catch (Exception e) {
+            // Several snapshots, one per line: index it like NDJSON, as the panel falls back to
+            index = NdjsonIndexUtil.buildIndex(capture, idx);
+        }
+        if (index.entries.isEmpty()) {
+            // No timestamps, e.g. a saved API response: nothing Playback could seek in
+            idx.delete();
+            return Outcome.NOT_A_CAPTURE;
+        }
+        return Outcome.PREPARED;
+    }
+
+    // The Playback panel knows which chooser a file came from; here the first bytes have to tell
+    private static boolean isFlowCapture(File capture) throws Exception {
+        byte[] head = new byte[64 * 1024];
+        int read;
+        try (InputStream in = new FileInputStream(capture)) {
+            read = in.readNBytes(head, 0, head.length);
+        }
+        String text = new String(head, 0, read, StandardCharsets.UTF_8);
+        int flowAt = text.indexOf("\"flow_info\"");
+        int nodesAt = text.indexOf("\"nodes\"");
+        int edgesAt = text.indexOf("\"edges\"");
+        int topologyAt = nodesAt < 0 ? edgesAt : edgesAt < 0 ? nodesAt : Math.min(nodesAt, edgesAt);
+        if (flowAt >= 0 && topologyAt >= 0) return flowAt < topologyAt;
+        if (flowAt >= 0) return true;
+        if (topologyAt >= 0) return false;
+        return capture.getName().toLowerCase().contains("flow");
+    }
+
+    public static void main(String[] args) throws Exception {
+        Config config = new Config();
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 == args.length) {
+                System.err.println("[PREPARE] Missing value for " + args[i]);
+                System.exit(2);
+            }
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--dir": config.dirs.add(new File(value)); break;
+                case "--recursive": config.recursive = Boolean.parseBoolean(value); break;
+                case "--threads": config.threads = Integer.parseInt(value); break;
+                case "--force": config.force = Boolean.parseBoolean(value); break;
+                default:
+                    System.err.println("[PREPARE] Unknown option: " + args[i]);
+                    System.err.println("Options: --dir (repeatable) --recursive true|false --threads --force true|false");
+                    System.exit(2);
+            }
+        }
+        if (config.dirs.isEmpty()) {
+            System.err.println("[PREPARE] At least one --dir is required");
+            System.exit(2);
+        }
+        int failed = new CapturePreparer(config).run();
+        // Non-zero exit so a nightly job notices captures that still need attention
+        if (failed > 0) System.exit(1);
+    }
+}
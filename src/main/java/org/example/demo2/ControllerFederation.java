@@ -0,0 +1,509 @@
+package org.example.demo2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Several NDT controllers (one per hall) shown as one network.
+ *
+ * Each hall has its own {@link NDTApiClient} and its own four {@link PolledEndpoint}s, polled on the
+ * hall's own threads, so a slow or failing hall only delays its own data. {@link #graph},
+ * {@link #flows} and the utilization getters merge the halls' last good responses; a merge is cached
+ * until one of them changes.
+ *
+ * Merging namespaces DPIDs, since every controller numbers its switches from 1: the top 16 bits of
+ * a merged DPID are the hall's position in the list (from 1). Node names get an "@hall" suffix.
+ * IPs are left alone, so a link one hall reports to a switch of another hall (a cross-hall link)
+ * joins the two by IP; its far DPID, and flow path hops through the other hall, take the namespace
+ * of the hall that owns the switch. A node or link reported by two halls is kept once, and a flow
+ * seen by two halls (same 5-tuple) becomes one flow whose path is the halls' segments in path order.
+ */
+final class ControllerFederation {
+
+    private static final long TICK_MS = 250;
+    private static final long DPID_MASK = (1L << 48) - 1;
+    private static final long STATUS_LOG_MS = 30_000;
+
+    /** One hall's controller and its polling. */
+    static final class Hall {
+        final String name;
+        final int index;
+        final String url;
+        final NDTApiClient client;
+        final PolledEndpoint<GraphData> graph;
+        final PolledEndpoint<DetectedFlowData[]> flows;
+        final PolledEndpoint<Map<String, Integer>> cpu;
+        final PolledEndpoint<Map<String, Integer>> memory;
+        final ScheduledExecutorService pool;
+
+        // This hall's flows with namespaced paths, rebuilt when its flows or the DPID index change
+        private DetectedFlowData[] namespacedFrom;
+        private Map<Long, Integer> namespacedWith;
+        private List<DetectedFlowData> namespaced;
+
+        Hall(String name, int index, String url, LongSupplier flowIntervalMillis, IntSupplier topK,
+                long graphIntervalMillis, long utilizationIntervalMillis) {
+            this.name = name;
+            this.index = index;
+            this.url = url;
+            this.client = new NDTApiClient(url);
+            this.graph = new PolledEndpoint<>(name + "/get_graph_data", () -> graphIntervalMillis, client::getGraphData);
+            this.flows = new PolledEndpoint<>(name + "/flows", flowIntervalMillis, () -> {
+                int k = topK.getAsInt();
+                return k > 0 ? client.getDetectedTopKFlowData(k) : client.getDetectedFlowData();
+            });
+            this.cpu = new PolledEndpoint<>(name + "/get_cpu_utilization", () -> utilizationIntervalMillis, client::getCpuUtilization);
+            this.memory = new PolledEndpoint<>(name + "/get_memory_utilization", () -> utilizationIntervalMillis, client::getMemoryUtilization);
+            // The tick plus one fetch per endpoint
+            this.pool = Executors.newScheduledThreadPool(5, r -> {
+                Thread t = new Thread(r, "ndt-hall-" + name);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
+        List<PolledEndpoint<?>> endpoints() {
+            return List.of(graph, flows, cpu, memory);
+        }
+
+        /** One line of health and latency, e.g. "hall2 ok (graph 35 ms, flows 210 ms, ...)". */
+        String status(long now) {
+            StringBuilder line = new StringBuilder(name).append(' ');
+            boolean failing = false;
+            for (PolledEndpoint<?> endpoint : endpoints()) {
+                failing |= endpoint.isFailing();
+            }
+            line.append(failing ? "FAILING" : "ok").append(" (");
+            String[] labels = {"graph", "flows", "cpu", "memory"};
+            List<PolledEndpoint<?>> endpoints = endpoints();
+            for (int i = 0; i < endpoints.size(); i++) {
+                PolledEndpoint<?> endpoint = endpoints.get(i);
+                if (i > 0) line.append(", ");
+                line.append(labels[i]).append(' ');
+                long latency = endpoint.lastLatencyMillis();
+                line.append(latency >= 0 ? latency + " ms" : "-");
+                if (endpoint.isFailing()) {
+                    long lastGood = endpoint.lastGoodMillis();
+                    line.append(lastGood > 0 ? ", " + (now - lastGood) / 1000 + " s old" : ", no data");
+                }
+            }
+            return line.append(')').toString();
+        }
+    }
+
+    private final List<Hall> halls = new ArrayList<>();
+    private final IntSupplier topK;
+    private final BooleanSupplier paused;
+    private final Runnable onChange;
+    private long lastStatusLogMillis;
+
+    // Last merges and the hall responses they were built from (guarded by this)
+    private Object[] graphSources;
+    private GraphData mergedGraph = emptyGraph();
+    private Map<Long, Integer> hallByDpid = new HashMap<>();
+    private Map<Long, Integer> hallByIp = new HashMap<>();
+    private Object[] flowSources;
+    private DetectedFlowData[] mergedFlows = new DetectedFlowData[0];
+    private Object[] cpuSources;
+    private Map<String, Integer> mergedCpu = new HashMap<>();
+    private Object[] memorySources;
+    private Map<String, Integer> mergedMemory = new HashMap<>();
+
+    /**
+     * Halls from {@code spec}, a comma-separated list of URLs, each optionally named
+     * ("hall1=http://10.1.0.5:8000,hall2=http://10.2.0.5:8000"); unnamed ones are "hall1", "hall2", ...
+     */
+    static Map<String, String> parse(String spec) {
+        Map<String, String> halls = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            String entry = part.trim();
+            if (entry.isEmpty()) continue;
+            int eq = entry.indexOf('=');
+            // "=" inside a URL (a query) comes after "://"
+            int scheme = entry.indexOf("://");
+            if (eq > 0 && (scheme < 0 || eq < scheme)) {
+                halls.put(entry.substring(0, eq).trim(), entry.substring(eq + 1).trim());
+            } else {
+                halls.put("hall" + (halls.size() + 1), entry);
+            }
+        }
+        return halls;
+    }
+
+    ControllerFederation(Map<String, String> urls, LongSupplier flowIntervalMillis, IntSupplier topK,
+            long graphIntervalMillis, long utilizationIntervalMillis, BooleanSupplier paused, Runnable onChange) {
+        this.topK = topK;
+        this.paused = paused;
+        this.onChange = onChange;
+        for (Map.Entry<String, String> entry : urls.entrySet()) {
+            halls.add(new Hall(entry.getKey(), halls.size(), entry.getValue(), flowIntervalMillis, topK,
+                graphIntervalMillis, utilizationIntervalMillis));
+        }
+    }
+
+    List<Hall> halls() {
+        return halls;
+    }
+
+    void start() {
+        for (Hall hall : halls) {
+            System.out.println("[FED] Polling " + hall.name + " at " + hall.url);
+            hall.pool.scheduleAtFixedRate(() -> tick(hall), 0, TICK_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void close() {
+        for (Hall hall : halls) {
+            hall.pool.shutdownNow();
+            hall.client.close();
+        }
+    }
+
+    private void tick(Hall hall) {
+        if (paused.getAsBoolean()) return;
+        long now = System.currentTimeMillis();
+        for (PolledEndpoint<?> endpoint : hall.endpoints()) {
+            if (!endpoint.due(now)) continue;
+            try {
+                hall.pool.execute(() -> {
+                    if (endpoint.fetch(now)) onChange.run();
+                });
+            } catch (RejectedExecutionException e) {
+                return;
+            }
+        }
+        // Hall 0's thread logs everyone's health now and then
+        if (hall.index == 0 && Diagnostics.INFO && now - lastStatusLogMillis >= STATUS_LOG_MS) {
+            lastStatusLogMillis = now;
+            for (Hall h : halls) {
+                Diagnostics.info("[FED] " + h.status(now));
+            }
+        }
+    }
+
+    /** Banner text naming the halls whose data is out of date, or "" if all are answering. */
+    String staleness(long now) {
+        StringBuilder text = new StringBuilder();
+        for (Hall hall : halls) {
+            long oldest = Long.MAX_VALUE;
+            boolean failing = false;
+            for (PolledEndpoint<?> endpoint : hall.endpoints()) {
+                if (!endpoint.isFailing()) continue;
+                failing = true;
+                oldest = Math.min(oldest, endpoint.lastGoodMillis());
+            }
+            if (!failing) continue;
+            text.append(text.length() == 0 ? "" : ", ").append(hall.name)
+                .append(oldest > 0 ? " " + (now - oldest) / 1000 + " s old" : " no data yet");
+        }
+        return text.toString();
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Merged views; each is the same instance until a hall's response changes
+
+    /** All halls' topologies as one. Empty (not null) until a hall has answered. */
+    synchronized GraphData graph() {
+        Object[] sources = new Object[halls.size()];
+        for (Hall hall : halls) {
+            sources[hall.index] = hall.graph.get();
+        }
+        if (Arrays.equals(sources, graphSources)) {
+            return mergedGraph;
+        }
+        graphSources = sources;
+        mergeGraphs();
+        return mergedGraph;
+    }
+
+    /** All halls' flows, each namespaced and de-duplicated by 5-tuple. */
+    synchronized DetectedFlowData[] flows() {
+        graph(); // the DPID index flows are namespaced with
+        Object[] sources = new Object[halls.size() + 1];
+        for (Hall hall : halls) {
+            sources[hall.index] = hall.flows.get();
+        }
+        sources[halls.size()] = hallByDpid;
+        if (Arrays.equals(sources, flowSources)) {
+            return mergedFlows;
+        }
+        flowSources = sources;
+        mergedFlows = mergeFlows();
+        return mergedFlows;
+    }
+
+    synchronized Map<String, Integer> cpuUtilization() {
+        Object[] sources = new Object[halls.size()];
+        for (Hall hall : halls) {
+            sources[hall.index] = hall.cpu.get();
+        }
+        if (!Arrays.equals(sources, cpuSources)) {
+            cpuSources = sources;
+            mergedCpu = mergeUtilization(sources);
+        }
+        return mergedCpu;
+    }
+
+    synchronized Map<String, Integer> memoryUtilization() {
+        Object[] sources = new Object[halls.size()];
+        for (Hall hall : halls) {
+            sources[hall.index] = hall.memory.get();
+        }
+        if (!Arrays.equals(sources, memorySources)) {
+            memorySources = sources;
+            mergedMemory = mergeUtilization(sources);
+        }
+        return mergedMemory;
+    }
+
+    // ---------------------------------------------------------------------------------------
+
+    /** {@code dpid} of hall {@code hall} in the merged numbering. */
+    static long namespace(int hall, long dpid) {
+        return dpid == 0 ? 0 : ((long) (hall + 1) << 48) | (dpid & DPID_MASK);
+    }
+
+    private static GraphData emptyGraph() {
+        GraphData graph = new GraphData();
+        graph.nodes = new ArrayList<>();
+        graph.edges = new ArrayList<>();
+        return graph;
+    }
+
+    // Caller holds the lock
+    private void mergeGraphs() {
+        GraphData merged = emptyGraph();
+        Map<Long, Integer> byDpid = new HashMap<>();
+        Map<Long, Integer> byIp = new HashMap<>();
+        Set<Long> seenNodes = new HashSet<>();
+        // Index first, so a link can be resolved to a hall listed after its own
+        for (Hall hall : halls) {
+            GraphData graph = hall.graph.get();
+            if (graph == null || graph.nodes == null) continue;
+            for (GraphData.Node node : graph.nodes) {
+                // A DPID two halls use stays with the first; the second resolves its own first anyway
+                if (node.dpid != 0) byDpid.putIfAbsent(node.dpid, hall.index);
+                if (node.ip != null) {
+                    for (Long ip : node.ip) {
+                        if (ip != null) byIp.putIfAbsent(ip, hall.index);
+                    }
+                }
+            }
+        }
+        for (Hall hall : halls) {
+            GraphData graph = hall.graph.get();
+            if (graph == null || graph.nodes == null) continue;
+            Set<Long> ownDpids = new HashSet<>();
+            for (GraphData.Node node : graph.nodes) {
+                ownDpids.add(node.dpid);
+                Long firstIp = node.ip != null && !node.ip.isEmpty() ? node.ip.get(0) : null;
+                if (firstIp != null && !seenNodes.add(firstIp)) continue;
+                merged.nodes.add(copy(node, hall));
+            }
+            if (graph.edges == null) continue;
+            for (GraphData.Edge edge : graph.edges) {
+                merged.edges.add(copy(edge, hall.index, ownDpids, byDpid, byIp));
+            }
+        }
+        // The same link reported from both of its halls is kept once
+        Set<String> seenEdges = new HashSet<>();
+        merged.edges.removeIf(edge -> !seenEdges.add(edge.src_dpid + ">" + edge.dst_dpid + ":" + edge.src_ip + ">" + edge.dst_ip));
+        mergedGraph = merged;
+        hallByDpid = byDpid;
+        hallByIp = byIp;
+        if (Diagnostics.DEBUG) {
+            Diagnostics.debug("[FED] Merged topology: " + merged.nodes.size() + " nodes, " + merged.edges.size() + " links");
+        }
+    }
+
+    private static GraphData.Node copy(GraphData.Node node, Hall hall) {
+        GraphData.Node copy = new GraphData.Node();
+        copy.device_name = node.device_name != null ? node.device_name + "@" + hall.name : null;
+        copy.ip = node.ip;
+        copy.is_enabled = node.is_enabled;
+        copy.is_up = node.is_up;
+        copy.mac = node.mac;
+        copy.vertex_type = node.vertex_type;
+        copy.device_layer = node.device_layer;
+        copy.dpid = namespace(hall.index, node.dpid);
+        copy.brand_name = node.brand_name;
+        return copy;
+    }
+
+    private static GraphData.Edge copy(GraphData.Edge edge, int hall, Set<Long> ownDpids,
+            Map<Long, Integer> byDpid, Map<Long, Integer> byIp) {
+        GraphData.Edge copy = new GraphData.Edge();
+        copy.src_ip = edge.src_ip;
+        copy.dst_ip = edge.dst_ip;
+        copy.flow_set = edge.flow_set;
+        copy.is_enabled = edge.is_enabled;
+        copy.is_up = edge.is_up;
+        copy.link_bandwidth_bps = edge.link_bandwidth_bps;
+        copy.link_bandwidth_utilization_percent = edge.link_bandwidth_utilization_percent;
+        copy.dst_port = edge.dst_port;
+        copy.src_interface = edge.src_interface;
+        copy.dst_interface = edge.dst_interface;
+        copy.left_link_bandwidth_bps = edge.left_link_bandwidth_bps;
+        copy.link_bandwidth_usage_bps = edge.link_bandwidth_usage_bps;
+        copy.src_dpid = edge.src_dpid != null ? resolve(edge.src_dpid, edge.src_ip, hall, ownDpids, byDpid, byIp) : null;
+        copy.dst_dpid = edge.dst_dpid != null ? resolve(edge.dst_dpid, edge.dst_ip, hall, ownDpids, byDpid, byIp) : null;
+        return copy;
+    }
+
+    // An endpoint's DPID in the merged numbering: this hall's switch if it has it, else the hall
+    // owning the endpoint's IP, else whichever hall has the DPID
+    private static long resolve(long dpid, List<Long> ips, int hall, Set<Long> ownDpids,
+            Map<Long, Integer> byDpid, Map<Long, Integer> byIp) {
+        if (dpid == 0 || ownDpids.contains(dpid)) return namespace(hall, dpid);
+        if (ips != null) {
+            for (Long ip : ips) {
+                Integer owner = ip != null ? byIp.get(ip) : null;
+                if (owner != null) return namespace(owner, dpid);
+            }
+        }
+        Integer owner = byDpid.get(dpid);
+        return namespace(owner != null ? owner : hall, dpid);
+    }
+
+    // Caller holds the lock
+    private DetectedFlowData[] mergeFlows() {
+        Map<NdtEventStream.FlowKey, DetectedFlowData> merged = new LinkedHashMap<>();
+        for (Hall hall : halls) {
+            for (DetectedFlowData flow : namespacedFlows(hall)) {
+                NdtEventStream.FlowKey key = new NdtEventStream.FlowKey(flow);
+                DetectedFlowData first = merged.putIfAbsent(key, flow);
+                if (first != null && flow.path != null) {
+                    merged.put(key, joinPaths(first, flow, hall.index));
+                }
+            }
+        }
+        DetectedFlowData[] flows = merged.values().toArray(new DetectedFlowData[0]);
+        int k = topK.getAsInt();
+        if (k > 0 && flows.length > k) {
+            // Each hall sent its own top K
+            Arrays.sort(flows, Comparator.comparingLong(
+                (DetectedFlowData f) -> f.estimated_flow_sending_rate_bps_in_the_proceeding_1sec_timeslot).reversed());
+            flows = Arrays.copyOf(flows, k);
+        }
+        return flows;
+    }
+
+    private List<DetectedFlowData> namespacedFlows(Hall hall) {
+        DetectedFlowData[] flows = hall.flows.get();
+        if (flows == null) return List.of();
+        if (flows == hall.namespacedFrom && hallByDpid == hall.namespacedWith) {
+            return hall.namespaced;
+        }
+        GraphData graph = hall.graph.get();
+        Set<Long> ownDpids = new HashSet<>();
+        if (graph != null && graph.nodes != null) {
+            for (GraphData.Node node : graph.nodes) {
+                if (node.dpid != 0) ownDpids.add(node.dpid);
+            }
+        }
+        List<DetectedFlowData> namespaced = new ArrayList<>(flows.length);
+        for (DetectedFlowData flow : flows) {
+            namespaced.add(namespacePath(flow, hall.index, ownDpids));
+        }
+        hall.namespacedFrom = flows;
+        hall.namespacedWith = hallByDpid;
+        hall.namespaced = namespaced;
+        return namespaced;
+    }
+
+    // A copy of flow whose switch hops carry merged DPIDs; host hops (IPs) are left as they are
+    private DetectedFlowData namespacePath(DetectedFlowData flow, int hall, Set<Long> ownDpids) {
+        DetectedFlowData copy = shallowCopy(flow);
+        if (flow.path != null) {
+            copy.path = new ArrayList<>(flow.path.size());
+            for (DetectedFlowData.PathNode hop : flow.path) {
+                DetectedFlowData.PathNode namespaced = new DetectedFlowData.PathNode();
+                namespaced.interface_id = hop.interface_id;
+                if (ownDpids.contains(hop.node)) {
+                    namespaced.node = namespace(hall, hop.node);
+                } else if (hallByDpid.containsKey(hop.node) && !hallByIp.containsKey(hop.node)) {
+                    namespaced.node = namespace(hallByDpid.get(hop.node), hop.node);
+                } else {
+                    namespaced.node = hop.node;
+                }
+                copy.path.add(namespaced);
+            }
+        }
+        return copy;
+    }
+
+    // The flow with segment joined to the path it has so far, in path order: whichever ends where the
+    // other starts goes first, else segment if its hall owns the source host. The hops where the two
+    // overlap are kept once. Caller holds the lock.
+    private DetectedFlowData joinPaths(DetectedFlowData joined, DetectedFlowData segment, int segmentHall) {
+        List<DetectedFlowData.PathNode> path = joined.path != null ? joined.path : List.of();
+        int pathThenSegment = overlap(path, segment.path);
+        int segmentThenPath = overlap(segment.path, path);
+        boolean segmentFirst = segmentThenPath != pathThenSegment
+            ? segmentThenPath > pathThenSegment
+            : Integer.valueOf(segmentHall).equals(hallByIp.get(segment.src_ip));
+        List<DetectedFlowData.PathNode> earlier = segmentFirst ? segment.path : path;
+        List<DetectedFlowData.PathNode> later = segmentFirst ? path : segment.path;
+        DetectedFlowData copy = shallowCopy(joined);
+        copy.path = new ArrayList<>(earlier.size() + later.size());
+        copy.path.addAll(earlier);
+        copy.path.addAll(later.subList(segmentFirst ? segmentThenPath : pathThenSegment, later.size()));
+        return copy;
+    }
+
+    // How many hops earlier ends with that later starts with
+    private static int overlap(List<DetectedFlowData.PathNode> earlier, List<DetectedFlowData.PathNode> later) {
+        for (int n = Math.min(earlier.size(), later.size()); n > 0; n--) {
+            int from = earlier.size() - n;
+            boolean same = true;
+            for (int i = 0; i < n && same; i++) {
+                same = earlier.get(from + i).node == later.get(i).node;
+            }
+            if (same) return n;
+        }
+        return 0;
+    }
+
+    private static DetectedFlowData shallowCopy(DetectedFlowData flow) {
+        DetectedFlowData copy = new DetectedFlowData();
+        copy.src_ip = flow.src_ip;
+        copy.dst_ip = flow.dst_ip;
+        copy.src_port = flow.src_port;
+        copy.dst_port = flow.dst_port;
+        copy.protocol_id = flow.protocol_id;
+        copy.estimated_flow_sending_rate_bps_in_the_last_sec = flow.estimated_flow_sending_rate_bps_in_the_last_sec;
+        copy.estimated_flow_sending_rate_bps_in_the_proceeding_1sec_timeslot = flow.estimated_flow_sending_rate_bps_in_the_proceeding_1sec_timeslot;
+        copy.estimated_packet_rate_in_the_last_sec = flow.estimated_packet_rate_in_the_last_sec;
+        copy.estimated_packet_rate_in_the_proceeding_1sec_timeslot = flow.estimated_packet_rate_in_the_proceeding_1sec_timeslot;
+        copy.first_sampled_time = flow.first_sampled_time;
+        copy.latest_sampled_time = flow.latest_sampled_time;
+        copy.path = flow.path;
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Integer> mergeUtilization(Object[] sources) {
+        Map<String, Integer> merged = new HashMap<>();
+        for (Object source : sources) {
+            if (source == null) continue;
+            for (Map.Entry<String, Integer> entry : ((Map<String, Integer>) source).entrySet()) {
+                merged.putIfAbsent(entry.getKey(), entry.getValue());
+            }
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,126 @@
+package org.example.demo2;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Levelled diagnostics for the per-flow / per-edge hot paths.
+ *
+ * The level is read once from the system property {@code ndt.log.level}
+ * (OFF, ERROR, INFO, DEBUG, TRACE; default INFO) and exposed as static final
+ * booleans, so a guard such as {@code if (Diagnostics.TRACE) ...} is folded
+ * away by the JIT and the message string is never built when the level is off.
+ *
+ * Messages are handed to a bounded queue and written by a single daemon thread,
+ * so callers never block on System.out. When the queue is full the message is
+ * dropped and counted instead of stalling the caller.
+ */
+public final class Diagnostics {
+
+    public static final int LEVEL_OFF = 0;
+    public static final int LEVEL_ERROR = 1;
+    public static final int LEVEL_INFO = 2;
+    public static final int LEVEL_DEBUG = 3;
+    public static final int LEVEL_TRACE = 4;
+
+    public static final int LEVEL = parseLevel(System.getProperty("ndt.log.level", "INFO"));
+
+    public static final boolean ERROR = LEVEL >= LEVEL_ERROR;
+    public static final boolean INFO = LEVEL >= LEVEL_INFO;
+    public static final boolean DEBUG = LEVEL >= LEVEL_DEBUG;
+    public static final boolean TRACE = LEVEL >= LEVEL_TRACE;
+
+    // Log 1 in N items inside per-flow loops (ndt.log.sample, default 1000)
+    public static final int SAMPLE_EVERY = Math.max(1, Integer.getInteger("ndt.log.sample", 1000));
+
+    private static final int QUEUE_CAPACITY = 8192;
+    private static final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private static final AtomicLong dropped = new AtomicLong();
+
+    private static final class Entry {
+        final boolean error;
+        final String message;
+
+        Entry(boolean error, String message) {
+            this.error = error;
+            this.message = message;
+        }
+    }
+
+    static {
+        if (LEVEL > LEVEL_OFF) {
+            Thread writer = new Thread(Diagnostics::drainLoop, "ndt-diagnostics");
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    private Diagnostics() {
+    }
+
+    private static int parseLevel(String value) {
+        if (value == null) return LEVEL_INFO;
+        switch (value.trim().toUpperCase()) {
+            case "OFF": return LEVEL_OFF;
+            case "ERROR": return LEVEL_ERROR;
+            case "DEBUG": return LEVEL_DEBUG;
+            case "TRACE": return LEVEL_TRACE;
+            default: return LEVEL_INFO;
+        }
+    }
+
+    /** True for the first item and then every SAMPLE_EVERY-th item of a loop. */
+    public static boolean sampled(int index) {
+        return index % SAMPLE_EVERY == 0;
+    }
+
+    public static void error(String message) {
+        if (ERROR) enqueue(true, message);
+    }
+
+    public static void info(String message) {
+        if (INFO) enqueue(false, message);
+    }
+
+    public static void debug(String message) {
+        if (DEBUG) enqueue(false, message);
+    }
+
+    public static void trace(String message) {
+        if (TRACE) enqueue(false, message);
+    }
+
+    /** Number of messages discarded because the writer could not keep up. */
+    public static long getDroppedCount() {
+        return dropped.get();
+    }
+
+    private static void enqueue(boolean error, String message) {
+        if (!queue.offer(new Entry(error, message))) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private static void drainLoop() {
+        long reportedDrops = 0;
+        while (true) {
+            try {
+                Entry entry = queue.take();
+                if (entry.error) {
+                    System.err.println(entry.message);
+                } else {
+                    System.out.println(entry.message);
+                }
+                long drops = dropped.get();
+                if (drops != reportedDrops && queue.isEmpty()) {
+                    System.out.println("[DIAG] Dropped " + (drops - reportedDrops) + " diagnostic messages (queue full)");
+                    reportedDrops = drops;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
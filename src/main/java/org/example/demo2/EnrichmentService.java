@@ -0,0 +1,201 @@
+package org.example.demo2;
+
+import java.io.FileReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * Turns the raw numbers in topology and flow data into what the views show: dotted IPv4 strings,
+ * port services and protocol keywords from porttable.json / protocoltable.json, and device names.
+ *
+ * The tables are read once, on a background thread started by {@link #preload} (or the first
+ * lookup), into arrays indexed by port and protocol number. IPv4 strings are built without
+ * String.format and kept in a small direct-mapped cache, so the same address seen on every poll
+ * is one array read rather than a new string.
+ *
+ * Thread-safe.
+ */
+public final class EnrichmentService {
+
+    private static final String PORT_TABLE = "porttable.json";
+    private static final String PROTOCOL_TABLE = "protocoltable.json";
+
+    private static final int IP_CACHE_SIZE = 1 << 14;
+
+    // Entries are immutable, so racing threads at worst format the same address twice
+    private static final IpText[] IP_CACHE = new IpText[IP_CACHE_SIZE];
+
+    private static final CompletableFuture<Tables> TABLES = CompletableFuture.supplyAsync(
+        EnrichmentService::loadTables, r -> {
+            Thread t = new Thread(r, "ndt-enrichment");
+            t.setDaemon(true);
+            t.start();
+        });
+
+    private EnrichmentService() {
+    }
+
+    /** Start loading the lookup tables so the first window that needs them doesn't wait. */
+    public static void preload() {
+        // Class initialisation starts the load
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // IPv4
+
+    /** Dotted form of the low 32 bits of {@code ip}, most significant byte first. */
+    public static String ipv4(long ip) {
+        int value = (int) ip;
+        int slot = (value ^ (value >>> 14) ^ (value >>> 28)) & (IP_CACHE_SIZE - 1);
+        IpText cached = IP_CACHE[slot];
+        if (cached != null && cached.ip == value) {
+            return cached.text;
+        }
+        String text = format(value);
+        IP_CACHE[slot] = new IpText(value, text);
+        return text;
+    }
+
+    /** Dotted form of the low 32 bits of {@code ip}, least significant byte first. */
+    public static String ipv4LittleEndian(long ip) {
+        return ipv4(Integer.reverseBytes((int) ip));
+    }
+
+    private static String format(int ip) {
+        char[] chars = new char[15];
+        int length = 0;
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            int octet = (ip >>> shift) & 0xFF;
+            if (octet >= 100) chars[length++] = (char) ('0' + octet / 100);
+            if (octet >= 10) chars[length++] = (char) ('0' + octet / 10 % 10);
+            chars[length++] = (char) ('0' + octet % 10);
+            if (shift > 0) chars[length++] = '.';
+        }
+        return new String(chars, 0, length);
+    }
+
+    private static final class IpText {
+        final int ip;
+        final String text;
+
+        IpText(int ip, String text) {
+            this.ip = ip;
+            this.text = text;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Ports and protocols
+
+    /** Service registered for {@code port} in the port table (e.g. "HTTPS"), or null. */
+    public static String portService(int port) {
+        if (port < 0 || port > 65535) return null;
+        return tables().portServices[port];
+    }
+
+    /** Keyword of IP protocol {@code number} (e.g. "TCP"), or the number itself if it has none. */
+    public static String protocolName(int number) {
+        String keyword = number >= 0 && number < 256 ? tables().protocolKeywords[number] : null;
+        return keyword != null ? keyword : String.valueOf(number);
+    }
+
+    /** Protocol number for a keyword, case-insensitive, or -1 if the table doesn't know it. */
+    public static int protocolNumber(String keyword) {
+        Integer number = tables().protocolsByKeyword.get(keyword.toLowerCase(Locale.ROOT));
+        return number != null ? number : -1;
+    }
+
+    /** Rows of porttable.json as loaded, read-only. */
+    public static List<Map<String, Object>> portRows() {
+        return tables().portRows;
+    }
+
+    /** Rows of protocoltable.json as loaded, read-only. */
+    public static List<Map<String, Object>> protocolRows() {
+        return tables().protocolRows;
+    }
+
+    // ---------------------------------------------------------------------------------------
+    // Device names
+
+    /**
+     * Device name of the node owning {@code ip} in the current topology, or the IP itself. Resolved
+     * through the current snapshot, which caches each answer until the next one is published; call
+     * on the FX thread.
+     */
+    public static String deviceName(String ip) {
+        return SnapshotBus.current().nodeName(ip);
+    }
+
+    // ---------------------------------------------------------------------------------------
+
+    private static Tables tables() {
+        return TABLES.join();
+    }
+
+    private static final class Tables {
+        final List<Map<String, Object>> portRows;
+        final List<Map<String, Object>> protocolRows;
+        final String[] portServices = new String[65536];
+        final String[] protocolKeywords = new String[256];
+        final Map<String, Integer> protocolsByKeyword = new HashMap<>();
+
+        Tables(List<Map<String, Object>> portRows, List<Map<String, Object>> protocolRows) {
+            this.portRows = portRows;
+            this.protocolRows = protocolRows;
+            for (Map<String, Object> row : portRows) {
+                int port = intValue(row.get("port"));
+                Object service = row.get("protocol");
+                if (port >= 0 && port <= 65535 && service != null) portServices[port] = service.toString();
+            }
+            for (Map<String, Object> row : protocolRows) {
+                int number = intValue(row.get("Protocol Number"));
+                Object keyword = row.get("Keyword");
+                if (number < 0 || number > 255 || keyword == null || keyword.toString().isEmpty()) continue;
+                protocolKeywords[number] = keyword.toString();
+                protocolsByKeyword.putIfAbsent(keyword.toString().toLowerCase(Locale.ROOT), number);
+            }
+        }
+    }
+
+    private static Tables loadTables() {
+        return new Tables(loadRows(PORT_TABLE), loadRows(PROTOCOL_TABLE));
+    }
+
+    private static List<Map<String, Object>> loadRows(String filename) {
+        try (FileReader reader = new FileReader(filename)) {
+            List<Map<String, Object>> rows = new Gson().fromJson(reader,
+                new TypeToken<List<Map<String, Object>>>() { }.getType());
+            if (rows == null) return Collections.emptyList();
+            List<Map<String, Object>> frozen = new ArrayList<>(rows.size());
+            for (Map<String, Object> row : rows) {
+                frozen.add(Collections.unmodifiableMap(row));
+            }
+            return Collections.unmodifiableList(frozen);
+        } catch (Exception e) {
+            System.err.println("[ENRICH] Could not load " + filename + ": " + e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    // Gson reads JSON numbers as Double; the tables also hold numbers as strings
+    private static int intValue(Object value) {
+        if (value instanceof Number) return ((Number) value).intValue();
+        if (value instanceof String) {
+            try {
+                return Integer.parseInt(((String) value).trim());
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+}
@@ -16,6 +16,8 @@ public class Flow {
     public double estimatedFlowSendingRateBpsInTheProceeding1secTimeslot;
     public int estimatedPacketRateInTheLastSec;
     public int estimatedPacketRateInTheProceeding1secTimeslot;
+    // Stable identity from FlowIdentityTable; 0 until assigned
+    int id;
 
     public Flow(List<String> pathNodes, List<Integer> pathPorts, String srcIp, String dstIp,
                 int srcPort, int dstPort, int protocolId, int startTimeMs, int endTimeMs,
@@ -38,6 +40,17 @@ public class Flow {
         this.estimatedPacketRateInTheProceeding1secTimeslot = estimatedPacketRateInTheProceeding1secTimeslot;
     }
 
+    /**
+     * Stable ID of this flow's 5-tuple, the same for every poll's Flow object while the flow lasts.
+     * Flows converted from the API get it on creation; others look it up on first use.
+     */
+    public int id() {
+        if (id == 0) {
+            id = FlowIdentityTable.shared().idOf(this);
+        }
+        return id;
+    }
+
     /**
      * Sending rate for UI, sorting, and topology weighting.
      * Uses {@code estimated_flow_sending_rate_bps_in_the_proceeding_1sec_timeslot} so the client does not
@@ -1,9 +1,9 @@
 package org.example.demo2;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -12,8 +12,10 @@ import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.scene.control.CheckBox;
 import javafx.scene.control.Label;
-import javafx.scene.control.ScrollPane;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
 import javafx.scene.control.Separator;
+import javafx.scene.control.TextField;
 import javafx.scene.control.Tooltip;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
@@ -24,29 +26,26 @@ import javafx.scene.text.FontWeight;
 
 public class FlowFilter extends VBox {
     private final TopologyCanvas topologyCanvas;
-    private List<Flow> flows;
-    private final ObservableList<CheckBox> flowCheckBoxes;
+    private FlowTable flows;
+    private final FlowFilterEngine engine = new FlowFilterEngine();
+    private FlowFilterEngine.Query query = FlowFilterEngine.Query.parse("");
+    private BitSet matches = new BitSet();
+    // Flows unticked in the list, by stable flow ID, so the choice survives updates
+    private final Set<Integer> uncheckedIds = new HashSet<>();
+    private final ObservableList<Integer> matchingIndices = FXCollections.observableArrayList();
+    private final ListView<Integer> flowList; // Virtualized: only visible rows get cells
+    private final TextField queryField;
+    private final Label statusLabel;
     private final CheckBox selectAllCheckBox;
-    private final Map<String, Integer> flowIdToIndexMap; // New: Flow ID to index mapping
-    private final ScrollPane scrollPane; // New: Scroll panel
-    private final VBox flowContentBox; // New: Flow content container
 
     public FlowFilter(TopologyCanvas topologyCanvas, List<Flow> flows) {
         this.topologyCanvas = topologyCanvas;
-        this.flows = flows;
-        this.flowCheckBoxes = FXCollections.observableArrayList();
-        this.flowIdToIndexMap = new HashMap<>();
+        this.flows = FlowTable.of(flows);
         
-        // Initialize scroll panel and content container
-        this.flowContentBox = new VBox(2);
-        this.flowContentBox.setPadding(new Insets(5));
-        
-        this.scrollPane = new ScrollPane(flowContentBox);
-        this.scrollPane.setPrefViewportHeight(200); // Set default height, display about 10 items
-        this.scrollPane.setMaxHeight(200);
-        this.scrollPane.setVbarPolicy(ScrollPane.ScrollBarPolicy.AS_NEEDED);
-        this.scrollPane.setHbarPolicy(ScrollPane.ScrollBarPolicy.NEVER);
-        this.scrollPane.setStyle("-fx-background: transparent; -fx-background-color: transparent;");
+        this.flowList = new ListView<>(matchingIndices);
+        this.flowList.setPrefHeight(200);
+        this.flowList.setFixedCellSize(22);
+        this.flowList.setCellFactory(list -> new FlowCell());
 
         // Set basic styles
         setPrefWidth(280);
@@ -84,7 +83,23 @@ public class FlowFilter extends VBox {
             titleBox.getChildren().add(titleLabel);
         }
 
-        // Select all / Deselect all
+        // Query: compiled on every edit, applied only when it parses
+        queryField = new TextField();
+        queryField.setPromptText("src=10.0.0.0/24 dport=80,443 proto=tcp rate>1M path=s1");
+        queryField.setStyle("-fx-font-size: 11px;");
+        queryField.setTooltip(new Tooltip(
+            "All terms must match:\n" +
+            "  src= / dst= / ip=   address or CIDR, comma-separated\n" +
+            "  sport= / dport= / port=   80,8000-8100\n" +
+            "  proto=tcp,udp,17\n" +
+            "  rate>1M  rate<=500k   (bps)\n" +
+            "  path=s1  or just  s1   path goes through a node"));
+        queryField.textProperty().addListener((obs, oldText, newText) -> applyQuery(newText));
+
+        statusLabel = new Label();
+        statusLabel.setStyle("-fx-font-size: 10px; -fx-text-fill: #666666; -fx-font-style: italic;");
+
+        // Select all / Deselect all (the flows matching the query)
         selectAllCheckBox = new CheckBox("Select All Flows");
         selectAllCheckBox.setSelected(true);
         selectAllCheckBox.setStyle("-fx-font-size: 11px; -fx-padding: 2px 0px;");
@@ -93,148 +108,118 @@ public class FlowFilter extends VBox {
         // Separator
         Separator separator = new Separator();
 
-        // Create flow options
-        createFlowOptions();
-
         // Add components
-        getChildren().addAll(titleBox, selectAllCheckBox, separator, scrollPane);
+        getChildren().addAll(titleBox, queryField, statusLabel, selectAllCheckBox, separator, flowList);
 
         // Initial state: all selected
-        selectAllFlows();
+        updateFlows(flows);
     }
 
-            // Generate unique identifier for flow
-    private String generateFlowId(Flow flow) {
-        return flow.srcIp + "_" + flow.dstIp + "_" + flow.srcPort + "_" + flow.dstPort;
-    }
-
-            // Update flows data
-    public void updateFlows(List<Flow> newFlows) {
-        this.flows = newFlows;
-        refreshFlowOptions();
-    }
+    /** One list row: a colour chip and "src → dst", ticked unless the user hid that flow. */
+    private class FlowCell extends ListCell<Integer> {
+        private final CheckBox checkBox = new CheckBox();
+        private final javafx.scene.shape.Rectangle colorRectangle = new javafx.scene.shape.Rectangle(14, 10);
+        private final Tooltip tooltip = new Tooltip();
+        private int id; // 0 while the cell is empty
 
-            // Refresh flow options
-    private void refreshFlowOptions() {
-        // Save current check state
-        Map<String, Boolean> checkedStates = new HashMap<>();
-        
-        for (int i = 0; i < flowCheckBoxes.size(); i++) {
-            CheckBox checkBox = flowCheckBoxes.get(i);
-            String flowText = checkBox.getText(); // Get text directly from CheckBox
-            
-            if (flowText != null && !flowText.isEmpty()) {
-                checkedStates.put(flowText, checkBox.isSelected());
-            }
-        }
-        
-        // Clear existing options
-        flowCheckBoxes.clear();
-        flowIdToIndexMap.clear();
-        
-        // Recreate options and pass saved state
-        createFlowOptions(checkedStates);
-        
-        // Update select all state
-        updateSelectAllState();
-        updateFlowVisibility();
-    }
-
-    private void createFlowOptions() {
-        createFlowOptions(null);
-    }
-    
-    private void createFlowOptions(Map<String, Boolean> checkedStates) {
-        // Clear existing CheckBoxes
-        flowCheckBoxes.clear();
-        flowContentBox.getChildren().clear();
-        
-        // Show all Flows
-        for (int i = 0; i < flows.size(); i++) {
-            Flow flow = flows.get(i);
-            String flowId = generateFlowId(flow);
-            flowIdToIndexMap.put(flowId, i);
-            
-            
-            
-            Color flowColor = topologyCanvas.getColorForFlow(flow);
-            
-            // Create icon with colored rectangle
-            javafx.scene.shape.Rectangle colorRectangle = new javafx.scene.shape.Rectangle(14, 10, flowColor);
+        FlowCell() {
             colorRectangle.setStroke(Color.BLACK);
             colorRectangle.setStrokeWidth(0.5);
             colorRectangle.setArcWidth(1);
             colorRectangle.setArcHeight(1);
-            
-            // Get device names for src and dst
-            String srcDeviceName = getDeviceName(flow.srcIp);
-            String dstDeviceName = getDeviceName(flow.dstIp);
-            
-            // Create flow description (including device name)
-            String flowText = String.format("%s → %s", srcDeviceName, dstDeviceName);
-            
-            // Create CheckBox
-            CheckBox checkBox = new CheckBox();
-            
-            // Set check state
-            if (checkedStates != null && checkedStates.containsKey(flowText)) {
-                checkBox.setSelected(checkedStates.get(flowText));
-            } else {
-                checkBox.setSelected(true); // Default to checked
-            }
-            
-            // Directly set CheckBox text and icon
-            checkBox.setText(flowText);
             checkBox.setGraphic(colorRectangle);
-            checkBox.setWrapText(false);
-            checkBox.setMaxWidth(Double.MAX_VALUE);
-            checkBox.setStyle("-fx-font-size: 11px; -fx-alignment: CENTER_LEFT; -fx-padding: 2px 0px; -fx-background-insets: 0; -fx-border-insets: 0; -fx-text-fill: #333333;");
-            
-            // Ensure icon and text alignment
             checkBox.setGraphicTextGap(5);
-            
-            // Add tooltip (including detailed information)
-            String pathInfo = "No path info";
-            if (flow.pathNodes != null && !flow.pathNodes.isEmpty()) {
-                List<String> deviceNames = flow.pathNodes.stream()
-                    .map(this::getDeviceName)
-                    .collect(Collectors.toList());
-                pathInfo = String.join(" → ", deviceNames);
-            }
-            
-            String tooltipText = String.format(
-                "Source Device: %s (%s:%d)\nDestination Device: %s (%s:%d)\nProtocol: %d\nRate: %.2f bps\nPath: %s",
-                srcDeviceName, flow.srcIp, flow.srcPort, 
-                dstDeviceName, flow.dstIp, flow.dstPort, 
-                flow.protocolId, flow.getSendingRateBps(), pathInfo
-            );
-            Tooltip tooltip = new Tooltip(tooltipText);
-            Tooltip.install(checkBox, tooltip);
-            
-            // Add event handling
+            checkBox.setStyle("-fx-font-size: 11px; -fx-text-fill: #333333;");
             checkBox.setOnAction(e -> {
-                updateFlowVisibility();
+                if (id == 0) return;
+                if (checkBox.isSelected()) {
+                    uncheckedIds.remove(id);
+                } else {
+                    uncheckedIds.add(id);
+                }
                 updateSelectAllState();
+                updateFlowVisibility();
             });
-            
-            flowCheckBoxes.add(checkBox);
-            flowContentBox.getChildren().add(checkBox);
+            // Tooltip text is only built when it is about to show
+            tooltip.setOnShowing(e -> tooltip.setText(describe(getItem())));
         }
-        
-        // Display Flow total information
-        if (flows.size() > 0) {
-            Label infoLabel = new Label("Total " + flows.size() + "  Flows");
-            infoLabel.setStyle("-fx-font-size: 10px; -fx-text-fill: #666666; -fx-font-style: italic;");
-            infoLabel.setPadding(new Insets(5, 0, 0, 0));
-            flowContentBox.getChildren().add(infoLabel);
+
+        @Override
+        protected void updateItem(Integer index, boolean empty) {
+            super.updateItem(index, empty);
+            if (empty || index == null || index >= flows.size()) {
+                id = 0;
+                setGraphic(null);
+                setTooltip(null);
+                return;
+            }
+            FlowTable shown = flows;
+            id = shown.id[index];
+            colorRectangle.setFill(topologyCanvas.getColorForFlowId(id));
+            checkBox.setText(getDeviceName(shown.srcIpOf(index)) + " → " + getDeviceName(shown.dstIpOf(index)));
+            checkBox.setSelected(!uncheckedIds.contains(id));
+            setGraphic(checkBox);
+            setTooltip(tooltip);
         }
-        
+    }
 
+    private String describe(Integer index) {
+        if (index == null || index >= flows.size()) return "";
+        // Row view of the one flow whose tooltip is about to show
+        Flow flow = flows.get(index);
+        String pathInfo = "No path info";
+        if (flow.pathNodes != null && !flow.pathNodes.isEmpty()) {
+            SnapshotBus.Snapshot snapshot = SnapshotBus.current();
+            pathInfo = flow.pathNodes.stream()
+                .map(id -> getDeviceName(snapshot.nodeIp(id)))
+                .collect(Collectors.joining(" → "));
+        }
+        return String.format(
+            "Source Device: %s (%s:%d)\nDestination Device: %s (%s:%d)\nProtocol: %d\nRate: %.2f bps\nPath: %s",
+            getDeviceName(flow.srcIp), flow.srcIp, flow.srcPort,
+            getDeviceName(flow.dstIp), flow.dstIp, flow.dstPort,
+            flow.protocolId, flow.getSendingRateBps(), pathInfo
+        );
+    }
+
+            // Update flows data
+    public void updateFlows(List<Flow> newFlows) {
+        this.flows = FlowTable.of(newFlows);
+        engine.setFlows(this.flows, SnapshotBus.current());
+        refreshMatches();
+    }
+
+    private void applyQuery(String text) {
+        try {
+            query = FlowFilterEngine.Query.parse(text);
+            queryField.setStyle("-fx-font-size: 11px;");
+        } catch (IllegalArgumentException e) {
+            // Keep the last good query until the text parses again
+            queryField.setStyle("-fx-font-size: 11px; -fx-border-color: #e74c3c;");
+            statusLabel.setText("Invalid filter " + e.getMessage());
+            return;
+        }
+        refreshMatches();
+    }
+
+    // Re-run the query over the current flows; the list only re-renders the rows on screen
+    private void refreshMatches() {
+        matches = engine.evaluate(query);
+        List<Integer> indices = new ArrayList<>(matches.cardinality());
+        for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+            indices.add(i);
+        }
+        matchingIndices.setAll(indices);
+        statusLabel.setText(query.isEmpty()
+            ? "Total " + flows.size() + "  Flows"
+            : indices.size() + " of " + flows.size() + " flows match");
+        updateSelectAllState();
+        updateFlowVisibility();
     }
     
             // Get device name
     private String getDeviceName(String ip) {
-        Node node = topologyCanvas.getNodeByIp(ip);
+        Node node = SnapshotBus.current().nodeByIp(ip);
         String deviceName;
         if (node != null) {
             // If name is null or empty string, use IP
@@ -251,74 +236,50 @@ public class FlowFilter extends VBox {
 
     private void toggleAllFlows() {
         boolean selectAll = selectAllCheckBox.isSelected();
-        for (CheckBox checkBox : flowCheckBoxes) {
-            checkBox.setSelected(selectAll);
-        }
-        updateFlowVisibility();
-    }
-
-    private void selectAllFlows() {
-        selectAllCheckBox.setSelected(true);
-        for (CheckBox checkBox : flowCheckBoxes) {
-            checkBox.setSelected(true);
+        for (Integer index : matchingIndices) {
+            int id = flows.id[index];
+            if (selectAll) {
+                uncheckedIds.remove(id);
+            } else {
+                uncheckedIds.add(id);
+            }
         }
+        flowList.refresh();
         updateFlowVisibility();
     }
 
     private void updateSelectAllState() {
-        long selectedCount = flowCheckBoxes.stream().filter(CheckBox::isSelected).count();
-        if (selectedCount == 0) {
-            selectAllCheckBox.setIndeterminate(false);
-            selectAllCheckBox.setSelected(false);
-        } else if (selectedCount == flowCheckBoxes.size()) {
+        long unchecked = 0;
+        if (!uncheckedIds.isEmpty()) {
+            for (Integer index : matchingIndices) {
+                if (uncheckedIds.contains(flows.id[index])) unchecked++;
+            }
+        }
+        if (unchecked == 0) {
             selectAllCheckBox.setIndeterminate(false);
             selectAllCheckBox.setSelected(true);
+        } else if (unchecked == matchingIndices.size()) {
+            selectAllCheckBox.setIndeterminate(false);
+            selectAllCheckBox.setSelected(false);
         } else {
             selectAllCheckBox.setIndeterminate(true);
         }
     }
 
     private void updateFlowVisibility() {
-        
-        if (topologyCanvas.isTopKEnabled()) {
-            System.out.println("[FLOW-FILTER] Top-K is enabled, skipping FlowFilter update to avoid conflict");
-            return; 
-        }
-        
-        // Update flow visibility in topology
-        Set<Integer> visibleIndices = new HashSet<>();
-        
-        for (int i = 0; i < flowCheckBoxes.size(); i++) {
-            CheckBox checkBox = flowCheckBoxes.get(i);
-            if (checkBox.isSelected()) {
-                // Find corresponding flow index
-                String flowText = checkBox.getText();
-                if (flowText.isEmpty()) {
-                    // If text is empty, get from graphic
-                    javafx.scene.layout.HBox hbox = (javafx.scene.layout.HBox) checkBox.getGraphic();
-                    if (hbox != null && hbox.getChildren().size() > 1) {
-                        javafx.scene.control.Label label = (javafx.scene.control.Label) hbox.getChildren().get(1);
-                        flowText = label.getText();
-                    }
-                }
-                
-                // Find corresponding flow index based on flow description
-                for (int j = 0; j < flows.size(); j++) {
-                    Flow flow = flows.get(j);
-                    String srcDeviceName = getDeviceName(flow.srcIp);
-                    String dstDeviceName = getDeviceName(flow.dstIp);
-                    String expectedText = String.format("%s → %s", srcDeviceName, dstDeviceName);
-                    
-                    if (expectedText.equals(flowText)) {
-                        visibleIndices.add(j);
-                        break;
-                    }
+        BitSet visible = null;
+        if (!query.isEmpty() || !uncheckedIds.isEmpty()) {
+            visible = (BitSet) matches.clone();
+            if (!uncheckedIds.isEmpty()) {
+                for (int i = visible.nextSetBit(0); i >= 0; i = visible.nextSetBit(i + 1)) {
+                    if (uncheckedIds.contains(flows.id[i])) visible.clear(i);
                 }
             }
         }
         
-        System.out.println("[FLOW-FILTER] Updating flow visibility: " + visibleIndices.size() + " flows visible");
-        // Set topology flow visibility
-        topologyCanvas.setVisibleFlowIndices(visibleIndices);
+        System.out.println("[FLOW-FILTER] Updating flow visibility: "
+            + (visible == null ? flows.size() : visible.cardinality()) + " flows visible");
+        // Top-K still applies on top of this
+        topologyCanvas.setFlowFilterMask(visible);
     }
-}
\ No newline at end of file
+}
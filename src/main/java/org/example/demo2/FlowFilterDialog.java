@@ -30,8 +30,8 @@ public class FlowFilterDialog {
         dialog.initModality(Modality.NONE); // Non-modal dialog
         dialog.setTitle("Flow Filter");
         dialog.setResizable(false);
-        dialog.setWidth(250);
-        dialog.setHeight(350);
+        dialog.setWidth(320);
+        dialog.setHeight(430);
         
         // Create UI
         createUI();
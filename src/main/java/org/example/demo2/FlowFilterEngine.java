@@ -0,0 +1,333 @@
+package org.example.demo2;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Flow search for the Flow Filter dialog.
+ *
+ * A query is a list of whitespace-separated terms, all of which must hold:
+ *   src=10.0.0.0/24,10.0.2.5   dst=...   ip=...     source / destination / either address (CIDR)
+ *   sport=80,8000-8100         dport=... port=...   source / destination / either port
+ *   proto=tcp,udp,1                                 protocol by name or number
+ *   rate>1M  rate<=500k                             sending rate in bps (k, M, G suffixes)
+ *   path=s1,10.0.0.7           or just  s1          path goes through any of the nodes (name or IP)
+ *
+ * {@link Query#parse} compiles the text once into primitive checks. {@link #evaluate} runs them over
+ * the columns of the current {@link FlowTable}, so a keystroke or a new poll costs one scan of a few
+ * arrays instead of string formatting per flow. Path terms are answered from an inverted index
+ * (node -> path IDs, built once per distinct path) and only the flows on those paths are scanned.
+ */
+public class FlowFilterEngine {
+
+    /** A compiled query. An empty query matches every flow. */
+    public static final class Query {
+        final List<int[]> srcCidrs = new ArrayList<>();   // {network, mask}
+        final List<int[]> dstCidrs = new ArrayList<>();
+        final List<int[]> anyCidrs = new ArrayList<>();
+        final List<int[]> srcPorts = new ArrayList<>();   // {low, high}
+        final List<int[]> dstPorts = new ArrayList<>();
+        final List<int[]> anyPorts = new ArrayList<>();
+        boolean[] protocols;                              // null = any
+        double minRate = Double.NEGATIVE_INFINITY;
+        boolean minInclusive = true;
+        double maxRate = Double.POSITIVE_INFINITY;
+        boolean maxInclusive = true;
+        final List<List<String>> pathTerms = new ArrayList<>(); // each term: any of these nodes
+        final String text;
+
+        private Query(String text) {
+            this.text = text;
+        }
+
+        public boolean isEmpty() {
+            return srcCidrs.isEmpty() && dstCidrs.isEmpty() && anyCidrs.isEmpty()
+                && srcPorts.isEmpty() && dstPorts.isEmpty() && anyPorts.isEmpty()
+                && protocols == null && minRate == Double.NEGATIVE_INFINITY
+                && maxRate == Double.POSITIVE_INFINITY && pathTerms.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+
+        /** Compile {@code text}; throws IllegalArgumentException naming the bad term. */
+        public static Query parse(String text) {
+            Query query = new Query(text == null ? "" : text.trim());
+            if (query.text.isEmpty()) {
+                return query;
+            }
+            for (String term : query.text.split("\\s+")) {
+                try {
+                    query.addTerm(term);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("'" + term + "': not a number");
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("'" + term + "': " + e.getMessage());
+                }
+            }
+            return query;
+        }
+
+        private void addTerm(String term) {
+            String lower = term.toLowerCase(Locale.ROOT);
+            if (lower.startsWith("rate")) {
+                String rest = lower.substring(4);
+                if (rest.startsWith(">=")) { minRate = parseRate(rest.substring(2)); minInclusive = true; }
+                else if (rest.startsWith(">")) { minRate = parseRate(rest.substring(1)); minInclusive = false; }
+                else if (rest.startsWith("<=")) { maxRate = parseRate(rest.substring(2)); maxInclusive = true; }
+                else if (rest.startsWith("<")) { maxRate = parseRate(rest.substring(1)); maxInclusive = false; }
+                else throw new IllegalArgumentException("use rate>N, rate>=N, rate<N or rate<=N");
+                return;
+            }
+            int eq = term.indexOf('=');
+            if (eq < 0) {
+                pathTerms.add(List.of(term)); // bare word: a node on the path
+                return;
+            }
+            String key = lower.substring(0, eq);
+            String[] values = term.substring(eq + 1).split(",");
+            switch (key) {
+                case "src" -> { for (String v : values) srcCidrs.add(parseCidr(v)); }
+                case "dst" -> { for (String v : values) dstCidrs.add(parseCidr(v)); }
+                case "ip" -> { for (String v : values) anyCidrs.add(parseCidr(v)); }
+                case "sport" -> { for (String v : values) srcPorts.add(parsePortRange(v)); }
+                case "dport" -> { for (String v : values) dstPorts.add(parsePortRange(v)); }
+                case "port" -> { for (String v : values) anyPorts.add(parsePortRange(v)); }
+                case "proto" -> {
+                    if (protocols == null) protocols = new boolean[256];
+                    for (String v : values) protocols[parseProtocol(v)] = true;
+                }
+                case "path" -> pathTerms.add(List.of(values));
+                default -> throw new IllegalArgumentException("unknown field " + key);
+            }
+        }
+
+        static int[] parseCidr(String value) {
+            int slash = value.indexOf('/');
+            int bits = slash < 0 ? 32 : Integer.parseInt(value.substring(slash + 1));
+            if (bits < 0 || bits > 32) throw new IllegalArgumentException("prefix length must be 0-32");
+            long ip = parseIpv4(slash < 0 ? value : value.substring(0, slash));
+            if (ip < 0) throw new IllegalArgumentException("not an IPv4 address");
+            int mask = bits == 0 ? 0 : -1 << (32 - bits);
+            return new int[] {(int) ip & mask, mask};
+        }
+
+        static int[] parsePortRange(String value) {
+            int dash = value.indexOf('-');
+            int low = Integer.parseInt(dash < 0 ? value : value.substring(0, dash));
+            int high = dash < 0 ? low : Integer.parseInt(value.substring(dash + 1));
+            if (low < 0 || high > 65535 || low > high) throw new IllegalArgumentException("bad port range");
+            return new int[] {low, high};
+        }
+
+        static int parseProtocol(String value) {
+            switch (value.toLowerCase(Locale.ROOT)) {
+                case "icmp": return 1;
+                case "tcp": return 6;
+                case "udp": return 17;
+                default:
+                    int known = EnrichmentService.protocolNumber(value);
+                    if (known >= 0) return known;
+                    int number = Integer.parseInt(value);
+                    if (number < 0 || number > 255) throw new IllegalArgumentException("protocol must be 0-255");
+                    return number;
+            }
+        }
+
+        static double parseRate(String value) {
+            double scale = 1;
+            char unit = value.isEmpty() ? ' ' : value.charAt(value.length() - 1);
+            switch (unit) {
+                case 'k': scale = 1e3; break;
+                case 'm': scale = 1e6; break;
+                case 'g': scale = 1e9; break;
+                default: break;
+            }
+            return Double.parseDouble(scale == 1 ? value : value.substring(0, value.length() - 1)) * scale;
+        }
+    }
+
+    private FlowTable flows = FlowTable.EMPTY;
+    private SnapshotBus.Snapshot names;
+    // Lower-cased node IP or name -> IDs of the paths through it
+    private Map<String, BitSet> pathsByNode;
+
+    /**
+     * Replace the flow list, read as a {@link FlowTable}. The path index is rebuilt on the next
+     * {@link #evaluate}; {@code names} resolves path node ids and device names.
+     */
+    public void setFlows(List<Flow> flows, SnapshotBus.Snapshot names) {
+        this.flows = FlowTable.of(flows);
+        this.names = names;
+        this.pathsByNode = null;
+    }
+
+    public int size() {
+        return flows.size();
+    }
+
+    /** Flows matching {@code query}, as a bitset over the current flow list. */
+    public BitSet evaluate(Query query) {
+        int n = flows.size();
+        BitSet result = new BitSet(n);
+        if (query.isEmpty()) {
+            result.set(0, n);
+            return result;
+        }
+
+        BitSet candidates = null;
+        if (!query.pathTerms.isEmpty()) {
+            candidates = pathCandidates(query);
+            if (candidates.isEmpty()) {
+                return result;
+            }
+        }
+        boolean needColumns = query.protocols != null || !query.srcCidrs.isEmpty() || !query.dstCidrs.isEmpty()
+            || !query.anyCidrs.isEmpty() || !query.srcPorts.isEmpty() || !query.dstPorts.isEmpty()
+            || !query.anyPorts.isEmpty() || query.minRate != Double.NEGATIVE_INFINITY
+            || query.maxRate != Double.POSITIVE_INFINITY;
+        if (!needColumns) {
+            return candidates;
+        }
+
+        if (candidates == null) {
+            for (int i = 0; i < n; i++) {
+                if (matches(query, i)) result.set(i);
+            }
+        } else {
+            for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+                if (matches(query, i)) result.set(i);
+            }
+        }
+        return result;
+    }
+
+    private boolean matches(Query q, int i) {
+        FlowTable t = flows;
+        double rate = t.rateBps[i];
+        if (q.minInclusive ? rate < q.minRate : rate <= q.minRate) return false;
+        if (q.maxInclusive ? rate > q.maxRate : rate >= q.maxRate) return false;
+        int protocol = t.protocolId[i];
+        if (q.protocols != null && (protocol < 0 || protocol > 255 || !q.protocols[protocol])) return false;
+        if (!q.srcPorts.isEmpty() && !inRanges(q.srcPorts, t.srcPort[i])) return false;
+        if (!q.dstPorts.isEmpty() && !inRanges(q.dstPorts, t.dstPort[i])) return false;
+        if (!q.anyPorts.isEmpty() && !inRanges(q.anyPorts, t.srcPort[i]) && !inRanges(q.anyPorts, t.dstPort[i])) return false;
+        if (!q.srcCidrs.isEmpty() || !q.dstCidrs.isEmpty() || !q.anyCidrs.isEmpty()) {
+            int srcIp;
+            int dstIp;
+            if (t.hasIps(i)) {
+                srcIp = t.srcIp[i];
+                dstIp = t.dstIp[i];
+            } else {
+                // The table keeps text it couldn't turn back into the same dotted quad
+                long src = parseIpv4(t.srcIpOf(i));
+                long dst = parseIpv4(t.dstIpOf(i));
+                if (src < 0 || dst < 0) return false;
+                srcIp = (int) src;
+                dstIp = (int) dst;
+            }
+            if (!q.srcCidrs.isEmpty() && !inCidrs(q.srcCidrs, srcIp)) return false;
+            if (!q.dstCidrs.isEmpty() && !inCidrs(q.dstCidrs, dstIp)) return false;
+            if (!q.anyCidrs.isEmpty() && !inCidrs(q.anyCidrs, srcIp) && !inCidrs(q.anyCidrs, dstIp)) return false;
+        }
+        return true;
+    }
+
+    private static boolean inRanges(List<int[]> ranges, int port) {
+        for (int[] range : ranges) {
+            if (port >= range[0] && port <= range[1]) return true;
+        }
+        return false;
+    }
+
+    private static boolean inCidrs(List<int[]> cidrs, int ip) {
+        for (int[] cidr : cidrs) {
+            if ((ip & cidr[1]) == cidr[0]) return true;
+        }
+        return false;
+    }
+
+    // Rows on a path through a node of every term; a row has one path, so the terms are ANDed over path IDs
+    private BitSet pathCandidates(Query query) {
+        if (pathsByNode == null) {
+            pathsByNode = buildPathIndex();
+        }
+        BitSet paths = null;
+        for (List<String> term : query.pathTerms) {
+            BitSet any = new BitSet();
+            for (String node : term) {
+                BitSet hits = pathsByNode.get(node.toLowerCase(Locale.ROOT));
+                if (hits != null) any.or(hits);
+            }
+            if (paths == null) {
+                paths = any;
+            } else {
+                paths.and(any);
+            }
+        }
+        FlowTable t = flows;
+        BitSet candidates = new BitSet(t.size);
+        if (!paths.isEmpty()) {
+            for (int i = 0; i < t.size; i++) {
+                if (paths.get(t.path[i])) candidates.set(i);
+            }
+        }
+        return candidates;
+    }
+
+    // Each path node under its IP and its device name, lower-cased; every distinct path is walked once
+    private Map<String, BitSet> buildPathIndex() {
+        Map<String, BitSet> index = new HashMap<>();
+        FlowTable t = flows;
+        BitSet seen = new BitSet();
+        for (int i = 0; i < t.size; i++) {
+            int pathId = t.path[i];
+            if (seen.get(pathId)) continue;
+            seen.set(pathId);
+            for (String nodeId : t.paths.nodes(pathId)) {
+                if (nodeId == null) continue;
+                String ip = names != null ? names.nodeIp(nodeId) : null;
+                if (ip == null) ip = nodeId; // not a node the snapshot knows: match it as it is
+                index.computeIfAbsent(ip.toLowerCase(Locale.ROOT), k -> new BitSet()).set(pathId);
+                if (names != null) {
+                    String name = names.nodeName(ip);
+                    if (name != null && !name.equals(ip)) {
+                        index.computeIfAbsent(name.toLowerCase(Locale.ROOT), k -> new BitSet()).set(pathId);
+                    }
+                }
+            }
+        }
+        return index;
+    }
+
+    /** Dotted IPv4 as an unsigned 32-bit value, or -1 when {@code s} is not one. */
+    static long parseIpv4(String s) {
+        if (s == null) return -1;
+        long ip = 0;
+        int part = 0;
+        int digits = 0;
+        int dots = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                part = part * 10 + (c - '0');
+                if (++digits > 3 || part > 255) return -1;
+            } else if (c == '.' && digits > 0 && dots < 3) {
+                ip = (ip << 8) | part;
+                part = 0;
+                digits = 0;
+                dots++;
+            } else {
+                return -1;
+            }
+        }
+        if (dots != 3 || digits == 0) return -1;
+        return (ip << 8) | part;
+    }
+}
@@ -0,0 +1,247 @@
+package org.example.demo2;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stable identities for flows across polls, keyed by 5-tuple.
+ *
+ * Every poll builds new {@link Flow} objects; the table is what tells a continuing flow from a new
+ * one. The first time a 5-tuple is seen it gets the next integer ID (never 0, never reused) and a
+ * first-seen time; every later sighting just moves its last-seen time. Colours, the flow filter's
+ * unchecked set, Top-K membership and the Info dialog rows are all keyed by that ID, see
+ * {@link Flow#id()}.
+ *
+ * A 5-tuple not seen for {@code -Dndt.flows.idle.ms} (default 60000) is evicted by a background
+ * timer; if it shows up again after that it is a new flow with a new ID.
+ *
+ * The entry also keeps the flow's IP strings and its parsed first-sample time, so a continuing flow
+ * costs a hash lookup instead of two IP conversions and a timestamp parse. Safe from any thread.
+ */
+final class FlowIdentityTable {
+
+    private static final long IDLE_MS = Long.getLong("ndt.flows.idle.ms", 60_000);
+    private static final FlowIdentityTable SHARED = new FlowIdentityTable(IDLE_MS);
+    private static final ScheduledExecutorService EVICTOR = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ndt-flow-evictor");
+        t.setDaemon(true);
+        return t;
+    });
+    // Flows of one poll nearly all share their latest_sampled_time
+    private static volatile SampledTime lastSample;
+
+    static {
+        long period = Math.max(1000, IDLE_MS / 4);
+        EVICTOR.scheduleWithFixedDelay(() -> SHARED.evictIdle(System.currentTimeMillis()),
+            period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /** The table shared by live polling, playback and the dialogs. */
+    static FlowIdentityTable shared() {
+        return SHARED;
+    }
+
+    /** One flow's identity and lifecycle. */
+    static final class Entry {
+        final int id;
+        final String srcIp;
+        final String dstIp;
+        final long firstSeenMillis;
+        volatile long lastSeenMillis;
+        // Last first_sampled_time string and its parse; the controller repeats it on every poll
+        private volatile SampledTime firstSample;
+
+        Entry(int id, int srcIp, int dstIp, long now) {
+            this.id = id;
+            this.srcIp = EnrichmentService.ipv4(srcIp);
+            this.dstIp = EnrichmentService.ipv4(dstIp);
+            this.firstSeenMillis = now;
+            this.lastSeenMillis = now;
+        }
+
+        /** {@link #timeOfDayMs} of {@code firstSampledTime}, parsed only when it changes. */
+        int startTimeMs(String firstSampledTime) {
+            SampledTime cached = firstSample;
+            if (cached != null && cached.text.equals(firstSampledTime)) {
+                return cached.ms;
+            }
+            int ms = timeOfDayMs(firstSampledTime);
+            if (firstSampledTime != null) {
+                firstSample = new SampledTime(firstSampledTime, ms);
+            }
+            return ms;
+        }
+    }
+
+    private static final class Key {
+        final int srcIp;
+        final int dstIp;
+        final int srcPort;
+        final int dstPort;
+        final int protocol;
+
+        Key(int srcIp, int dstIp, int srcPort, int dstPort, int protocol) {
+            this.srcIp = srcIp;
+            this.dstIp = dstIp;
+            this.srcPort = srcPort;
+            this.dstPort = dstPort;
+            this.protocol = protocol;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return srcIp == other.srcIp && dstIp == other.dstIp && srcPort == other.srcPort
+                && dstPort == other.dstPort && protocol == other.protocol;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = srcIp;
+            h = h * 31 + dstIp;
+            h = h * 31 + srcPort;
+            h = h * 31 + dstPort;
+            return h * 31 + protocol;
+        }
+    }
+
+    private static final class SampledTime {
+        final String text;
+        final int ms;
+
+        SampledTime(String text, int ms) {
+            this.text = text;
+            this.ms = ms;
+        }
+    }
+
+    private final long idleMillis;
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger(1);
+
+    FlowIdentityTable(long idleMillis) {
+        this.idleMillis = idleMillis;
+    }
+
+    /**
+     * The entry for a 5-tuple seen at {@code now}, created with a new ID if it is not in the table.
+     * IPs are the 32-bit values {@link EnrichmentService#ipv4} formats.
+     */
+    Entry observe(int srcIp, int dstIp, int srcPort, int dstPort, int protocol, long now) {
+        Key key = new Key(srcIp, dstIp, srcPort, dstPort, protocol);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            Entry created = new Entry(nextId.getAndIncrement(), srcIp, dstIp, now);
+            entry = entries.putIfAbsent(key, created);
+            if (entry == null) {
+                return created;
+            }
+        }
+        if (entry.lastSeenMillis < now) {
+            entry.lastSeenMillis = now;
+        }
+        return entry;
+    }
+
+    /** ID of a flow built without one (playback, benchmarks), from its dotted IPs. */
+    int idOf(Flow flow) {
+        return observe(parseIpv4(flow.srcIp), parseIpv4(flow.dstIp), flow.srcPort, flow.dstPort,
+            flow.protocolId, System.currentTimeMillis()).id;
+    }
+
+    /** Number of flows currently tracked. */
+    int size() {
+        return entries.size();
+    }
+
+    /** Drop flows not seen since {@code now - idle}. Returns how many went. */
+    int evictIdle(long now) {
+        long cutoff = now - idleMillis;
+        int evicted = 0;
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+            if (it.next().lastSeenMillis < cutoff) {
+                it.remove();
+                evicted++;
+            }
+        }
+        if (evicted > 0 && Diagnostics.DEBUG) {
+            Diagnostics.debug("[FLOWS] Evicted " + evicted + " idle flows, " + entries.size() + " tracked");
+        }
+        return evicted;
+    }
+
+    /**
+     * Time of day in ms of an API timestamp "2025-11-11 10:30:35" (the date is ignored), or 0 if it is
+     * missing or malformed. The last string parsed is remembered, so a poll whose flows share their
+     * latest_sampled_time parses it once.
+     */
+    static int timeOfDayMs(String text) {
+        if (text == null) {
+            return 0;
+        }
+        SampledTime cached = lastSample;
+        if (cached != null && cached.text.equals(text)) {
+            return cached.ms;
+        }
+        int ms = parseTimeOfDay(text);
+        lastSample = new SampledTime(text, ms);
+        return ms;
+    }
+
+    // Digits are read in place: H:m:s after the first space
+    private static int parseTimeOfDay(String text) {
+        int at = text.indexOf(' ');
+        if (at < 0) {
+            if (!text.isBlank()) System.out.println("[WARN] Invalid time format: " + text);
+            return 0;
+        }
+        int seconds = 0;
+        int fields = 0;
+        int value = -1;
+        for (int i = at + 1; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = (value < 0 ? 0 : value * 10) + (c - '0');
+            } else if (c == ':' && value >= 0 && fields < 2) {
+                seconds = seconds * 60 + value;
+                fields++;
+                value = -1;
+            } else if (c != ' ' || value >= 0 && fields < 2) {
+                value = -1;
+                break;
+            }
+        }
+        if (fields != 2 || value < 0) {
+            System.out.println("[WARN] Invalid time part format: " + text.substring(at + 1));
+            return 0;
+        }
+        return (seconds * 60 + value) * 1000;
+    }
+
+    /** Inverse of {@link EnrichmentService#ipv4}; anything else (e.g. "") is 0. */
+    static int parseIpv4(String ip) {
+        if (ip == null) return 0;
+        int value = 0;
+        int octet = 0;
+        int dots = 0;
+        for (int i = 0; i < ip.length(); i++) {
+            char c = ip.charAt(i);
+            if (c == '.') {
+                value = (value << 8) | (octet & 0xFF);
+                octet = 0;
+                dots++;
+            } else if (c >= '0' && c <= '9') {
+                octet = octet * 10 + (c - '0');
+            } else {
+                return 0;
+            }
+        }
+        return dots == 3 ? (value << 8) | (octet & 0xFF) : 0;
+    }
+}
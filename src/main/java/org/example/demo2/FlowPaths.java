@@ -0,0 +1,246 @@
+package org.example.demo2;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Pool of flow paths: every distinct (node IPs, interfaces) sequence is stored once, as two arrays,
+ * and given an integer ID. Flows on the same path share its lists.
+ *
+ * Live flows are converted straight into a {@link FlowTable} whose path column holds IDs from this
+ * pool; the lists handed out are immutable views that know their ID, so a table built from
+ * {@link Flow} objects on pooled paths gets the same column without hashing. Paths are never
+ * removed; instead, once a pool holds more than twice as many paths as the largest flow set seen
+ * (and at least {@code -Dndt.paths.min}, default 65536), {@link #current()} starts a new one and the
+ * next update fills it with the paths still in use. Tables built earlier keep the pool they were
+ * built with.
+ *
+ * Each path is also stored as a sequence of {@link Hop}s, the directed node pairs it steps
+ * through, themselves pooled and numbered. A fat-tree's many paths share few hops, so anything
+ * that has to be worked out per segment (which link it is, whether it is up, which way it runs)
+ * can be worked out once per hop in an array indexed by hop ID, and each flow then costs a few
+ * array reads.
+ *
+ * Interning is synchronized; lookups by ID are lock-free.
+ */
+final class FlowPaths {
+
+    private static final int MIN_PATHS = Integer.getInteger("ndt.paths.min", 65536);
+    private static volatile FlowPaths current = new FlowPaths();
+    private static volatile int largestFlowSet;
+
+    /** The pool new paths go into. */
+    static FlowPaths current() {
+        FlowPaths pool = current;
+        if (pool.size() > Math.max(MIN_PATHS, 2L * largestFlowSet)) {
+            synchronized (FlowPaths.class) {
+                if (current == pool) {
+                    if (Diagnostics.DEBUG) Diagnostics.debug("[PATHS] " + pool.size() + " paths pooled, starting a new pool");
+                    current = new FlowPaths();
+                }
+                pool = current;
+            }
+        }
+        return pool;
+    }
+
+    /** {@link #current()}, for converting a set of {@code flowCount} flows. */
+    static FlowPaths forFlows(int flowCount) {
+        if (flowCount > largestFlowSet) {
+            largestFlowSet = flowCount;
+        }
+        return current();
+    }
+
+    /** One directed step between two path nodes, shared by every path that takes it. */
+    static final class Hop {
+        final int id;
+        final String from;
+        final String to;
+        /** Undirected key, the lower node first: "a,b". */
+        final String key;
+
+        private Hop(int id, String from, String to) {
+            this.id = id;
+            this.from = from;
+            this.to = to;
+            this.key = from.compareTo(to) < 0 ? from + "," + to : to + "," + from;
+        }
+    }
+
+    /** Node list of one pooled path. */
+    static final class Nodes extends AbstractList<String> implements RandomAccess {
+        final FlowPaths pool;
+        final int id;
+        /** The path's segments in order, one fewer than its nodes. */
+        final Hop[] hops;
+        private final String[] nodes;
+        private final int[] ports;
+        private final Ports portList = new Ports();
+
+        private Nodes(FlowPaths pool, int id, String[] nodes, int[] ports, Hop[] hops) {
+            this.pool = pool;
+            this.id = id;
+            this.nodes = nodes;
+            this.ports = ports;
+            this.hops = hops;
+        }
+
+        @Override
+        public String get(int index) {
+            return nodes[index];
+        }
+
+        @Override
+        public int size() {
+            return nodes.length;
+        }
+
+        boolean matches(String[] otherNodes, int[] otherPorts, int length) {
+            if (nodes.length != length) return false;
+            for (int i = 0; i < length; i++) {
+                if (ports[i] != otherPorts[i]) return false;
+                String a = nodes[i];
+                String b = otherNodes[i];
+                if (a != b && (a == null || !a.equals(b))) return false;
+            }
+            return true;
+        }
+
+        private final class Ports extends AbstractList<Integer> implements RandomAccess {
+            @Override
+            public Integer get(int index) {
+                return ports[index];
+            }
+
+            @Override
+            public int size() {
+                return ports.length;
+            }
+        }
+    }
+
+    // Open-addressing table of path ID + 1 by content hash (0 = empty), and each path's hash
+    private int[] slots = new int[512];
+    private int[] hashes = new int[256];
+    // Indexed by path ID; replaced when grown, so readers only ever see filled slots
+    private volatile Nodes[] byId = new Nodes[256];
+    private volatile int size;
+    private final Map<String, Map<String, Hop>> hopsByEnds = new HashMap<>();
+    private volatile int hopCount;
+
+    /** ID of the path of {@code length} nodes in {@code nodeScratch}/{@code portScratch}; copied if new. */
+    synchronized int intern(String[] nodeScratch, int[] portScratch, int length) {
+        int hash = hash(nodeScratch, portScratch, length);
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = slots[slot] - 1;
+            if (id < 0) {
+                return add(nodeScratch, portScratch, length, hash, slot);
+            }
+            if (hashes[id] == hash && byId[id].matches(nodeScratch, portScratch, length)) {
+                return id;
+            }
+        }
+    }
+
+    /** ID of a path given as lists, e.g. of a flow read from a capture. */
+    int intern(List<String> pathNodes, List<Integer> pathPorts) {
+        if (pathNodes instanceof Nodes && ((Nodes) pathNodes).pool == this) {
+            return ((Nodes) pathNodes).id;
+        }
+        int length = pathNodes == null ? 0 : pathNodes.size();
+        String[] nodeArray = new String[length];
+        int[] portArray = new int[length];
+        for (int i = 0; i < length; i++) {
+            nodeArray[i] = pathNodes.get(i);
+            Integer port = pathPorts != null && i < pathPorts.size() ? pathPorts.get(i) : null;
+            portArray[i] = port != null ? port : 0;
+        }
+        return intern(nodeArray, portArray, length);
+    }
+
+    private static int hash(String[] nodes, int[] ports, int length) {
+        int h = length;
+        for (int i = 0; i < length; i++) {
+            h = h * 31 + (nodes[i] == null ? 0 : nodes[i].hashCode());
+            h = h * 31 + ports[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    // Caller holds the lock; slot is the empty slot the lookup ended on
+    private int add(String[] nodeScratch, int[] portScratch, int length, int hash, int slot) {
+        int id = size;
+        if (id == byId.length) {
+            hashes = Arrays.copyOf(hashes, id * 2);
+            byId = Arrays.copyOf(byId, id * 2);
+        }
+        hashes[id] = hash;
+        String[] nodes = Arrays.copyOf(nodeScratch, length);
+        Hop[] hops = new Hop[Math.max(0, length - 1)];
+        for (int i = 0; i < hops.length; i++) {
+            hops[i] = hop(nodes[i], nodes[i + 1]);
+        }
+        byId[id] = new Nodes(this, id, nodes, Arrays.copyOf(portScratch, length), hops);
+        slots[slot] = id + 1;
+        size = id + 1;
+        if (size * 2 > slots.length) {
+            // Keep the table at most half full
+            int[] grown = new int[slots.length * 2];
+            int mask = grown.length - 1;
+            for (int existing = 0; existing < size; existing++) {
+                int at = hashes[existing] & mask;
+                while (grown[at] != 0) at = (at + 1) & mask;
+                grown[at] = existing + 1;
+            }
+            slots = grown;
+        }
+        return id;
+    }
+
+    // Caller holds the lock
+    private Hop hop(String from, String to) {
+        Map<String, Hop> byTarget = hopsByEnds.computeIfAbsent(String.valueOf(from), k -> new HashMap<>());
+        Hop hop = byTarget.get(String.valueOf(to));
+        if (hop == null) {
+            hop = new Hop(hopCount, String.valueOf(from), String.valueOf(to));
+            byTarget.put(hop.to, hop);
+            hopCount = hop.id + 1;
+        }
+        return hop;
+    }
+
+    /** Shared, immutable node IPs of path {@code id}. */
+    List<String> nodes(int id) {
+        return byId[id];
+    }
+
+    /** Shared, immutable interface numbers of path {@code id}, one per node. */
+    List<Integer> ports(int id) {
+        return byId[id].portList;
+    }
+
+    int length(int id) {
+        return byId[id].size();
+    }
+
+    /** Segments of path {@code id}. */
+    Hop[] hops(int id) {
+        return byId[id].hops;
+    }
+
+    /** Number of distinct hops pooled; hop IDs are below it. */
+    int hopCount() {
+        return hopCount;
+    }
+
+    /** Number of distinct paths pooled. */
+    int size() {
+        return size;
+    }
+}
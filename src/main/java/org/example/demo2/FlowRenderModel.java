@@ -0,0 +1,236 @@
+package org.example.demo2;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import javafx.scene.paint.Color;
+
+/**
+ * What the real-time flow animation draws, precomputed once per update instead of once per frame.
+ *
+ * One lane per link direction that carries visible flows: its end nodes (positions are read when
+ * drawing, so dragging needs no rebuild), the link utilization that sets the animated length, and
+ * a run of segment colors with cumulative rate ratios in the flat {@link #colors} /
+ * {@link #cumulativeRatios} arrays. Built off the FX thread by {@link #build} and never modified
+ * afterwards, so the canvas can swap it in atomically and read it from the AnimationTimer.
+ */
+public final class FlowRenderModel {
+
+    public static final FlowRenderModel EMPTY = new FlowRenderModel(-1, 0, new Node[0], new Node[0],
+        new double[0], new int[0], new int[0], new Color[0], new double[0]);
+
+    /** Canvas input version this model was built from. */
+    public final long version;
+    public final int laneCount;
+    public final Node[] laneFrom;
+    public final Node[] laneTo;
+    public final double[] laneUtilization;   // 0.1-1.0 of the link length is animated
+    public final int[] laneColorStart;       // first entry in colors / cumulativeRatios
+    public final int[] laneColorCount;
+    public final Color[] colors;
+    public final double[] cumulativeRatios;  // running share of the lane's rate, ends at ~1.0
+
+    private FlowRenderModel(long version, int laneCount, Node[] laneFrom, Node[] laneTo, double[] laneUtilization,
+                            int[] laneColorStart, int[] laneColorCount, Color[] colors, double[] cumulativeRatios) {
+        this.version = version;
+        this.laneCount = laneCount;
+        this.laneFrom = laneFrom;
+        this.laneTo = laneTo;
+        this.laneUtilization = laneUtilization;
+        this.laneColorStart = laneColorStart;
+        this.laneColorCount = laneColorCount;
+        this.colors = colors;
+        this.cumulativeRatios = cumulativeRatios;
+    }
+
+    /**
+     * Bucket each link's visible flows by direction and turn every non-empty bucket into a lane.
+     * The arguments must not change while this runs: pass copies of the lists, the current flow
+     * table (tables never change) and a {@link FlowVisibilityMask#copy()}.
+     */
+    static FlowRenderModel build(long version, List<Node> nodes, List<Link> links, FlowTable flows,
+                                 FlowVisibilityMask visibility, Function<FlowTable.Cursor, Color> colorForFlow) {
+        Map<String, Node> nodesByIp = new HashMap<>(nodes.size() * 2);
+        for (Node node : nodes) {
+            if (node.ip != null) nodesByIp.putIfAbsent(node.ip, node);
+            if (node.ips != null) {
+                for (String ip : node.ips) {
+                    nodesByIp.putIfAbsent(ip, node);
+                }
+            }
+        }
+
+        Builder builder = new Builder(links.size() * 2);
+        FlowTable.Rows forwardFlows = new FlowTable.Rows();
+        FlowTable.Rows reverseFlows = new FlowTable.Rows();
+        FlowTable.Cursor cursor = flows.cursor();
+        int processed = 0;
+        int filtered = 0;
+        for (Link link : links) {
+            if (link.flow_set == null || link.flow_set.isEmpty()) continue;
+            Node srcNode = nodesByIp.get(link.source);
+            Node tgtNode = nodesByIp.get(link.target);
+            if (srcNode == null || tgtNode == null) continue;
+
+            forwardFlows.clear();
+            reverseFlows.clear();
+            processed += link.flow_set.size();
+            filtered += TopologyCanvas.bucketRealtimeFlows(link, flows, visibility, forwardFlows, reverseFlows);
+
+            double utilization = Math.max(0.1, Math.min(1.0, link.link_bandwidth_utilization_percent / 100.0));
+            if (!forwardFlows.isEmpty()) builder.addLane(srcNode, tgtNode, utilization, cursor, forwardFlows, colorForFlow);
+            if (!reverseFlows.isEmpty()) builder.addLane(tgtNode, srcNode, utilization, cursor, reverseFlows, colorForFlow);
+        }
+
+        if (Diagnostics.DEBUG) Diagnostics.debug("[TOP-K] buildRenderModel: Processed=" + processed +
+                         ", Filtered=" + filtered +
+                         ", Shown=" + (processed - filtered) + ", lanes=" + builder.lanes);
+        return builder.finish(version);
+    }
+
+    /**
+     * Write the segment colors and cumulative rate ratios of the flows in {@code rows} (rows of the
+     * table {@code flow} moves over) into the arrays at {@code start}. Slower flows get a
+     * proportionally shorter run of the lane; when no flow reports a rate they share it equally.
+     * Returns the number of entries written.
+     */
+    static int fillSegments(FlowTable.Cursor flow, FlowTable.Rows rows, Function<FlowTable.Cursor, Color> colorForFlow,
+                            Color[] colors, double[] cumulativeRatios, int start) {
+        if (rows.isEmpty()) {
+            colors[start] = Color.GRAY;
+            cumulativeRatios[start] = 1.0;
+            return 1;
+        }
+        double totalRate = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            totalRate += flow.moveTo(rows.get(i)).rate();
+        }
+        double cumulative = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            flow.moveTo(rows.get(i));
+            colors[start + i] = colorForFlow.apply(flow);
+            cumulative += totalRate > 0 ? flow.rate() / totalRate : 1.0 / rows.size();
+            cumulativeRatios[start + i] = cumulative;
+        }
+        return rows.size();
+    }
+
+    /** Receives the corners of one animated rectangle; the arrays are reused between calls. */
+    public interface SegmentSink {
+        void segment(double[] xs, double[] ys, Color color);
+    }
+
+    /**
+     * The rectangles of one lane at {@code animationTime}: a train over {@code utilization} of the
+     * line from (x1, y1) to (x2, y2), moving once per {@code cycleSeconds}, each colored by the flow
+     * whose share of the rate covers its position. {@code xs} / {@code ys} hold 4 points and are
+     * filled in place for every rectangle.
+     */
+    public static void laneSegments(double x1, double y1, double x2, double y2, double utilization,
+                                    double animationTime, double cycleSeconds, Color[] colors,
+                                    double[] cumulativeRatios, int start, int count,
+                                    double[] xs, double[] ys, SegmentSink sink) {
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double length = Math.sqrt(dx * dx + dy * dy);
+        if (length == 0 || count == 0) return;
+
+        double animationLength = length * utilization;
+        double segProgress = (animationTime % cycleSeconds) / cycleSeconds;
+
+        double rectLength = 8;
+        double rectWidth = 4;
+        double spacing = rectLength * 1.2;
+        int numRectangles = Math.max(1, (int) Math.floor(animationLength / spacing));
+
+        double perpX = dy / length;
+        double perpY = -dx / length;
+        double offset = -3.5;
+        double dirX = dx / length;
+        double dirY = dy / length;
+
+        // Rectangles go front to back, so the flow owning each one only moves forward
+        int colorIndex = start;
+        int lastColor = start + count - 1;
+
+        for (int j = 0; j < numRectangles; j++) {
+            double flowProgress = segProgress - (j * spacing / length);
+            if (flowProgress < 0) {
+                flowProgress = 1.0 + flowProgress;
+            }
+
+            double centerX = x1 + dx * flowProgress + perpX * offset;
+            double centerY = y1 + dy * flowProgress + perpY * offset;
+
+            xs[0] = centerX + dirX * rectLength / 2 + perpX * rectWidth / 2;
+            ys[0] = centerY + dirY * rectLength / 2 + perpY * rectWidth / 2;
+            xs[1] = centerX + dirX * rectLength / 2 - perpX * rectWidth / 2;
+            ys[1] = centerY + dirY * rectLength / 2 - perpY * rectWidth / 2;
+            xs[2] = centerX - dirX * rectLength / 2 - perpX * rectWidth / 2;
+            ys[2] = centerY - dirY * rectLength / 2 - perpY * rectWidth / 2;
+            xs[3] = centerX - dirX * rectLength / 2 + perpX * rectWidth / 2;
+            ys[3] = centerY - dirY * rectLength / 2 + perpY * rectWidth / 2;
+
+            double rectanglePosition = (double) j / numRectangles;
+            while (colorIndex < lastColor && rectanglePosition >= cumulativeRatios[colorIndex]) {
+                colorIndex++;
+            }
+            sink.segment(xs, ys, colors[colorIndex]);
+        }
+    }
+
+    private static final class Builder {
+        int lanes = 0;
+        Node[] from;
+        Node[] to;
+        double[] utilization;
+        int[] colorStart;
+        int[] colorCount;
+        Color[] colors = new Color[64];
+        double[] cumulative = new double[64];
+        int colorsUsed = 0;
+
+        Builder(int laneCapacity) {
+            int capacity = Math.max(4, laneCapacity);
+            from = new Node[capacity];
+            to = new Node[capacity];
+            utilization = new double[capacity];
+            colorStart = new int[capacity];
+            colorCount = new int[capacity];
+        }
+
+        void addLane(Node src, Node tgt, double linkUtilization, FlowTable.Cursor flow, FlowTable.Rows rows,
+                     Function<FlowTable.Cursor, Color> colorForFlow) {
+            if (lanes == from.length) {
+                int capacity = lanes * 2;
+                from = Arrays.copyOf(from, capacity);
+                to = Arrays.copyOf(to, capacity);
+                utilization = Arrays.copyOf(utilization, capacity);
+                colorStart = Arrays.copyOf(colorStart, capacity);
+                colorCount = Arrays.copyOf(colorCount, capacity);
+            }
+            int needed = colorsUsed + Math.max(1, rows.size());
+            if (needed > colors.length) {
+                int capacity = Math.max(needed, colors.length * 2);
+                colors = Arrays.copyOf(colors, capacity);
+                cumulative = Arrays.copyOf(cumulative, capacity);
+            }
+            from[lanes] = src;
+            to[lanes] = tgt;
+            utilization[lanes] = linkUtilization;
+            colorStart[lanes] = colorsUsed;
+            colorCount[lanes] = fillSegments(flow, rows, colorForFlow, colors, cumulative, colorsUsed);
+            colorsUsed += colorCount[lanes];
+            lanes++;
+        }
+
+        FlowRenderModel finish(long version) {
+            return new FlowRenderModel(version, lanes, Arrays.copyOf(from, lanes), Arrays.copyOf(to, lanes),
+                Arrays.copyOf(utilization, lanes), Arrays.copyOf(colorStart, lanes), Arrays.copyOf(colorCount, lanes),
+                Arrays.copyOf(colors, colorsUsed), Arrays.copyOf(cumulative, colorsUsed));
+        }
+    }
+}
@@ -0,0 +1,403 @@
+package org.example.demo2;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The flows of one update, stored as columns: row i of every array is flow i. This is where the
+ * flows live; a {@link Flow} is only a row view, built by {@link #get} when something wants to keep
+ * a single flow (a dialog row, the flow whose path flickers), and not stored anywhere.
+ *
+ * Link counts per frame, Top-K, the render model, the filter engine, the Info dialog and the side
+ * bar walk a {@link Cursor} or read the arrays. Paths are {@link FlowPaths} IDs, so flows that share
+ * a path share its lists and anything derived from it can be computed once per path. IPs are the
+ * 32-bit values {@link EnrichmentService#ipv4} formats; the strings come from its cache. A row whose
+ * IP text isn't a dotted quad (playback flows carry none) keeps the text on the side.
+ *
+ * As a {@code List<Flow>} the table is read-only, so code that took a flow list still takes it.
+ * Immutable once built, so it can be handed to other threads.
+ */
+final class FlowTable extends AbstractList<Flow> implements RandomAccess {
+
+    static final FlowTable EMPTY = new Builder(FlowPaths.current(), 0).build();
+
+    final int size;
+    final FlowPaths paths;
+    final int[] id;
+    final int[] srcIp;
+    final int[] dstIp;
+    final int[] srcPort;
+    final int[] dstPort;
+    final int[] protocolId;
+    final int[] startTimeMs;
+    final int[] endTimeMs;
+    final int[] path;
+    /** {@link Flow#getSendingRateBps()}: the proceeding 1 s timeslot estimate. */
+    final double[] rateBps;
+    final double[] rateLastSecBps;
+    final int[] packetRate;
+    final int[] packetRateLastSec;
+    // Per row, the IP text when the column can't give it back; null when no row needs it
+    private final String[] srcIpText;
+    private final String[] dstIpText;
+    // Totals per path ID, summed on first use
+    private volatile PathTotals pathTotals;
+    // Row + 1 by flow ID in an open-addressing table, built on first use
+    private volatile int[] rowsById;
+
+    private FlowTable(Builder b) {
+        this.size = b.size;
+        this.paths = b.paths;
+        this.id = trim(b.id, size);
+        this.srcIp = trim(b.srcIp, size);
+        this.dstIp = trim(b.dstIp, size);
+        this.srcPort = trim(b.srcPort, size);
+        this.dstPort = trim(b.dstPort, size);
+        this.protocolId = trim(b.protocolId, size);
+        this.startTimeMs = trim(b.startTimeMs, size);
+        this.endTimeMs = trim(b.endTimeMs, size);
+        this.path = trim(b.path, size);
+        this.rateBps = b.rateBps.length == size ? b.rateBps : Arrays.copyOf(b.rateBps, size);
+        this.rateLastSecBps = b.rateLastSecBps.length == size ? b.rateLastSecBps : Arrays.copyOf(b.rateLastSecBps, size);
+        this.packetRate = trim(b.packetRate, size);
+        this.packetRateLastSec = trim(b.packetRateLastSec, size);
+        this.srcIpText = b.srcIpText == null ? null : Arrays.copyOf(b.srcIpText, size);
+        this.dstIpText = b.dstIpText == null ? null : Arrays.copyOf(b.dstIpText, size);
+    }
+
+    private static int[] trim(int[] column, int size) {
+        return column.length == size ? column : Arrays.copyOf(column, size);
+    }
+
+    /**
+     * {@code flows} as a table: the table itself if it is one, else its rows copied in with paths
+     * interned in {@link FlowPaths#current()}.
+     */
+    static FlowTable of(List<Flow> flows) {
+        if (flows instanceof FlowTable) {
+            return (FlowTable) flows;
+        }
+        Builder table = new Builder(FlowPaths.current(), flows.size());
+        for (Flow flow : flows) {
+            table.add(flow);
+        }
+        return table.build();
+    }
+
+    /** Fills the columns row by row. Not thread-safe; the table it builds is. */
+    static final class Builder {
+        final FlowPaths paths;
+        private int size;
+        private int[] id;
+        private int[] srcIp;
+        private int[] dstIp;
+        private int[] srcPort;
+        private int[] dstPort;
+        private int[] protocolId;
+        private int[] startTimeMs;
+        private int[] endTimeMs;
+        private int[] path;
+        private double[] rateBps;
+        private double[] rateLastSecBps;
+        private int[] packetRate;
+        private int[] packetRateLastSec;
+        private String[] srcIpText;
+        private String[] dstIpText;
+
+        /** Rows go into arrays of {@code capacity}, grown if more are added and trimmed by {@link #build}. */
+        Builder(FlowPaths paths, int capacity) {
+            this.paths = paths;
+            id = new int[capacity];
+            srcIp = new int[capacity];
+            dstIp = new int[capacity];
+            srcPort = new int[capacity];
+            dstPort = new int[capacity];
+            protocolId = new int[capacity];
+            startTimeMs = new int[capacity];
+            endTimeMs = new int[capacity];
+            path = new int[capacity];
+            rateBps = new double[capacity];
+            rateLastSecBps = new double[capacity];
+            packetRate = new int[capacity];
+            packetRateLastSec = new int[capacity];
+        }
+
+        int size() {
+            return size;
+        }
+
+        /** Adds a row; {@code pathId} is an ID in this builder's pool. Returns the row. */
+        int add(int flowId, int pathId, int src, int dst, int sourcePort, int destinationPort, int protocol,
+                int startMs, int endMs, double rateLastSec, double rate, int packetsLastSec, int packets) {
+            if (size == id.length) grow();
+            int row = size++;
+            id[row] = flowId;
+            path[row] = pathId;
+            srcIp[row] = src;
+            dstIp[row] = dst;
+            srcPort[row] = sourcePort;
+            dstPort[row] = destinationPort;
+            protocolId[row] = protocol;
+            startTimeMs[row] = startMs;
+            endTimeMs[row] = endMs;
+            rateLastSecBps[row] = rateLastSec;
+            rateBps[row] = rate;
+            packetRateLastSec[row] = packetsLastSec;
+            packetRate[row] = packets;
+            return row;
+        }
+
+        /** Adds row {@code row} of {@code table}, whose paths must come from this builder's pool. */
+        int add(FlowTable table, int row) {
+            int added = add(table.id[row], table.path[row], table.srcIp[row], table.dstIp[row], table.srcPort[row],
+                table.dstPort[row], table.protocolId[row], table.startTimeMs[row], table.endTimeMs[row],
+                table.rateLastSecBps[row], table.rateBps[row], table.packetRateLastSec[row], table.packetRate[row]);
+            if (table.srcIpText != null && table.srcIpText[row] != null) srcText(added, table.srcIpText[row]);
+            if (table.dstIpText != null && table.dstIpText[row] != null) dstText(added, table.dstIpText[row]);
+            return added;
+        }
+
+        /** Adds {@code flow}, interning its path. */
+        int add(Flow flow) {
+            int src = FlowIdentityTable.parseIpv4(flow.srcIp);
+            int dst = FlowIdentityTable.parseIpv4(flow.dstIp);
+            int row = add(flow.id(), paths.intern(flow.pathNodes, flow.pathPorts), src, dst, flow.srcPort,
+                flow.dstPort, flow.protocolId, flow.startTimeMs, flow.endTimeMs,
+                flow.estimatedFlowSendingRateBpsInTheLastSec, flow.getSendingRateBps(),
+                flow.estimatedPacketRateInTheLastSec, flow.estimatedPacketRateInTheProceeding1secTimeslot);
+            if (flow.srcIp == null || !flow.srcIp.equals(EnrichmentService.ipv4(src))) srcText(row, flow.srcIp);
+            if (flow.dstIp == null || !flow.dstIp.equals(EnrichmentService.ipv4(dst))) dstText(row, flow.dstIp);
+            return row;
+        }
+
+        private void srcText(int row, String text) {
+            if (srcIpText == null) srcIpText = new String[id.length];
+            srcIpText[row] = text;
+        }
+
+        private void dstText(int row, String text) {
+            if (dstIpText == null) dstIpText = new String[id.length];
+            dstIpText[row] = text;
+        }
+
+        private void grow() {
+            int capacity = Math.max(16, id.length * 2);
+            id = Arrays.copyOf(id, capacity);
+            srcIp = Arrays.copyOf(srcIp, capacity);
+            dstIp = Arrays.copyOf(dstIp, capacity);
+            srcPort = Arrays.copyOf(srcPort, capacity);
+            dstPort = Arrays.copyOf(dstPort, capacity);
+            protocolId = Arrays.copyOf(protocolId, capacity);
+            startTimeMs = Arrays.copyOf(startTimeMs, capacity);
+            endTimeMs = Arrays.copyOf(endTimeMs, capacity);
+            path = Arrays.copyOf(path, capacity);
+            rateBps = Arrays.copyOf(rateBps, capacity);
+            rateLastSecBps = Arrays.copyOf(rateLastSecBps, capacity);
+            packetRate = Arrays.copyOf(packetRate, capacity);
+            packetRateLastSec = Arrays.copyOf(packetRateLastSec, capacity);
+            if (srcIpText != null) srcIpText = Arrays.copyOf(srcIpText, capacity);
+            if (dstIpText != null) dstIpText = Arrays.copyOf(dstIpText, capacity);
+        }
+
+        FlowTable build() {
+            return new FlowTable(this);
+        }
+    }
+
+    /** Row view of flow {@code row}: a new {@link Flow} on every call. */
+    @Override
+    public Flow get(int row) {
+        if (row < 0 || row >= size) throw new IndexOutOfBoundsException(row);
+        Flow flow = new Flow(paths.nodes(path[row]), paths.ports(path[row]), srcIpOf(row), dstIpOf(row),
+            srcPort[row], dstPort[row], protocolId[row], startTimeMs[row], endTimeMs[row],
+            rateLastSecBps[row], rateBps[row], packetRateLastSec[row], packetRate[row]);
+        flow.id = id[row];
+        return flow;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    String srcIpOf(int row) {
+        return srcIpText != null && srcIpText[row] != null ? srcIpText[row] : EnrichmentService.ipv4(srcIp[row]);
+    }
+
+    String dstIpOf(int row) {
+        return dstIpText != null && dstIpText[row] != null ? dstIpText[row] : EnrichmentService.ipv4(dstIp[row]);
+    }
+
+    /** Whether both IP columns hold the row's addresses, i.e. its IPs were dotted quads. */
+    boolean hasIps(int row) {
+        return (srcIpText == null || srcIpText[row] == null) && (dstIpText == null || dstIpText[row] == null);
+    }
+
+    /** First row of the flow with ID {@code flowId}, or -1. */
+    int rowOf(int flowId) {
+        int[] slots = rowsById;
+        if (slots == null) {
+            slots = new int[Integer.highestOneBit(Math.max(1, size) * 2) * 2];
+            for (int row = size - 1; row >= 0; row--) {
+                int slot = slotOf(slots, id[row]);
+                slots[slot] = row + 1;
+            }
+            rowsById = slots;
+        }
+        return slots[slotOf(slots, flowId)] - 1;
+    }
+
+    // The slot holding flowId, or the empty one where it would go. Filled from the last row back, so a
+    // repeated ID ends up with its first row
+    private int slotOf(int[] slots, int flowId) {
+        int mask = slots.length - 1;
+        int hash = flowId * 0x9E3779B9;
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        while (slots[slot] != 0 && id[slots[slot] - 1] != flowId) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static final class PathTotals {
+        final int[] flows;
+        final double[] rateBps;
+        final int distinct;
+
+        PathTotals(int[] flows, double[] rateBps, int distinct) {
+            this.flows = flows;
+            this.rateBps = rateBps;
+            this.distinct = distinct;
+        }
+    }
+
+    private PathTotals pathTotals() {
+        PathTotals totals = pathTotals;
+        if (totals == null) {
+            int pathCount = 0;
+            for (int row = 0; row < size; row++) pathCount = Math.max(pathCount, path[row] + 1);
+            int[] flows = new int[pathCount];
+            double[] rates = new double[pathCount];
+            int distinct = 0;
+            for (int row = 0; row < size; row++) {
+                if (flows[path[row]]++ == 0) distinct++;
+                rates[path[row]] += rateBps[row];
+            }
+            totals = new PathTotals(flows, rates, distinct);
+            pathTotals = totals;
+        }
+        return totals;
+    }
+
+    /** Number of flows in this table on path {@code pathId}. */
+    int flowsOnPath(int pathId) {
+        int[] flows = pathTotals().flows;
+        return pathId < flows.length ? flows[pathId] : 0;
+    }
+
+    /** Summed sending rate of the flows in this table on path {@code pathId}. */
+    double rateOnPath(int pathId) {
+        double[] rates = pathTotals().rateBps;
+        return pathId < rates.length ? rates[pathId] : 0;
+    }
+
+    /** Number of distinct paths the flows in this table take. */
+    int distinctPaths() {
+        return pathTotals().distinct;
+    }
+
+    /** A cursor before the first row. */
+    Cursor cursor() {
+        return new Cursor(this);
+    }
+
+    /** A cursor on {@code row}. */
+    Cursor at(int row) {
+        Cursor cursor = new Cursor(this);
+        cursor.row = row;
+        return cursor;
+    }
+
+    /** A growable run of row numbers, cleared and refilled instead of reallocated. */
+    static final class Rows {
+        private int[] rows = new int[16];
+        private int size;
+
+        void add(int row) {
+            if (size == rows.length) rows = Arrays.copyOf(rows, size * 2);
+            rows[size++] = row;
+        }
+
+        int get(int index) {
+            return rows[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+
+    /**
+     * Moves over the rows of a table: {@code while (c.next()) { ... c.rate() ... }}. One cursor can be
+     * reused for any number of rows; it allocates nothing per row.
+     */
+    static final class Cursor {
+        private final FlowTable table;
+        private int row = -1;
+
+        private Cursor(FlowTable table) {
+            this.table = table;
+        }
+
+        boolean next() {
+            return ++row < table.size;
+        }
+
+        Cursor moveTo(int row) {
+            this.row = row;
+            return this;
+        }
+
+        int row() { return row; }
+        int id() { return table.id[row]; }
+        int path() { return table.path[row]; }
+        double rate() { return table.rateBps[row]; }
+        int srcPort() { return table.srcPort[row]; }
+        int dstPort() { return table.dstPort[row]; }
+        int protocolId() { return table.protocolId[row]; }
+        int startTimeMs() { return table.startTimeMs[row]; }
+        int endTimeMs() { return table.endTimeMs[row]; }
+
+        String srcIp() {
+            return table.srcIpOf(row);
+        }
+
+        String dstIp() {
+            return table.dstIpOf(row);
+        }
+
+        /** Shared node IPs of this flow's path. */
+        List<String> pathNodes() {
+            return table.paths.nodes(table.path[row]);
+        }
+
+        int pathLength() {
+            return table.paths.length(table.path[row]);
+        }
+
+        /** Row view of the current row; see {@link FlowTable#get}. */
+        Flow flow() {
+            return table.get(row);
+        }
+    }
+}
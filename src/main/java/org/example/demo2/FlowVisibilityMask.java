@@ -0,0 +1,147 @@
+package org.example.demo2;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Which flows, by index into the canvas flow list, get drawn.
+ *
+ * Each feature that hides flows owns a layer: Top-K, the Flow Filter dialog and the flicker focus.
+ * A flow is visible when every active layer has its bit set; with no active layer everything is.
+ * Layers are ANDed word by word into one long[] when a layer changes, so the check done per flow
+ * per link per frame is one array read and never allocates.
+ *
+ * FX thread only; hand other threads a {@link #copy()}.
+ */
+public class FlowVisibilityMask {
+
+    public enum Layer { TOP_K, FILTER, FOCUS }
+
+    private final long[][] layers = new long[Layer.values().length][];
+    private final int[] layerWords = new int[Layer.values().length];
+    private final boolean[] active = new boolean[Layer.values().length];
+    private long[] combined = new long[0];
+    private int combinedWords = 0;
+    private boolean restricted = false;
+    private long version = 0;
+
+    /** Show only {@code indices} as far as this layer is concerned. */
+    public void setLayer(Layer layer, int[] indices) {
+        int max = -1;
+        for (int index : indices) {
+            max = Math.max(max, index);
+        }
+        long[] words = wordsFor(layer, max < 0 ? 0 : (max >>> 6) + 1);
+        for (int index : indices) {
+            if (index >= 0) words[index >>> 6] |= 1L << index;
+        }
+        recombine();
+    }
+
+    /** Same as {@link #setLayer(Layer, int[])} for a bit set; null clears the layer. */
+    public void setLayer(Layer layer, BitSet bits) {
+        if (bits == null) {
+            clearLayer(layer);
+            return;
+        }
+        long[] source = bits.toLongArray();
+        long[] words = wordsFor(layer, source.length);
+        System.arraycopy(source, 0, words, 0, source.length);
+        recombine();
+    }
+
+    public void clearLayer(Layer layer) {
+        if (!active[layer.ordinal()]) return;
+        active[layer.ordinal()] = false;
+        recombine();
+    }
+
+    public boolean isActive(Layer layer) {
+        return active[layer.ordinal()];
+    }
+
+    /** Number of flows this layer lets through, or 0 when it is inactive. */
+    public int count(Layer layer) {
+        if (!active[layer.ordinal()]) return 0;
+        long[] words = layers[layer.ordinal()];
+        int count = 0;
+        for (int w = 0; w < layerWords[layer.ordinal()]; w++) {
+            count += Long.bitCount(words[w]);
+        }
+        return count;
+    }
+
+    /** Bumped on every layer change. */
+    public long version() {
+        return version;
+    }
+
+    /** Independent copy of the current state, safe to read on another thread. */
+    public FlowVisibilityMask copy() {
+        FlowVisibilityMask copy = new FlowVisibilityMask();
+        for (int i = 0; i < layers.length; i++) {
+            if (layers[i] != null) copy.layers[i] = Arrays.copyOf(layers[i], layerWords[i]);
+        }
+        System.arraycopy(layerWords, 0, copy.layerWords, 0, layerWords.length);
+        System.arraycopy(active, 0, copy.active, 0, active.length);
+        copy.combined = Arrays.copyOf(combined, combinedWords);
+        copy.combinedWords = combinedWords;
+        copy.restricted = restricted;
+        copy.version = version;
+        return copy;
+    }
+
+    /** True when at least one layer is hiding flows. */
+    public boolean isRestricted() {
+        return restricted;
+    }
+
+    public boolean isVisible(int index) {
+        if (!restricted) return true;
+        int w = index >>> 6;
+        return w < combinedWords && (combined[w] & (1L << index)) != 0;
+    }
+
+    // Clear and size the layer's array (reused when big enough) and mark the layer active
+    private long[] wordsFor(Layer layer, int wordCount) {
+        int i = layer.ordinal();
+        long[] words = layers[i];
+        if (words == null || words.length < wordCount) {
+            words = new long[Math.max(wordCount, 1)];
+            layers[i] = words;
+        } else {
+            Arrays.fill(words, 0, layerWords[i], 0L);
+        }
+        layerWords[i] = wordCount;
+        active[i] = true;
+        return words;
+    }
+
+    private void recombine() {
+        version++;
+        int words = Integer.MAX_VALUE;
+        restricted = false;
+        for (int i = 0; i < layers.length; i++) {
+            if (active[i]) {
+                restricted = true;
+                words = Math.min(words, layerWords[i]); // past a layer's end nothing is set
+            }
+        }
+        if (!restricted) {
+            combinedWords = 0;
+            return;
+        }
+        if (combined.length < words) {
+            combined = new long[words];
+        }
+        Arrays.fill(combined, 0, words, -1L);
+        for (int i = 0; i < layers.length; i++) {
+            if (!active[i]) continue;
+            long[] layer = layers[i];
+            for (int w = 0; w < words; w++) {
+                combined[w] &= layer[w];
+            }
+        }
+        combinedWords = words;
+    }
+}
@@ -0,0 +1,244 @@
+package org.example.demo2;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Force-directed placement for fabrics too large for the plain Fat-Tree rows.
+ *
+ * Nodes with a row (the tiers of a layered fabric) keep their y and are pulled along it toward the
+ * nodes they link to; after every step each row is projected back to a minimum spacing, keeping
+ * the order the forces produced, so tiers stay readable and never overlap while pods and their
+ * hosts group together. Nodes without a row are Fruchterman-Reingold nodes whose repulsion only
+ * looks at neighbouring cells of a uniform grid. Each iteration is linear in nodes plus edges
+ * (plus sorting the rows), and forces are computed for all nodes in parallel from the previous
+ * positions.
+ */
+final class ForceDirectedLayout {
+
+    private static final double SPRING = 0.1;
+
+    private ForceDirectedLayout() {
+    }
+
+    /**
+     * Move the nodes at ({@code x}, {@code y}) for {@code iterations} rounds, each step at most
+     * {@code temperature} (cooling linearly to 0). {@code rowY[i]} is NaN for a node free in both
+     * directions; nodes sharing a row stay at least {@code rowSpacing} apart. Edges are given as
+     * index pairs.
+     */
+    static void layout(double[] x, double[] y, double[] rowY, int[] edgeFrom, int[] edgeTo,
+                       double idealLength, double rowSpacing, int iterations, double temperature) {
+        int n = x.length;
+        if (n < 2) return;
+
+        // Adjacency in compressed rows
+        int[] adjStart = new int[n + 1];
+        for (int e = 0; e < edgeFrom.length; e++) {
+            adjStart[edgeFrom[e] + 1]++;
+            adjStart[edgeTo[e] + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            adjStart[i + 1] += adjStart[i];
+        }
+        int[] adj = new int[adjStart[n]];
+        int[] fill = Arrays.copyOf(adjStart, n);
+        for (int e = 0; e < edgeFrom.length; e++) {
+            adj[fill[edgeFrom[e]]++] = edgeTo[e];
+            adj[fill[edgeTo[e]]++] = edgeFrom[e];
+        }
+
+        int[][] rows = rows(rowY);
+
+        double k2 = idealLength * idealLength;
+        double cutoff = 2 * idealLength;
+        double cutoff2 = cutoff * cutoff;
+        double[] moveX = new double[n];
+        double[] moveY = new double[n];
+        Grid grid = new Grid(n);
+
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            double t = temperature * (1.0 - (double) iteration / iterations);
+            grid.build(x, y, cutoff);
+            IntStream.range(0, n).parallel().forEach(i -> {
+                if (!Double.isNaN(rowY[i])) {
+                    // Along the row, halfway toward where the linked nodes are on average
+                    double sum = 0;
+                    int degree = adjStart[i + 1] - adjStart[i];
+                    for (int a = adjStart[i]; a < adjStart[i + 1]; a++) {
+                        sum += x[adj[a]] - x[i];
+                    }
+                    double move = degree == 0 ? 0 : 0.5 * sum / degree;
+                    moveX[i] = Math.max(-t, Math.min(t, move));
+                    moveY[i] = 0;
+                    return;
+                }
+                double fx = 0;
+                double fy = 0;
+                int cx = grid.column(x[i]);
+                int cy = grid.row(y[i]);
+                for (int oy = -1; oy <= 1; oy++) {
+                    for (int ox = -1; ox <= 1; ox++) {
+                        int cell = grid.cell(cx + ox, cy + oy);
+                        if (cell < 0) continue;
+                        for (int p = grid.start[cell]; p < grid.start[cell + 1]; p++) {
+                            int j = grid.order[p];
+                            if (j == i) continue;
+                            double dx = x[i] - x[j];
+                            double dy = y[i] - y[j];
+                            double d2 = dx * dx + dy * dy;
+                            if (d2 >= cutoff2) continue;
+                            if (d2 < 1e-4) {
+                                // Same spot: push apart in a direction fixed by the pair
+                                dx = i < j ? -0.5 : 0.5;
+                                d2 = 0.25;
+                            }
+                            double f = k2 / d2;
+                            fx += dx * f;
+                            fy += dy * f;
+                        }
+                    }
+                }
+                // Links are springs of the ideal length; the usual d^2/k pull would overpower a
+                // repulsion that only reaches two cells
+                for (int a = adjStart[i]; a < adjStart[i + 1]; a++) {
+                    int j = adj[a];
+                    double dx = x[j] - x[i];
+                    double dy = y[j] - y[i];
+                    double d = Math.sqrt(dx * dx + dy * dy);
+                    if (d < 1e-6) continue;
+                    double f = SPRING * (d - idealLength) / d;
+                    fx += dx * f;
+                    fy += dy * f;
+                }
+                double length = Math.sqrt(fx * fx + fy * fy);
+                double scale = length > t ? t / length : 1.0;
+                moveX[i] = fx * scale;
+                moveY[i] = fy * scale;
+            });
+            for (int i = 0; i < n; i++) {
+                x[i] += moveX[i];
+                y[i] = Double.isNaN(rowY[i]) ? y[i] + moveY[i] : rowY[i];
+            }
+            Arrays.stream(rows).parallel().forEach(row -> spaceRow(row, x, rowSpacing));
+        }
+    }
+
+    // Node indices grouped by row
+    private static int[][] rows(double[] rowY) {
+        java.util.Map<Double, List<Integer>> byRow = new java.util.TreeMap<>();
+        for (int i = 0; i < rowY.length; i++) {
+            if (!Double.isNaN(rowY[i])) byRow.computeIfAbsent(rowY[i], r -> new ArrayList<>()).add(i);
+        }
+        int[][] rows = new int[byRow.size()][];
+        int r = 0;
+        for (List<Integer> members : byRow.values()) {
+            rows[r++] = members.stream().mapToInt(Integer::intValue).toArray();
+        }
+        return rows;
+    }
+
+    /**
+     * Put the row's nodes at least {@code spacing} apart, in their current order, moving them as
+     * little as possible (least squares): with z_i = x_i - i * spacing that is the non-decreasing
+     * fit of z, found by pooling adjacent violators.
+     */
+    static void spaceRow(int[] row, double[] x, double spacing) {
+        int m = row.length;
+        if (m < 2) return;
+        Integer[] order = new Integer[m];
+        for (int i = 0; i < m; i++) {
+            order[i] = row[i];
+        }
+        Arrays.sort(order, (a, b) -> a.equals(b) ? 0 : x[a] != x[b] ? Double.compare(x[a], x[b]) : Integer.compare(a, b));
+        double[] blockSum = new double[m];
+        int[] blockSize = new int[m];
+        int blocks = 0;
+        for (int i = 0; i < m; i++) {
+            blockSum[blocks] = x[order[i]] - i * spacing;
+            blockSize[blocks] = 1;
+            blocks++;
+            while (blocks > 1 && blockSum[blocks - 2] / blockSize[blocks - 2] > blockSum[blocks - 1] / blockSize[blocks - 1]) {
+                blockSum[blocks - 2] += blockSum[blocks - 1];
+                blockSize[blocks - 2] += blockSize[blocks - 1];
+                blocks--;
+            }
+        }
+        int i = 0;
+        for (int b = 0; b < blocks; b++) {
+            double z = blockSum[b] / blockSize[b];
+            for (int k = 0; k < blockSize[b]; k++, i++) {
+                x[order[i]] = z + i * spacing;
+            }
+        }
+    }
+
+    // Nodes bucketed by cell (counting sort), rebuilt every iteration
+    private static final class Grid {
+        final int[] order;
+        final int[] cellOf;
+        int[] start = new int[0];
+        double minX;
+        double minY;
+        double cellSize;
+        int columns;
+        int rows;
+
+        Grid(int n) {
+            order = new int[n];
+            cellOf = new int[n];
+        }
+
+        void build(double[] x, double[] y, double minCellSize) {
+            int n = x.length;
+            double maxX = -Double.MAX_VALUE;
+            double maxY = -Double.MAX_VALUE;
+            minX = Double.MAX_VALUE;
+            minY = Double.MAX_VALUE;
+            for (int i = 0; i < n; i++) {
+                minX = Math.min(minX, x[i]);
+                minY = Math.min(minY, y[i]);
+                maxX = Math.max(maxX, x[i]);
+                maxY = Math.max(maxY, y[i]);
+            }
+            // Cells at least the cutoff wide, and no more of them than a few per node
+            cellSize = minCellSize;
+            while (true) {
+                columns = (int) ((maxX - minX) / cellSize) + 1;
+                rows = (int) ((maxY - minY) / cellSize) + 1;
+                if ((long) columns * rows <= 4L * n + 16) break;
+                cellSize *= 1.5;
+            }
+            int cells = columns * rows;
+            if (start.length < cells + 1) start = new int[cells + 1];
+            Arrays.fill(start, 0, cells + 1, 0);
+            for (int i = 0; i < n; i++) {
+                int cell = column(x[i]) + row(y[i]) * columns;
+                cellOf[i] = cell;
+                start[cell + 1]++;
+            }
+            for (int c = 0; c < cells; c++) {
+                start[c + 1] += start[c];
+            }
+            int[] fill = Arrays.copyOf(start, cells);
+            for (int i = 0; i < n; i++) {
+                order[fill[cellOf[i]]++] = i;
+            }
+        }
+
+        int column(double x) {
+            return (int) ((x - minX) / cellSize);
+        }
+
+        int row(double y) {
+            return (int) ((y - minY) / cellSize);
+        }
+
+        int cell(int column, int row) {
+            if (column < 0 || row < 0 || column >= columns || row >= rows) return -1;
+            return column + row * columns;
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package org.example.demo2;
+
+import java.awt.BasicStroke;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+import javafx.scene.paint.Color;
+
+/**
+ * Renders a playback capture to PNG frames without a display, for incident reports and wallboards.
+ *
+ * Frames come from {@link PlaybackDataReader#readAlignedAt}, the same alignment the Playback panel
+ * uses, and get the playback treatment: saved or Fat-Tree layout, the 20 fastest flows on their
+ * path links. Flow lanes are built by {@link FlowRenderModel} and drawn with the canvas' own
+ * rectangle geometry onto a BufferedImage, so no JavaFX toolkit is started.
+ *
+ * Each frame is read, drawn and PNG-encoded on a worker thread; frames are written in order, either
+ * as frame-NNNNNN.png files or to the stdin of an encoder command (ffmpeg's image2pipe input).
+ *
+ * Usage:
+ *   java -cp NDTanimation.jar org.example.demo2.HeadlessRenderer --flow flow.ndjson \
+ *       --topology topology.ndjson --out frames/ [--fps 1] [--from ms] [--to ms] [--size 1600x1000] \
+ *       [--threads N] [--encoder "ffmpeg -y -f image2pipe -framerate 10 -i - out.mp4"]
+ */
+public class HeadlessRenderer {
+
+    public static class Config {
+        public File flowFile;
+        public File topologyFile;
+        public File outDir = new File("frames");
+        public double fps = 1.0;               // capture frames per second of playback time
+        public long fromMs = -1;               // -1 = start / end of the capture
+        public long toMs = -1;
+        public int width = 1600;
+        public int height = 1000;
+        public int threads = Runtime.getRuntime().availableProcessors();
+        public String encoder = null;          // command reading PNG frames on stdin
+        public double cycleSeconds = 5.0;      // flow animation period, the canvas default
+    }
+
+    // Playback shows the fastest flows only, as PlaybackPanel.assignFlowsToLinks does
+    private static final int FLOWS_SHOWN = 20;
+    private static final int PALETTE_SIZE = 24;
+
+    private final Config config;
+    private final Color[] palette = new Color[PALETTE_SIZE];
+    // Layout per distinct node set, so a capture is laid out once rather than once per frame
+    private final Map<String, Map<String, int[]>> layouts = new ConcurrentHashMap<>();
+    private PlaybackDataReader reader;
+    private long firstFrameMs;
+
+    public HeadlessRenderer(Config config) {
+        this.config = config;
+        for (int i = 0; i < PALETTE_SIZE; i++) {
+            palette[i] = TopologyCanvas.getDistinctColor(i, PALETTE_SIZE);
+        }
+    }
+
+    /** Render every frame in the configured range. Returns the number of frames written. */
+    public int run() throws Exception {
+        NdjsonIndexUtil.BuiltIndex flowIndex = NdjsonIndexUtil.readOrBuildIndex(config.flowFile, ".flow.idx");
+        NdjsonIndexUtil.BuiltIndex topoIndex = NdjsonIndexUtil.readOrBuildIndex(config.topologyFile, ".topo.idx");
+        reader = new PlaybackDataReader(flowIndex, topoIndex, config.flowFile, config.topologyFile);
+        PlaybackDataReader.TimeRange range = reader.getTimeRange();
+        long from = config.fromMs >= 0 ? Math.max(config.fromMs, range.startTime) : range.startTime;
+        long to = config.toMs >= 0 ? Math.min(config.toMs, range.endTime) : range.endTime;
+        if (to < from) {
+            throw new IllegalArgumentException("Empty time range " + from + " - " + to);
+        }
+        long stepMs = Math.max(1, Math.round(1000 / config.fps));
+        int frameCount = (int) ((to - from) / stepMs) + 1;
+        firstFrameMs = from;
+
+        int threads = Math.max(1, config.threads);
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "ndt-render-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        Process encoder = null;
+        OutputStream encoderIn = null;
+        if (config.encoder != null) {
+            encoder = new ProcessBuilder("sh", "-c", config.encoder).redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            encoderIn = encoder.getOutputStream();
+        } else {
+            config.outDir.mkdirs();
+        }
+        System.out.println("[RENDER] " + frameCount + " frames (" + from + " - " + to + ", every " + stepMs + " ms) on "
+            + threads + " threads -> " + (encoder != null ? "encoder" : config.outDir.getAbsolutePath()));
+
+        long startNanos = System.nanoTime();
+        // A bounded window of frames in flight, taken back in order so the output stays sequential
+        Deque<Future<byte[]>> inFlight = new ArrayDeque<>();
+        int submitted = 0;
+        try {
+            for (int written = 0; written < frameCount; written++) {
+                while (submitted < frameCount && inFlight.size() < threads * 2) {
+                    int frame = submitted++;
+                    long timestamp = from + frame * stepMs;
+                    inFlight.add(pool.submit(() -> renderPng(timestamp)));
+                }
+                byte[] png = inFlight.poll().get();
+                if (encoderIn != null) {
+                    encoderIn.write(png);
+                } else {
+                    Files.write(new File(config.outDir, String.format("frame-%06d.png", written)).toPath(), png);
+                }
+                if ((written + 1) % 100 == 0) {
+                    double seconds = (System.nanoTime() - startNanos) / 1e9;
+                    System.out.printf("[RENDER] %d/%d frames, %.1f frames/s%n", written + 1, frameCount, (written + 1) / seconds);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+            if (encoderIn != null) {
+                encoderIn.close();
+                int exit = encoder.waitFor();
+                if (exit != 0) System.err.println("[RENDER] Encoder exited with " + exit);
+            }
+        }
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        System.out.printf("[RENDER] Done: %d frames in %.1f s (%.1f frames/s)%n", frameCount, seconds, frameCount / seconds);
+        return frameCount;
+    }
+
+    private byte[] renderPng(long timestamp) throws IOException {
+        BufferedImage image = renderFrame(timestamp, (timestamp - firstFrameMs) / 1000.0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256 * 1024);
+        // Encoding is most of a frame's cost; a fast deflate level cuts it by about a third for
+        // files about a third larger
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(0.9f);
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    /** Draw the capture as it stood at {@code timestamp}, with flow lanes at {@code animationTime}. */
+    BufferedImage renderFrame(long timestamp, double animationTime) {
+        PlaybackDataReader.AlignedData data = reader.readAlignedAt(timestamp);
+        List<Node> nodes = new ArrayList<>();
+        List<Link> links = new ArrayList<>();
+        List<Flow> flows = new ArrayList<>();
+        if (data.topoSnapshot != null) {
+            nodes.addAll(data.topoSnapshot.nodes);
+            links.addAll(data.topoSnapshot.links);
+        }
+        if (data.flowSnapshots != null) {
+            for (PlaybackDataReader.FlowSnapshot snapshot : data.flowSnapshots) {
+                if (snapshot.flows != null) flows.addAll(snapshot.flows);
+            }
+        }
+
+        layout(nodes);
+        Map<String, String> dpidToIp = new HashMap<>();
+        for (Node node : nodes) {
+            if (node.ip != null && !node.ip.isEmpty()) dpidToIp.put(String.valueOf(node.dpid), node.ip);
+        }
+        int shown = assignFlowsToLinks(flows, links, dpidToIp);
+
+        FlowRenderModel model = FlowRenderModel.build(timestamp, nodes, links, FlowTable.of(flows), new FlowVisibilityMask(),
+            flow -> palette[Math.floorMod(TopologyCanvas.generateFlowKey(flow).hashCode(), PALETTE_SIZE)]);
+
+        BufferedImage image = new BufferedImage(config.width, config.height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setColor(java.awt.Color.WHITE);
+            g.fillRect(0, 0, config.width, config.height);
+            drawHeader(g, timestamp, nodes.size(), links.size(), flows.size(), shown);
+            fitToImage(g, nodes);
+            drawLinks(g, nodes, links);
+            drawLanes(g, model, animationTime);
+            drawNodes(g, nodes);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    // Same placement as the Playback panel: saved playback positions when they cover every node,
+    // otherwise the Fat-Tree auto-layout
+    private void layout(List<Node> nodes) {
+        if (nodes.isEmpty()) return;
+        List<String> ips = new ArrayList<>(nodes.size());
+        for (Node node : nodes) {
+            ips.add(node.ip + "|" + node.name);
+        }
+        ips.sort(null);
+        Map<String, int[]> positions = layouts.computeIfAbsent(String.join(",", ips), key -> {
+            List<Node> copies = new ArrayList<>(nodes.size());
+            for (Node node : nodes) {
+                Node copy = new Node(node.ip, node.name, 0, 0, node.type, node.is_up, node.is_enabled, node.ips);
+                copy.layer = node.layer;
+                copies.add(copy);
+            }
+            NetworkTopologyApp.applyPlaybackNodeLayout(copies, config.width, config.height);
+            Map<String, int[]> placed = new HashMap<>();
+            for (Node copy : copies) {
+                placed.put(copy.ip + "|" + copy.name, new int[] {copy.x, copy.y});
+            }
+            return placed;
+        });
+        for (Node node : nodes) {
+            int[] position = positions.get(node.ip + "|" + node.name);
+            if (position != null) {
+                node.x = position[0];
+                node.y = position[1];
+            }
+        }
+    }
+
+    /**
+     * Put the {@link #FLOWS_SHOWN} fastest flows with a path on the links along it, with path node
+     * ids rewritten to IPs so the lane builder can tell direction. Returns the number of flows shown.
+     */
+    static int assignFlowsToLinks(List<Flow> flows, List<Link> links, Map<String, String> dpidToIp) {
+        List<Flow> withPath = new ArrayList<>();
+        for (Flow flow : flows) {
+            if (flow.pathNodes != null && flow.pathNodes.size() >= 2) withPath.add(flow);
+        }
+        int[] top = TopKFlowTracker.topIndices(withPath, FLOWS_SHOWN);
+        List<Flow> shown = new ArrayList<>(top.length);
+        for (int index : top) {
+            Flow flow = withPath.get(index);
+            List<String> pathIps = new ArrayList<>(flow.pathNodes.size());
+            for (String nodeId : flow.pathNodes) {
+                pathIps.add(nodeIdToIp(nodeId, dpidToIp));
+            }
+            flow.pathNodes = pathIps;
+            shown.add(flow);
+        }
+        LinkFlowIndex.assign(shown, links, true, null);
+        return top.length;
+    }
+
+    // Path node ids are DPIDs (small numbers), integer IPs or already dotted IPs
+    private static String nodeIdToIp(String nodeId, Map<String, String> dpidToIp) {
+        if (nodeId.contains(".")) return nodeId;
+        try {
+            long value = Long.parseLong(nodeId);
+            if (value < 1000) {
+                String ip = dpidToIp.get(nodeId);
+                if (ip != null) return ip;
+            }
+            return ((value >> 24) & 0xFF) + "." + ((value >> 16) & 0xFF) + "." + ((value >> 8) & 0xFF) + "." + (value & 0xFF);
+        } catch (NumberFormatException e) {
+            return nodeId;
+        }
+    }
+
+    // Scale and center the node bounding box into the image below the header
+    private void fitToImage(Graphics2D g, List<Node> nodes) {
+        if (nodes.isEmpty()) return;
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (Node node : nodes) {
+            minX = Math.min(minX, node.x);
+            minY = Math.min(minY, node.y);
+            maxX = Math.max(maxX, node.x);
+            maxY = Math.max(maxY, node.y);
+        }
+        double margin = 40;
+        double top = 40;
+        double scale = Math.min((config.width - 2 * margin) / Math.max(1, maxX - minX),
+                                (config.height - top - 2 * margin) / Math.max(1, maxY - minY));
+        scale = Math.min(scale, 3.0);
+        double offsetX = (config.width - (maxX - minX) * scale) / 2 - minX * scale;
+        double offsetY = top + (config.height - top - (maxY - minY) * scale) / 2 - minY * scale;
+        g.translate(offsetX, offsetY);
+        g.scale(scale, scale);
+    }
+
+    private void drawHeader(Graphics2D g, long timestamp, int nodeCount, int linkCount, int flowCount, int shown) {
+        g.setColor(java.awt.Color.DARK_GRAY);
+        g.setFont(new Font(Font.SANS_SERIF, Font.BOLD, 16));
+        String time = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(timestamp));
+        g.drawString(time + "   " + nodeCount + " nodes, " + linkCount + " links, " + flowCount
+            + " flows (top " + shown + " shown)", 12, 24);
+    }
+
+    private void drawLinks(Graphics2D g, List<Node> nodes, List<Link> links) {
+        Map<String, Node> nodesByIp = new HashMap<>(nodes.size() * 2);
+        for (Node node : nodes) {
+            if (node.ip != null) nodesByIp.putIfAbsent(node.ip, node);
+            if (node.ips != null) {
+                for (String ip : node.ips) nodesByIp.putIfAbsent(ip, node);
+            }
+        }
+        g.setStroke(new BasicStroke(1.5f));
+        for (Link link : links) {
+            Node src = nodesByIp.get(link.source);
+            Node tgt = nodesByIp.get(link.target);
+            if (src == null || tgt == null) continue;
+            g.setColor(link.is_up && link.is_enabled ? java.awt.Color.LIGHT_GRAY : new java.awt.Color(230, 120, 120));
+            g.draw(new java.awt.geom.Line2D.Double(src.x, src.y, tgt.x, tgt.y));
+        }
+    }
+
+    private void drawLanes(Graphics2D g, FlowRenderModel model, double animationTime) {
+        double[] xs = new double[4];
+        double[] ys = new double[4];
+        Path2D.Double polygon = new Path2D.Double();
+        g.setStroke(new BasicStroke(2f));
+        FlowRenderModel.SegmentSink painter = (px, py, color) -> {
+            polygon.reset();
+            polygon.moveTo(px[0], py[0]);
+            for (int i = 1; i < 4; i++) polygon.lineTo(px[i], py[i]);
+            polygon.closePath();
+            g.setColor(toAwt(color));
+            g.fill(polygon);
+            g.draw(polygon);
+        };
+        for (int lane = 0; lane < model.laneCount; lane++) {
+            Node from = model.laneFrom[lane];
+            Node to = model.laneTo[lane];
+            FlowRenderModel.laneSegments(from.x, from.y, to.x, to.y, model.laneUtilization[lane], animationTime,
+                config.cycleSeconds, model.colors, model.cumulativeRatios, model.laneColorStart[lane],
+                model.laneColorCount[lane], xs, ys, painter);
+        }
+    }
+
+    // Shapes and colors as TopologyCanvas.drawNodes: squares for hosts, circles for switches
+    private void drawNodes(Graphics2D g, List<Node> nodes) {
+        double size = Math.max(10, 16 - nodes.size() * 0.2);
+        g.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 8));
+        g.setStroke(new BasicStroke(2f));
+        for (Node node : nodes) {
+            boolean up = node.is_enabled && node.is_up;
+            java.awt.geom.RectangularShape shape = "1".equals(node.type)
+                ? new java.awt.geom.Rectangle2D.Double(node.x - size, node.y - size, size * 2, size * 2)
+                : new java.awt.geom.Ellipse2D.Double(node.x - size, node.y - size, size * 2, size * 2);
+            g.setColor(up ? toAwt(Color.LIGHTGREEN) : java.awt.Color.RED);
+            g.fill(shape);
+            g.setColor(java.awt.Color.BLACK);
+            g.draw(shape);
+            String label = node.name == null ? "" : node.name.length() > 8 ? node.name.substring(0, 8) : node.name;
+            g.setColor(up ? java.awt.Color.BLACK : java.awt.Color.WHITE);
+            int textWidth = g.getFontMetrics().stringWidth(label);
+            g.drawString(label, (float) (node.x - textWidth / 2.0), (float) (node.y + 3));
+        }
+    }
+
+    private static java.awt.Color toAwt(Color color) {
+        return new java.awt.Color((float) color.getRed(), (float) color.getGreen(), (float) color.getBlue(),
+            (float) color.getOpacity());
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        Config config = new Config();
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 == args.length) {
+                System.err.println("[RENDER] Missing value for " + args[i]);
+                System.exit(2);
+            }
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--flow": config.flowFile = new File(value); break;
+                case "--topology": config.topologyFile = new File(value); break;
+                case "--out": config.outDir = new File(value); break;
+                case "--fps": config.fps = Double.parseDouble(value); break;
+                case "--from": config.fromMs = Long.parseLong(value); break;
+                case "--to": config.toMs = Long.parseLong(value); break;
+                case "--size": {
+                    String[] parts = value.toLowerCase().split("x");
+                    config.width = Integer.parseInt(parts[0]);
+                    config.height = Integer.parseInt(parts[1]);
+                    break;
+                }
+                case "--threads": config.threads = Integer.parseInt(value); break;
+                case "--encoder": config.encoder = value; break;
+                case "--cycle": config.cycleSeconds = Double.parseDouble(value); break;
+                default:
+                    System.err.println("[RENDER] Unknown option: " + args[i]);
+                    System.err.println("Options: --flow --topology --out --fps --from --to --size WxH --threads --encoder --cycle");
+                    System.exit(2);
+            }
+        }
+        if (config.flowFile == null || config.topologyFile == null) {
+            System.err.println("[RENDER] --flow and --topology (NDJSON files) are required");
+            System.exit(2);
+        }
+        new HeadlessRenderer(config).run();
+    }
+}
@@ -1,8 +1,13 @@
 package org.example.demo2;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javafx.animation.Animation;
 import javafx.animation.FadeTransition;
@@ -13,6 +18,7 @@ import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
+import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -40,44 +46,131 @@ import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.stage.StageStyle;
 import javafx.stage.Window;
+import javafx.stage.WindowEvent;
 import javafx.util.Duration;
 
 public class InfoDialog {
     private final TopologyCanvas topologyCanvas;
-    private final List<Flow> allFlows;
     private Stage dialog; // Add a Stage member variable
     // Optional reference to main app for API-related controls
     private NetworkTopologyApp mainApp;
     
     // Create a data class containing flow and direction information
+    // Rows are keyed by stable flow ID and reused across refreshes; the live values are properties
+    // so their cells update in place without rebuilding or refreshing the table.
     private static class FlowTableItem {
-        final Flow flow;
-        final String direction;
+        final int id;
         final String convertedSrcIp;
         final String convertedDstIp;
-        final double sendingRate;
         final int srcPort;
         final int dstPort;
         final int protocol;
         final String startTime;
-        final String endTime;
+        final SimpleStringProperty direction = new SimpleStringProperty();
+        final SimpleDoubleProperty sendingRate = new SimpleDoubleProperty();
+        final SimpleStringProperty endTime = new SimpleStringProperty();
+        private int endTimeMs = -1;
         
-        FlowTableItem(Flow flow, String direction, String convertedSrcIp, String convertedDstIp) {
-            this.flow = flow;
-            this.direction = direction;
+        FlowTableItem(FlowTable.Cursor flow, String direction, String convertedSrcIp, String convertedDstIp) {
+            this.id = flow.id();
             this.convertedSrcIp = convertedSrcIp;
             this.convertedDstIp = convertedDstIp;
-            this.sendingRate = flow.getSendingRateBps();
-            this.srcPort = flow.srcPort;
-            this.dstPort = flow.dstPort;
-            this.protocol = flow.protocolId;
-            this.startTime = convertMsToTimeFormat(flow.startTimeMs);
-            this.endTime = convertMsToTimeFormat(flow.endTimeMs);
+            this.srcPort = flow.srcPort();
+            this.dstPort = flow.dstPort();
+            this.protocol = flow.protocolId();
+            this.startTime = convertMsToTimeFormat(flow.startTimeMs());
+            update(flow, direction);
         }
 
+        void update(FlowTable.Cursor flow, String direction) {
+            this.direction.set(direction);
+            sendingRate.set(flow.rate());
+            if (flow.endTimeMs() != endTimeMs) {
+                endTimeMs = flow.endTimeMs();
+                endTime.set(convertMsToTimeFormat(endTimeMs));
+            }
+        }
+    }
+
+    private static final String FLOW_ROWS_KEY = "flowRowsByKey";
+
+    /**
+     * Bring {@code table} in line with the flows in {@code rows} of {@code flows}, or all of them when
+     * {@code rows} is null (and their {@code directions}), without rebuilding it.
+     * Rows are matched by 5-tuple: existing rows are updated in place, only new flows get a row and
+     * only vanished flows are removed. The table is re-sorted only when rows were added or an updated
+     * value now sits out of order with a neighbour.
+     */
+    private void syncFlowRows(TableView<FlowTableItem> table, FlowTable flows, FlowTable.Rows rows, List<String> directions) {
+        ObservableList<FlowTableItem> items = table.getItems();
+        @SuppressWarnings("unchecked")
+        Map<Integer, FlowTableItem> rowsByKey = (Map<Integer, FlowTableItem>) table.getProperties().get(FLOW_ROWS_KEY);
+        if (rowsByKey == null || rowsByKey.size() != items.size()) {
+            // First use, or the items were replaced elsewhere: re-key what is currently shown
+            rowsByKey = new HashMap<>();
+            for (FlowTableItem row : items) {
+                rowsByKey.put(row.id, row);
+            }
+            table.getProperties().put(FLOW_ROWS_KEY, rowsByKey);
+        }
+
+        int count = rows != null ? rows.size() : flows.size;
+        Set<Integer> seen = new HashSet<>(count * 2);
+        List<FlowTableItem> added = new ArrayList<>();
+        FlowTable.Cursor flow = flows.cursor();
+        for (int i = 0; i < count; i++) {
+            flow.moveTo(rows != null ? rows.get(i) : i);
+            int id = flow.id();
+            if (!seen.add(id)) {
+                continue;
+            }
+            FlowTableItem row = rowsByKey.get(id);
+            if (row == null) {
+                row = new FlowTableItem(flow, directions.get(i), convertIpStringForDisplay(flow.srcIp()), convertIpStringForDisplay(flow.dstIp()));
+                rowsByKey.put(id, row);
+                added.add(row);
+            } else {
+                row.update(flow, directions.get(i));
+            }
+        }
+
+        if (rowsByKey.size() > seen.size()) {
+            Set<FlowTableItem> removed = new HashSet<>();
+            rowsByKey.values().removeIf(row -> {
+                if (seen.contains(row.id)) return false;
+                removed.add(row);
+                return true;
+            });
+            items.removeAll(removed);
+        }
+        if (!added.isEmpty()) {
+            items.addAll(added);
+        }
+
+        Comparator<FlowTableItem> order = table.getComparator();
+        if (order != null && !table.getSortOrder().isEmpty() && (!added.isEmpty() || !isSorted(items, order))) {
+            table.sort();
+        }
+    }
+
+    private static boolean isSorted(List<FlowTableItem> items, Comparator<FlowTableItem> order) {
+        for (int i = 1; i < items.size(); i++) {
+            if (order.compare(items.get(i - 1), items.get(i)) > 0) {
+                return false;
+            }
+        }
+        return true;
     }
 
+    // Node ids, IPs and names resolve through the current snapshot's shared lookups
+    private String cachedNodeIp(String nodeId) {
+        return SnapshotBus.current().nodeIp(nodeId);
+    }
 
+    /** Device name for an IP, or the IP itself when no node has it. */
+    private String cachedNodeName(String ip) {
+        return EnrichmentService.deviceName(ip);
+    }
 
     // New: Convert milliseconds to hh:mm:ss format (seconds only)
     private static String convertMsToTimeFormat(int milliseconds) {
@@ -101,12 +194,7 @@ public class InfoDialog {
 
     // New: Convert int to standard IP string (little-endian)
     private String convertLittleEndianToIp(int ip) {
-        return String.format("%d.%d.%d.%d",
-            ip & 0xFF,
-            (ip >> 8) & 0xFF,
-            (ip >> 16) & 0xFF,
-            (ip >> 24) & 0xFF
-        );
+        return EnrichmentService.ipv4LittleEndian(ip);
     }
     
     // New: Convert IP string for display with reversed byte order (10.0.0.100 instead of 100.0.0.10)
@@ -121,12 +209,7 @@ public class InfoDialog {
         try {
             int littleEndianIp = Integer.parseInt(ipString);
             // Reverse byte order for display: 10.0.0.100 instead of 100.0.0.10
-            return String.format("%d.%d.%d.%d",
-                (littleEndianIp >> 24) & 0xFF,
-                (littleEndianIp >> 16) & 0xFF,
-                (littleEndianIp >> 8) & 0xFF,
-                littleEndianIp & 0xFF
-            );
+            return EnrichmentService.ipv4(littleEndianIp);
         } catch (NumberFormatException e) {
             // If not an integer, check if it's already in dot-decimal format (like "1.0.0.10")
             // If so, reverse the byte order
@@ -170,39 +253,14 @@ public class InfoDialog {
     
     // Convert protocol numbers to text
     private String convertProtocolNumberToText(int protocolNumber) {
-        switch (protocolNumber) {
-            case 1: return "ICMP";
-            case 6: return "TCP";
-            case 17: return "UDP";
-            case 50: return "ESP";
-            case 51: return "AH";
-            default: return String.valueOf(protocolNumber);
-        }
+        return EnrichmentService.protocolName(protocolNumber);
     }
     
-    /**
-     * Find complete flow information from detected flow data that matches the flow in flow_set
-     * Matching criteria: src_ip + dst_ip + src_port + dst_port + protocol_number must completely match
-     */
-    private Flow findCompleteFlowInfo(Flow flowInSet) {
-        for (Flow detectedFlow : allFlows) {
-            // Check if all five fields completely match
-            if (detectedFlow.srcIp.equals(flowInSet.srcIp) &&
-                detectedFlow.dstIp.equals(flowInSet.dstIp) &&
-                detectedFlow.srcPort == flowInSet.srcPort &&
-                detectedFlow.dstPort == flowInSet.dstPort &&
-                detectedFlow.protocolId == flowInSet.protocolId) {
-                return detectedFlow;
-            }
-        }
-        return null; // No matching complete flow information found
-    }
 
 
     
-    public InfoDialog(TopologyCanvas topologyCanvas, List<Flow> allFlows) {
+    public InfoDialog(TopologyCanvas topologyCanvas) {
         this.topologyCanvas = topologyCanvas;
-        this.allFlows = allFlows;
     }
     
     public void setMainApp(NetworkTopologyApp mainApp) {
@@ -684,31 +742,9 @@ public class InfoDialog {
     
     // Find node name by IP address
     private String findNodeNameByIp(String ip) {
-        if (topologyCanvas != null) {
-            List<org.example.demo2.Node> nodes = topologyCanvas.getNodes();
-            if (nodes != null) {
-                for (org.example.demo2.Node node : nodes) {
-                    // Check node's IP list
-                    if (node.ips != null && !node.ips.isEmpty()) {
-                        for (String nodeIp : node.ips) {
-                            String standardNodeIp = convertLittleEndianIpStringToStandard(nodeIp);
-                            if (standardNodeIp.equals(ip)) {
-                                return getNodeDisplayName(node.name);
-                            }
-                        }
-                    }
-                    // Check node's main IP
-                    if (node.ip != null && !node.ip.isEmpty()) {
-                        String standardNodeIp = convertLittleEndianIpStringToStandard(node.ip);
-                        if (standardNodeIp.equals(ip)) {
-                            return getNodeDisplayName(node.name);
-                        }
-                    }
-                }
-            }
-        }
+        String name = EnrichmentService.deviceName(ip);
         // If not found, return the IP address itself
-        return ip;
+        return name.equals(ip) ? ip : getNodeDisplayName(name);
     }
     
     // Determine if node is source in connection
@@ -780,13 +816,15 @@ public class InfoDialog {
         return row;
     }
     private void updateFlowData(List<TopologyCanvas.FlowWithDirection> flowsWithDirection, TableView<FlowTableItem> table, Label title) {
-        System.out.println("[DEBUG] updateFlowData called, flowsWithDirection=" + (flowsWithDirection != null ? flowsWithDirection.size() : "null"));
-        table.getItems().clear();
+        if (Diagnostics.DEBUG) Diagnostics.debug("[DEBUG] updateFlowData called, flowsWithDirection=" + (flowsWithDirection != null ? flowsWithDirection.size() : "null"));
         if (flowsWithDirection == null || flowsWithDirection.isEmpty()) {
+            table.getItems().clear();
             title.setText("No Flows on Selected Links");
             return;
         }
-        List<FlowTableItem> flowItems = new ArrayList<>();
+        SnapshotBus.Snapshot snapshot = SnapshotBus.current();
+        FlowTable.Rows flowItems = new FlowTable.Rows();
+        List<String> flowDirections = new ArrayList<>();
         List<Link> currentLinks = topologyCanvas.getLinks();
         StringBuilder linkNames = new StringBuilder();
         for (TopologyCanvas.FlowWithDirection flowWithDir : flowsWithDirection) {
@@ -810,16 +848,15 @@ public class InfoDialog {
                             linkNames.append(lsrcStr + " → " + ldstStr);
 
                             if (l.flow_set != null) {
-                                for (Flow flowInSet : l.flow_set) {
-                                    
-                                    if (flowInSet == flowWithDir.flow) {
-                                        Flow completeFlow = findCompleteFlowInfo(flowInSet);
-                                        Flow displayFlow = (completeFlow != null) ? completeFlow : flowInSet;
-
-                                        String showSrcIp = convertIpStringForDisplay(displayFlow.srcIp);
-                                        String showDstIp = convertIpStringForDisplay(displayFlow.dstIp);
-
-                                        flowItems.add(new FlowTableItem(displayFlow, flowWithDir.direction, showSrcIp, showDstIp));
+                                int flowId = flowWithDir.flow.id();
+                                for (int k = 0; k < l.flow_set.size(); k++) {
+                                    // Row views are built per call, so flows are matched by ID
+                                    if (flowIdAt(l.flow_set, k) == flowId) {
+                                        int row = snapshot.completeRow(flowId);
+                                        if (row >= 0) {
+                                            flowItems.add(row);
+                                            flowDirections.add(flowWithDir.direction);
+                                        }
                                         break;
                                     }
                                 }
@@ -842,92 +879,39 @@ public class InfoDialog {
                 title.setText("No Flows on Selected Link");
             }
         }
-        // Apply manual sorting based on current sort order (especially for Sending Rate)
-        sortFlowItemsIfNeeded(table, flowItems);
-        table.getItems().addAll(flowItems);
-        table.refresh();
+        syncFlowRows(table, snapshot.flows, flowItems, flowDirections);
+    }
+
+    // ID of entry k of a link's flow set, read from the table when the set is a slice of one
+    private static int flowIdAt(List<Flow> flowSet, int k) {
+        return flowSet instanceof LinkFlowIndex.Slice ? ((LinkFlowIndex.Slice) flowSet).id(k) : flowSet.get(k).id();
     }
 
     private void updateAllFlowData(TableView<FlowTableItem> table, Label title) {
-        table.getItems().clear();
-        
-        if (allFlows == null || allFlows.isEmpty()) {
+        FlowTable columns = topologyCanvas.getFlowTable();
+        if (columns.size == 0) {
+            table.getItems().clear();
             title.setText("No Flows Detected on the Network");
             return;
         }
         
-        List<FlowTableItem> allFlowItems = allFlows.stream()
-                .map(flow -> {
-                    
-                    String direction;
-                    if (flow.pathNodes != null && flow.pathNodes.size() >= 2) {
-                        
-                        String firstNodeIp = flow.pathNodes.getFirst();
-                        String lastNodeIp = flow.pathNodes.getLast();
-                        Node firstNode = topologyCanvas.getNodeByIp(firstNodeIp);
-                        Node lastNode = topologyCanvas.getNodeByIp(lastNodeIp);
-                        direction = (firstNode != null ? firstNode.name : firstNodeIp) + " → " + (lastNode != null ? lastNode.name : lastNodeIp);
-                    } else {
-                        
-                        Node srcNode = topologyCanvas.getNodeByIp(flow.srcIp);
-                        Node dstNode = topologyCanvas.getNodeByIp(flow.dstIp);
-                        direction = (srcNode != null ? srcNode.name : flow.srcIp) + " → " + (dstNode != null ? dstNode.name : flow.dstIp);
-                    }
-                return new FlowTableItem(flow, direction, convertIpStringForDisplay(flow.srcIp), convertIpStringForDisplay(flow.dstIp));
-                })
-                .toList();
-        
-        // Apply manual sorting based on current sort order (especially for Sending Rate)
-        sortFlowItemsIfNeeded(table, allFlowItems);
-        table.getItems().addAll(allFlowItems);
-        title.setText("All Flows Detected on the Network (" + allFlowItems.size() + " flows):");
-        
-        
-        table.refresh();
-    }
-
-    /**
-     * Manually sort FlowTableItem list according to the current TableView sort order.
-     * This ensures that even as data updates every second, the rows remain ordered
-     * correctly, especially for the numeric Sending Rate column.
-     */
-    private void sortFlowItemsIfNeeded(TableView<FlowTableItem> table, List<FlowTableItem> items) {
-        if (items == null || items.size() <= 1) {
-            return;
-        }
-        if (table.getSortOrder().isEmpty()) {
-            return;
-        }
-
-        TableColumn<FlowTableItem, ?> sortCol = table.getSortOrder().get(0);
-        TableColumn.SortType sortType = sortCol.getSortType();
-
-        String colText = sortCol.getText();
-        if ("Sending Rate".equals(colText)) {
-            if (sortType == TableColumn.SortType.ASCENDING) {
-                items.sort((a, b) -> Double.compare(a.sendingRate, b.sendingRate));
-            } else if (sortType == TableColumn.SortType.DESCENDING) {
-                items.sort((a, b) -> Double.compare(b.sendingRate, a.sendingRate));
-            }
-        } else if ("Src Port".equals(colText)) {
-            if (sortType == TableColumn.SortType.ASCENDING) {
-                items.sort((a, b) -> Integer.compare(a.srcPort, b.srcPort));
-            } else if (sortType == TableColumn.SortType.DESCENDING) {
-                items.sort((a, b) -> Integer.compare(b.srcPort, a.srcPort));
-            }
-        } else if ("Dst Port".equals(colText)) {
-            if (sortType == TableColumn.SortType.ASCENDING) {
-                items.sort((a, b) -> Integer.compare(a.dstPort, b.dstPort));
-            } else if (sortType == TableColumn.SortType.DESCENDING) {
-                items.sort((a, b) -> Integer.compare(b.dstPort, a.dstPort));
-            }
-        } else if ("Protocol".equals(colText)) {
-            if (sortType == TableColumn.SortType.ASCENDING) {
-                items.sort((a, b) -> Integer.compare(a.protocol, b.protocol));
-            } else if (sortType == TableColumn.SortType.DESCENDING) {
-                items.sort((a, b) -> Integer.compare(b.protocol, a.protocol));
+        // Flows on one path share its direction label, built once
+        Map<Integer, String> directionByPath = new HashMap<>();
+        List<String> directions = new ArrayList<>(columns.size);
+        FlowTable.Cursor flow = columns.cursor();
+        while (flow.next()) {
+            if (flow.pathLength() >= 2) {
+                directions.add(directionByPath.computeIfAbsent(flow.path(), path -> {
+                    List<String> nodes = flow.pathNodes();
+                    return cachedNodeName(nodes.getFirst()) + " → " + cachedNodeName(nodes.getLast());
+                }));
+            } else {
+                directions.add(cachedNodeName(flow.srcIp()) + " → " + cachedNodeName(flow.dstIp()));
             }
         }
+        
+        syncFlowRows(table, columns, null, directions);
+        title.setText("All Flows Detected on the Network (" + table.getItems().size() + " flows):");
     }
 
     // ===== API control helpers =====
@@ -998,8 +982,8 @@ public class InfoDialog {
             int defaultK = 10;
             if (mainApp.getLastFullFlowCount() > 0) {
                 defaultK = mainApp.getLastFullFlowCount();
-            } else if (allFlows != null && !allFlows.isEmpty()) {
-                defaultK = allFlows.size();
+            } else if (topologyCanvas.getFlowTable().size > 0) {
+                defaultK = topologyCanvas.getFlowTable().size;
             }
 
             javafx.scene.control.TextInputDialog inputDialog = new javafx.scene.control.TextInputDialog(String.valueOf(defaultK));
@@ -1097,6 +1081,16 @@ public class InfoDialog {
         
         final String[] selectedDirection = {"forward"}; // "forward", "backward"
 
+        // One blink shared by this dialog's LIVE labels, which are rebuilt on every update
+        SimpleDoubleProperty liveOpacity = new SimpleDoubleProperty(1.0);
+        Timeline liveAnimation = new Timeline(
+            new KeyFrame(Duration.ZERO, e -> liveOpacity.set(1.0)),
+            new KeyFrame(Duration.seconds(0.5), e -> liveOpacity.set(0.3)),
+            new KeyFrame(Duration.seconds(1.0), e -> liveOpacity.set(1.0))
+        );
+        liveAnimation.setCycleCount(Timeline.INDEFINITE);
+        liveAnimation.play();
+
         
         VBox contentArea = new VBox(10);
         contentArea.setPadding(new Insets(10));
@@ -1119,14 +1113,14 @@ public class InfoDialog {
         if (!clickedLinks.isEmpty()) {
             Link firstLink = clickedLinks.get(0);
             
-            List<Link> currentLinks = topologyCanvas.getLinks();
-            Link currentFirstLink = currentLinks.stream()
-                .filter(l -> l.source.equals(firstLink.source) && l.target.equals(firstLink.target))
-                .findFirst()
-                .orElse(firstLink);
+            SnapshotBus.Snapshot snapshot = SnapshotBus.current();
+            Link currentFirstLink = snapshot.link(firstLink.source, firstLink.target);
+            if (currentFirstLink == null) {
+                currentFirstLink = firstLink;
+            }
             
-            Node srcNode = topologyCanvas.getNodeByIp(currentFirstLink.source);
-            Node tgtNode = topologyCanvas.getNodeByIp(currentFirstLink.target);
+            Node srcNode = snapshot.nodeByIp(currentFirstLink.source);
+            Node tgtNode = snapshot.nodeByIp(currentFirstLink.target);
             String srcName = srcNode != null ? srcNode.name : convertIpStringForLinkInfoDisplay(currentFirstLink.source);
             String tgtName = tgtNode != null ? tgtNode.name : convertIpStringForLinkInfoDisplay(currentFirstLink.target);
             forwardButtonText = srcName + " → " + tgtName;
@@ -1152,14 +1146,14 @@ public class InfoDialog {
             selectedDirection[0] = "forward";
             forwardButton.setStyle(selectedButtonStyle);
             backwardButton.setStyle(buttonStyle);
-            updateLinkData(clickedLinks, contentArea, selectedDirection[0]);
+            updateLinkData(clickedLinks, contentArea, selectedDirection[0], liveOpacity);
         });
         
         backwardButton.setOnAction(e -> {
             selectedDirection[0] = "backward";
             forwardButton.setStyle(buttonStyle);
             backwardButton.setStyle(selectedButtonStyle);
-            updateLinkData(clickedLinks, contentArea, selectedDirection[0]);
+            updateLinkData(clickedLinks, contentArea, selectedDirection[0], liveOpacity);
         });
 
         
@@ -1170,17 +1164,15 @@ public class InfoDialog {
         buttonBox.getChildren().addAll(forwardButton, backwardButton, closeButton);
 
         
-        Timeline updateTimer = new Timeline(
-            new KeyFrame(Duration.seconds(1), e -> updateLinkData(clickedLinks, contentArea, selectedDirection[0]))
-        );
-        updateTimer.setCycleCount(Timeline.INDEFINITE);
-        updateTimer.play();
-
-        
-        dialog.setOnCloseRequest(e -> updateTimer.stop());
+        // Redraw when a new snapshot arrives; Close and the window button both end up here
+        Runnable unsubscribe = SnapshotBus.subscribe(snapshot -> updateLinkData(clickedLinks, contentArea, selectedDirection[0], liveOpacity));
+        dialog.addEventHandler(WindowEvent.WINDOW_HIDDEN, e -> {
+            unsubscribe.run();
+            liveAnimation.stop();
+        });
 
         
-        updateLinkData(clickedLinks, contentArea, selectedDirection[0]);
+        updateLinkData(clickedLinks, contentArea, selectedDirection[0], liveOpacity);
 
         root.getChildren().addAll(scrollPane, buttonBox);
         
@@ -1189,25 +1181,22 @@ public class InfoDialog {
         dialog.show();
     }
 
-    private void updateLinkData(List<Link> clickedLinks, VBox contentArea, String direction) {
+    private void updateLinkData(List<Link> clickedLinks, VBox contentArea, String direction, SimpleDoubleProperty liveOpacity) {
         
         contentArea.getChildren().clear();
 
         
-        List<Link> currentLinks = topologyCanvas.getLinks();
+        SnapshotBus.Snapshot snapshot = SnapshotBus.current();
 
         for (Link originalLink : clickedLinks) {
             
-            Link currentLink = currentLinks.stream()
-                .filter(l -> l.source.equals(originalLink.source) && l.target.equals(originalLink.target))
-                .findFirst()
-                .orElse(originalLink); 
+            Link currentLink = snapshot.link(originalLink.source, originalLink.target);
+            if (currentLink == null) {
+                currentLink = originalLink;
+            }
 
             
-            Link reverseLink = currentLinks.stream()
-                .filter(l -> l.source.equals(originalLink.target) && l.target.equals(originalLink.source))
-                .findFirst()
-                .orElse(null);
+            Link reverseLink = snapshot.link(originalLink.target, originalLink.source);
 
             
             Node srcNode, tgtNode;
@@ -1216,14 +1205,14 @@ public class InfoDialog {
             
             if ("backward".equals(direction) && reverseLink != null) {
                 
-                srcNode = topologyCanvas.getNodeByIp(reverseLink.source);
-                tgtNode = topologyCanvas.getNodeByIp(reverseLink.target);
+                srcNode = snapshot.nodeByIp(reverseLink.source);
+                tgtNode = snapshot.nodeByIp(reverseLink.target);
                 linkName = (srcNode != null ? srcNode.name : convertIpStringForLinkInfoDisplay(reverseLink.source)) + " → " + (tgtNode != null ? tgtNode.name : convertIpStringForLinkInfoDisplay(reverseLink.target));
                 displayLink = reverseLink;
             } else {
                 
-                srcNode = topologyCanvas.getNodeByIp(currentLink.source);
-                tgtNode = topologyCanvas.getNodeByIp(currentLink.target);
+                srcNode = snapshot.nodeByIp(currentLink.source);
+                tgtNode = snapshot.nodeByIp(currentLink.target);
                 linkName = (srcNode != null ? srcNode.name : convertIpStringForLinkInfoDisplay(currentLink.source)) + " → " + (tgtNode != null ? tgtNode.name : convertIpStringForLinkInfoDisplay(currentLink.target));
                 displayLink = currentLink;
             }
@@ -1312,15 +1301,7 @@ public class InfoDialog {
             Label liveLabel = new Label("LIVE");
             liveLabel.setFont(Font.font("Arial", FontWeight.BOLD, 12));
             liveLabel.setStyle("-fx-text-fill: #ff4444; -fx-background-color: #ffeeee; -fx-padding: 2 6; -fx-border-color: #ff4444; -fx-border-width: 1; -fx-border-radius: 3;");
-            
-            
-            Timeline liveAnimation = new Timeline(
-                new KeyFrame(Duration.ZERO, e -> liveLabel.setOpacity(1.0)),
-                new KeyFrame(Duration.seconds(0.5), e -> liveLabel.setOpacity(0.3)),
-                new KeyFrame(Duration.seconds(1.0), e -> liveLabel.setOpacity(1.0))
-            );
-            liveAnimation.setCycleCount(Timeline.INDEFINITE);
-            liveAnimation.play();
+            liveLabel.opacityProperty().bind(liveOpacity);
             
             
             double unused = 100.0 - utilization;
@@ -1371,29 +1352,23 @@ public class InfoDialog {
         VBox root = new VBox(10);
         root.setPadding(new Insets(15));
         root.setStyle("-fx-background-color: #f9f9f9;");
-        TableView<Map<String, String>> table = new TableView<>();
+        TableView<Map<String, Object>> table = new TableView<>();
         table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
         
-        List<Map<String, String>> portRows = new ArrayList<>();
-        try (java.io.FileReader reader = new java.io.FileReader("porttable.json")) {
-            com.google.gson.Gson gson = new com.google.gson.Gson();
-            com.google.gson.reflect.TypeToken<List<Map<String, String>>> typeToken =
-                (com.google.gson.reflect.TypeToken<List<Map<String, String>>>) 
-                com.google.gson.reflect.TypeToken.getParameterized(List.class, Map.class);
-            portRows = gson.fromJson(reader, typeToken.getType());
-        } catch (Exception ex) {
-            ex.printStackTrace();
-        }
+        List<Map<String, Object>> portRows = EnrichmentService.portRows();
         
         if (!portRows.isEmpty()) {
             for (String key : portRows.getFirst().keySet()) {
                 if (key.equals("port")) {
                     // Port column should be integer
-                    TableColumn<Map<String, String>, Number> col = new TableColumn<>(key);
+                    TableColumn<Map<String, Object>, Number> col = new TableColumn<>(key);
                     col.setCellValueFactory(data -> {
-                        String value = data.getValue().get(key);
+                        Object value = data.getValue().get(key);
+                        if (value instanceof Number) {
+                            return new SimpleIntegerProperty(((Number) value).intValue());
+                        }
                         try {
-                            return new SimpleIntegerProperty(Integer.parseInt(value));
+                            return new SimpleIntegerProperty(Integer.parseInt(String.valueOf(value)));
                         } catch (NumberFormatException e) {
                             return new SimpleIntegerProperty(0);
                         }
@@ -1402,8 +1377,8 @@ public class InfoDialog {
                     table.getColumns().add(col);
                 } else {
                     // Other columns remain as string
-                    TableColumn<Map<String, String>, String> col = new TableColumn<>(key);
-                    col.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().get(key)));
+                    TableColumn<Map<String, Object>, String> col = new TableColumn<>(key);
+                    col.setCellValueFactory(data -> new SimpleStringProperty(String.valueOf(data.getValue().get(key))));
                     col.setSortable(true);
                     
                     
@@ -1414,7 +1389,7 @@ public class InfoDialog {
                         col.setMaxWidth(200);
                         
                         
-                        col.setCellFactory(tc -> new TableCell<Map<String, String>, String>() {
+                        col.setCellFactory(tc -> new TableCell<Map<String, Object>, String>() {
                             @Override
                             protected void updateItem(String item, boolean empty) {
                                 super.updateItem(item, empty);
@@ -1559,33 +1534,21 @@ public class InfoDialog {
     }
     
     private void updateFlowSetTableData(List<Link> clickedLinks, TableView<FlowTableItem> table) {
-        
-        List<TableColumn<FlowTableItem, ?>> sortOrder = new ArrayList<>(table.getSortOrder());
-        
-        
-        table.getItems().clear();
-        
-        
-        List<FlowTableItem> flowItems = new ArrayList<>();
+        SnapshotBus.Snapshot snapshot = SnapshotBus.current();
+        FlowTable.Rows rows = new FlowTable.Rows();
         for (Link link : clickedLinks) {
             if (link.flow_set != null) {
-                for (Flow flowInSet : link.flow_set) {
-                    Flow completeFlow = findCompleteFlowInfo(flowInSet);
-                    if (completeFlow != null) {
-                        
-                        String convertedSrcIp = convertIpStringForDisplay(completeFlow.srcIp);
-                        String convertedDstIp = convertIpStringForDisplay(completeFlow.dstIp);
-                        flowItems.add(new FlowTableItem(completeFlow, "→", convertedSrcIp, convertedDstIp));
+                for (int k = 0; k < link.flow_set.size(); k++) {
+                    int row = snapshot.completeRow(flowIdAt(link.flow_set, k));
+                    if (row >= 0) {
+                        rows.add(row);
                     }
                 }
             }
         }
         
-        table.getItems().addAll(flowItems);
-        
-        
-        table.getSortOrder().clear();
-        table.getSortOrder().addAll(sortOrder);
+        // Keeps rows, and the current sort order, across updates
+        syncFlowRows(table, snapshot.flows, rows, Collections.nCopies(rows.size(), "→"));
     }
     
     private void createFlowSetInfoContent(List<Link> clickedLinks, VBox root, boolean isPlaybackMode) {
@@ -1627,6 +1590,7 @@ public class InfoDialog {
             fadeTransition.setCycleCount(Animation.INDEFINITE);
             fadeTransition.setAutoReverse(true);
             fadeTransition.play();
+            dialog.addEventHandler(WindowEvent.WINDOW_HIDDEN, e -> fadeTransition.stop());
         }
         
         // Create content area that can be switched
@@ -1652,11 +1616,11 @@ public class InfoDialog {
             @Override
             protected void updateItem(FlowTableItem item, boolean empty) {
                 super.updateItem(item, empty);
-                if (empty || item == null || item.flow == null) {
+                if (empty || item == null) {
                     setGraphic(null);
                 } else {
                     
-                    Color flowColor = topologyCanvas.getColorForFlow(item.flow);
+                    Color flowColor = topologyCanvas.getColorForFlowId(item.id);
                     javafx.scene.shape.Rectangle colorRectangle = new javafx.scene.shape.Rectangle(16, 12, flowColor);
                     colorRectangle.setStroke(Color.BLACK);
                     colorRectangle.setStrokeWidth(1);
@@ -1738,9 +1702,10 @@ public class InfoDialog {
             }
         });
         startTimeCol.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().startTime));
-        endTimeCol.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().endTime));
-        // Numeric value for sorting; custom cell for formatted display
-        sendingRateCol.setCellValueFactory(data -> new SimpleDoubleProperty(data.getValue().sendingRate));
+        endTimeCol.setCellValueFactory(data -> data.getValue().endTime);
+        // Numeric value for sorting; custom cell for formatted display. The row's own property, so
+        // rate changes reach the visible cells without a table refresh.
+        sendingRateCol.setCellValueFactory(data -> data.getValue().sendingRate);
         sendingRateCol.setCellFactory(col -> new TableCell<FlowTableItem, Number>() {
             @Override
             protected void updateItem(Number item, boolean empty) {
@@ -1776,11 +1741,13 @@ public class InfoDialog {
         
         
         Runnable refreshFlowTable = () -> {
-            List<FlowTableItem> flowItems = new ArrayList<>();
+            FlowTable.Rows flowItems = new FlowTable.Rows();
+            List<String> flowDirections = new ArrayList<>();
             
-            System.out.println("[TEMP] Current direction: " + currentDirection[0]);
+            if (Diagnostics.TRACE) Diagnostics.trace("[TEMP] Current direction: " + currentDirection[0]);
             
-            if (allFlows == null || allFlows.isEmpty() || clickedLinks.isEmpty()) {
+            SnapshotBus.Snapshot snapshot = SnapshotBus.current();
+            if (snapshot.flows.isEmpty() || clickedLinks.isEmpty()) {
                 titleLabel.setText("Link Flows information [N/A] (0 flows)");
                 return;
             }
@@ -1793,69 +1760,63 @@ public class InfoDialog {
             
             if (baseLink.sourceIps != null && !baseLink.sourceIps.isEmpty() &&
                 baseLink.targetIps != null && !baseLink.targetIps.isEmpty()) {
-                linkSrcIp = topologyCanvas.convertNodeIdToIp(baseLink.sourceIps.get(0));
-                linkDstIp = topologyCanvas.convertNodeIdToIp(baseLink.targetIps.get(0));
+                linkSrcIp = snapshot.nodeIp(baseLink.sourceIps.get(0));
+                linkDstIp = snapshot.nodeIp(baseLink.targetIps.get(0));
             } else {
                 linkSrcIp = baseLink.source;
                 linkDstIp = baseLink.target;
             }
 
-            Node linkSrcNode = topologyCanvas.getNodeByIp(linkSrcIp);
-            Node linkDstNode = topologyCanvas.getNodeByIp(linkDstIp);
-            String linkSrcName = (linkSrcNode != null ? linkSrcNode.name : linkSrcIp);
-            String linkDstName = (linkDstNode != null ? linkDstNode.name : linkDstIp);
-
-            for (Flow flow : allFlows) {
-                
-                Flow completeFlow = findCompleteFlowInfo(flow);
-                Flow flowToUse = (completeFlow != null) ? completeFlow : flow;
-
-                boolean passesForward  = isFlowInDirection(flowToUse, linkSrcIp, linkDstIp, linkSrcName, linkDstName);
-                boolean passesBackward = isFlowInDirection(flowToUse, linkDstIp, linkSrcIp, linkDstName, linkSrcName);
-
-                
-                if (!passesForward && !passesBackward) {
-                    continue;
+            // Flows crossing the link each way, from the snapshot's shared hop index; merged in flow order
+            int[] forward = snapshot.flowsOnHop(linkSrcIp, linkDstIp);
+            int[] backward = snapshot.flowsOnHop(linkDstIp, linkSrcIp);
+            int f = 0;
+            int b = 0;
+            while (f < forward.length || b < backward.length) {
+                int i;
+                boolean passesForward = false;
+                boolean passesBackward = false;
+                if (b == backward.length || (f < forward.length && forward[f] <= backward[b])) {
+                    i = forward[f++];
+                    passesForward = true;
+                    if (b < backward.length && backward[b] == i) {
+                        b++;
+                        passesBackward = true;
+                    }
+                } else {
+                    i = backward[b++];
+                    passesBackward = true;
                 }
 
-                String displaySrcIp = convertIpStringForDisplay(flowToUse.srcIp);
-                String displayDstIp = convertIpStringForDisplay(flowToUse.dstIp);
+                // The first row with this flow's 5-tuple; the flow's own row when there is one
+                int flowToUse = snapshot.completeRow(snapshot.flows.id[i]);
 
+                String direction = null;
                 switch (currentDirection[0]) {
                     case "forward":
-                        if (passesForward) {
-                            flowItems.add(new FlowTableItem(flowToUse, "Forward", displaySrcIp, displayDstIp));
-                        }
+                        if (passesForward) direction = "Forward";
                         break;
                     case "backward":
-                        if (passesBackward) {
-                            flowItems.add(new FlowTableItem(flowToUse, "Backward", displaySrcIp, displayDstIp));
-                        }
+                        if (passesBackward) direction = "Backward";
                         break;
                     case "both":
-                        
-                        if (passesForward && !passesBackward) {
-                            flowItems.add(new FlowTableItem(flowToUse, "Forward", displaySrcIp, displayDstIp));
-                        } else if (passesBackward && !passesForward) {
-                            flowItems.add(new FlowTableItem(flowToUse, "Backward", displaySrcIp, displayDstIp));
-                        } else if (passesForward && passesBackward) {
-                            
-                            flowItems.add(new FlowTableItem(flowToUse, "Forward", displaySrcIp, displayDstIp));
-                        }
+                        // A flow crossing both ways is listed once, as Forward
+                        direction = passesForward ? "Forward" : "Backward";
                         break;
                     default:
                         break;
                 }
+                if (direction != null) {
+                    flowItems.add(flowToUse);
+                    flowDirections.add(direction);
+                }
             }
 
-            // Replace items and re-apply current TableView sort order
-            table.getItems().setAll(flowItems);
-            if (!table.getSortOrder().isEmpty()) {
-                table.sort();
-            }
+            // Update rows in place; re-sorts only when the order actually changed
+            syncFlowRows(table, snapshot.flows, flowItems, flowDirections);
             
             
-            int flowCount = flowItems.size();
+            int flowCount = table.getItems().size();
             
             
             if (!clickedLinks.isEmpty()) {
@@ -1886,41 +1847,19 @@ public class InfoDialog {
         
         // Function to update all flows table
         Runnable refreshAllFlowsTable = () -> {
-            List<FlowTableItem> flowItems = new ArrayList<>();
-            
-            for (Flow flow : allFlows) {
-                
-                String srcIp = convertIpStringForDisplay(flow.srcIp);
-                String dstIp = convertIpStringForDisplay(flow.dstIp);
-                
-                flowItems.add(new FlowTableItem(
-                    flow, "All Flows", srcIp, dstIp
-                ));
-            }
+            FlowTable flowItems = SnapshotBus.current().flows;
             
-            // Replace items and re-apply current TableView sort order
-            table.getItems().setAll(flowItems);
-            if (!table.getSortOrder().isEmpty()) {
-                table.sort();
-            }
+            // Update rows in place; re-sorts only when the order actually changed
+            syncFlowRows(table, flowItems, null, Collections.nCopies(flowItems.size, "All Flows"));
             
-            int totalFlowCount = flowItems.size();
+            int totalFlowCount = table.getItems().size();
             titleLabel.setText("All Flow Detected on the Network (" + totalFlowCount + " flows)");
         };
         
         // Function to update port table
         Runnable refreshPortTable = () -> {
             portTable.getItems().clear();
-            List<Map<String, Object>> portRows = new ArrayList<>();
-            try (java.io.FileReader reader = new java.io.FileReader("porttable.json")) {
-                com.google.gson.Gson gson = new com.google.gson.Gson();
-                com.google.gson.reflect.TypeToken<List<Map<String, Object>>> typeToken =
-                    (com.google.gson.reflect.TypeToken<List<Map<String, Object>>>) 
-                    com.google.gson.reflect.TypeToken.getParameterized(List.class, Map.class);
-                portRows = gson.fromJson(reader, typeToken.getType());
-            } catch (Exception ex) {
-                ex.printStackTrace();
-            }
+            List<Map<String, Object>> portRows = EnrichmentService.portRows();
             
             // Create columns dynamically
             portTable.getColumns().clear();
@@ -1963,16 +1902,7 @@ public class InfoDialog {
         // Function to update protocol table
         Runnable refreshProtocolTable = () -> {
             protocolTable.getItems().clear();
-            List<Map<String, Object>> protocolRows = new ArrayList<>();
-            try (java.io.FileReader reader = new java.io.FileReader("protocoltable.json")) {
-                com.google.gson.Gson gson = new com.google.gson.Gson();
-                com.google.gson.reflect.TypeToken<List<Map<String, Object>>> typeToken =
-                    (com.google.gson.reflect.TypeToken<List<Map<String, Object>>>) 
-                    com.google.gson.reflect.TypeToken.getParameterized(List.class, Map.class);
-                protocolRows = gson.fromJson(reader, typeToken.getType());
-            } catch (Exception ex) {
-                ex.printStackTrace();
-            }
+            List<Map<String, Object>> protocolRows = EnrichmentService.protocolRows();
             
             // Create columns dynamically
             protocolTable.getColumns().clear();
@@ -2014,8 +1944,8 @@ public class InfoDialog {
         
 
         
-        // Set up real-time updates
-        Timeline timeline = new Timeline(new KeyFrame(Duration.seconds(1), event -> {
+        // Refresh whenever a new snapshot is published, until the window goes away
+        Runnable unsubscribe = SnapshotBus.subscribe(snapshot -> {
             if (contentArea.getChildren().contains(table)) {
                 if (currentMode[0].equals("all_flows")) {
                     refreshAllFlowsTable.run();
@@ -2024,9 +1954,8 @@ public class InfoDialog {
                 }
             }
             // Port table doesn't need real-time updates
-        }));
-        timeline.setCycleCount(Animation.INDEFINITE);
-        timeline.play();
+        });
+        dialog.addEventHandler(WindowEvent.WINDOW_HIDDEN, e -> unsubscribe.run());
         
         // Initial load - show selected link flows by default
         refreshFlowTable.run();
@@ -2123,8 +2052,6 @@ public class InfoDialog {
                 directionButtonBox.setVisible(false);
                 directionButtonBox.setManaged(false);
                 refreshAllFlowsTable.run();
-                // Restart timeline for real-time updates
-                timeline.play();
             } else if (currentMode[0].equals("all_flows")) {
                 // Switch to selected link flows
                 currentMode[0] = "selected_link";
@@ -2133,8 +2060,6 @@ public class InfoDialog {
                 directionButtonBox.setVisible(true);
                 directionButtonBox.setManaged(true);
                 refreshFlowTable.run();
-                // Restart timeline for real-time updates
-                timeline.play();
             }
         });
         
@@ -2170,10 +2095,7 @@ public class InfoDialog {
         closeBtn.setStyle("-fx-background-color: linear-gradient(to bottom, #28a745, #1e7e34); -fx-text-fill: white; -fx-font-weight: bold; -fx-font-size: 12; -fx-font-family: 'Segoe UI', Arial, sans-serif; -fx-padding: 8 16; -fx-background-radius: 6; -fx-border-radius: 6; -fx-effect: dropshadow(gaussian, rgba(0,0,0,0.2), 3, 0, 0, 1);");
         closeBtn.setOnMouseEntered(e -> closeBtn.setStyle("-fx-background-color: linear-gradient(to bottom, #34ce57, #28a745); -fx-text-fill: white; -fx-font-weight: bold; -fx-font-size: 12; -fx-font-family: 'Segoe UI', Arial, sans-serif; -fx-padding: 8 16; -fx-background-radius: 6; -fx-border-radius: 6; -fx-effect: dropshadow(gaussian, rgba(0,0,0,0.3), 4, 0, 0, 2);"));
         closeBtn.setOnMouseExited(e -> closeBtn.setStyle("-fx-background-color: linear-gradient(to bottom, #28a745, #1e7e34); -fx-text-fill: white; -fx-font-weight: bold; -fx-font-size: 12; -fx-font-family: 'Segoe UI', Arial, sans-serif; -fx-padding: 8 16; -fx-background-radius: 6; -fx-border-radius: 6; -fx-effect: dropshadow(gaussian, rgba(0,0,0,0.2), 3, 0, 0, 1);"));
-        closeBtn.setOnAction(e -> {
-            timeline.stop();
-            dialog.close();
-        });
+        closeBtn.setOnAction(e -> dialog.close());
         
         buttonBox.getChildren().addAll(toggleFlowBtn, apiTopKBtn, apiIntervalBtn, portTableBtn, protocolTableBtn, closeBtn);
         
@@ -2216,16 +2138,7 @@ public class InfoDialog {
         portTable.setStyle("-fx-background-color: white; -fx-border-color: #dee2e6; -fx-border-radius: 5;");
         
         // Load port table data
-        List<Map<String, Object>> portRows = new ArrayList<>();
-        try (java.io.FileReader reader = new java.io.FileReader("porttable.json")) {
-            com.google.gson.Gson gson = new com.google.gson.Gson();
-            com.google.gson.reflect.TypeToken<List<Map<String, Object>>> typeToken =
-                (com.google.gson.reflect.TypeToken<List<Map<String, Object>>>) 
-                com.google.gson.reflect.TypeToken.getParameterized(List.class, Map.class);
-            portRows = gson.fromJson(reader, typeToken.getType());
-        } catch (Exception ex) {
-            ex.printStackTrace();
-        }
+        List<Map<String, Object>> portRows = EnrichmentService.portRows();
         
         // Create columns dynamically
         if (!portRows.isEmpty()) {
@@ -2296,16 +2209,7 @@ public class InfoDialog {
         protocolTable.setStyle("-fx-background-color: white; -fx-border-color: #dee2e6; -fx-border-radius: 5;");
         
         // Load protocol table data
-        List<Map<String, Object>> protocolRows = new ArrayList<>();
-        try (java.io.FileReader reader = new java.io.FileReader("protocoltable.json")) {
-            com.google.gson.Gson gson = new com.google.gson.Gson();
-            com.google.gson.reflect.TypeToken<List<Map<String, Object>>> typeToken =
-                (com.google.gson.reflect.TypeToken<List<Map<String, Object>>>) 
-                com.google.gson.reflect.TypeToken.getParameterized(List.class, Map.class);
-            protocolRows = gson.fromJson(reader, typeToken.getType());
-        } catch (Exception ex) {
-            ex.printStackTrace();
-        }
+        List<Map<String, Object>> protocolRows = EnrichmentService.protocolRows();
         
         // Create columns in specific order with custom headers
         if (!protocolRows.isEmpty()) {
@@ -2496,15 +2400,17 @@ public class InfoDialog {
         flowsBox.setPadding(new Insets(5));
         
         if (link.flow_set != null && !link.flow_set.isEmpty()) {
-            for (Flow flowInSet : link.flow_set) {
+            SnapshotBus.Snapshot snapshot = SnapshotBus.current();
+            FlowTable.Cursor completeFlow = snapshot.flows.cursor();
+            for (int k = 0; k < link.flow_set.size(); k++) {
                 
-                Flow completeFlow = findCompleteFlowInfo(flowInSet);
-                Flow flowForColor = completeFlow != null ? completeFlow : flowInSet;
+                int flowId = flowIdAt(link.flow_set, k);
+                int completeRow = snapshot.completeRow(flowId);
                 
                 
                 
                 
-                javafx.scene.paint.Color flowColor = topologyCanvas.getColorForFlow(flowForColor);
+                javafx.scene.paint.Color flowColor = topologyCanvas.getColorForFlowId(flowId);
                 
                 // Create colored rectangle
                 javafx.scene.shape.Rectangle colorRect = new javafx.scene.shape.Rectangle(12, 12);
@@ -2515,9 +2421,21 @@ public class InfoDialog {
                 colorRect.setArcHeight(2);
                 
                 // Add tooltip with flow info (use complete flow if available)
-                Flow flowForTooltip = completeFlow != null ? completeFlow : flowInSet;
-                String tooltipText = String.format("%s:%d → %s:%d", 
-                    flowForTooltip.srcIp, flowForTooltip.srcPort, flowForTooltip.dstIp, flowForTooltip.dstPort);
+                String tooltipText;
+                int dstPort;
+                if (completeRow >= 0) {
+                    completeFlow.moveTo(completeRow);
+                    tooltipText = String.format("%s:%d → %s:%d",
+                        completeFlow.srcIp(), completeFlow.srcPort(), completeFlow.dstIp(), completeFlow.dstPort());
+                    dstPort = completeFlow.dstPort();
+                } else {
+                    Flow flowInSet = link.flow_set.get(k);
+                    tooltipText = String.format("%s:%d → %s:%d",
+                        flowInSet.srcIp, flowInSet.srcPort, flowInSet.dstIp, flowInSet.dstPort);
+                    dstPort = flowInSet.dstPort;
+                }
+                String service = EnrichmentService.portService(dstPort);
+                if (service != null) tooltipText += " (" + service + ")";
                 Tooltip.install(colorRect, new Tooltip(tooltipText));
                 
                 flowsBox.getChildren().add(colorRect);
@@ -2587,46 +2505,6 @@ public class InfoDialog {
 
 
 
-    private boolean isFlowInDirection(Flow flow, String linkSrcIp, String linkDstIp, String linkSrcName, String linkDstName) {
-        if (flow == null || flow.pathNodes == null || flow.pathNodes.isEmpty()) {
-            System.out.println("[TEMP] Flow has no path nodes");
-            return false;
-        }
-        
-        System.out.println("[TEMP] Checking if flow passes through: " + linkSrcName + "(" + linkSrcIp + ") -> " + linkDstName + "(" + linkDstIp + ")");
-        System.out.println("[TEMP] Flow path has " + flow.pathNodes.size() + " nodes");
-        
-        
-        for (int i = 0; i < flow.pathNodes.size() - 1; i++) {
-            String pathNodeId1 = flow.pathNodes.get(i);
-            String pathNodeId2 = flow.pathNodes.get(i + 1);
-            
-            
-            String pathNodeIp1 = topologyCanvas.convertNodeIdToIp(pathNodeId1);
-            String pathNodeIp2 = topologyCanvas.convertNodeIdToIp(pathNodeId2);
-            
-            
-            Node pathNode1Obj = topologyCanvas.getNodeByIp(pathNodeIp1);
-            Node pathNode2Obj = topologyCanvas.getNodeByIp(pathNodeIp2);
-            
-            String pathNode1Name = (pathNode1Obj != null) ? pathNode1Obj.name : pathNodeIp1;
-            String pathNode2Name = (pathNode2Obj != null) ? pathNode2Obj.name : pathNodeIp2;
-            
-            System.out.println("[TEMP] Path segment [" + i + "]: " + pathNodeId1 + " (" + pathNode1Name + "/" + pathNodeIp1 + ") -> " + 
-                             pathNodeId2 + " (" + pathNode2Name + "/" + pathNodeIp2 + ")");
-            
-            
-            boolean match1 = pathNodeIp1.equals(linkSrcIp) || pathNode1Name.equals(linkSrcName);
-            boolean match2 = pathNodeIp2.equals(linkDstIp) || pathNode2Name.equals(linkDstName);
-            
-            if (match1 && match2) {
-                System.out.println("[TEMP] MATCH FOUND! " + pathNode1Name + " matches " + linkSrcName + ", " + pathNode2Name + " matches " + linkDstName);
-                return true;
-            }
-        }
-        
-        System.out.println("[TEMP] No match found in flow path");
-        return false;
-    }
+
 
 } 
\ No newline at end of file
@@ -17,6 +17,7 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
 /**
  * Preprocessor to convert large single-JSON files to NDJSON format for efficient playback.
@@ -40,61 +41,96 @@ public class JsonPreprocessor {
         }
     }
     
+    /** Files larger than this are converted to NDJSON before indexing rather than indexed as one entry. */
+    public static final long PREPROCESS_THRESHOLD_BYTES = 100L * 1024 * 1024;
+
+    /** Where {@link #preprocessFlowHistory} / {@link #preprocessTopologyHistory} put {@code inputFile}'s NDJSON. */
+    public static File preprocessedFileFor(File inputFile) {
+        return new File(new File(inputFile.getParentFile(), "preprocessed"),
+                        inputFile.getName().replaceAll("\\.(json|JSON)$", ".ndjson"));
+    }
+
+    /**
+     * The NDJSON an earlier run (the GUI or CapturePreparer) produced from {@code inputFile}, when it
+     * is at least as new as the input and has a current ".idx" sidecar; otherwise null.
+     */
+    public static File findPreprocessed(File inputFile) {
+        File ndjson = preprocessedFileFor(inputFile);
+        if (!ndjson.isFile() || ndjson.lastModified() < inputFile.lastModified()) {
+            return null;
+        }
+        File idx = NdjsonIndexUtil.indexFileFor(ndjson);
+        return idx.isFile() && idx.lastModified() >= ndjson.lastModified() ? ndjson : null;
+    }
+
     /**
      * Convert a large flow history JSON file to NDJSON format.
-     * Input format: {"timestamp": "1758198998998", "flow_info": [...]}
+     * Input format: {"timestamp": "1758198998998", "flow_info": [...]}, either once or as a
+     * sequence of such snapshots (one per line in the controller's history files)
      * Output format: One line per flow entry with timestamp
      */
     public static PreprocessResult preprocessFlowHistory(File inputFile, File outputDir) throws Exception {
         File outputFile = new File(outputDir, inputFile.getName().replaceAll("\\.(json|JSON)$", ".ndjson"));
+        File tmpFile = NdjsonIndexUtil.tempFileFor(outputFile);
         
         AtomicLong totalEntries = new AtomicLong(0);
         AtomicLong startTime = new AtomicLong(Long.MAX_VALUE);
         AtomicLong endTime = new AtomicLong(Long.MIN_VALUE);
         
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(inputFile), StandardCharsets.UTF_8));
-             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFile), StandardCharsets.UTF_8))) {
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmpFile), StandardCharsets.UTF_8))) {
             
             Gson gson = new Gson();
             JsonReader jsonReader = new JsonReader(reader);
             jsonReader.setLenient(true);
             
-            JsonObject root = gson.fromJson(jsonReader, JsonObject.class);
-            if (root == null) {
-                throw new IllegalArgumentException("Invalid JSON file: " + inputFile.getName());
-            }
-            
-            // Extract timestamp
-            long timestamp = extractTimestamp(root);
-            if (timestamp == 0) {
-                System.err.println("[PREPROCESS] No valid timestamp found in flow file. Available fields: " + root.keySet());
-                throw new IllegalArgumentException("No valid timestamp found in flow history file");
-            }
-            
-            System.out.println("[PREPROCESS] Flow timestamp: " + timestamp + " (" + new java.util.Date(timestamp) + ")");
-            
-            // Process flow_info array
-            JsonArray flowInfoArray = root.getAsJsonArray("flow_info");
-            if (flowInfoArray != null) {
-                for (JsonElement element : flowInfoArray) {
-                    if (element.isJsonObject()) {
-                        JsonObject flowObj = element.getAsJsonObject();
-                        
-                        // Create NDJSON entry
-                        JsonObject ndjsonEntry = new JsonObject();
-                        ndjsonEntry.addProperty("t", timestamp);
-                        ndjsonEntry.add("flow_info", flowObj);
-                        
-                        writer.write(gson.toJson(ndjsonEntry));
-                        writer.newLine();
-                        
-                        totalEntries.incrementAndGet();
-                        startTime.set(Math.min(startTime.get(), timestamp));
-                        endTime.set(Math.max(endTime.get(), timestamp));
+            int snapshots = 0;
+            while (jsonReader.peek() != JsonToken.END_DOCUMENT) {
+                JsonObject root = gson.fromJson(jsonReader, JsonObject.class);
+                if (root == null) {
+                    if (snapshots == 0) throw new IllegalArgumentException("Invalid JSON file: " + inputFile.getName());
+                    break;
+                }
+                
+                // Extract timestamp
+                long timestamp = extractTimestamp(root);
+                if (timestamp == 0) {
+                    if (snapshots > 0) continue; // skip a stray snapshot, keep the rest of the history
+                    System.err.println("[PREPROCESS] No valid timestamp found in flow file. Available fields: " + root.keySet());
+                    throw new IllegalArgumentException("No valid timestamp found in flow history file");
+                }
+                if (snapshots == 0) {
+                    System.out.println("[PREPROCESS] Flow timestamp: " + timestamp + " (" + new java.util.Date(timestamp) + ")");
+                }
+                snapshots++;
+                
+                // Process flow_info array
+                JsonArray flowInfoArray = root.getAsJsonArray("flow_info");
+                if (flowInfoArray != null) {
+                    for (JsonElement element : flowInfoArray) {
+                        if (element.isJsonObject()) {
+                            JsonObject flowObj = element.getAsJsonObject();
+                            
+                            // Create NDJSON entry
+                            JsonObject ndjsonEntry = new JsonObject();
+                            ndjsonEntry.addProperty("t", timestamp);
+                            ndjsonEntry.add("flow_info", flowObj);
+                            
+                            writer.write(gson.toJson(ndjsonEntry));
+                            writer.newLine();
+                            
+                            totalEntries.incrementAndGet();
+                            startTime.set(Math.min(startTime.get(), timestamp));
+                            endTime.set(Math.max(endTime.get(), timestamp));
+                        }
                     }
                 }
             }
+        } catch (Exception e) {
+            tmpFile.delete();
+            throw e;
         }
+        NdjsonIndexUtil.replaceAtomically(tmpFile, outputFile);
         
         long timeRange = endTime.get() - startTime.get();
         return new PreprocessResult(outputFile, (int)totalEntries.get(), timeRange, startTime.get(), endTime.get());
@@ -107,6 +143,7 @@ public class JsonPreprocessor {
      */
     public static PreprocessResult preprocessTopologyHistory(File inputFile, File outputDir) throws Exception {
         File outputFile = new File(outputDir, inputFile.getName().replaceAll("\\.(json|JSON)$", ".ndjson"));
+        File tmpFile = NdjsonIndexUtil.tempFileFor(outputFile);
         
         AtomicLong totalEntries = new AtomicLong(0);
         AtomicLong startTime = new AtomicLong(Long.MAX_VALUE);
@@ -132,133 +169,143 @@ public class JsonPreprocessor {
             return null;
         };
 
-        // First, try to detect NDJSON (one JSON object per line). If we can parse
-        // more than one valid object with timestamp, treat as NDJSON and normalize.
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(inputFile), StandardCharsets.UTF_8));
-             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFile), StandardCharsets.UTF_8))) {
+        // Until it has been moved into place, nothing is left of the temp file on the way out
+        try {
+            // First, try to detect NDJSON (one JSON object per line). If we can parse
+            // more than one valid object with timestamp, treat as NDJSON and normalize.
+            boolean wasNdjson;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(inputFile), StandardCharsets.UTF_8));
+                 BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmpFile), StandardCharsets.UTF_8))) {
 
-            Gson gson = new Gson();
-            String line;
-            int ndjsonCount = 0;
-            while ((line = reader.readLine()) != null) {
-                String trimmed = line.trim();
-                if (trimmed.isEmpty()) continue;
-                try {
-                    JsonObject obj = gson.fromJson(trimmed, JsonObject.class);
-                    if (obj == null) continue;
-                    long ts = extractTimestamp(obj);
-                    JsonObject graphObj = findGraphObj.apply(obj);
-                    if (ts != 0 && graphObj != null) {
-                        JsonObject nd = new JsonObject();
-                        nd.addProperty("t", ts);
-                        nd.addProperty("type", "topology");
-                        if (graphObj.has("nodes")) nd.add("nodes", graphObj.get("nodes"));
-                        if (graphObj.has("edges")) nd.add("edges", graphObj.get("edges"));
-                        writer.write(gson.toJson(nd));
-                        writer.newLine();
-                        ndjsonCount++;
-                        totalEntries.incrementAndGet();
-                        startTime.set(Math.min(startTime.get(), ts));
-                        endTime.set(Math.max(endTime.get(), ts));
+                Gson gson = new Gson();
+                String line;
+                int ndjsonCount = 0;
+                while ((line = reader.readLine()) != null) {
+                    String trimmed = line.trim();
+                    if (trimmed.isEmpty()) continue;
+                    try {
+                        JsonObject obj = gson.fromJson(trimmed, JsonObject.class);
+                        if (obj == null) continue;
+                        long ts = extractTimestamp(obj);
+                        JsonObject graphObj = findGraphObj.apply(obj);
+                        if (ts != 0 && graphObj != null) {
+                            JsonObject nd = new JsonObject();
+                            nd.addProperty("t", ts);
+                            nd.addProperty("type", "topology");
+                            if (graphObj.has("nodes")) nd.add("nodes", graphObj.get("nodes"));
+                            if (graphObj.has("edges")) nd.add("edges", graphObj.get("edges"));
+                            writer.write(gson.toJson(nd));
+                            writer.newLine();
+                            ndjsonCount++;
+                            totalEntries.incrementAndGet();
+                            startTime.set(Math.min(startTime.get(), ts));
+                            endTime.set(Math.max(endTime.get(), ts));
+                        }
+                    } catch (Exception ignored) {
+                        // Not a single-object JSON line; fall through to structured parse later
                     }
-                } catch (Exception ignored) {
-                    // Not a single-object JSON line; fall through to structured parse later
                 }
-            }
 
-            if (ndjsonCount > 1) {
+                wasNdjson = ndjsonCount > 1;
+            }
+            if (wasNdjson) {
+                NdjsonIndexUtil.replaceAtomically(tmpFile, outputFile);
                 long timeRange = endTime.get() - startTime.get();
                 return new PreprocessResult(outputFile, (int)totalEntries.get(), timeRange, startTime.get(), endTime.get());
             }
-        }
 
-        // If not NDJSON with multiple lines, fallback to structured single-root parsing
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(inputFile), StandardCharsets.UTF_8));
-             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFile), StandardCharsets.UTF_8))) {
+            // If not NDJSON with multiple lines, fallback to structured single-root parsing
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(inputFile), StandardCharsets.UTF_8));
+                 BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmpFile), StandardCharsets.UTF_8))) {
             
-            Gson gson = new Gson();
-            JsonReader jsonReader = new JsonReader(reader);
-            jsonReader.setLenient(true);
+                Gson gson = new Gson();
+                JsonReader jsonReader = new JsonReader(reader);
+                jsonReader.setLenient(true);
             
-            JsonObject root = gson.fromJson(jsonReader, JsonObject.class);
-            if (root == null) {
-                throw new IllegalArgumentException("Invalid JSON file: " + inputFile.getName());
-            }
+                JsonObject root = gson.fromJson(jsonReader, JsonObject.class);
+                if (root == null) {
+                    throw new IllegalArgumentException("Invalid JSON file: " + inputFile.getName());
+                }
             
-            // Strategy:
-            // 1) Try to detect arrays of snapshots anywhere under root and write one NDJSON line per snapshot
-            // 2) If no snapshot array detected, fallback to treating the whole file as a single snapshot
+                // Strategy:
+                // 1) Try to detect arrays of snapshots anywhere under root and write one NDJSON line per snapshot
+                // 2) If no snapshot array detected, fallback to treating the whole file as a single snapshot
             
-            // Try common array keys, else scan all arrays under root
-            java.util.List<JsonArray> candidateArrays = new java.util.ArrayList<>();
-            String[] possibleKeys = new String[] {"history", "histories", "snapshots", "topologies", "topology_history", "graphs", "data", "records"};
-            for (String k : possibleKeys) {
-                if (root.has(k) && root.get(k).isJsonArray()) {
-                    candidateArrays.add(root.getAsJsonArray(k));
+                // Try common array keys, else scan all arrays under root
+                java.util.List<JsonArray> candidateArrays = new java.util.ArrayList<>();
+                String[] possibleKeys = new String[] {"history", "histories", "snapshots", "topologies", "topology_history", "graphs", "data", "records"};
+                for (String k : possibleKeys) {
+                    if (root.has(k) && root.get(k).isJsonArray()) {
+                        candidateArrays.add(root.getAsJsonArray(k));
+                    }
                 }
-            }
-            // Fallback: collect any arrays directly under root
-            for (java.util.Map.Entry<String, JsonElement> e : root.entrySet()) {
-                if (e.getValue().isJsonArray() && !candidateArrays.contains(e.getValue().getAsJsonArray())) {
-                    candidateArrays.add(e.getValue().getAsJsonArray());
+                // Fallback: collect any arrays directly under root
+                for (java.util.Map.Entry<String, JsonElement> e : root.entrySet()) {
+                    if (e.getValue().isJsonArray() && !candidateArrays.contains(e.getValue().getAsJsonArray())) {
+                        candidateArrays.add(e.getValue().getAsJsonArray());
+                    }
                 }
-            }
             
-            int written = 0;
-            for (JsonArray arr : candidateArrays) {
-                for (JsonElement el : arr) {
-                    if (!el.isJsonObject()) continue;
-                    JsonObject obj = el.getAsJsonObject();
-                    long ts = extractTimestamp(obj);
-                    if (ts == 0 && obj.has("graph") && obj.get("graph").isJsonObject()) {
-                        ts = extractTimestamp(obj.getAsJsonObject("graph"));
-                    }
-                    JsonObject graphObj = findGraphObj.apply(obj);
-                    if (ts != 0 && graphObj != null) {
-                        JsonObject nd = new JsonObject();
-                        nd.addProperty("t", ts);
-                        nd.addProperty("type", "topology");
-                        if (graphObj.has("nodes")) nd.add("nodes", graphObj.get("nodes"));
-                        if (graphObj.has("edges")) nd.add("edges", graphObj.get("edges"));
-                        writer.write(gson.toJson(nd));
-                        writer.newLine();
-                        totalEntries.incrementAndGet();
-                        startTime.set(Math.min(startTime.get(), ts));
-                        endTime.set(Math.max(endTime.get(), ts));
-                        written++;
+                int written = 0;
+                for (JsonArray arr : candidateArrays) {
+                    for (JsonElement el : arr) {
+                        if (!el.isJsonObject()) continue;
+                        JsonObject obj = el.getAsJsonObject();
+                        long ts = extractTimestamp(obj);
+                        if (ts == 0 && obj.has("graph") && obj.get("graph").isJsonObject()) {
+                            ts = extractTimestamp(obj.getAsJsonObject("graph"));
+                        }
+                        JsonObject graphObj = findGraphObj.apply(obj);
+                        if (ts != 0 && graphObj != null) {
+                            JsonObject nd = new JsonObject();
+                            nd.addProperty("t", ts);
+                            nd.addProperty("type", "topology");
+                            if (graphObj.has("nodes")) nd.add("nodes", graphObj.get("nodes"));
+                            if (graphObj.has("edges")) nd.add("edges", graphObj.get("edges"));
+                            writer.write(gson.toJson(nd));
+                            writer.newLine();
+                            totalEntries.incrementAndGet();
+                            startTime.set(Math.min(startTime.get(), ts));
+                            endTime.set(Math.max(endTime.get(), ts));
+                            written++;
+                        }
                     }
                 }
-            }
             
-            // If nothing was written, fallback to single-snapshot behavior
-            if (written == 0) {
-                long timestamp = extractTimestamp(root);
-                if (timestamp == 0) {
-                    System.err.println("[PREPROCESS] No valid timestamp found in topology file. Available fields: " + root.keySet());
-                    throw new IllegalArgumentException("No valid timestamp found in topology history file");
-                }
-                System.out.println("[PREPROCESS] Topology timestamp: " + timestamp + " (" + new java.util.Date(timestamp) + ")");
-                JsonObject graphObj = findGraphObj.apply(root);
-                JsonObject ndjsonEntry = new JsonObject();
-                ndjsonEntry.addProperty("t", timestamp);
-                ndjsonEntry.addProperty("type", "topology");
-                if (graphObj != null) {
-                    if (graphObj.has("nodes")) ndjsonEntry.add("nodes", graphObj.get("nodes"));
-                    if (graphObj.has("edges")) ndjsonEntry.add("edges", graphObj.get("edges"));
-                } else {
-                    if (root.has("nodes")) ndjsonEntry.add("nodes", root.get("nodes"));
-                    if (root.has("edges")) ndjsonEntry.add("edges", root.get("edges"));
+                // If nothing was written, fallback to single-snapshot behavior
+                if (written == 0) {
+                    long timestamp = extractTimestamp(root);
+                    if (timestamp == 0) {
+                        System.err.println("[PREPROCESS] No valid timestamp found in topology file. Available fields: " + root.keySet());
+                        throw new IllegalArgumentException("No valid timestamp found in topology history file");
+                    }
+                    System.out.println("[PREPROCESS] Topology timestamp: " + timestamp + " (" + new java.util.Date(timestamp) + ")");
+                    JsonObject graphObj = findGraphObj.apply(root);
+                    JsonObject ndjsonEntry = new JsonObject();
+                    ndjsonEntry.addProperty("t", timestamp);
+                    ndjsonEntry.addProperty("type", "topology");
+                    if (graphObj != null) {
+                        if (graphObj.has("nodes")) ndjsonEntry.add("nodes", graphObj.get("nodes"));
+                        if (graphObj.has("edges")) ndjsonEntry.add("edges", graphObj.get("edges"));
+                    } else {
+                        if (root.has("nodes")) ndjsonEntry.add("nodes", root.get("nodes"));
+                        if (root.has("edges")) ndjsonEntry.add("edges", root.get("edges"));
+                    }
+                    writer.write(gson.toJson(ndjsonEntry));
+                    writer.newLine();
+                    totalEntries.incrementAndGet();
+                    startTime.set(Math.min(startTime.get(), timestamp));
+                    endTime.set(Math.max(endTime.get(), timestamp));
                 }
-                writer.write(gson.toJson(ndjsonEntry));
-                writer.newLine();
-                totalEntries.incrementAndGet();
-                startTime.set(Math.min(startTime.get(), timestamp));
-                endTime.set(Math.max(endTime.get(), timestamp));
             }
-        }
         
-        long timeRange = endTime.get() - startTime.get();
-        return new PreprocessResult(outputFile, (int)totalEntries.get(), timeRange, startTime.get(), endTime.get());
+            NdjsonIndexUtil.replaceAtomically(tmpFile, outputFile);
+        
+            long timeRange = endTime.get() - startTime.get();
+            return new PreprocessResult(outputFile, (int)totalEntries.get(), timeRange, startTime.get(), endTime.get());
+        } finally {
+            tmpFile.delete();
+        }
     }
     
     /**
@@ -0,0 +1,268 @@
+package org.example.demo2;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Which flows cross which link, as compressed sparse rows: the flows on link {@code l} are rows
+ * {@code rows[offsets[l]]} up to {@code rows[offsets[l + 1] - 1]} of the {@link FlowTable}, in flow order.
+ *
+ * Built from the flows' paths in two passes: the first resolves every path segment to a link and
+ * counts flows per link, the second turns the counts into offsets and fills the rows. Segments of
+ * {@link FlowPaths} paths are resolved once per {@link FlowPaths.Hop}, not once per flow. Both passes
+ * run on chunks of flows in parallel once there are {@code -Dndt.links.parallel.flows} flows
+ * (default 20000); each chunk fills its own range of every link, so the result is the same either
+ * way. Each link's {@link Link#flow_set} then becomes a read-only view of its slice, so the
+ * consumers of flow_set keep working while an update costs two int arrays instead of an
+ * {@code add} per flow and segment. Each row also records which way the flow crosses the link.
+ * Readers that go through many flows take the table rows from the {@link Slice} and read them with a
+ * cursor; {@code get} builds a {@link Flow} row view.
+ *
+ * Immutable once built: a view handed to the render thread can't change under it.
+ */
+final class LinkFlowIndex {
+
+    private static final int PARALLEL_FLOWS = Integer.getInteger("ndt.links.parallel.flows", 20000);
+    private static final int CHUNK_FLOWS = 4096;
+
+    final FlowTable flows;
+    final List<Link> links;
+    final int[] offsets;
+    final int[] rows;
+    /** Per row: the flow runs target -> source on the link. */
+    final boolean[] reversed;
+    /** Path segments with no link between their nodes. */
+    final int segmentsMissed;
+
+    private LinkFlowIndex(FlowTable flows, List<Link> links, int[] offsets, int[] rows, boolean[] reversed,
+                          int segmentsMissed) {
+        this.flows = flows;
+        this.links = links;
+        this.offsets = offsets;
+        this.rows = rows;
+        this.reversed = reversed;
+        this.segmentsMissed = segmentsMissed;
+    }
+
+    /**
+     * Index {@code flows} by the links along their paths and point every link's flow_set at its
+     * slice. A segment A,B matches the link A->B; with {@code eitherDirection} also B->A.
+     * {@code nodeToIp} maps path node IDs to link endpoints, or is null if they already are.
+     */
+    static LinkFlowIndex assign(List<Flow> flows, List<Link> links, boolean eitherDirection, UnaryOperator<String> nodeToIp) {
+        return assign(flows, links, null, eitherDirection, nodeToIp);
+    }
+
+    /**
+     * {@link #assign(List, List, boolean, UnaryOperator)} along the paths {@code pathOf} gives for each
+     * row, or the flows' own paths if it is null.
+     */
+    static LinkFlowIndex assign(List<Flow> flowList, List<Link> links, Function<FlowTable.Cursor, List<String>> pathOf,
+                                boolean eitherDirection, UnaryOperator<String> nodeToIp) {
+        FlowTable flows = FlowTable.of(flowList);
+        Function<FlowTable.Cursor, List<String>> pathOfRow = pathOf != null ? pathOf : FlowTable.Cursor::pathNodes;
+        Map<String, Map<String, Integer>> linkByEnds = new HashMap<>();
+        for (int l = 0; l < links.size(); l++) {
+            Link link = links.get(l);
+            linkByEnds.computeIfAbsent(link.source, k -> new HashMap<>()).putIfAbsent(link.target, l);
+        }
+
+        // Where each flow's segments start in segmentLinks
+        int flowCount = flows.size;
+        int[] segmentStart = new int[flowCount + 1];
+        FlowTable.Cursor row = flows.cursor();
+        while (row.next()) {
+            int f = row.row();
+            int length = pathOf == null ? row.pathLength() : sizeOf(pathOf.apply(row));
+            segmentStart[f + 1] = segmentStart[f] + Math.max(0, length - 1);
+        }
+        // Per segment: 1 = no link, else 2 + (link << 1 | reversed)
+        int[] segmentLinks = new int[segmentStart[flowCount]];
+        // The same per hop of the table's paths, 0 until first needed
+        int[] hopLinks = pathOf == null && nodeToIp == null ? new int[flows.paths.hopCount()] : null;
+
+        // Pass 1: resolve segments, count per chunk and link
+        int chunks = Math.max(1, (flowCount + CHUNK_FLOWS - 1) / CHUNK_FLOWS);
+        int[][] chunkCounts = new int[chunks][];
+        int[] missed = new int[chunks];
+        IntStream pass1 = IntStream.range(0, chunks);
+        (flowCount >= PARALLEL_FLOWS ? pass1.parallel() : pass1).forEach(c -> {
+            int[] counts = new int[links.size()];
+            FlowTable.Cursor flow = flows.cursor();
+            int end = Math.min(flowCount, (c + 1) * CHUNK_FLOWS);
+            for (int f = c * CHUNK_FLOWS; f < end; f++) {
+                flow.moveTo(f);
+                List<String> path = pathOfRow.apply(flow);
+                FlowPaths.Hop[] hops = hopLinks != null ? flows.paths.hops(flow.path()) : null;
+                int segment = segmentStart[f];
+                for (int i = 0; i < segmentStart[f + 1] - segmentStart[f]; i++, segment++) {
+                    int resolved;
+                    if (hops != null && hops[i].id < hopLinks.length) {
+                        // Racing chunks can only both store the same value
+                        FlowPaths.Hop hop = hops[i];
+                        resolved = hopLinks[hop.id];
+                        if (resolved == 0) {
+                            resolved = resolve(linkByEnds, hop.from, hop.to, eitherDirection);
+                            hopLinks[hop.id] = resolved;
+                        }
+                    } else {
+                        String a = path.get(i);
+                        String b = path.get(i + 1);
+                        if (nodeToIp != null) {
+                            a = nodeToIp.apply(a);
+                            b = nodeToIp.apply(b);
+                        }
+                        resolved = resolve(linkByEnds, a, b, eitherDirection);
+                    }
+                    segmentLinks[segment] = resolved;
+                    if (resolved > 1) {
+                        counts[(resolved - 2) >> 1]++;
+                    } else {
+                        if (Diagnostics.TRACE && Diagnostics.sampled(missed[c])) {
+                            Diagnostics.trace("[LINK-FLOWS] ✗ No link found for path segment: " + path.get(i) + " -> " + path.get(i + 1));
+                        }
+                        missed[c]++;
+                    }
+                }
+            }
+            chunkCounts[c] = counts;
+        });
+
+        // Offsets per link, then each chunk's starting position within every link
+        int[] offsets = new int[links.size() + 1];
+        for (int[] counts : chunkCounts) {
+            for (int l = 0; l < counts.length; l++) offsets[l + 1] += counts[l];
+        }
+        for (int l = 0; l < links.size(); l++) offsets[l + 1] += offsets[l];
+        int[] position = Arrays.copyOf(offsets, links.size());
+        for (int[] counts : chunkCounts) {
+            for (int l = 0; l < counts.length; l++) {
+                int count = counts[l];
+                counts[l] = position[l];
+                position[l] += count;
+            }
+        }
+
+        // Pass 2: fill
+        int[] rows = new int[offsets[links.size()]];
+        boolean[] reversed = new boolean[rows.length];
+        IntStream pass2 = IntStream.range(0, chunks);
+        (flowCount >= PARALLEL_FLOWS ? pass2.parallel() : pass2).forEach(c -> {
+            int[] next = chunkCounts[c];
+            int end = Math.min(flowCount, (c + 1) * CHUNK_FLOWS);
+            for (int f = c * CHUNK_FLOWS; f < end; f++) {
+                for (int segment = segmentStart[f]; segment < segmentStart[f + 1]; segment++) {
+                    int resolved = segmentLinks[segment];
+                    if (resolved > 1) {
+                        int at = next[(resolved - 2) >> 1]++;
+                        rows[at] = f;
+                        reversed[at] = ((resolved - 2) & 1) != 0;
+                    }
+                }
+            }
+        });
+
+        LinkFlowIndex index = new LinkFlowIndex(flows, links, offsets, rows, reversed, Arrays.stream(missed).sum());
+        for (int l = 0; l < links.size(); l++) {
+            links.get(l).flow_set = index.flowsOn(l);
+        }
+        return index;
+    }
+
+    private static int sizeOf(List<String> path) {
+        return path == null ? 0 : path.size();
+    }
+
+    // Encoded as in segmentLinks
+    private static int resolve(Map<String, Map<String, Integer>> linkByEnds, String a, String b, boolean eitherDirection) {
+        int l = find(linkByEnds, a, b);
+        if (l >= 0) return 2 + (l << 1);
+        if (eitherDirection) {
+            l = find(linkByEnds, b, a);
+            if (l >= 0) return 2 + (l << 1 | 1);
+        }
+        return 1;
+    }
+
+    private static int find(Map<String, Map<String, Integer>> linkByEnds, String source, String target) {
+        Map<String, Integer> targets = linkByEnds.get(source);
+        Integer l = targets == null ? null : targets.get(target);
+        return l == null ? -1 : l;
+    }
+
+    /** Number of flows on link {@code l}. */
+    int count(int l) {
+        return offsets[l + 1] - offsets[l];
+    }
+
+    /** Number of links with at least one flow. */
+    int linksWithFlows() {
+        int n = 0;
+        for (int l = 0; l < links.size(); l++) {
+            if (offsets[l + 1] > offsets[l]) n++;
+        }
+        return n;
+    }
+
+    /** Total (flow, link) pairs. */
+    int size() {
+        return rows.length;
+    }
+
+    /** Read-only view of the flows on link {@code l}; see {@link Slice}. */
+    List<Flow> flowsOn(int l) {
+        return offsets[l + 1] == offsets[l] ? List.of() : new Slice(offsets[l], offsets[l + 1]);
+    }
+
+    /**
+     * The flows on one link; see {@link #flowsOn}. {@link #row} gives the table row of each,
+     * {@code get} a new row view.
+     */
+    final class Slice extends AbstractList<Flow> implements RandomAccess {
+        private final int from;
+        private final int to;
+
+        Slice(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Flow get(int index) {
+            if (index < 0 || index >= to - from) throw new IndexOutOfBoundsException(index);
+            return flows.get(rows[from + index]);
+        }
+
+        /** The table the rows are in. */
+        FlowTable table() {
+            return flows;
+        }
+
+        /** Row in {@link #table()} of flow {@code index}. */
+        int row(int index) {
+            return rows[from + index];
+        }
+
+        /** {@link Flow#id()} of flow {@code index}, without building its row view. */
+        int id(int index) {
+            return flows.id[rows[from + index]];
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+
+        /** Whether flow {@code index} crosses the link from its target to its source. */
+        boolean reversed(int index) {
+            return reversed[from + index];
+        }
+    }
+}
@@ -1,129 +1,301 @@
 package org.example.demo2;
 
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.util.EntityUtils;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
 
+/**
+ * Client for the NDT API.
+ *
+ * Responses are negotiated: the client asks for gzip/deflate compression
+ * ({@code -Dndt.api.compression}, default {@code gzip,deflate}, {@code none} to turn it off) and,
+ * with {@code -Dndt.api.format=smile} or {@code cbor}, for a binary JSON encoding with JSON as the
+ * fallback. Whatever the server picks is decoded by its Content-Type, so a server that only speaks
+ * plain JSON keeps working unchanged.
+ *
+ * A request still unanswered after the endpoint's recent p95 latency is hedged: the same GET is sent
+ * again and whichever answer arrives first is used, the other aborted ({@code -Dndt.api.hedge=false}
+ * turns this off). Failures are logged in one line and returned as null; what to do about them
+ * (keep the last good response, back off) is up to the caller, see {@link PolledEndpoint}.
+ */
 public class NDTApiClient {
+    static final String SMILE_TYPE = "application/x-jackson-smile";
+    static final String CBOR_TYPE = "application/cbor";
+
+    private static final String COMPRESSION = System.getProperty("ndt.api.compression", "gzip,deflate");
+    private static final String FORMAT = System.getProperty("ndt.api.format", "json");
+    private static final boolean HEDGE = !"false".equals(System.getProperty("ndt.api.hedge", "true"));
+    // Hedge no sooner than this, and only once the endpoint has this many latency samples
+    private static final long MIN_HEDGE_MS = 100;
+    private static final int MIN_HEDGE_SAMPLES = 16;
+
     private final String baseUrl;
     private final ObjectMapper objectMapper;
+    private final ObjectMapper smileMapper;
+    private final ObjectMapper cborMapper;
+    private final String accept;
+    private final boolean compress;
     private final CloseableHttpClient httpClient;
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+    private final ExecutorService requestPool = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "ndt-api-request");
+        t.setDaemon(true);
+        return t;
+    });
+    // Last graph response, so an unchanged topology is neither parsed nor converted again
+    private byte[] lastGraphBody;
+    private GraphData lastGraphData;
 
     public NDTApiClient(String baseUrl) {
         this.baseUrl = baseUrl;
         this.objectMapper = new ObjectMapper();
+        this.smileMapper = new SmileMapper();
+        this.cborMapper = new CBORMapper();
 
         this.objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        this.smileMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        this.cborMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        switch (FORMAT) {
+            case "smile": accept = SMILE_TYPE + ", application/json;q=0.5"; break;
+            case "cbor": accept = CBOR_TYPE + ", application/json;q=0.5"; break;
+            default: accept = "application/json"; break;
+        }
+        compress = !"none".equals(COMPRESSION) && !"identity".equals(COMPRESSION);
+
         RequestConfig config = RequestConfig.custom()
             .setConnectTimeout(5000)
             .setSocketTimeout(10000)
             .build();
-        this.httpClient = HttpClients.custom().setDefaultRequestConfig(config).build();
+        // The poll loop issues its four requests concurrently, each possibly hedged; the default of 2
+        // per route serializes them
+        HttpClientBuilder builder = HttpClients.custom()
+            .setDefaultRequestConfig(config)
+            .setMaxConnPerRoute(16)
+            .setMaxConnTotal(32);
+        if (!compress) {
+            builder.disableContentCompression();
+        }
+        this.httpClient = builder.build();
+        System.out.println("[API] Requesting " + accept + (compress ? ", compression " + COMPRESSION : ", uncompressed"));
+    }
+
+    /**
+     * Returns false (and releases the connection) for non-2xx responses, so an error body is never
+     * deserialized into an empty data object.
+     */
+    private static boolean isOk(CloseableHttpResponse response, String endpoint) {
+        int status = response.getStatusLine().getStatusCode();
+        if (status >= 200 && status < 300) {
+            return true;
+        }
+        EntityUtils.consumeQuietly(response.getEntity());
+        System.err.println("[API] " + endpoint + " HTTP " + status);
+        return false;
+    }
+
+    // A response body (already decompressed) and the Content-Type it came with
+    private static final class Body {
+        final byte[] bytes;
+        final String contentType;
+
+        Body(byte[] bytes, String contentType) {
+            this.bytes = bytes;
+            this.contentType = contentType;
+        }
+    }
+
+    /** Recent latencies of successful requests to one endpoint. */
+    private static final class LatencyWindow {
+        private final long[] samples = new long[64];
+        private int count;
+
+        synchronized void add(long millis) {
+            samples[count++ % samples.length] = millis;
+        }
+
+        /** p95 of the recent samples, or -1 if there are too few to tell. */
+        synchronized long p95() {
+            int n = Math.min(count, samples.length);
+            if (n < MIN_HEDGE_SAMPLES) return -1;
+            long[] sorted = Arrays.copyOf(samples, n);
+            Arrays.sort(sorted);
+            return sorted[(int) Math.ceil(n * 0.95) - 1];
+        }
     }
 
-    public GraphData getGraphData() {
+    /** GET {@code path}, hedged if slow, or null on any failure (logged under {@code endpoint}). */
+    private Body fetch(String path, String endpoint) {
+        LatencyWindow window = latencies.computeIfAbsent(endpoint, e -> new LatencyWindow());
+        long p95 = HEDGE ? window.p95() : -1;
+        HttpGet first = request(path);
+        if (p95 < 0) {
+            return fetchOnce(first, endpoint, window);
+        }
+        CompletableFuture<Body> primary = CompletableFuture.supplyAsync(() -> fetchOnce(first, endpoint, window), requestPool);
         try {
-            HttpGet request = new HttpGet(baseUrl + "/ndt/get_graph_data");
-            try (CloseableHttpResponse response = httpClient.execute(request)) {
-                HttpEntity entity = response.getEntity();
-                if (entity != null) {
-                    String result = EntityUtils.toString(entity);
-                    return objectMapper.readValue(result, GraphData.class);
-                }
+            // A quick failure is not hedged; it is left to the caller's back-off
+            return primary.get(Math.max(MIN_HEDGE_MS, p95), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Slower than usual: race a second request
+        } catch (InterruptedException e) {
+            first.abort();
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        }
+        if (Diagnostics.DEBUG) Diagnostics.debug("[API] " + endpoint + " slower than p95 " + p95 + " ms, hedging");
+        HttpGet second = request(path);
+        CompletableFuture<Body> hedge = CompletableFuture.supplyAsync(() -> fetchOnce(second, endpoint, window), requestPool);
+        // First good answer wins; null only if both fail
+        CompletableFuture<Body> winner = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(2);
+        primary.whenComplete((body, error) -> {
+            if (body != null) winner.complete(body);
+            else if (pending.decrementAndGet() == 0) winner.complete(null);
+        });
+        hedge.whenComplete((body, error) -> {
+            if (body != null) winner.complete(body);
+            else if (pending.decrementAndGet() == 0) winner.complete(null);
+        });
+        try {
+            return winner.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        } finally {
+            first.abort();
+            second.abort();
+        }
+    }
+
+    private HttpGet request(String path) {
+        HttpGet request = new HttpGet(baseUrl + path);
+        request.setHeader("Accept", accept);
+        if (compress) {
+            request.setHeader("Accept-Encoding", COMPRESSION);
+        }
+        return request;
+    }
+
+    private Body fetchOnce(HttpGet request, String endpoint, LatencyWindow window) {
+        long start = System.nanoTime();
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            if (!isOk(response, endpoint)) return null;
+            HttpEntity entity = response.getEntity();
+            if (entity != null) {
+                Header type = entity.getContentType();
+                Body body = new Body(EntityUtils.toByteArray(entity), type != null ? type.getValue() : null);
+                window.add((System.nanoTime() - start) / 1_000_000);
+                return body;
             }
         } catch (Exception e) {
-            e.printStackTrace();
-            System.err.println("[API] get_graph_data error: " + e.getMessage());
+            // The losing request of a hedged pair is aborted on purpose
+            if (!request.isAborted()) {
+                System.err.println("[API] " + endpoint + " error: " + e);
+                if (Diagnostics.DEBUG) e.printStackTrace();
+            }
         }
         return null;
     }
 
-    public DetectedFlowData[] getDetectedFlowData() {
+    /** Decode {@code body} with the mapper its Content-Type calls for, or null if it doesn't parse. */
+    private <T> T decode(Body body, JavaType type, String endpoint) {
+        if (body == null) return null;
+        ObjectMapper mapper = objectMapper;
+        if (body.contentType != null) {
+            if (body.contentType.startsWith(SMILE_TYPE)) mapper = smileMapper;
+            else if (body.contentType.startsWith(CBOR_TYPE)) mapper = cborMapper;
+        }
         try {
-            HttpGet request = new HttpGet(baseUrl + "/ndt/get_detected_flow_data");
-            try (CloseableHttpResponse response = httpClient.execute(request)) {
-                HttpEntity entity = response.getEntity();
-                if (entity != null) {
-                    String result = EntityUtils.toString(entity);
-                    return objectMapper.readValue(result, DetectedFlowData[].class);
-                }
-            }
+            return mapper.readValue(body.bytes, type);
         } catch (Exception e) {
-            e.printStackTrace(); // Show detailed exception
-            System.err.println("[API] get_detected_flow_data error: " + e.getMessage());
+            System.err.println("[API] " + endpoint + " could not be decoded: " + e.getMessage());
+            if (Diagnostics.DEBUG) e.printStackTrace();
+            return null;
         }
-        return null;
     }
-    
+
+    private JavaType type(Class<?> type) {
+        return objectMapper.getTypeFactory().constructType(type);
+    }
+
+    /**
+     * The topology graph. Returns the same GraphData instance as the previous call when the
+     * response body is identical, so callers can tell an unchanged topology by identity.
+     */
+    public synchronized GraphData getGraphData() {
+        Body body = fetch("/ndt/get_graph_data", "get_graph_data");
+        if (body == null) return null;
+        if (lastGraphData != null && Arrays.equals(body.bytes, lastGraphBody)) {
+            return lastGraphData;
+        }
+        GraphData graphData = decode(body, type(GraphData.class), "get_graph_data");
+        if (graphData != null) {
+            lastGraphBody = body.bytes;
+            lastGraphData = graphData;
+        }
+        return graphData;
+    }
+
+    public DetectedFlowData[] getDetectedFlowData() {
+        return decode(fetch("/ndt/get_detected_flow_data", "get_detected_flow_data"),
+            type(DetectedFlowData[].class), "get_detected_flow_data");
+    }
+
     /**
      * Call the Top-K flow API.
      * Example: GET {baseUrl}/ndt/get_detected_top_k_flow_data?k=50
      */
     public DetectedFlowData[] getDetectedTopKFlowData(int k) {
-        try {
-            // Ensure K is positive; fall back to 1 if invalid
-            int safeK = Math.max(1, k);
-            String url = String.format("%s/ndt/get_detected_top_k_flow_data?k=%d", baseUrl, safeK);
-            HttpGet request = new HttpGet(url);
-            try (CloseableHttpResponse response = httpClient.execute(request)) {
-                HttpEntity entity = response.getEntity();
-                if (entity != null) {
-                    String result = EntityUtils.toString(entity);
-                    return objectMapper.readValue(result, DetectedFlowData[].class);
-                }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-            System.err.println("[API] get_detected_top_k_flow_data error: " + e.getMessage());
-        }
-        return null;
+        // Ensure K is positive; fall back to 1 if invalid
+        int safeK = Math.max(1, k);
+        return decode(fetch("/ndt/get_detected_top_k_flow_data?k=" + safeK, "get_detected_top_k_flow_data"),
+            type(DetectedFlowData[].class), "get_detected_top_k_flow_data");
     }
-    
+
 
     public java.util.Map<String, Integer> getCpuUtilization() {
-        try {
-            HttpGet request = new HttpGet(baseUrl + "/ndt/get_cpu_utilization");
-            try (CloseableHttpResponse response = httpClient.execute(request)) {
-                HttpEntity entity = response.getEntity();
-                if (entity != null) {
-                    String result = EntityUtils.toString(entity);
-                    return objectMapper.readValue(result, new com.fasterxml.jackson.core.type.TypeReference<java.util.Map<String, Integer>>() {});
-                }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-            System.err.println("[API] get_cpu_utilization error: " + e.getMessage());
-        }
-        return null;
+        return decode(fetch("/ndt/get_cpu_utilization", "get_cpu_utilization"), utilizationType(), "get_cpu_utilization");
     }
-    
+
 
     public java.util.Map<String, Integer> getMemoryUtilization() {
-        try {
-            HttpGet request = new HttpGet(baseUrl + "/ndt/get_memory_utilization");
-            try (CloseableHttpResponse response = httpClient.execute(request)) {
-                HttpEntity entity = response.getEntity();
-                if (entity != null) {
-                    String result = EntityUtils.toString(entity);
-                    return objectMapper.readValue(result, new com.fasterxml.jackson.core.type.TypeReference<java.util.Map<String, Integer>>() {});
-                }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-            System.err.println("[API] get_memory_utilization error: " + e.getMessage());
-        }
-        return null;
+        return decode(fetch("/ndt/get_memory_utilization", "get_memory_utilization"), utilizationType(), "get_memory_utilization");
+    }
+
+    private JavaType utilizationType() {
+        return objectMapper.getTypeFactory().constructMapType(java.util.Map.class, String.class, Integer.class);
     }
-    
+
 
     public void close() {
+        requestPool.shutdownNow();
         try {
             if (httpClient != null) {
                 httpClient.close();
@@ -132,4 +304,4 @@ public class NDTApiClient {
             System.err.println("Error closing HTTP client: " + e.getMessage());
         }
     }
-} 
\ No newline at end of file
+}
@@ -5,10 +5,14 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.RandomAccessFile;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -53,9 +57,10 @@ public class NdjsonIndexUtil {
     public static BuiltIndex buildIndexForSingleJson(File jsonFile, File outIdxFile) throws Exception {
         List<IndexEntry> entries = new ArrayList<>();
         Gson gson = new Gson();
+        File tmpFile = tempFileFor(outIdxFile);
 
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(jsonFile), StandardCharsets.UTF_8));
-             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outIdxFile), StandardCharsets.UTF_8))) {
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmpFile), StandardCharsets.UTF_8))) {
             
             // Read the entire file as a single JSON object
             StringBuilder content = new StringBuilder();
@@ -80,7 +85,11 @@ public class NdjsonIndexUtil {
                     System.out.println("[INDEX] No timestamp found in " + jsonFile.getName());
                 }
             }
+        } catch (Exception e) {
+            tmpFile.delete();
+            throw e;
         }
+        replaceAtomically(tmpFile, outIdxFile);
 
         return new BuiltIndex(entries);
     }
@@ -92,9 +101,10 @@ public class NdjsonIndexUtil {
     public static BuiltIndex buildIndex(File ndjsonFile, File outIdxFile) throws Exception {
         List<IndexEntry> entries = new ArrayList<>();
         Gson gson = new Gson();
+        File tmpFile = tempFileFor(outIdxFile);
 
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(ndjsonFile), StandardCharsets.UTF_8));
-             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outIdxFile), StandardCharsets.UTF_8))) {
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmpFile), StandardCharsets.UTF_8))) {
             String line;
             long offset = 0L;
             while ((line = reader.readLine()) != null) {
@@ -106,7 +116,7 @@ public class NdjsonIndexUtil {
                         if (ts != null) {
                             String type = inferType(obj);
                             entries.add(new IndexEntry(ts, offset, byteLen, type));
-                            writer.write(ts + "\t" + offset + "\t" + byteLen + "\t" + (type == null ? "" : type));
+                            writer.write(formatIndexLine(ts, offset, byteLen, type));
                             writer.newLine();
                         }
                     }
@@ -116,13 +126,96 @@ public class NdjsonIndexUtil {
                 // +1 assumes single "\n" line separator in the NDJSON. Acceptable for files we generate.
                 offset += byteLen + 1;
             }
+        } catch (Exception e) {
+            tmpFile.delete();
+            throw e;
         }
+        replaceAtomically(tmpFile, outIdxFile);
 
         // Ensure sorted by timestamp
         Collections.sort(entries, (a, b) -> Long.compare(a.timestamp, b.timestamp));
         return new BuiltIndex(entries);
     }
 
+    /** Sidecar index file kept next to an NDJSON file (e.g. by {@link SessionRecorder}). */
+    public static File indexFileFor(File ndjsonFile) {
+        return new File(ndjsonFile.getParentFile(), ndjsonFile.getName() + ".idx");
+    }
+
+    /** Where an output is written before {@link #replaceAtomically} puts it in place. */
+    static File tempFileFor(File target) {
+        return new File(target.getParentFile(), target.getName() + ".tmp");
+    }
+
+    /**
+     * Move a finished temp file over {@code target}, so an interrupted build never leaves a partial
+     * index (or preprocessed file) that a later load would take for complete.
+     */
+    static void replaceAtomically(File tmpFile, File target) throws IOException {
+        try {
+            Files.move(tmpFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmpFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    public static String formatIndexLine(long timestamp, long offset, int length, String type) {
+        return timestamp + "\t" + offset + "\t" + length + "\t" + (type == null ? "" : type);
+    }
+
+    /**
+     * Use the ".idx" sidecar written alongside the file (SessionRecorder, CapturePreparer) or the
+     * {@code <name><fallbackSuffix>} index of an earlier load when either is current; otherwise
+     * scan the file into the latter.
+     */
+    public static BuiltIndex readOrBuildIndex(File ndjsonFile, String fallbackSuffix) throws Exception {
+        BuiltIndex index = readIndex(ndjsonFile, indexFileFor(ndjsonFile));
+        if (index != null) {
+            return index;
+        }
+        File fallback = new File(ndjsonFile.getParentFile(), ndjsonFile.getName() + fallbackSuffix);
+        index = readIndex(ndjsonFile, fallback);
+        if (index != null) {
+            return index;
+        }
+        return buildIndex(ndjsonFile, fallback);
+    }
+
+    /**
+     * Read an index previously written by {@link #buildIndex} or {@link SessionRecorder}.
+     * Returns null if there is no usable index (missing, older than the data file, or empty),
+     * in which case the caller should build one.
+     */
+    public static BuiltIndex readIndex(File ndjsonFile, File idxFile) {
+        if (!idxFile.isFile() || idxFile.lastModified() < ndjsonFile.lastModified() - 1000) {
+            return null;
+        }
+        List<IndexEntry> entries = new ArrayList<>();
+        long dataLength = ndjsonFile.length();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(idxFile), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t", -1);
+                if (parts.length < 3) continue;
+                long offset = Long.parseLong(parts[1]);
+                int length = Integer.parseInt(parts[2]);
+                // A trailing entry may point past data that was never flushed (e.g. after a crash)
+                if (offset + length > dataLength) break;
+                String type = parts.length > 3 && !parts[3].isEmpty() ? parts[3] : null;
+                entries.add(new IndexEntry(Long.parseLong(parts[0]), offset, length, type));
+            }
+        } catch (Exception e) {
+            System.err.println("[INDEX] Ignoring unreadable index " + idxFile.getName() + ": " + e.getMessage());
+            return null;
+        }
+        if (entries.isEmpty()) {
+            return null;
+        }
+        Collections.sort(entries, (a, b) -> Long.compare(a.timestamp, b.timestamp));
+        System.out.println("[INDEX] Loaded " + entries.size() + " entries from " + idxFile.getName());
+        return new BuiltIndex(entries);
+    }
+
     public static String readLineAt(File file, long offset, int length) throws Exception {
         try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
             raf.seek(offset);
@@ -0,0 +1,291 @@
+package org.example.demo2;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Push subscription to the NDT API: GET /ndt/subscribe as a server-sent event stream.
+ *
+ * The server opens the stream with the topology ("topology") and the full flow set ("flows"), then
+ * sends flow deltas ("flows_delta": added, updated and removed flows) as the controller sees them,
+ * and the topology again when it changes. The flow set is kept here by 5-tuple and patched by each
+ * delta; after every event {@code onUpdate} runs (on the stream thread) and the caller reads
+ * {@link #flows} and {@link #graph}.
+ *
+ * A server without the stream answers 404, or anything but an event stream: the subscription then
+ * stays down, is retried every minute, and the caller keeps polling. A dropped stream reconnects
+ * with backoff and starts over from a full snapshot, so events missed in between don't matter.
+ */
+final class NdtEventStream {
+
+    static final String PATH = "/ndt/subscribe";
+    static final String EVENT_STREAM_TYPE = "text/event-stream";
+
+    private static final long RETRY_UNSUPPORTED_MS = 60_000;
+    private static final long MAX_BACKOFF_MS = 30_000;
+    // The server sends a keep-alive comment well within this, so a silent stream is a dead one
+    private static final int READ_TIMEOUT_MS = 30_000;
+
+    /** Body of a "flows_delta" event. Updates may omit the path and first sample time. */
+    static final class FlowDelta {
+        public List<DetectedFlowData> added;
+        public List<DetectedFlowData> updated;
+        public List<DetectedFlowData> removed;
+    }
+
+    /** A flow's 5-tuple. */
+    static final class FlowKey {
+        final long srcIp;
+        final long dstIp;
+        final int srcPort;
+        final int dstPort;
+        final int protocol;
+
+        FlowKey(DetectedFlowData flow) {
+            this.srcIp = flow.src_ip;
+            this.dstIp = flow.dst_ip;
+            this.srcPort = flow.src_port;
+            this.dstPort = flow.dst_port;
+            this.protocol = flow.protocol_id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof FlowKey)) return false;
+            FlowKey other = (FlowKey) o;
+            return srcIp == other.srcIp && dstIp == other.dstIp && srcPort == other.srcPort
+                && dstPort == other.dstPort && protocol == other.protocol;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = Long.hashCode(srcIp);
+            h = h * 31 + Long.hashCode(dstIp);
+            h = h * 31 + srcPort;
+            h = h * 31 + dstPort;
+            return h * 31 + protocol;
+        }
+    }
+
+    private final String url;
+    private final Runnable onUpdate;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final CloseableHttpClient httpClient;
+    private volatile boolean running;
+    private volatile boolean live;
+    private volatile HttpGet request;
+    private volatile long lastEventNanos;
+
+    // Guarded by this. flowArray is rebuilt from flows on demand, so an unchanged set is the same array.
+    private final Map<FlowKey, DetectedFlowData> flows = new LinkedHashMap<>();
+    private DetectedFlowData[] flowArray;
+    private GraphData graph;
+
+    NdtEventStream(String baseUrl, Runnable onUpdate) {
+        this.url = baseUrl + PATH;
+        this.onUpdate = onUpdate;
+        this.mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        RequestConfig config = RequestConfig.custom()
+            .setConnectTimeout(5000)
+            .setSocketTimeout(READ_TIMEOUT_MS)
+            .build();
+        this.httpClient = HttpClients.custom()
+            .setDefaultRequestConfig(config)
+            .disableContentCompression()
+            .build();
+    }
+
+    void start() {
+        running = true;
+        Thread thread = new Thread(this::run, "ndt-event-stream");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void close() {
+        running = false;
+        live = false;
+        HttpGet current = request;
+        if (current != null) current.abort();
+        try {
+            httpClient.close();
+        } catch (Exception e) {
+            System.err.println("Error closing event stream client: " + e.getMessage());
+        }
+    }
+
+    /** Whether the stream is open and has delivered the full flow set. */
+    boolean isLive() {
+        return live;
+    }
+
+    /** The current flow set; the same array as the last call while no event changed it. */
+    synchronized DetectedFlowData[] flows() {
+        if (flowArray == null) {
+            flowArray = flows.values().toArray(new DetectedFlowData[0]);
+        }
+        return flowArray;
+    }
+
+    /** The last topology pushed, or null before the first. */
+    synchronized GraphData graph() {
+        return graph;
+    }
+
+    /** System.nanoTime() at which the last event arrived. */
+    long lastEventNanos() {
+        return lastEventNanos;
+    }
+
+    private void run() {
+        long backoff = 1000;
+        while (running) {
+            long wait;
+            try {
+                boolean supported = subscribe();
+                if (!running) break;
+                if (supported) {
+                    System.out.println("[PUSH] Event stream closed by " + url + ", reconnecting");
+                    wait = backoff = 1000;
+                } else {
+                    System.out.println("[PUSH] " + url + " offers no event stream, polling instead");
+                    wait = RETRY_UNSUPPORTED_MS;
+                }
+            } catch (Exception e) {
+                if (!running) break;
+                System.err.println("[PUSH] Event stream error: " + e.getMessage() + ", polling until it reconnects");
+                wait = backoff;
+                backoff = Math.min(MAX_BACKOFF_MS, backoff * 2);
+            }
+            if (live) {
+                live = false;
+                onUpdate.run();
+            }
+            try {
+                Thread.sleep(wait);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // Reads one stream to its end. Returns false if the server doesn't offer one.
+    private boolean subscribe() throws Exception {
+        HttpGet get = new HttpGet(url);
+        get.setHeader("Accept", EVENT_STREAM_TYPE);
+        request = get;
+        try (CloseableHttpResponse response = httpClient.execute(get)) {
+            HttpEntity entity = response.getEntity();
+            Header type = entity != null ? entity.getContentType() : null;
+            if (response.getStatusLine().getStatusCode() != 200 || type == null
+                    || !type.getValue().startsWith(EVENT_STREAM_TYPE)) {
+                EntityUtils.consumeQuietly(entity);
+                return false;
+            }
+            System.out.println("[PUSH] Subscribed to " + url);
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(entity.getContent(), StandardCharsets.UTF_8), 1 << 16)) {
+                String event = "message";
+                StringBuilder data = new StringBuilder();
+                String line;
+                while (running && (line = reader.readLine()) != null) {
+                    if (line.isEmpty()) {
+                        if (data.length() > 0) {
+                            dispatch(event, data.toString());
+                        }
+                        event = "message";
+                        data.setLength(0);
+                    } else if (line.startsWith("event:")) {
+                        event = line.substring(6).trim();
+                    } else if (line.startsWith("data:")) {
+                        if (data.length() > 0) data.append('\n');
+                        data.append(line, line.startsWith("data: ") ? 6 : 5, line.length());
+                    }
+                    // "id:", "retry:" and ":" keep-alive comments need nothing
+                }
+            }
+            return true;
+        } finally {
+            request = null;
+        }
+    }
+
+    private void dispatch(String event, String data) throws Exception {
+        long received = System.nanoTime();
+        switch (event) {
+            case "topology": {
+                GraphData pushed = mapper.readValue(data, GraphData.class);
+                synchronized (this) {
+                    graph = pushed;
+                }
+                break;
+            }
+            case "flows": {
+                DetectedFlowData[] snapshot = mapper.readValue(data, DetectedFlowData[].class);
+                synchronized (this) {
+                    flows.clear();
+                    for (DetectedFlowData flow : snapshot) {
+                        flows.put(new FlowKey(flow), flow);
+                    }
+                    flowArray = null;
+                }
+                live = true;
+                break;
+            }
+            case "flows_delta": {
+                FlowDelta delta = mapper.readValue(data, FlowDelta.class);
+                synchronized (this) {
+                    apply(delta);
+                    flowArray = null;
+                }
+                break;
+            }
+            default:
+                if (Diagnostics.DEBUG) Diagnostics.debug("[PUSH] Ignoring event " + event);
+                return;
+        }
+        lastEventNanos = received;
+        onUpdate.run();
+    }
+
+    // Caller holds the lock. Flows handed out by flows() are never modified: updates replace them.
+    private void apply(FlowDelta delta) {
+        if (delta.removed != null) {
+            for (DetectedFlowData flow : delta.removed) {
+                flows.remove(new FlowKey(flow));
+            }
+        }
+        if (delta.added != null) {
+            for (DetectedFlowData flow : delta.added) {
+                flows.put(new FlowKey(flow), flow);
+            }
+        }
+        if (delta.updated != null) {
+            for (DetectedFlowData update : delta.updated) {
+                FlowKey key = new FlowKey(update);
+                DetectedFlowData previous = flows.get(key);
+                if (previous != null) {
+                    if (update.path == null) update.path = previous.path;
+                    if (update.first_sampled_time == null) update.first_sampled_time = previous.first_sampled_time;
+                }
+                flows.put(key, update);
+            }
+        }
+    }
+}
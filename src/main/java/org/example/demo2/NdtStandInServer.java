@@ -0,0 +1,750 @@
+package org.example.demo2;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local stand-in for the NDT controller API, for load and latency testing without a network.
+ *
+ * Serves /ndt/get_graph_data, get_detected_flow_data, get_detected_top_k_flow_data?k=,
+ * get_cpu_utilization and get_memory_utilization either from a live {@link WorkloadGenerator}
+ * (advanced with wall-clock time) or from recorded JSON files in a directory.
+ * Latency, jitter, slow bodies and failures can be injected per request.
+ *
+ * Responses are negotiated like a real server would: Accept picks JSON, Smile or CBOR and
+ * Accept-Encoding picks gzip, deflate or none (--formats / --encodings limit what is offered, e.g.
+ * to play a JSON-only controller). Each variant is encoded once per generator second and cached.
+ *
+ * /ndt/subscribe is the push alternative ({@link NdtEventStream}): a server-sent event stream that
+ * starts with the topology and all flows, then carries one "flows_delta" per generator second
+ * (added flows, rate updates without the unchanged path, removed 5-tuples) and the topology every
+ * --push-graph-ms or when its nodes or links change. --push false plays a poll-only controller.
+ *
+ * Usage:
+ *   java -cp NDTanimation.jar org.example.demo2.NdtStandInServer --port 8000 --k 8 --flows 20000 --latency-ms 50
+ *   NDT_API_URL=http://localhost:8000 ./network_traffic_visualizer.sh
+ */
+public class NdtStandInServer {
+
+    static final String GRAPH = "get_graph_data";
+    static final String FLOWS = "get_detected_flow_data";
+    static final String TOP_K = "get_detected_top_k_flow_data";
+    static final String CPU = "get_cpu_utilization";
+    static final String MEMORY = "get_memory_utilization";
+    static final List<String> ENDPOINTS = List.of(GRAPH, FLOWS, TOP_K, CPU, MEMORY);
+    static final String SUBSCRIBE = "subscribe";
+    static final List<String> FORMATS = List.of("json", "smile", "cbor");
+    static final List<String> ENCODINGS = List.of("gzip", "deflate");
+    // Frames a subscriber may fall behind before it is dropped
+    private static final int SUBSCRIBER_QUEUE_FRAMES = 64;
+
+    public static class Config {
+        public int port = 8000;
+        public int threads = 8;
+        // Data source: recorded files (<endpoint>.json) when dataDir is set, otherwise the generator
+        public File dataDir = null;
+        public WorkloadGenerator.Config workload = new WorkloadGenerator.Config();
+        // Fault injection
+        public long latencyMs = 0;
+        public long jitterMs = 0;
+        public long slowBodyBytesPerSec = 0;  // 0 = write the body at full speed
+        public double failureRate = 0;        // probability a request fails
+        public String failureMode = "status"; // status (HTTP 503) | reset (close without reply) | timeout (never reply)
+        public Set<String> faultEndpoints = new HashSet<>(ENDPOINTS);
+        public long seed = 7L;
+        // Content negotiation: what the server offers besides plain, uncompressed JSON
+        public Set<String> formats = new HashSet<>(FORMATS);
+        public Set<String> encodings = new HashSet<>(ENCODINGS);
+        // Event stream at /ndt/subscribe
+        public boolean push = true;
+        public long pushGraphMs = 5000;   // topology re-sent this often even if its structure is unchanged
+    }
+
+    private final Config config;
+    private final Gson gson = new Gson();
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+    private final ObjectMapper smileMapper = new SmileMapper();
+    private final ObjectMapper cborMapper = new CBORMapper();
+    private final Random faultRandom;
+    private final WorkloadGenerator generator;
+    private final Map<String, byte[]> recorded = new ConcurrentHashMap<>();
+    private DetectedFlowData[] recordedFlows;
+
+    // Bodies of the current generator second, shared by all endpoints so they stay consistent
+    private final Map<String, byte[]> bodyCache = new ConcurrentHashMap<>();
+    private long bodyCacheTimeMs = Long.MIN_VALUE;
+    // Encoded variants of a JSON body; bodies are compared by identity and dropped with bodyCache
+    private final Map<byte[], Map<String, byte[]>> variants = Collections.synchronizedMap(new WeakHashMap<>());
+    private long startWallMs;
+
+    private final Map<String, AtomicLong> requestCounts = new ConcurrentHashMap<>();
+    private final AtomicLong bytesServed = new AtomicLong();
+    private final AtomicLong jsonBytesServed = new AtomicLong();
+    private final AtomicLong failuresInjected = new AtomicLong();
+
+    // Event stream subscribers, and the flows and topology they have been sent (guarded by this).
+    // pushedFlows holds each flow's key and rates as last sent; null while nobody is subscribed.
+    // pushLock keeps frames in order while they are serialized outside the server lock, and
+    // guards lastKeepAliveWallMs.
+    private final Object pushLock = new Object();
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private Map<NdtEventStream.FlowKey, DetectedFlowData> pushedFlows;
+    private long pushedTimeMs;
+    private long pushedGraphWallMs;
+    private long pushedGraphShape;
+    private long lastKeepAliveWallMs;
+
+    private HttpServer server;
+    private ExecutorService handlerPool;
+    private ScheduledExecutorService statsTimer;
+    private ScheduledExecutorService pushTimer;
+    // Closes the connections of injected timeouts, so they don't hold handler threads
+    private ScheduledExecutorService timeoutTimer;
+
+    public NdtStandInServer(Config config) throws IOException {
+        this.config = config;
+        this.faultRandom = new Random(config.seed);
+        if (config.dataDir != null) {
+            this.generator = null;
+            loadRecorded(config.dataDir);
+        } else {
+            this.generator = new WorkloadGenerator(config.workload);
+        }
+        for (String endpoint : ENDPOINTS) {
+            requestCounts.put(endpoint, new AtomicLong());
+        }
+    }
+
+    private void loadRecorded(File dir) throws IOException {
+        for (String endpoint : ENDPOINTS) {
+            File file = new File(dir, endpoint + ".json");
+            if (file.isFile()) {
+                recorded.put(endpoint, Files.readAllBytes(file.toPath()));
+                System.out.println("[STANDIN] Loaded recorded " + endpoint + " (" + file.length() + " bytes)");
+            }
+        }
+        byte[] flows = recorded.get(FLOWS);
+        if (flows != null) {
+            recordedFlows = gson.fromJson(new String(flows, StandardCharsets.UTF_8), DetectedFlowData[].class);
+        }
+    }
+
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(config.port), 64);
+        for (String endpoint : ENDPOINTS) {
+            server.createContext("/ndt/" + endpoint, exchange -> handle(endpoint, exchange));
+        }
+        if (config.push) {
+            server.createContext(NdtEventStream.PATH, this::subscribe);
+        }
+        handlerPool = Executors.newFixedThreadPool(config.threads);
+        server.setExecutor(handlerPool);
+        startWallMs = System.currentTimeMillis();
+        server.start();
+
+        statsTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "standin-stats");
+            t.setDaemon(true);
+            return t;
+        });
+        statsTimer.scheduleAtFixedRate(this::printStats, 10, 10, TimeUnit.SECONDS);
+        timeoutTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "standin-timeouts");
+            t.setDaemon(true);
+            return t;
+        });
+        if (config.push) {
+            pushTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "standin-push");
+                t.setDaemon(true);
+                return t;
+            });
+            pushTimer.scheduleAtFixedRate(this::pushTick, 50, 50, TimeUnit.MILLISECONDS);
+        }
+        System.out.println("[STANDIN] NDT API stand-in listening on http://localhost:" + getPort()
+            + " (" + (generator != null ? "generated data" : "recorded data from " + config.dataDir) + ")");
+    }
+
+    public void stop() {
+        if (server != null) server.stop(0);
+        if (handlerPool != null) handlerPool.shutdownNow();
+        if (statsTimer != null) statsTimer.shutdownNow();
+        if (pushTimer != null) pushTimer.shutdownNow();
+        if (timeoutTimer != null) {
+            // Close the connections still held open now rather than leave them to the client's timeout
+            for (Runnable close : timeoutTimer.shutdownNow()) {
+                close.run();
+            }
+        }
+        for (Subscriber subscriber : subscribers) {
+            subscriber.close();
+        }
+    }
+
+    public int getPort() {
+        return server != null ? server.getAddress().getPort() : config.port;
+    }
+
+    public long getBytesServed() {
+        return bytesServed.get();
+    }
+
+    private long lastStatsBytes = 0;
+    private long lastStatsJsonBytes = 0;
+
+    private void printStats() {
+        long bytes = bytesServed.get();
+        long jsonBytes = jsonBytesServed.get();
+        double mbPerSec = (bytes - lastStatsBytes) / 10.0 / (1024 * 1024);
+        double jsonMbPerSec = (jsonBytes - lastStatsJsonBytes) / 10.0 / (1024 * 1024);
+        lastStatsBytes = bytes;
+        lastStatsJsonBytes = jsonBytes;
+        StringBuilder counts = new StringBuilder();
+        for (String endpoint : ENDPOINTS) {
+            counts.append(' ').append(endpoint).append('=').append(requestCounts.get(endpoint).get());
+        }
+        System.out.println("[STANDIN] " + String.format("%.1f", mbPerSec) + " MB/s ("
+            + String.format("%.1f", jsonMbPerSec) + " MB/s as plain JSON), failures injected="
+            + failuresInjected.get() + ", subscribers=" + subscribers.size() + ", requests:" + counts);
+    }
+
+    private void handle(String endpoint, HttpExchange exchange) throws IOException {
+        requestCounts.get(endpoint).incrementAndGet();
+        try {
+            boolean faulty = config.faultEndpoints.contains(endpoint);
+            long delay = faulty ? config.latencyMs : 0;
+            if (faulty && config.jitterMs > 0) {
+                delay += nextFaultLong(config.jitterMs + 1);
+            }
+            if (delay > 0) Thread.sleep(delay);
+
+            if (faulty && config.failureRate > 0 && nextFaultDouble() < config.failureRate) {
+                failuresInjected.incrementAndGet();
+                switch (config.failureMode) {
+                    case "reset":
+                        exchange.close();
+                        return;
+                    case "timeout":
+                        // Hold the connection well past the client's socket timeout, without holding the thread
+                        timeoutTimer.schedule(exchange::close, 60, TimeUnit.SECONDS);
+                        return;
+                    default:
+                        byte[] error = "{\"error\":\"injected failure\"}".getBytes(StandardCharsets.UTF_8);
+                        exchange.getResponseHeaders().set("Content-Type", "application/json");
+                        exchange.sendResponseHeaders(503, error.length);
+                        try (OutputStream out = exchange.getResponseBody()) {
+                            out.write(error);
+                        }
+                        return;
+                }
+            }
+
+            byte[] body = body(endpoint, exchange.getRequestURI().getQuery());
+            if (body == null) {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+                return;
+            }
+            String format = negotiate(exchange.getRequestHeaders().getFirst("Accept"), FORMAT_NAMES, config.formats, "json");
+            String encoding = negotiate(exchange.getRequestHeaders().getFirst("Accept-Encoding"), ENCODING_NAMES, config.encodings, "identity");
+            byte[] encoded = variant(body, format, encoding);
+            exchange.getResponseHeaders().set("Content-Type", FORMAT_TYPES.get(format));
+            if (!"identity".equals(encoding)) {
+                exchange.getResponseHeaders().set("Content-Encoding", encoding);
+            }
+            exchange.getResponseHeaders().set("Vary", "Accept, Accept-Encoding");
+            exchange.getResponseHeaders().set("X-NDT-Served-At", String.valueOf(System.currentTimeMillis()));
+            exchange.sendResponseHeaders(200, encoded.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                writeBody(out, encoded, faulty ? config.slowBodyBytesPerSec : 0);
+            }
+            bytesServed.addAndGet(encoded.length);
+            jsonBytesServed.addAndGet(body.length);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.close();
+        } catch (Exception e) {
+            System.err.println("[STANDIN] " + endpoint + " handler error: " + e.getMessage());
+            exchange.close();
+        }
+    }
+
+    private static final Map<String, String> FORMAT_TYPES = Map.of(
+        "json", "application/json", "smile", NDTApiClient.SMILE_TYPE, "cbor", NDTApiClient.CBOR_TYPE);
+    private static final Map<String, String> FORMAT_NAMES = Map.of(
+        "application/json", "json", NDTApiClient.SMILE_TYPE, "smile", NDTApiClient.CBOR_TYPE, "cbor");
+    private static final Map<String, String> ENCODING_NAMES = Map.of(
+        "gzip", "gzip", "x-gzip", "gzip", "deflate", "deflate");
+
+    /**
+     * The offered option the header ranks highest (by q, then by order), or {@code fallback} (always
+     * on offer) if the header is missing or names nothing else. {@code names} maps header tokens to
+     * options.
+     */
+    static String negotiate(String header, Map<String, String> names, Set<String> offered, String fallback) {
+        if (header == null) return fallback;
+        String best = fallback;
+        double bestQ = 0;
+        for (String part : header.split(",")) {
+            String[] params = part.trim().split(";");
+            String option = names.get(params[0].trim().toLowerCase());
+            if (option == null || !(offered.contains(option) || option.equals(fallback))) continue;
+            double q = 1;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException ignore) {
+                        // malformed q: treat as 1
+                    }
+                }
+            }
+            if (q > bestQ) {
+                best = option;
+                bestQ = q;
+            }
+        }
+        return best;
+    }
+
+    // JSON body re-encoded as format and compressed with encoding, built once per body
+    private byte[] variant(byte[] json, String format, String encoding) throws IOException {
+        if ("json".equals(format) && "identity".equals(encoding)) return json;
+        String key = format + "|" + encoding;
+        Map<String, byte[]> forBody = variants.computeIfAbsent(json, b -> new ConcurrentHashMap<>());
+        byte[] cached = forBody.get(key);
+        if (cached != null) return cached;
+
+        byte[] formatted = json;
+        if (!"json".equals(format)) {
+            JsonNode tree = jsonMapper.readTree(json);
+            formatted = ("smile".equals(format) ? smileMapper : cborMapper).writeValueAsBytes(tree);
+        }
+        byte[] encoded = formatted;
+        if (!"identity".equals(encoding)) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(formatted.length / 4 + 64);
+            try (OutputStream out = "gzip".equals(encoding) ? new GZIPOutputStream(buffer) : new DeflaterOutputStream(buffer)) {
+                out.write(formatted);
+            }
+            encoded = buffer.toByteArray();
+        }
+        forBody.put(key, encoded);
+        return encoded;
+    }
+
+    private synchronized long nextFaultLong(long bound) {
+        return (long) (faultRandom.nextDouble() * bound);
+    }
+
+    private synchronized double nextFaultDouble() {
+        return faultRandom.nextDouble();
+    }
+
+    // Throttled write: chunks of ~1/20 s worth of bytes
+    private static void writeBody(OutputStream out, byte[] body, long bytesPerSec) throws IOException, InterruptedException {
+        if (bytesPerSec <= 0) {
+            out.write(body);
+            return;
+        }
+        int chunk = (int) Math.max(1, bytesPerSec / 20);
+        for (int off = 0; off < body.length; off += chunk) {
+            int len = Math.min(chunk, body.length - off);
+            out.write(body, off, len);
+            out.flush();
+            Thread.sleep(Math.max(1, len * 1000L / bytesPerSec));
+        }
+    }
+
+    private byte[] body(String endpoint, String query) {
+        int k = parseK(query);
+        if (generator == null) {
+            if (TOP_K.equals(endpoint) && recordedFlows != null) {
+                DetectedFlowData[] sorted = recordedFlows.clone();
+                Arrays.sort(sorted, (a, b) -> Long.compare(
+                    b.estimated_flow_sending_rate_bps_in_the_proceeding_1sec_timeslot,
+                    a.estimated_flow_sending_rate_bps_in_the_proceeding_1sec_timeslot));
+                return gson.toJson(Arrays.copyOf(sorted, Math.min(k, sorted.length))).getBytes(StandardCharsets.UTF_8);
+            }
+            return recorded.get(endpoint);
+        }
+
+        synchronized (this) {
+            advanceToNow();
+            String key = TOP_K.equals(endpoint) ? endpoint + "?" + k : endpoint;
+            byte[] cached = bodyCache.get(key);
+            if (cached != null) return cached;
+
+            Object value;
+            switch (endpoint) {
+                case GRAPH: value = generator.getGraphData(); break;
+                case FLOWS: value = generator.getDetectedFlowData(); break;
+                case TOP_K: value = generator.getDetectedTopKFlowData(k); break;
+                case CPU: value = generator.getCpuUtilization(); break;
+                case MEMORY: value = generator.getMemoryUtilization(); break;
+                default: return null;
+            }
+            byte[] body = gson.toJson(value).getBytes(StandardCharsets.UTF_8);
+            bodyCache.put(key, body);
+            return body;
+        }
+    }
+
+    // Keep the simulation in step with wall-clock time (whole seconds). Caller holds the lock.
+    private void advanceToNow() {
+        long target = config.workload.startTimeMs + (System.currentTimeMillis() - startWallMs) / 1000 * 1000;
+        while (generator.getCurrentTimeMs() < target) {
+            generator.advance(1000);
+        }
+        if (bodyCacheTimeMs != generator.getCurrentTimeMs()) {
+            bodyCache.clear();
+            bodyCacheTimeMs = generator.getCurrentTimeMs();
+        }
+    }
+
+    // =============================
+    // Event stream
+    // =============================
+
+    /**
+     * One open /ndt/subscribe response. Frames are queued without blocking and written by the
+     * subscriber's own thread, so a slow client never holds up the polled endpoints or the others.
+     */
+    private final class Subscriber {
+        final HttpExchange exchange;
+        final OutputStream out;
+        final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(SUBSCRIBER_QUEUE_FRAMES);
+        final Thread writer;
+        volatile boolean closed;
+
+        Subscriber(HttpExchange exchange) {
+            this.exchange = exchange;
+            this.out = exchange.getResponseBody();
+            this.writer = new Thread(this::writeLoop, "standin-subscriber-" + exchange.getRemoteAddress());
+            this.writer.setDaemon(true);
+            this.writer.start();
+        }
+
+        // A subscriber that falls a queue behind, or can't be written to, is dropped; its client
+        // reconnects and resyncs
+        boolean send(byte[] frame) {
+            if (closed) return false;
+            if (!queue.offer(frame)) {
+                System.out.println("[STANDIN] Dropping event stream subscriber " + exchange.getRemoteAddress()
+                    + ": " + SUBSCRIBER_QUEUE_FRAMES + " frames behind");
+                close();
+                return false;
+            }
+            return true;
+        }
+
+        private void writeLoop() {
+            try {
+                while (!closed) {
+                    byte[] frame = queue.take();
+                    out.write(frame);
+                    out.flush();
+                    bytesServed.addAndGet(frame.length);
+                    jsonBytesServed.addAndGet(frame.length);
+                }
+            } catch (IOException | InterruptedException e) {
+                close();
+            }
+        }
+
+        void close() {
+            closed = true;
+            subscribers.remove(this);
+            writer.interrupt();
+            try {
+                exchange.close();
+            } catch (Exception ignore) {
+                // already gone
+            }
+        }
+    }
+
+    private static byte[] frame(String event, String json) {
+        return ("event: " + event + "\ndata: " + json + "\n\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void subscribe(HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", NdtEventStream.EVENT_STREAM_TYPE);
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        Subscriber subscriber = new Subscriber(exchange);
+        synchronized (pushLock) {
+            Push push = null;
+            List<Subscriber> others;
+            synchronized (this) {
+                // Bring the others up to date first, so the snapshot is where the next delta starts from
+                if (generator != null) {
+                    advanceToNow();
+                    push = pushChanges();
+                }
+                others = List.copyOf(subscribers);
+                Object graph = generator != null ? generator.getGraphData() : recordedJson(GRAPH);
+                Object flows = generator != null ? generator.getDetectedFlowData() : recordedJson(FLOWS);
+                if (graph != null && !subscriber.send(frame("topology", gson.toJson(graph)))) return;
+                if (!subscriber.send(frame("flows", flows != null ? gson.toJson(flows) : "[]"))) return;
+                if (generator != null && pushedFlows == null) {
+                    pushedFlows = new LinkedHashMap<>();
+                    for (DetectedFlowData flow : generator.getDetectedFlowData()) {
+                        pushedFlows.put(new NdtEventStream.FlowKey(flow), rates(flow));
+                    }
+                    pushedTimeMs = generator.getCurrentTimeMs();
+                    pushedGraphShape = graphShape(generator.getGraphData());
+                    pushedGraphWallMs = System.currentTimeMillis();
+                }
+                subscribers.add(subscriber);
+            }
+            if (push != null) push.sendTo(others);
+        }
+        System.out.println("[STANDIN] Event stream subscriber from " + exchange.getRemoteAddress());
+    }
+
+    private JsonElement recordedJson(String endpoint) {
+        byte[] body = recorded.get(endpoint);
+        return body != null ? gson.fromJson(new String(body, StandardCharsets.UTF_8), JsonElement.class) : null;
+    }
+
+    private void pushTick() {
+        synchronized (pushLock) {
+            try {
+                Push push = null;
+                List<Subscriber> targets;
+                synchronized (this) {
+                    if (subscribers.isEmpty()) {
+                        pushedFlows = null;
+                        return;
+                    }
+                    if (generator != null) {
+                        advanceToNow();
+                        push = pushChanges();
+                    }
+                    targets = List.copyOf(subscribers);
+                }
+                if (push != null) push.sendTo(targets);
+                long now = System.currentTimeMillis();
+                if (now - lastKeepAliveWallMs >= 10_000) {
+                    lastKeepAliveWallMs = now;
+                    broadcast(targets, ":\n\n".getBytes(StandardCharsets.UTF_8));
+                }
+            } catch (Exception e) {
+                System.err.println("[STANDIN] Event stream error: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * One push: the flow delta, serialized only after the server lock is released (its flows are
+     * copies), and the topology frame if it is due, built under the lock since the graph is live.
+     */
+    private final class Push {
+        final NdtEventStream.FlowDelta delta;
+        final byte[] topology;
+
+        Push(NdtEventStream.FlowDelta delta, byte[] topology) {
+            this.delta = delta;
+            this.topology = topology;
+        }
+
+        void sendTo(List<Subscriber> targets) {
+            broadcast(targets, frame("flows_delta", gson.toJson(delta)));
+            if (topology != null) broadcast(targets, topology);
+        }
+    }
+
+    // What changed since the last push, or null. Caller holds the lock.
+    private Push pushChanges() {
+        if (pushedFlows == null || generator.getCurrentTimeMs() == pushedTimeMs) return null;
+        NdtEventStream.FlowDelta delta = new NdtEventStream.FlowDelta();
+        delta.added = new ArrayList<>();
+        delta.updated = new ArrayList<>();
+        delta.removed = new ArrayList<>();
+        Map<NdtEventStream.FlowKey, DetectedFlowData> sent = new LinkedHashMap<>();
+        for (DetectedFlowData flow : generator.getDetectedFlowData()) {
+            NdtEventStream.FlowKey key = new NdtEventStream.FlowKey(flow);
+            DetectedFlowData previous = pushedFlows.remove(key);
+            if (previous == null) {
+                delta.added.add(copy(flow));
+                sent.put(key, rates(flow));
+            } else if (!sameRates(previous, flow)) {
+                DetectedFlowData update = rates(flow);
+                delta.updated.add(update);
+                sent.put(key, update);
+            } else {
+                sent.put(key, previous);
+            }
+        }
+        for (NdtEventStream.FlowKey key : pushedFlows.keySet()) {
+            DetectedFlowData gone = new DetectedFlowData();
+            gone.src_ip = key.srcIp;
+            gone.dst_ip = key.dstIp;
+            gone.src_port = key.srcPort;
+            gone.dst_port = key.dstPort;
+            gone.protocol_id = key.protocol;
+            delta.removed.add(gone);
+        }
+        pushedFlows = sent;
+        pushedTimeMs = generator.getCurrentTimeMs();
+
+        GraphData graph = generator.getGraphData();
+        long shape = graphShape(graph);
+        long now = System.currentTimeMillis();
+        byte[] topology = null;
+        if (shape != pushedGraphShape || now - pushedGraphWallMs >= config.pushGraphMs) {
+            pushedGraphShape = shape;
+            pushedGraphWallMs = now;
+            topology = frame("topology", gson.toJson(graph));
+        }
+        return new Push(delta, topology);
+    }
+
+    private static void broadcast(List<Subscriber> targets, byte[] frame) {
+        for (Subscriber subscriber : targets) {
+            subscriber.send(frame);
+        }
+    }
+
+    // A flow as it is now; the generator changes its rates in place but never its path
+    private static DetectedFlowData copy(DetectedFlowData flow) {
+        DetectedFlowData copy = rates(flow);
+        copy.first_sampled_time = flow.first_sampled_time;
+        copy.path = flow.path;
+        return copy;
+    }
+
+    // Key, rates and last sample time of a flow: what changes between seconds, and what an update carries
+    private static DetectedFlowData rates(DetectedFlowData flow) {
+        DetectedFlowData copy = new DetectedFlowData();
+        copy.src_ip = flow.src_ip;
+        copy.dst_ip = flow.dst_ip;
+        copy.src_port = flow.src_port;
+        copy.dst_port = flow.dst_port;
+        copy.protocol_id = flow.protocol_id;
+        copy.estimated_flow_sending_rate_bps_in_the_last_sec = flow.estimated_flow_sending_rate_bps_in_the_last_sec;
+        copy.estimated_flow_sending_rate_bps_in_the_proceeding_1sec_timeslot = flow.estimated_flow_sending_rate_bps_in_the_proceeding_1sec_timeslot;
+        copy.estimated_packet_rate_in_the_last_sec = flow.estimated_packet_rate_in_the_last_sec;
+        copy.estimated_packet_rate_in_the_proceeding_1sec_timeslot = flow.estimated_packet_rate_in_the_proceeding_1sec_timeslot;
+        copy.latest_sampled_time = flow.latest_sampled_time;
+        return copy;
+    }
+
+    private static boolean sameRates(DetectedFlowData a, DetectedFlowData b) {
+        return a.estimated_flow_sending_rate_bps_in_the_last_sec == b.estimated_flow_sending_rate_bps_in_the_last_sec
+            && a.estimated_flow_sending_rate_bps_in_the_proceeding_1sec_timeslot == b.estimated_flow_sending_rate_bps_in_the_proceeding_1sec_timeslot
+            && a.estimated_packet_rate_in_the_last_sec == b.estimated_packet_rate_in_the_last_sec
+            && a.estimated_packet_rate_in_the_proceeding_1sec_timeslot == b.estimated_packet_rate_in_the_proceeding_1sec_timeslot
+            && Objects.equals(a.latest_sampled_time, b.latest_sampled_time);
+    }
+
+    // Hash of the nodes and links, ignoring their counters
+    private static long graphShape(GraphData graph) {
+        long h = 17;
+        for (GraphData.Node node : graph.nodes) {
+            h = h * 31 + node.dpid;
+            h = h * 31 + (node.ip != null ? node.ip.hashCode() : 0);
+            h = h * 31 + (node.is_up ? 1 : 0);
+        }
+        for (GraphData.Edge edge : graph.edges) {
+            h = h * 31 + (edge.src_ip != null ? edge.src_ip.hashCode() : 0);
+            h = h * 31 + (edge.dst_ip != null ? edge.dst_ip.hashCode() : 0);
+            h = h * 31 + (edge.is_up ? 1 : 0);
+        }
+        return h;
+    }
+
+    private static int parseK(String query) {
+        if (query != null) {
+            for (String part : query.split("&")) {
+                if (part.startsWith("k=")) {
+                    try {
+                        return Math.max(0, Integer.parseInt(part.substring(2)));
+                    } catch (NumberFormatException ignore) {
+                        // fall through to default
+                    }
+                }
+            }
+        }
+        return 10;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Config config = new Config();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--port": config.port = Integer.parseInt(value); break;
+                case "--threads": config.threads = Integer.parseInt(value); break;
+                case "--data-dir": config.dataDir = new File(value); break;
+                case "--k": config.workload.k = Integer.parseInt(value); break;
+                case "--hosts": config.workload.hosts = Integer.parseInt(value); break;
+                case "--flows": config.workload.flows = Integer.parseInt(value); break;
+                case "--churn": config.workload.churnRate = Double.parseDouble(value); break;
+                case "--rate-dist": config.workload.rateDistribution = value; break;
+                case "--first-octet": config.workload.firstOctet = Integer.parseInt(value); break;
+                case "--seed": config.workload.seed = Long.parseLong(value); config.seed = config.workload.seed; break;
+                case "--latency-ms": config.latencyMs = Long.parseLong(value); break;
+                case "--jitter-ms": config.jitterMs = Long.parseLong(value); break;
+                case "--slow-body-bps": config.slowBodyBytesPerSec = Long.parseLong(value); break;
+                case "--fail-rate": config.failureRate = Double.parseDouble(value); break;
+                case "--fail-mode": config.failureMode = value; break;
+                case "--fault-endpoints": config.faultEndpoints = new HashSet<>(Arrays.asList(value.split(","))); break;
+                case "--formats": config.formats = new HashSet<>(Arrays.asList(value.split(","))); break;
+                case "--encodings": config.encodings = "none".equals(value) ? new HashSet<>() : new HashSet<>(Arrays.asList(value.split(","))); break;
+                case "--push": config.push = Boolean.parseBoolean(value); break;
+                case "--push-graph-ms": config.pushGraphMs = Long.parseLong(value); break;
+                default:
+                    System.err.println("[STANDIN] Unknown option: " + args[i]);
+                    System.err.println("Options: --port --threads --data-dir --k --hosts --flows --churn --rate-dist --first-octet --seed"
+                        + " --latency-ms --jitter-ms --slow-body-bps --fail-rate --fail-mode status|reset|timeout"
+                        + " --fault-endpoints " + String.join(",", ENDPOINTS)
+                        + " --formats " + String.join(",", FORMATS) + " --encodings " + String.join(",", ENCODINGS) + "|none"
+                        + " --push true|false --push-graph-ms");
+                    return;
+            }
+        }
+        NdtStandInServer server = new NdtStandInServer(config);
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+    }
+}
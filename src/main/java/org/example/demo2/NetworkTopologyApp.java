@@ -6,18 +6,23 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.google.gson.Gson;
-import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 
 import javafx.application.Application;
@@ -45,20 +50,64 @@ public class NetworkTopologyApp extends Application {
     private static final String SETTINGS_FILE = "settings.json";
     private static final String NODE_POSITIONS_REALTIME = "node_positions.json";
     private static final String NODE_POSITIONS_PLAYBACK = "node_positions_playback.json";
+    // Fabrics with at least this many nodes get a force-directed pass over the Fat-Tree rows
+    private static final int FORCE_LAYOUT_NODES = Integer.getInteger("ndt.layout.force.nodes", 400);
     
     // New member variables to manage API client and executor
     private NDTApiClient apiClient;
     private ScheduledExecutorService executor;
     private volatile int lastNodeCount = 0; // Record the previous node count (volatile for thread safety)
+    // Last live layout, reused while the topology is unchanged
+    private final TopologyLayoutCache liveLayout = new TopologyLayoutCache();
     private volatile boolean isPlaybackMode = false; // Flag to control API updates
     // Control whether to use Top-K flow API instead of full flow API (real-time mode only)
     private volatile boolean apiTopKEnabled = false;
     private volatile int apiTopKValue = 0;
     // Last known total flow count when using the full flow API
     private volatile int lastFullFlowCount = 0;
-    // Logical polling interval for NDT API (seconds)
+    // Logical polling interval for NDT API (seconds); the flows' cadence
     private volatile long apiPollIntervalSeconds = 1;
-    private volatile long lastApiPollMillis = 0;
+    // The graph and utilization have their own, slower cadences
+    private static final long GRAPH_POLL_MS = Long.getLong("ndt.poll.graph.ms", 5000);
+    private static final long UTILIZATION_POLL_MS = Long.getLong("ndt.poll.utilization.ms", 5000);
+    private static final long POLL_TICK_MS = 250;
+    // A tick waits this long for its fetches; slower ones finish in the background and are applied by a later tick
+    private static final long POLL_WAIT_MS = 1000;
+    private PolledEndpoint<GraphData> graphEndpoint;
+    private PolledEndpoint<DetectedFlowData[]> flowsEndpoint;
+    private PolledEndpoint<Map<String, Integer>> cpuEndpoint;
+    private PolledEndpoint<Map<String, Integer>> memoryEndpoint;
+    // Optional push subscription (-Dndt.api.push=true); flows and topology come from it while it is live
+    private static final boolean API_PUSH = Boolean.getBoolean("ndt.api.push");
+    private NdtEventStream eventStream;
+    // Several controllers (NDT_API_URL lists more than one), each polled by its own threads
+    private ControllerFederation federation;
+    // One update at a time, whether a tick or an event started it; events arriving meanwhile coalesce
+    private final ReentrantLock pollLock = new ReentrantLock();
+    private final AtomicBoolean updatePending = new AtomicBoolean();
+    // Live graph as last converted (poll thread only), and the canvas size and saved-positions
+    // version it was laid out for
+    private GraphData liveGraph;
+    private List<Node> liveGraphNodes;
+    private double liveGraphWidth;
+    private double liveGraphHeight;
+    private long liveGraphPositionsVersion;
+    // Responses last handed to the FX thread (poll thread only)
+    private GraphData appliedGraph;
+    private DetectedFlowData[] appliedFlows;
+    private Map<String, Integer> appliedCpu;
+    private Map<String, Integer> appliedMemory;
+    // Table the last update converted into, its row for each response object, and the switch IPs
+    // and path pool it was converted with (poll thread only)
+    private FlowTable convertedTable = FlowTable.EMPTY;
+    private ConvertedRows convertedRows = ConvertedRows.EMPTY;
+    private Map<Long, String> convertedDpids = Map.of();
+    private FlowPaths convertedPaths;
+    // Staleness banner over the canvas, shown while the controller isn't answering
+    private Label staleLabel;
+    private String staleText = "";
+    // Optional recorder of live polls (enabled by NDT_RECORD_DIR)
+    private SessionRecorder sessionRecorder;
     
     // Playback panel
     private PlaybackPanel playbackPanel;
@@ -89,6 +138,11 @@ public class NetworkTopologyApp extends Application {
             setApiPollIntervalSeconds(loaded.apiPollIntervalSeconds);
         }
 
+        // Start reading the saved layouts and lookup tables now, so the first topology finds them loaded
+        NodePositionStore.forFile(NODE_POSITIONS_REALTIME);
+        NodePositionStore.forFile(NODE_POSITIONS_PLAYBACK);
+        EnrichmentService.preload();
+
         // Initialize empty nodes, links, flows, will be filled by API later
 
         // Create UI components
@@ -148,7 +202,7 @@ public class NetworkTopologyApp extends Application {
         sideBar.setPlaybackPanel(playbackPanel);
         
         // Create InfoDialog and set it to TopologyCanvas
-        InfoDialog infoDialog = new InfoDialog(topologyCanvas, flows);
+        InfoDialog infoDialog = new InfoDialog(topologyCanvas);
         infoDialog.setMainApp(this);
         topologyCanvas.setInfoDialog(infoDialog);
 
@@ -198,6 +252,15 @@ public class NetworkTopologyApp extends Application {
         
         // Add loading overlay to centerPane
         centerPane.getChildren().add(loadingOverlay);
+        
+        // Staleness banner, top right over the canvas
+        this.staleLabel = new Label();
+        this.staleLabel.setStyle("-fx-background-color: rgba(243, 156, 18, 0.9); -fx-text-fill: white; -fx-font-size: 13px; -fx-font-weight: 600; -fx-padding: 6 12 6 12; -fx-background-radius: 6;");
+        this.staleLabel.setMouseTransparent(true);
+        this.staleLabel.setVisible(false);
+        StackPane.setAlignment(staleLabel, Pos.TOP_RIGHT);
+        StackPane.setMargin(staleLabel, new Insets(12));
+        centerPane.getChildren().add(staleLabel);
 
         // Create VBox to contain PlaybackPanel on top and centerPane below
         this.mainContent = new VBox(0); // No spacing between elements
@@ -256,6 +319,7 @@ public class NetworkTopologyApp extends Application {
         primaryStage.setOnCloseRequest((WindowEvent event) -> {
             // saveNodePositions(nodes); // Removed calls related to node_positions.json
             persistUserSettings();
+            NodePositionStore.flushAll();
             
             
             if (sideBar != null) {
@@ -263,6 +327,12 @@ public class NetworkTopologyApp extends Application {
             }
             
             // Stop API update tasks
+            if (eventStream != null) {
+                eventStream.close();
+            }
+            if (federation != null) {
+                federation.close();
+            }
             if (executor != null && !executor.isShutdown()) {
                 executor.shutdown();
                 try {
@@ -275,6 +345,11 @@ public class NetworkTopologyApp extends Application {
                 }
             }
             
+            // Flush and close the current recording segment
+            if (sessionRecorder != null) {
+                sessionRecorder.stop();
+            }
+            
             // Close HTTP client
             if (apiClient != null) {
                 try {
@@ -299,136 +374,284 @@ public class NetworkTopologyApp extends Application {
         } else {
             System.out.println("[INFO] Using NDT_API_URL from environment: " + apiUrl);
         }
-        this.apiClient = new NDTApiClient(apiUrl);
         
-        int threadPoolSize = Math.max(4, Runtime.getRuntime().availableProcessors() / 2);
+        // Record live polls as playback-ready NDJSON when NDT_RECORD_DIR is set
+        String recordDir = System.getenv("NDT_RECORD_DIR");
+        if (recordDir != null && !recordDir.trim().isEmpty()) {
+            sessionRecorder = new SessionRecorder(SessionRecorder.Config.fromSystemProperties(new File(recordDir.trim())));
+            sessionRecorder.start();
+        }
+        
+        // One thread per endpoint fetch (each has at most one in flight), plus the tick and a pushed update
+        int threadPoolSize = Math.max(6, Runtime.getRuntime().availableProcessors() / 2);
         this.executor = Executors.newScheduledThreadPool(threadPoolSize);
-        executor.scheduleAtFixedRate(() -> {
-            // Skip API updates if in playback mode
-            if (isPlaybackMode) {
-                return;
+        Map<String, String> halls = ControllerFederation.parse(apiUrl);
+        if (halls.size() > 1) {
+            // The halls poll themselves; every tick reads their merged last good responses, which
+            // are the same instances until a hall's data changes, and a change triggers an update
+            federation = new ControllerFederation(halls, () -> Math.max(1000L, apiPollIntervalSeconds * 1000L),
+                () -> apiTopKEnabled ? apiTopKValue : 0, GRAPH_POLL_MS, UTILIZATION_POLL_MS,
+                () -> isPlaybackMode, this::requestUpdate);
+            graphEndpoint = new PolledEndpoint<>("get_graph_data", () -> 0, federation::graph);
+            flowsEndpoint = new PolledEndpoint<>("flows", () -> 0, federation::flows);
+            cpuEndpoint = new PolledEndpoint<>("get_cpu_utilization", () -> 0, federation::cpuUtilization);
+            memoryEndpoint = new PolledEndpoint<>("get_memory_utilization", () -> 0, federation::memoryUtilization);
+            federation.start();
+        } else {
+            startSingleController(halls.isEmpty() ? apiUrl : halls.values().iterator().next());
+        }
+        
+        executor.scheduleAtFixedRate(this::pollOnce, 0, POLL_TICK_MS, TimeUnit.MILLISECONDS);
+
+        // Force to flow only mode
+        topologyCanvas.setShowFlows(true);
+        topologyCanvas.setShowLinks(false);
+    }
+
+    private void startSingleController(String apiUrl) {
+        this.apiClient = new NDTApiClient(apiUrl);
+        // Each endpoint on its own cadence, keeping its last good response
+        // While the event stream is live, flows and topology are read from it on every tick (an
+        // unchanged set is the same instance, so that costs nothing) and events trigger an update at once
+        graphEndpoint = new PolledEndpoint<>("get_graph_data", () -> pushedGraph() != null ? 0 : GRAPH_POLL_MS, () -> {
+            GraphData pushed = pushedGraph();
+            return pushed != null ? pushed : apiClient.getGraphData();
+        });
+        flowsEndpoint = new PolledEndpoint<>("flows", () -> pushing() ? 0 : Math.max(1000L, apiPollIntervalSeconds * 1000L), () -> {
+            // When Top-K mode is enabled, call the Top-K API; otherwise use full flow API.
+            if (pushing()) {
+                return eventStream.flows();
+            } else if (apiTopKEnabled && apiTopKValue > 0) {
+                System.out.println("[API] Using get_detected_top_k_flow_data with K=" + apiTopKValue);
+                return apiClient.getDetectedTopKFlowData(apiTopKValue);
+            } else {
+                return apiClient.getDetectedFlowData();
             }
-            
-            // Respect configurable logical polling interval
-            long now = System.currentTimeMillis();
-            long intervalMs = Math.max(1000L, apiPollIntervalSeconds * 1000L);
-            if (now - lastApiPollMillis < intervalMs) {
-                return;
+        });
+        cpuEndpoint = new PolledEndpoint<>("get_cpu_utilization", () -> UTILIZATION_POLL_MS, apiClient::getCpuUtilization);
+        memoryEndpoint = new PolledEndpoint<>("get_memory_utilization", () -> UTILIZATION_POLL_MS, apiClient::getMemoryUtilization);
+        if (API_PUSH) {
+            eventStream = new NdtEventStream(apiUrl, this::requestUpdate);
+            eventStream.start();
+        }
+    }
+
+    // Whether flows come from the event stream (it has no Top-K variant)
+    private boolean pushing() {
+        return eventStream != null && eventStream.isLive() && !(apiTopKEnabled && apiTopKValue > 0);
+    }
+
+    private GraphData pushedGraph() {
+        return eventStream != null && eventStream.isLive() ? eventStream.graph() : null;
+    }
+
+    // Event stream or hall thread: run an update now rather than on the next tick
+    private void requestUpdate() {
+        if (updatePending.compareAndSet(false, true)) {
+            try {
+                executor.execute(() -> {
+                    updatePending.set(false);
+                    pollOnce();
+                });
+            } catch (RejectedExecutionException e) {
+                // Shutting down
             }
-            lastApiPollMillis = now;
-            
-            
-            java.util.concurrent.CompletableFuture<GraphData> graphDataFuture = 
-                CompletableFuture.supplyAsync(() -> apiClient.getGraphData(), executor);
-            java.util.concurrent.CompletableFuture<DetectedFlowData[]> detectedFlowsFuture = 
-                CompletableFuture.supplyAsync(() -> {
-                    // When Top-K mode is enabled, call the Top-K API; otherwise use full flow API.
-                    if (apiTopKEnabled && apiTopKValue > 0) {
-                        System.out.println("[API] Using get_detected_top_k_flow_data with K=" + apiTopKValue);
-                        return apiClient.getDetectedTopKFlowData(apiTopKValue);
-                    } else {
-                        return apiClient.getDetectedFlowData();
+        }
+    }
+
+    private void pollOnce() {
+        pollLock.lock();
+        try {
+            poll();
+        } finally {
+            pollLock.unlock();
+        }
+    }
+
+    private void poll() {
+        // Skip API updates if in playback mode
+        if (isPlaybackMode) {
+            return;
+        }
+        
+        long now = System.currentTimeMillis();
+        boolean graphDue = graphEndpoint.due(now);
+        boolean flowsDue = flowsEndpoint.due(now);
+        boolean cpuDue = cpuEndpoint.due(now);
+        boolean memoryDue = memoryEndpoint.due(now);
+        updateStaleness(now);
+        if (!graphDue && !flowsDue && !cpuDue && !memoryDue && !hasUnapplied()) {
+            return;
+        }
+        final long pollStartNanos = System.nanoTime();
+        final boolean pushed = pushing();
+        
+        // Never wait out a hanging endpoint: apply what arrived and let a later tick pick up the rest
+        CompletableFuture<?> fetches = CompletableFuture.allOf(
+            fetchIfDue(graphEndpoint, graphDue, now),
+            fetchIfDue(flowsEndpoint, flowsDue, now),
+            fetchIfDue(cpuEndpoint, cpuDue, now),
+            fetchIfDue(memoryEndpoint, memoryDue, now));
+        try {
+            fetches.get(POLL_WAIT_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (Diagnostics.DEBUG) Diagnostics.debug("[POLL] Applying without the endpoints still fetching");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            System.err.println("[POLL] Fetch error: " + e.getCause());
+        }
+        final long fetchedNanos = System.nanoTime();
+        
+        GraphData graphData = graphEndpoint.get();
+        DetectedFlowData[] detectedFlows = flowsEndpoint.get();
+        Map<String, Integer> cpuUtilization = cpuEndpoint.get();
+        Map<String, Integer> memoryUtilization = memoryEndpoint.get();
+        // A new last good value is a new instance
+        boolean graphChanged = graphData != appliedGraph;
+        boolean flowsChanged = detectedFlows != appliedFlows;
+        boolean cpuChanged = cpuUtilization != appliedCpu;
+        boolean memoryChanged = memoryUtilization != appliedMemory;
+        // Pushed updates are measured from the event's arrival rather than from the tick
+        final long startNanos = pushed && flowsChanged ? Math.min(pollStartNanos, eventStream.lastEventNanos()) : pollStartNanos;
+        
+        if (sessionRecorder != null && flowsChanged && graphData != null) {
+            sessionRecorder.record(now, graphData, detectedFlows);
+        }
+        
+        if (Diagnostics.DEBUG) {
+            Diagnostics.debug("[DEBUG] API Update - graph: " + pollState(graphDue, graphChanged)
+                + ", flows: " + pollState(flowsDue, flowsChanged)
+                + ", cpu: " + pollState(cpuDue, cpuChanged)
+                + ", memory: " + pollState(memoryDue, memoryChanged));
+        }
+        
+        if (graphData == null || detectedFlows == null) {
+            // Add debug output, handle case when API data is null
+            System.out.println("[DEBUG] API data is null, skipping topology update");
+            if (graphData == null) {
+                System.out.println("[DEBUG] graphData is null - API connection issue?");
+            }
+            if (detectedFlows == null) {
+                System.out.println("[DEBUG] detectedFlows is null - API connection issue?");
+            }
+            return;
+        }
+        
+        if (!graphChanged && !flowsChanged) {
+            // Only utilization moved: patch the values on screen, nothing to convert or lay out
+            if (cpuChanged || memoryChanged) {
+                Map<String, Integer> cpuChanges = changedEntries(appliedCpu, cpuUtilization);
+                Map<String, Integer> memoryChanges = changedEntries(appliedMemory, memoryUtilization);
+                appliedCpu = cpuUtilization;
+                appliedMemory = memoryUtilization;
+                Platform.runLater(() -> {
+                    if (!isPlaybackMode) {
+                        mergeUtilization(cpuChanges, memoryChanges);
                     }
-                }, executor);
-            java.util.concurrent.CompletableFuture<Map<String, Integer>> cpuUtilizationFuture = 
-                CompletableFuture.supplyAsync(() -> apiClient.getCpuUtilization(), executor);
-            java.util.concurrent.CompletableFuture<Map<String, Integer>> memoryUtilizationFuture = 
-                CompletableFuture.supplyAsync(() -> apiClient.getMemoryUtilization(), executor);
+                });
+            }
+            return;
+        }
+        
+        // Convert the graph only when it or the canvas changed; every update gets its own copies
+        double canvasWidth = topologyCanvas.getWidth();
+        double canvasHeight = topologyCanvas.getHeight();
+        long positionsVersion = NodePositionStore.forFile(NODE_POSITIONS_REALTIME).version();
+        if (graphData != liveGraph || canvasWidth != liveGraphWidth || canvasHeight != liveGraphHeight
+                || positionsVersion != liveGraphPositionsVersion) {
+            // Check if node count has changed
+            int currentNodeCount = graphData.nodes.size();
+            if (currentNodeCount != lastNodeCount) {
+                System.out.println("[DEBUG] Topology changed! Node count: " + lastNodeCount + " -> " + currentNodeCount);
+                lastNodeCount = currentNodeCount;
+            }
+            liveGraphNodes = convertGraphNodes(graphData.nodes, graphData.edges, canvasWidth, canvasHeight);
+            liveGraph = graphData;
+            liveGraphWidth = canvasWidth;
+            liveGraphHeight = canvasHeight;
+            liveGraphPositionsVersion = positionsVersion;
+        }
+        List<Node> apiNodes = copyLiveNodes(cpuUtilization, memoryUtilization);
+        appliedGraph = graphData;
+        appliedFlows = detectedFlows;
+        appliedCpu = cpuUtilization;
+        appliedMemory = memoryUtilization;
+        
+        // First convert detected flows to get complete path information (pass apiNodes for DPID lookup)
+        FlowTable apiFlows = convertDetectedFlows(detectedFlows, apiNodes, true);
+        // When using full flow API, update last known total flow count for UI display
+        if (!apiTopKEnabled || apiTopKValue <= 0) {
+            lastFullFlowCount = apiFlows.size();
+        }
+        // Then convert links with detected flows for complete path info in flow_set
+        List<Link> apiLinks = convertGraphLinks(graphData.edges, apiNodes, apiFlows);
+        
+        assignFlowsToLinks(apiFlows, apiLinks, apiNodes);
+        
+        Platform.runLater(() -> {
             
+            if (isPlaybackMode) {
+                System.out.println("[DEBUG] Skipping API update - switched to playback mode");
+                return;
+            }
             
-            GraphData graphData = graphDataFuture.join();
-            DetectedFlowData[] detectedFlows = detectedFlowsFuture.join();
-            Map<String, Integer> cpuUtilization = cpuUtilizationFuture.join();
-            Map<String, Integer> memoryUtilization = memoryUtilizationFuture.join();
+            System.out.println("[DEBUG] updateTopology, nodes=" + apiNodes.size() + ", links=" + apiLinks.size() + ", flows=" + apiFlows.size());
+            // Nodes already carry the last good utilization
+            topologyCanvas.updateTopology(apiNodes, apiLinks, apiFlows);
+            publishSnapshot();
             
-            // Add debug output
-            System.out.println("[DEBUG] API Update - graphData: " + (graphData != null ? "OK" : "NULL") + 
-                             ", detectedFlows: " + (detectedFlows != null ? "OK" : "NULL") + 
-                             ", cpuUtilization: " + (cpuUtilization != null ? "OK" : "NULL") + 
-                             ", memoryUtilization: " + (memoryUtilization != null ? "OK" : "NULL"));
+            // Update SideBar filter data
+            sideBar.updateData(apiFlows, apiLinks, apiNodes);
             
-            if (graphData != null && detectedFlows != null) {
-                // Check if node count has changed
-                int currentNodeCount = graphData.nodes.size();
-                boolean topologyChanged = (currentNodeCount != lastNodeCount);
-                
-                if (topologyChanged) {
-                    System.out.println("[DEBUG] Topology changed! Node count: " + lastNodeCount + " -> " + currentNodeCount);
-                    lastNodeCount = currentNodeCount;
-                }
-                
-                List<Node> apiNodes = convertGraphNodes(graphData.nodes, graphData.edges, topologyCanvas.getWidth(), topologyCanvas.getHeight());
-                // First convert detected flows to get complete path information (pass apiNodes for DPID lookup)
-                List<Flow> apiFlows = convertDetectedFlows(detectedFlows, apiNodes);
-                // When using full flow API, update last known total flow count for UI display
-                if (!apiTopKEnabled || apiTopKValue <= 0) {
-                    lastFullFlowCount = apiFlows.size();
-                }
-                // Then convert links with detected flows for complete path info in flow_set
-                List<Link> apiLinks = convertGraphLinks(graphData.edges, apiNodes, apiFlows);
-                
-                
-                
-                
-                assignFlowsToLinks(apiFlows, apiLinks, apiNodes);
-                
-                // New: Update node utilization information
-                if (cpuUtilization != null || memoryUtilization != null) {
-                    System.out.println("[DEBUG] CPU utilization data: " + (cpuUtilization != null ? cpuUtilization.size() + " entries" : "null"));
-                    System.out.println("[DEBUG] Memory utilization data: " + (memoryUtilization != null ? memoryUtilization.size() + " entries" : "null"));
-                    
-                    // Display some utilization data samples
-                    if (cpuUtilization != null && !cpuUtilization.isEmpty()) {
-                        System.out.println("[DEBUG] Sample CPU data: " + cpuUtilization.entrySet().stream().limit(3).toList());
-                    }
-                    if (memoryUtilization != null && !memoryUtilization.isEmpty()) {
-                        System.out.println("[DEBUG] Sample Memory data: " + memoryUtilization.entrySet().stream().limit(3).toList());
-                    }
-                    
-                } else {
-                    System.out.println("[DEBUG] No utilization data available");
-                }
-                
-                Platform.runLater(() -> {
-                    
-                    if (isPlaybackMode) {
-                        System.out.println("[DEBUG] Skipping API update - switched to playback mode");
-                        return;
-                    }
-                    
-                    System.out.println("[DEBUG] updateTopology, nodes=" + apiNodes.size() + ", links=" + apiLinks.size() + ", flows=" + apiFlows.size());
-                    topologyCanvas.updateTopology(apiNodes, apiLinks, apiFlows);
-                    
-                    // Update SideBar filter data
-                    sideBar.updateData(apiFlows, apiLinks, apiNodes);
-                    
-                    // After topology update, update node utilization data
-                    if (cpuUtilization != null || memoryUtilization != null) {
-                        List<Node> guiNodes = topologyCanvas.getNodes();
-                        if (guiNodes != null && !guiNodes.isEmpty()) {
-                            updateNodeUtilization(guiNodes, cpuUtilization, memoryUtilization);
-                            System.out.println("[DEBUG] Updated utilization data for " + guiNodes.size() + " GUI nodes");
-                        }
-                    }
-                });
-            } else {
-                // Add debug output, handle case when API data is null
-                System.out.println("[DEBUG] API data is null, skipping topology update");
-                if (graphData == null) {
-                    System.out.println("[DEBUG] graphData is null - API connection issue?");
-                }
-                if (detectedFlows == null) {
-                    System.out.println("[DEBUG] detectedFlows is null - API connection issue?");
-                }
+            // Poll-to-pixel: the canvas draws this state on the next pulse
+            if (Diagnostics.INFO) {
+                long doneNanos = System.nanoTime();
+                Diagnostics.info("[LATENCY] " + (pushed ? "push" : "poll") + "-to-pixel " + (doneNanos - startNanos) / 1_000_000 + " ms (fetch "
+                    + (fetchedNanos - startNanos) / 1_000_000 + " ms, convert+apply "
+                    + (doneNanos - fetchedNanos) / 1_000_000 + " ms, flows=" + apiFlows.size() + ")");
             }
-        }, 0, 1, TimeUnit.SECONDS);
-
-        // Force to flow only mode
-        topologyCanvas.setShowFlows(true);
-        topologyCanvas.setShowLinks(false);
+        });
     }
 
 
+    /** Row each response object was converted into, by object identity; open addressing, no boxing. */
+    private static final class ConvertedRows {
+        static final ConvertedRows EMPTY = new ConvertedRows(0);
+
+        private final DetectedFlowData[] keys;
+        private final int[] rows;
+
+        ConvertedRows(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(1, expected + expected / 2)) * 2;
+            keys = new DetectedFlowData[capacity];
+            rows = new int[capacity];
+        }
+
+        void put(DetectedFlowData flow, int row) {
+            int slot = slotOf(flow);
+            keys[slot] = flow;
+            rows[slot] = row;
+        }
+
+        /** Row of {@code flow}, or -1. */
+        int get(DetectedFlowData flow) {
+            int slot = slotOf(flow);
+            return keys[slot] == flow ? rows[slot] : -1;
+        }
+
+        private int slotOf(DetectedFlowData flow) {
+            int mask = keys.length - 1;
+            int hash = System.identityHashCode(flow) * 0x9E3779B9;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (keys[slot] != null && keys[slot] != flow) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+
     private static final class LoadedSettings {
         double flowMoveSpeed;
         /** null = omit from file, keep constructor default for poll interval */
@@ -497,39 +720,27 @@ public class NetworkTopologyApp extends Application {
         return loadNodePositions(positionFile);
     }
     
-    private Map<String, int[]> loadNodePositions(String filename) {
+    private static Map<String, int[]> loadNodePositions(String filename) {
         Map<String, int[]> posMap = new HashMap<>();
         List<int[]> allPositions = new ArrayList<>();
         
-        try (FileReader reader = new FileReader(filename)) {
-            Gson gson = new Gson();
-            JsonObject obj = gson.fromJson(reader, JsonObject.class);
-            if (obj.has("nodes")) {
-                JsonArray arr = obj.getAsJsonArray("nodes");
-                for (int i = 0; i < arr.size(); i++) {
-                    JsonObject n = arr.get(i).getAsJsonObject();
-                    String ip = n.get("ip").getAsString();
-                    int x = n.get("x").getAsInt();
-                    int y = n.get("y").getAsInt();
-                    allPositions.add(new int[]{x, y});
-                    
-                    // Convert little-endian integer IP to standard IP format
-                    try {
-                        long littleEndianIp = Long.parseLong(ip);
-                        String standardIp = convertLittleEndianToIp(littleEndianIp);
-                        posMap.put(standardIp, new int[]{x, y});
-                        System.out.println("[DEBUG] Converted IP " + ip + " to " + standardIp + " for position loading");
-                    } catch (NumberFormatException e) {
-                        // If IP is not numeric format, use original value directly
-                        posMap.put(ip, new int[]{x, y});
-                        System.out.println("[DEBUG] Using original IP " + ip + " for position loading");
-                    }
-                }
+        for (Map.Entry<String, int[]> saved : NodePositionStore.forFile(filename).positions().entrySet()) {
+            String ip = saved.getKey();
+            int x = saved.getValue()[0];
+            int y = saved.getValue()[1];
+            allPositions.add(new int[]{x, y});
+            
+            // Convert little-endian integer IP to standard IP format
+            try {
+                long littleEndianIp = Long.parseLong(ip);
+                String standardIp = convertLittleEndianToIp(littleEndianIp);
+                posMap.put(standardIp, new int[]{x, y});
+                if (Diagnostics.TRACE) Diagnostics.trace("[DEBUG] Converted IP " + ip + " to " + standardIp + " for position loading");
+            } catch (NumberFormatException e) {
+                // If IP is not numeric format, use original value directly
+                posMap.put(ip, new int[]{x, y});
+                if (Diagnostics.TRACE) Diagnostics.trace("[DEBUG] Using original IP " + ip + " for position loading");
             }
-        } catch (Exception e) {
-            // Ignore when file doesn't exist or format error
-            System.out.println("[DEBUG] Could not load node_positions.json: " + e.getMessage());
-            return posMap;
         }
         
                     // Calculate boundaries
@@ -595,7 +806,7 @@ public class NetworkTopologyApp extends Application {
     }
 
     // New: Convert integer IP to standard IP address format (Big-Endian / Network Byte Order)
-    private String convertLittleEndianToIp(long intIp) {
+    private static String convertLittleEndianToIp(long intIp) {
         // Handle values that exceed 32-bit range by extracting lower 32 bits
         // This happens in testbed data where additional info may be encoded in upper bits
         if (intIp < 0) {
@@ -615,12 +826,7 @@ public class NetworkTopologyApp extends Application {
             
             // For display purposes, convert MAC to a pseudo-IP format or use a special marker
             // Extract lower 32 bits and convert as big-endian
-            long low32 = intIp & 0xFFFFFFFFL;
-            int b1 = (int) ((low32 >> 24) & 0xFF);
-            int b2 = (int) ((low32 >> 16) & 0xFF);
-            int b3 = (int) ((low32 >> 8) & 0xFF);
-            int b4 = (int) (low32 & 0xFF);
-            String pseudoIp = String.format("%d.%d.%d.%d", b1, b2, b3, b4);
+            String pseudoIp = EnrichmentService.ipv4(intIp);
             System.out.println("[INFO] Using lower 32 bits as pseudo-IP: " + pseudoIp + 
                              " (Note: This may not be a valid IP)");
             return pseudoIp;
@@ -634,101 +840,110 @@ public class NetworkTopologyApp extends Application {
         
         // Convert integer IP to standard IP address format (Big-Endian / Network Byte Order)
         // Example: 1895934144 (0x7101A8C0) -> 113.1.168.192
-        int b1 = (int) ((intIp >> 24) & 0xFF);   // First byte (most significant)
-        int b2 = (int) ((intIp >> 16) & 0xFF);   // Second byte
-        int b3 = (int) ((intIp >> 8) & 0xFF);    // Third byte
-        int b4 = (int) (intIp & 0xFF);           // Fourth byte (least significant)
-        
-        return String.format("%d.%d.%d.%d", b1, b2, b3, b4);
+        return EnrichmentService.ipv4(intIp);
     }
     
-    /**
-     * Parse time string from API format "2025-11-11 10:30:35" to milliseconds
-     * Returns milliseconds from start of day (HH:MM:SS only)
-     */
-    private int parseTimeStringToMs(String timeStr) {
-        if (timeStr == null || timeStr.trim().isEmpty()) {
-            return 0;
-        }
-        
-        try {
-            // Format: "2025-11-11 10:30:35"
-            // Extract time part "10:30:35"
-            String[] parts = timeStr.split(" ");
-            if (parts.length < 2) {
-                System.out.println("[WARN] Invalid time format: " + timeStr);
-                return 0;
-            }
-            
-            String timePart = parts[1]; // "10:30:35"
-            String[] timeParts = timePart.split(":");
-            if (timeParts.length != 3) {
-                System.out.println("[WARN] Invalid time part format: " + timePart);
-                return 0;
-            }
-            
-            int hours = Integer.parseInt(timeParts[0]);
-            int minutes = Integer.parseInt(timeParts[1]);
-            int seconds = Integer.parseInt(timeParts[2]);
-            
-            // Convert to milliseconds
-            int totalMs = (hours * 3600 + minutes * 60 + seconds) * 1000;
-            
-            return totalMs;
-        } catch (Exception e) {
-            System.out.println("[ERROR] Failed to parse time string: " + timeStr + ", error: " + e.getMessage());
-            return 0;
-        }
-    }
 
 
 
-    // New: Find corresponding utilization data based on standard IP
-    private Integer findUtilizationByStandardIp(String standardIp, Map<String, Integer> utilizationMap) {
-        return utilizationMap.get(standardIp);
+    private CompletableFuture<Boolean> fetchIfDue(PolledEndpoint<?> endpoint, boolean due, long now) {
+        return due ? CompletableFuture.supplyAsync(() -> endpoint.fetch(now), executor) : CompletableFuture.completedFuture(false);
     }
-
-    // New: Update node utilization information
-    private void updateNodeUtilization(List<Node> nodes, Map<String, Integer> cpuUtilization, Map<String, Integer> memoryUtilization) {
-        System.out.println("[DEBUG] updateNodeUtilization called with " + nodes.size() + " nodes");
-        int cpuMatches = 0;
-        int memoryMatches = 0;
-        
-        for (Node node : nodes) {
+    
+    private static String pollState(boolean due, boolean changed) {
+        return !due ? "cached" : changed ? "new" : "unchanged";
+    }
+    
+    // Whether a fetch that outlasted its tick has left a response not yet on screen
+    private boolean hasUnapplied() {
+        if (graphEndpoint.get() == null || flowsEndpoint.get() == null) {
+            return false;
+        }
+        return graphEndpoint.get() != appliedGraph || flowsEndpoint.get() != appliedFlows
+            || cpuEndpoint.get() != appliedCpu || memoryEndpoint.get() != appliedMemory;
+    }
+    
+    // Show how old the data on screen is while an endpoint is failing; hide the banner once all answer
+    private void updateStaleness(long now) {
+        StringBuilder text = new StringBuilder();
+        for (PolledEndpoint<?> endpoint : List.of(graphEndpoint, flowsEndpoint, cpuEndpoint, memoryEndpoint)) {
+            if (!endpoint.isFailing()) continue;
+            text.append(text.length() == 0 ? "Controller not responding - showing last data: " : ", ");
+            long lastGood = endpoint.lastGoodMillis();
+            text.append(endpoint == graphEndpoint ? "topology" : endpoint == flowsEndpoint ? "flows"
+                : endpoint == cpuEndpoint ? "CPU" : "memory");
+            text.append(lastGood > 0 ? " " + (now - lastGood) / 1000 + " s old" : " none yet");
+        }
+        if (federation != null) {
+            String halls = federation.staleness(now);
+            if (!halls.isEmpty()) {
+                text.append(text.length() == 0 ? "Controller not responding - showing last data: " : ", ").append(halls);
+            }
+        }
+        String current = text.toString();
+        if (current.equals(staleText)) return;
+        staleText = current;
+        Platform.runLater(() -> {
+            staleLabel.setText(current);
+            staleLabel.setVisible(!current.isEmpty() && !isPlaybackMode);
+        });
+    }
+    
+    // Fresh copies of the converted graph nodes carrying the last good utilization, so no list
+    // handed to the FX thread is touched again here
+    private List<Node> copyLiveNodes(Map<String, Integer> cpuUtilization, Map<String, Integer> memoryUtilization) {
+        List<Node> nodes = new ArrayList<>(liveGraphNodes.size());
+        for (Node template : liveGraphNodes) {
+            Node node = template.copy();
             if (node.ip != null && !node.ip.isEmpty()) {
                 // Node IPs are now in standard format, direct matching
-                Integer cpu = findUtilizationByStandardIp(node.ip, cpuUtilization);
-                Integer memory = findUtilizationByStandardIp(node.ip, memoryUtilization);
-                
-                // Update node utilization information
-                if (cpu != null) {
-                    node.setCpuUtilization(cpu);
-                    cpuMatches++;
-                    System.out.println("[DEBUG] Matched CPU utilization for " + node.ip + ": " + cpu + "%");
-                }
-                if (memory != null) {
-                    node.setMemoryUtilization(memory);
-                    memoryMatches++;
-                    System.out.println("[DEBUG] Matched Memory utilization for " + node.ip + ": " + memory + "%");
-                }
-                
-                // Debug output: Show matching status of first few nodes
-                if (cpuMatches + memoryMatches <= 6) {
-                    System.out.println("[DEBUG] Node " + node.ip + " - CPU: " + cpu + ", Memory: " + memory);
-                }
+                Integer cpu = cpuUtilization != null ? cpuUtilization.get(node.ip) : null;
+                Integer memory = memoryUtilization != null ? memoryUtilization.get(node.ip) : null;
+                if (cpu != null) node.setCpuUtilization(cpu);
+                if (memory != null) node.setMemoryUtilization(memory);
             }
+            nodes.add(node);
         }
-        
-        System.out.println("[DEBUG] Utilization update complete - CPU matches: " + cpuMatches + ", Memory matches: " + memoryMatches);
+        return nodes;
+    }
+    
+    // Entries of current that are new or differ from previous
+    private static Map<String, Integer> changedEntries(Map<String, Integer> previous, Map<String, Integer> current) {
+        Map<String, Integer> changes = new HashMap<>();
+        if (current == null) {
+            return changes;
+        }
+        for (Map.Entry<String, Integer> entry : current.entrySet()) {
+            if (entry.getValue() != null && (previous == null || !entry.getValue().equals(previous.get(entry.getKey())))) {
+                changes.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return changes;
+    }
+    
+    // Apply changed utilization values to the nodes on screen (FX thread)
+    private void mergeUtilization(Map<String, Integer> cpuChanges, Map<String, Integer> memoryChanges) {
+        SnapshotBus.Snapshot snapshot = SnapshotBus.current();
+        int merged = 0;
+        for (Map.Entry<String, Integer> entry : cpuChanges.entrySet()) {
+            Node node = snapshot.nodeByIp(entry.getKey());
+            if (node != null && entry.getKey().equals(node.ip)) {
+                node.setCpuUtilization(entry.getValue());
+                merged++;
+            }
+        }
+        for (Map.Entry<String, Integer> entry : memoryChanges.entrySet()) {
+            Node node = snapshot.nodeByIp(entry.getKey());
+            if (node != null && entry.getKey().equals(node.ip)) {
+                node.setMemoryUtilization(entry.getValue());
+                merged++;
+            }
+        }
+        if (Diagnostics.DEBUG) Diagnostics.debug("[POLL] Merged " + merged + " changed utilization values");
     }
 
     // Convert API GraphData.Node to GUI Node, with automatic Fat-Tree layout
     private List<Node> convertGraphNodes(List<GraphData.Node> apiNodes, List<GraphData.Edge> apiEdges, double canvasWidth, double canvasHeight) {
-        // Calculate actual total node count (unified approach: one node per device)
-        int actualNodeCount = apiNodes.size();
-        
-        // Check if layout needs to be reinitialized
-        boolean shouldReinitialize = (actualNodeCount != lastNodeCount);
         List<Node> nodes = new ArrayList<>();
         
         // Classify nodes
@@ -868,6 +1083,14 @@ public class NetworkTopologyApp extends Application {
             }
         }
         
+        // Same nodes, canvas size and saved positions as last poll: reuse that layout
+        long signature = TopologyLayoutCache.signature(nodes);
+        long positionsVersion = NodePositionStore.forFile(isPlaybackMode ? NODE_POSITIONS_PLAYBACK : NODE_POSITIONS_REALTIME).version();
+        if (liveLayout.apply(nodes, signature, (int) canvasWidth, (int) canvasHeight, positionsVersion)) {
+            if (Diagnostics.DEBUG) Diagnostics.debug("[LAYOUT] Topology unchanged, reused layout of " + nodes.size() + " nodes");
+            return nodes;
+        }
+        
         // Prioritize node position file, use automatic layout if none exists
         Map<String, int[]> savedPositions = loadNodePositions();
         boolean useSavedPositions = !savedPositions.isEmpty();
@@ -877,7 +1100,7 @@ public class NetworkTopologyApp extends Application {
         if (useSavedPositions) {
             int matchedCount = 0;
             for (Node node : nodes) {
-                if (savedPositions.containsKey(node.ip)) {
+                if (NodePositionStore.lookup(savedPositions, node) != null) {
                     matchedCount++;
                 }
             }
@@ -890,11 +1113,11 @@ public class NetworkTopologyApp extends Application {
             System.out.println("[DEBUG] Using saved node positions from file (complete match)");
             // Use saved positions
             for (Node node : nodes) {
-                int[] pos = savedPositions.get(node.ip);
+                int[] pos = NodePositionStore.lookup(savedPositions, node);
                 if (pos != null) {
                     node.x = pos[0];
                     node.y = pos[1];
-                    System.out.println("[DEBUG] Applied saved position for " + node.ip + ": (" + node.x + ", " + node.y + ")");
+                    if (Diagnostics.TRACE) Diagnostics.trace("[DEBUG] Applied saved position for " + node.ip + ": (" + node.x + ", " + node.y + ")");
                 }
             }
         } else {
@@ -904,28 +1127,90 @@ public class NetworkTopologyApp extends Application {
                 System.out.println("[DEBUG] No saved positions found, using automatic layout");
             }
             
-            // If topology changes, force reapply Fat-Tree layout
-            if (shouldReinitialize) {
-                System.out.println("[DEBUG] Reinitializing Fat-Tree layout due to topology change");
-                // Clear all node positions, force re-layout
-                for (Node node : nodes) {
-                    node.x = 100;
-                    node.y = 100;
-                }
-            }
-            
             // Fat-Tree automatic layout
             applyFatTreeLayout(coreNodes, aggregationNodes, edgeNodes, hostNodes, canvasWidth, canvasHeight);
+            if (nodes.size() >= FORCE_LAYOUT_NODES) {
+                applyForceLayout(nodes, apiEdges, canvasWidth, canvasHeight);
+            }
         }
         
-        // Update lastNodeCount to actual node count
-        lastNodeCount = nodes.size();
-        
+        liveLayout.remember(nodes, signature, (int) canvasWidth, (int) canvasHeight, positionsVersion);
         return nodes;
     }
 
+    /**
+     * Spread a large fabric laid out in Fat-Tree rows with a force-directed pass along the rows.
+     * Nodes that were in the previous layout start where they were, so after a small topology
+     * change a short pass suffices and the rest of the picture stays put.
+     */
+    private void applyForceLayout(List<Node> nodes, List<GraphData.Edge> apiEdges, double canvasWidth, double canvasHeight) {
+        long start = System.nanoTime();
+        int n = nodes.size();
+        Map<String, Integer> indexByIp = new HashMap<>(n * 2);
+        for (int i = 0; i < n; i++) {
+            Node node = nodes.get(i);
+            if (node.ips != null) {
+                for (String ip : node.ips) indexByIp.putIfAbsent(ip, i);
+            }
+            if (node.ip != null && !node.ip.isEmpty()) indexByIp.put(node.ip, i);
+        }
+        int[] edgeFrom = new int[apiEdges.size()];
+        int[] edgeTo = new int[apiEdges.size()];
+        int edges = 0;
+        for (GraphData.Edge e : apiEdges) {
+            if (e.src_ip == null || e.src_ip.isEmpty() || e.dst_ip == null || e.dst_ip.isEmpty()) continue;
+            Integer from = indexByIp.get(convertLittleEndianToIp(e.src_ip.getFirst()));
+            Integer to = indexByIp.get(convertLittleEndianToIp(e.dst_ip.getFirst()));
+            if (from == null || to == null || from.equals(to)) continue;
+            edgeFrom[edges] = from;
+            edgeTo[edges] = to;
+            edges++;
+        }
+        edgeFrom = Arrays.copyOf(edgeFrom, edges);
+        edgeTo = Arrays.copyOf(edgeTo, edges);
+
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double[] rowY = new double[n];
+        boolean[] known = new boolean[n];
+        int reused = 0;
+        for (int i = 0; i < n; i++) {
+            Node node = nodes.get(i);
+            int[] previous = liveLayout.previousPosition(node);
+            known[i] = previous != null;
+            x[i] = known[i] ? previous[0] : node.x;
+            y[i] = node.y;
+            rowY[i] = node.layer != null ? node.y : Double.NaN;
+            if (known[i]) reused++;
+        }
+        // New nodes start next to the neighbours that kept their place
+        if (reused > 0) {
+            double[] sumX = new double[n];
+            int[] count = new int[n];
+            for (int e = 0; e < edges; e++) {
+                if (known[edgeFrom[e]] && !known[edgeTo[e]]) { sumX[edgeTo[e]] += x[edgeFrom[e]]; count[edgeTo[e]]++; }
+                if (known[edgeTo[e]] && !known[edgeFrom[e]]) { sumX[edgeFrom[e]] += x[edgeTo[e]]; count[edgeFrom[e]]++; }
+            }
+            for (int i = 0; i < n; i++) {
+                if (count[i] > 0) x[i] = sumX[i] / count[i] + (i % 5 - 2) * 3;
+            }
+        }
+
+        boolean incremental = reused >= n * 0.8;
+        double idealLength = Math.max(30, Math.sqrt(canvasWidth * canvasHeight / n));
+        // Rows keep the Fat-Tree layout's minimum host spacing
+        ForceDirectedLayout.layout(x, y, rowY, edgeFrom, edgeTo, idealLength, 25,
+            incremental ? 40 : 300, incremental ? idealLength : canvasWidth / 4);
+        for (int i = 0; i < n; i++) {
+            nodes.get(i).x = (int) Math.round(x[i]);
+            nodes.get(i).y = (int) Math.round(y[i]);
+        }
+        System.out.printf("[LAYOUT] Force-directed layout of %d nodes (%s, %d reused) in %.0f ms%n",
+            n, incremental ? "incremental" : "full", reused, (System.nanoTime() - start) / 1e6);
+    }
+
     // Fat-Tree topology automatic layout - fix right bias issue
-    private void applyFatTreeLayout(List<Node> coreNodes, List<Node> aggregationNodes, 
+    private static void applyFatTreeLayout(List<Node> coreNodes, List<Node> aggregationNodes, 
                                    List<Node> edgeNodes, List<Node> hostNodes, 
                                    double canvasWidth, double canvasHeight) {
         int layerSpacing = 120;
@@ -1004,7 +1289,7 @@ public class NetworkTopologyApp extends Application {
         }
     }
     // Convert API GraphData.Edge to GUI Link
-    private List<Link> convertGraphLinks(List<GraphData.Edge> apiEdges, List<Node> nodes, List<Flow> detectedFlows) {
+    List<Link> convertGraphLinks(List<GraphData.Edge> apiEdges, List<Node> nodes, List<Flow> detectedFlows) {
         List<Link> links = new ArrayList<>();
         
         // Create IP to node mapping (unified approach: all IPs map to same node)
@@ -1018,21 +1303,16 @@ public class NetworkTopologyApp extends Application {
             if (node.ips != null && !node.ips.isEmpty()) {
                 for (String ip : node.ips) {
                     ipToNodeMap.put(ip, node);
-                    System.out.println("[DEBUG] Mapped IP " + ip + " to node " + node.name);
+                    if (Diagnostics.TRACE) Diagnostics.trace("[DEBUG] Mapped IP " + ip + " to node " + node.name);
                 }
             }
         }
-        System.out.println("[DEBUG] Created IP to node mapping with " + ipToNodeMap.size() + " entries for " + nodes.size() + " nodes");
+        if (Diagnostics.DEBUG) Diagnostics.debug("[DEBUG] Created IP to node mapping with " + ipToNodeMap.size() + " entries for " + nodes.size() + " nodes");
         
-        // Create a map for quick flow lookup: key = "srcIp_dstIp" (relaxed matching)
-        Map<String, Flow> detectedFlowMap = new HashMap<>();
-        if (detectedFlows != null) {
-            for (Flow flow : detectedFlows) {
-                String key = flow.srcIp + "_" + flow.dstIp;
-                detectedFlowMap.put(key, flow);
-            }
-            System.out.println("[DEBUG] Created detected flow map with " + detectedFlowMap.size() + " entries (relaxed matching: src_ip + dst_ip only)");
-        }
+        // Flow lookup for edge flow sets: key = "srcIp_dstIp" (relaxed matching), value = row;
+        // built on the first edge that reports a flow set
+        FlowTable detectedTable = detectedFlows != null ? FlowTable.of(detectedFlows) : null;
+        Map<String, Integer> detectedFlowMap = null;
         
         int totalDuplicatesSkipped = 0;
         
@@ -1046,24 +1326,24 @@ public class NetworkTopologyApp extends Application {
             if (e.src_ip != null && !e.src_ip.isEmpty() && e.dst_ip != null && !e.dst_ip.isEmpty()) {
                 // Create links for all combinations of src_ip and dst_ip
                 for (Long srcIpValue : e.src_ip) {
-                    System.out.println("[DEBUG] Processing edge - src_ip: " + srcIpValue + " (0x" + Long.toHexString(srcIpValue) + ")");
+                    if (Diagnostics.TRACE) Diagnostics.trace("[DEBUG] Processing edge - src_ip: " + srcIpValue + " (0x" + Long.toHexString(srcIpValue) + ")");
                     String srcIp = convertLittleEndianToIp(srcIpValue);
                     
                     // Skip invalid source IPs
                     if ("0.0.0.0".equals(srcIp)) {
-                        System.out.println("[DEBUG] Skipping edge with invalid source IP");
+                        if (Diagnostics.TRACE) Diagnostics.trace("[DEBUG] Skipping edge with invalid source IP");
                         continue;
                     }
                     
                     Node sourceNode = ipToNodeMap.get(srcIp);
                     
                     for (Long dstIpValue : e.dst_ip) {
-                        System.out.println("[DEBUG] Processing edge - dst_ip: " + dstIpValue + " (0x" + Long.toHexString(dstIpValue) + ")");
+                        if (Diagnostics.TRACE) Diagnostics.trace("[DEBUG] Processing edge - dst_ip: " + dstIpValue + " (0x" + Long.toHexString(dstIpValue) + ")");
                         String dstIp = convertLittleEndianToIp(dstIpValue);
                         
                         // Skip invalid destination IPs
                         if ("0.0.0.0".equals(dstIp)) {
-                            System.out.println("[DEBUG] Skipping edge with invalid destination IP");
+                            if (Diagnostics.TRACE) Diagnostics.trace("[DEBUG] Skipping edge with invalid destination IP");
                             continue;
                         }
                         
@@ -1073,7 +1353,7 @@ public class NetworkTopologyApp extends Application {
                         if (sourceNode != null && targetNode != null) {
                             // Skip self-loop (when source and target are the same node)
                             if (sourceNode == targetNode) {
-                                System.out.println("[DEBUG] Skipping self-loop: " + srcIp + " -> " + dstIp + " (both map to " + sourceNode.name + ")");
+                                if (Diagnostics.TRACE) Diagnostics.trace("[DEBUG] Skipping self-loop: " + srcIp + " -> " + dstIp + " (both map to " + sourceNode.name + ")");
                                 continue;
                             }
                             // ✅ FIX: Use actual IP from edge, not node's primary IP
@@ -1088,7 +1368,7 @@ public class NetworkTopologyApp extends Application {
                             // Check if we've already created a link for this IP pair in this edge
                             if (processedNodePairs.contains(ipPairKey)) {
                                 duplicatesInThisEdge++;
-                                System.out.println("[DEDUP] Skipping duplicate link for IP pair: " + ipPairKey);
+                                if (Diagnostics.TRACE) Diagnostics.trace("[DEDUP] Skipping duplicate link for IP pair: " + ipPairKey);
                                 continue;
                             }
                             
@@ -1107,6 +1387,16 @@ public class NetworkTopologyApp extends Application {
                             
                             // Parse flow_set
                             List<Flow> flowSetList = new ArrayList<>();
+                            if (e.flow_set != null && !e.flow_set.isEmpty() && detectedFlowMap == null) {
+                                detectedFlowMap = new HashMap<>();
+                                if (detectedTable != null) {
+                                    FlowTable.Cursor flow = detectedTable.cursor();
+                                    while (flow.next()) {
+                                        detectedFlowMap.put(flow.srcIp() + "_" + flow.dstIp(), flow.row());
+                                    }
+                                    if (Diagnostics.DEBUG) Diagnostics.debug("[DEBUG] Created detected flow map with " + detectedFlowMap.size() + " entries (relaxed matching: src_ip + dst_ip only)");
+                                }
+                            }
                             if (e.flow_set != null) {
                                 for (GraphData.FlowSet fs : e.flow_set) {
                                     // Convert little-endian integer IP to standard IP format
@@ -1115,11 +1405,12 @@ public class NetworkTopologyApp extends Application {
                                     
                                     // Try to find matching detected flow with complete path info (relaxed matching: only src_ip and dst_ip)
                                     String flowKey = srcIpStandard + "_" + dstIpStandard;
-                                    Flow detectedFlow = detectedFlowMap.get(flowKey);
+                                    Integer detectedRow = detectedFlowMap.get(flowKey);
+                                    Flow detectedFlow = detectedRow != null ? detectedTable.get(detectedRow) : null;
                                     
                                     if (detectedFlow != null && detectedFlow.pathNodes != null && detectedFlow.pathNodes.size() >= 2) {
                                         // Use complete flow information from detected flows (with full path)
-                                        System.out.println("[DEBUG] Found matching detected flow with " + detectedFlow.pathNodes.size() + " path nodes for: " + srcIpStandard + " -> " + dstIpStandard + " (port " + fs.src_port + ":" + fs.dst_port + ")");
+                                        if (Diagnostics.TRACE) Diagnostics.trace("[DEBUG] Found matching detected flow with " + detectedFlow.pathNodes.size() + " path nodes for: " + srcIpStandard + " -> " + dstIpStandard + " (port " + fs.src_port + ":" + fs.dst_port + ")");
                                         flowSetList.add(detectedFlow);
                                     } else {
                                         // Fallback: Create simple flow with only 2 nodes (src and dst)
@@ -1131,7 +1422,7 @@ public class NetworkTopologyApp extends Application {
                                         pathPorts.add(fs.src_port);
                                         pathPorts.add(fs.dst_port);
                                         
-                                        System.out.println("[DEBUG] No detected flow found, using simple 2-node path for: " + srcIpStandard + " -> " + dstIpStandard);
+                                        if (Diagnostics.TRACE) Diagnostics.trace("[DEBUG] No detected flow found, using simple 2-node path for: " + srcIpStandard + " -> " + dstIpStandard);
                                         flowSetList.add(new Flow(
                                             pathNodes,
                                             pathPorts,
@@ -1151,46 +1442,62 @@ public class NetworkTopologyApp extends Application {
                                                e.src_dpid, e.dst_dpid, e.dst_port, e.src_interface, e.dst_interface, e.left_link_bandwidth_bps, e.link_bandwidth_usage_bps);
                             links.add(link);
                             
-                            System.out.println("[DEBUG] Created link: " + source + " -> " + target);
+                            if (Diagnostics.TRACE) Diagnostics.trace("[DEBUG] Created link: " + source + " -> " + target);
                         } else {
-                    System.out.println("[DEBUG] Unable to find node connection: src_ip=" + srcIp + ", dst_ip=" + dstIp);
+                            if (Diagnostics.DEBUG) Diagnostics.debug("[DEBUG] Unable to find node connection: src_ip=" + srcIp + ", dst_ip=" + dstIp);
                         }
                     }
                 }
             } else {
-                System.out.println("[DEBUG] Edge has null or empty src_ip/dst_ip: src_ip=" + 
+                if (Diagnostics.DEBUG) Diagnostics.debug("[DEBUG] Edge has null or empty src_ip/dst_ip: src_ip=" + 
                     (e.src_ip != null ? e.src_ip.size() : "null") + 
                     ", dst_ip=" + (e.dst_ip != null ? e.dst_ip.size() : "null"));
             }
             
             // Accumulate duplicate statistics
             totalDuplicatesSkipped += duplicatesInThisEdge;
-            if (duplicatesInThisEdge > 0) {
-                System.out.println("[DEDUP] Edge skipped " + duplicatesInThisEdge + " duplicate links");
+            if (duplicatesInThisEdge > 0 && Diagnostics.DEBUG) {
+                Diagnostics.debug("[DEDUP] Edge skipped " + duplicatesInThisEdge + " duplicate links");
             }
         }
         
-        System.out.println("[DEDUP] ========== Link Deduplication Summary ==========");
-        System.out.println("[DEDUP] Total links created: " + links.size());
-        System.out.println("[DEDUP] Total duplicate links skipped: " + totalDuplicatesSkipped);
-        if (totalDuplicatesSkipped > 0) {
-            int wouldHaveCreated = links.size() + totalDuplicatesSkipped;
-            double reductionPercent = (totalDuplicatesSkipped * 100.0) / wouldHaveCreated;
-            System.out.println("[DEDUP] Without deduplication would have created: " + wouldHaveCreated + " links");
-            System.out.println("[DEDUP] Reduction: " + String.format("%.1f", reductionPercent) + "%");
+        if (Diagnostics.DEBUG) {
+            Diagnostics.debug("[DEDUP] ========== Link Deduplication Summary ==========");
+            Diagnostics.debug("[DEDUP] Total links created: " + links.size());
+            Diagnostics.debug("[DEDUP] Total duplicate links skipped: " + totalDuplicatesSkipped);
+            if (totalDuplicatesSkipped > 0) {
+                int wouldHaveCreated = links.size() + totalDuplicatesSkipped;
+                double reductionPercent = (totalDuplicatesSkipped * 100.0) / wouldHaveCreated;
+                Diagnostics.debug("[DEDUP] Without deduplication would have created: " + wouldHaveCreated + " links");
+                Diagnostics.debug("[DEDUP] Reduction: " + String.format("%.1f", reductionPercent) + "%");
+            }
+            Diagnostics.debug("[DEDUP] ================================================");
         }
-        System.out.println("[DEDUP] ================================================");
         return links;
     }
     
     // Convert API DetectedFlowData to GUI Flow
-    private List<Flow> convertDetectedFlows(DetectedFlowData[] apiFlows, List<Node> nodes) {
-        List<Flow> flows = new ArrayList<>();
-        
+    FlowTable convertDetectedFlows(DetectedFlowData[] apiFlows, List<Node> nodes) {
+        return convertDetectedFlows(apiFlows, nodes, false);
+    }
+
+    /**
+     * Rows go straight into a {@link FlowTable}; no {@link Flow} is built.
+     *
+     * With {@code reuse}, a flow whose response object the last reusing call converted too has its
+     * row copied over as it was, as long as the switch IPs and the path pool are the same. The event
+     * stream keeps an unchanged flow's object across deltas (and the federation an unchanged hall's),
+     * so a delta only converts the flows it added or updated. Poll thread only.
+     */
+    FlowTable convertDetectedFlows(DetectedFlowData[] apiFlows, List<Node> nodes, boolean reuse) {
         // If no API data, return empty list instead of adding test data
         if (apiFlows == null || apiFlows.length == 0) {
-            System.out.println("[DEBUG] No API flows detected, returning empty list");
-            return flows;
+            if (reuse) {
+                convertedTable = FlowTable.EMPTY;
+                convertedRows = ConvertedRows.EMPTY;
+            }
+            if (Diagnostics.DEBUG) Diagnostics.debug("[DEBUG] No API flows detected, returning empty list");
+            return FlowTable.EMPTY;
         }
         
         
@@ -1210,25 +1517,67 @@ public class NetworkTopologyApp extends Application {
                 }
             }
         }
-        System.out.println("[OPTIMIZATION] Created DPID to IP map with " + dpidToIpMap.size() + " entries");
-        
-        System.out.println("========== FLOW PATH ANALYSIS (Total: " + apiFlows.length + " flows) ==========");
+        if (Diagnostics.DEBUG) {
+            Diagnostics.debug("[OPTIMIZATION] Created DPID to IP map with " + dpidToIpMap.size() + " entries");
+            Diagnostics.debug("========== FLOW PATH ANALYSIS (Total: " + apiFlows.length + " flows) ==========");
+        }
         int flowIndex = 0;
+        int incompletePaths = 0;
+        FlowIdentityTable flowIdentities = FlowIdentityTable.shared();
+        long seenAt = System.currentTimeMillis();
+        // Paths are resolved into scratch arrays and pooled; flows on the same path share its lists
+        FlowPaths paths = FlowPaths.forFlows(apiFlows.length);
+        String[] pathScratch = new String[16];
+        int[] portScratch = new int[16];
+        boolean samePaths = reuse && paths == convertedPaths && dpidToIpMap.equals(convertedDpids);
+        FlowTable previous = samePaths ? convertedTable : FlowTable.EMPTY;
+        ConvertedRows previousRows = samePaths ? convertedRows : ConvertedRows.EMPTY;
+        ConvertedRows converted = reuse ? new ConvertedRows(apiFlows.length) : null;
+        FlowTable.Builder flows = new FlowTable.Builder(paths, apiFlows.length);
+        int reused = 0;
         for (DetectedFlowData f : apiFlows) {
+            int unchanged = previousRows.get(f);
+            if (unchanged >= 0) {
+                // Still observed, so the flow keeps its ID; a forgotten one is converted afresh
+                FlowIdentityTable.Entry identity = flowIdentities.observe(
+                    (int) f.src_ip, (int) f.dst_ip, f.src_port, f.dst_port, f.protocol_id, seenAt);
+                if (identity.id == previous.id[unchanged]) {
+                    if (f.path != null && paths.length(previous.path[unchanged]) < f.path.size()) {
+                        incompletePaths++;
+                    }
+                    converted.put(f, flows.add(previous, unchanged));
+                    reused++;
+                    continue;
+                }
+            }
+
+            // Per-flow analysis is only traced for 1 in SAMPLE_EVERY flows
+            boolean traceFlow = Diagnostics.TRACE && Diagnostics.sampled(flowIndex);
             flowIndex++;
-            System.out.println("\n====== FLOW #" + flowIndex + " ======");
-            // Log raw flow data for debugging
-            System.out.println("[DEBUG] Processing flow - src_ip: " + f.src_ip + " (0x" + Long.toHexString(f.src_ip) + 
-                             "), dst_ip: " + f.dst_ip + " (0x" + Long.toHexString(f.dst_ip) + ")");
+            if (traceFlow) {
+                Diagnostics.trace("\n====== FLOW #" + flowIndex + " ======");
+                // Log raw flow data for debugging
+                Diagnostics.trace("[DEBUG] Processing flow - src_ip: " + f.src_ip + " (0x" + Long.toHexString(f.src_ip) + 
+                                 "), dst_ip: " + f.dst_ip + " (0x" + Long.toHexString(f.dst_ip) + ")");
+            }
             
-            List<String> pathNodes = new ArrayList<>();
-            List<Integer> pathPorts = new ArrayList<>();
+            // Skip flows with invalid IPs (the ones that format as 0.0.0.0)
+            if ((int) f.src_ip == 0 || (int) f.dst_ip == 0) {
+                if (traceFlow) Diagnostics.trace("[DEBUG] Skipping flow with invalid IP addresses");
+                continue;
+            }
+            
+            int pathLength = 0;
             
             // Correctly handle path data
             if (f.path != null && !f.path.isEmpty()) {
-                System.out.println("[DEBUG] Flow has " + f.path.size() + " path nodes");
+                if (traceFlow) Diagnostics.trace("[DEBUG] Flow has " + f.path.size() + " path nodes");
+                if (f.path.size() > pathScratch.length) {
+                    pathScratch = new String[f.path.size()];
+                    portScratch = new int[f.path.size()];
+                }
                 for (DetectedFlowData.PathNode pn : f.path) {
-                    System.out.println("[DEBUG] Path node: " + pn.node + " (0x" + Long.toHexString(pn.node) + 
+                    if (traceFlow) Diagnostics.trace("[DEBUG] Path node: " + pn.node + " (0x" + Long.toHexString(pn.node) + 
                                      "), interface: " + pn.interface_id);
                     
                     String nodeIp = null;
@@ -1239,88 +1588,99 @@ public class NetworkTopologyApp extends Application {
                     
                     String dpidIp = dpidToIpMap.get(pn.node);
                     if (dpidIp != null) {
-                        System.out.println("[DEBUG] Path node matched DPID in topology, treat as SWITCH. dpid=" 
+                        if (traceFlow) Diagnostics.trace("[DEBUG] Path node matched DPID in topology, treat as SWITCH. dpid=" 
                                            + pn.node + " (0x" + Long.toHexString(pn.node) + "), ip=" + dpidIp);
                         nodeIp = dpidIp;
                     } else if (pn.node > 0xFFFFFFFFL) {
                         
-                        System.out.println("[DEBUG] Path node is large value (>32-bit) but not found in DPID table, treat as SWITCH without IP mapping: " 
+                        if (traceFlow) Diagnostics.trace("[DEBUG] Path node is large value (>32-bit) but not found in DPID table, treat as SWITCH without IP mapping: " 
                                            + pn.node + " (0x" + Long.toHexString(pn.node) + ")");
                         
                     } else {
                         
-                        System.out.println("[DEBUG] Path node is treated as HOST IP (32-bit), converting...");
+                        if (traceFlow) Diagnostics.trace("[DEBUG] Path node is treated as HOST IP (32-bit), converting...");
                         nodeIp = convertLittleEndianToIp(pn.node);
-                        System.out.println("[DEBUG] Converted IP: " + nodeIp);
+                        if (traceFlow) Diagnostics.trace("[DEBUG] Converted IP: " + nodeIp);
                     }
                     
                     // Add to path if valid
                     if (nodeIp != null && !"0.0.0.0".equals(nodeIp)) {
-                        pathNodes.add(nodeIp);
-                        pathPorts.add(pn.interface_id); // Use interface_id instead of port
+                        pathScratch[pathLength] = nodeIp;
+                        portScratch[pathLength++] = pn.interface_id; // Use interface_id instead of port
                     } else {
-                        System.err.println("[ERROR] ❌ Failed to resolve path node: " + pn.node + 
+                        if (traceFlow) Diagnostics.error("[ERROR] ❌ Failed to resolve path node: " + pn.node + 
                                          " (0x" + Long.toHexString(pn.node) + "). This node will be MISSING from path!");
                     }
                 }
                 
                 // Debug output: show path information
-                System.out.println("[RESULT] Original path size: " + f.path.size());
-                System.out.println("[RESULT] Resolved path size: " + pathNodes.size());
-                if (pathNodes.size() < f.path.size()) {
-                    System.err.println("[ERROR] ❌❌❌ PATH INCOMPLETE! Lost " + (f.path.size() - pathNodes.size()) + " nodes!");
-                    System.err.println("[ERROR] Flow animation will have GAPS in the middle!");
-                } else {
-                    System.out.println("[SUCCESS] ✅ Complete path preserved - all " + pathNodes.size() + " nodes resolved");
+                if (pathLength < f.path.size()) {
+                    incompletePaths++;
+                }
+                if (traceFlow) {
+                    Diagnostics.trace("[RESULT] Original path size: " + f.path.size());
+                    Diagnostics.trace("[RESULT] Resolved path size: " + pathLength);
+                    if (pathLength < f.path.size()) {
+                        Diagnostics.error("[ERROR] ❌❌❌ PATH INCOMPLETE! Lost " + (f.path.size() - pathLength) + " nodes!");
+                        Diagnostics.error("[ERROR] Flow animation will have GAPS in the middle!");
+                    } else {
+                        Diagnostics.trace("[SUCCESS] ✅ Complete path preserved - all " + pathLength + " nodes resolved");
+                    }
+                    Diagnostics.trace("[RESULT] Flow path IPs: " + Arrays.toString(Arrays.copyOf(pathScratch, pathLength)));
+                    Diagnostics.trace("[RESULT] Flow interfaces: " + Arrays.toString(Arrays.copyOf(portScratch, pathLength)));
                 }
-                System.out.println("[RESULT] Flow path IPs: " + pathNodes);
-                System.out.println("[RESULT] Flow interfaces: " + pathPorts);
             } else {
                 // If no path data, at least add source and target nodes
                 // Convert little-endian integer IP to standard IP format
-                String srcIpStandard = convertLittleEndianToIp(f.src_ip);
-                String dstIpStandard = convertLittleEndianToIp(f.dst_ip);
-                pathNodes.add(srcIpStandard);
-                pathNodes.add(dstIpStandard);
-                pathPorts.add(0);
-                pathPorts.add(0);
+                pathScratch[0] = convertLittleEndianToIp(f.src_ip);
+                pathScratch[1] = convertLittleEndianToIp(f.dst_ip);
+                portScratch[0] = 0;
+                portScratch[1] = 0;
+                pathLength = 2;
             }
+            int pathId = paths.intern(pathScratch, portScratch, pathLength);
             
-            // Convert little-endian IP to standard IP format
-            String srcIp = convertLittleEndianToIp(f.src_ip);
-            String dstIp = convertLittleEndianToIp(f.dst_ip);
-            
-            // Skip flows with invalid IPs
-            if ("0.0.0.0".equals(srcIp) || "0.0.0.0".equals(dstIp)) {
-                System.out.println("[DEBUG] Skipping flow with invalid IP addresses");
-                continue;
-            }
+            // A continuing flow keeps its ID and parsed start time from earlier polls; the IP
+            // columns hold the values identity.srcIp / dstIp are formatted from
+            FlowIdentityTable.Entry identity = flowIdentities.observe(
+                (int) f.src_ip, (int) f.dst_ip, f.src_port, f.dst_port, f.protocol_id, seenAt);
             int srcPort = f.src_port;
             int dstPort = f.dst_port;
             int protocolId = f.protocol_id;
-            // Parse time strings from API format "2025-11-11 10:30:35" to milliseconds
-            int startTimeMs = parseTimeStringToMs(f.first_sampled_time);
-            int endTimeMs = parseTimeStringToMs(f.latest_sampled_time);
+            // API timestamps "2025-11-11 10:30:35" to milliseconds since midnight
+            int startTimeMs = identity.startTimeMs(f.first_sampled_time);
+            int endTimeMs = FlowIdentityTable.timeOfDayMs(f.latest_sampled_time);
             double estimatedFlowSendingRateBpsInTheLastSec = f.estimated_flow_sending_rate_bps_in_the_last_sec;
             double estimatedFlowSendingRateBpsInTheProceeding1secTimeslot = f.estimated_flow_sending_rate_bps_in_the_proceeding_1sec_timeslot;
             int estimatedPacketRateInTheLastSec = (int) Math.min(f.estimated_packet_rate_in_the_last_sec, Integer.MAX_VALUE);
             int estimatedPacketRateInTheProceeding1secTimeslot = (int) Math.min(f.estimated_packet_rate_in_the_proceeding_1sec_timeslot, Integer.MAX_VALUE);
             
-            Flow flow = new Flow(
-                pathNodes, pathPorts, srcIp, dstIp, srcPort, dstPort, protocolId,
+            int row = flows.add(
+                identity.id, pathId, (int) f.src_ip, (int) f.dst_ip, srcPort, dstPort, protocolId,
                 startTimeMs, endTimeMs,
                 estimatedFlowSendingRateBpsInTheLastSec,
                 estimatedFlowSendingRateBpsInTheProceeding1secTimeslot,
                 estimatedPacketRateInTheLastSec,
                 estimatedPacketRateInTheProceeding1secTimeslot
             );
-            
-            flows.add(flow);
+            if (converted != null) converted.put(f, row);
+        }
+        FlowTable table = flows.build();
+        if (reuse) {
+            convertedTable = table;
+            convertedRows = converted;
+            convertedDpids = dpidToIpMap;
+            convertedPaths = paths;
         }
         
-        System.out.println("\n========== FLOW CONVERSION COMPLETE ==========");
-        System.out.println("Total flows created: " + flows.size() + "/" + apiFlows.length);
-        return flows;
+        if (incompletePaths > 0 && Diagnostics.ERROR) {
+            Diagnostics.error("[ERROR] " + incompletePaths + " flows have incomplete paths (unresolved path nodes)");
+        }
+        if (Diagnostics.DEBUG) {
+            Diagnostics.debug("\n========== FLOW CONVERSION COMPLETE ==========");
+            Diagnostics.debug("Total flows created: " + table.size + "/" + apiFlows.length + " (" + reused + " unchanged)");
+        }
+        return table;
     }
 
     // Method to update topology with playback data
@@ -1348,6 +1708,7 @@ public class NetworkTopologyApp extends Application {
             }
             
             topologyCanvas.updateTopology(playbackNodes, playbackLinks, playbackFlows);
+            publishSnapshot();
             
             // Update SideBar with playback data
             sideBar.updateData(playbackFlows, playbackLinks, playbackNodes);
@@ -1364,7 +1725,7 @@ public class NetworkTopologyApp extends Application {
         
         
         if (nodes != null && !nodes.isEmpty()) {
-            applyPlaybackNodeLayout(nodes, links);
+            applyPlaybackNodeLayout(nodes, topologyCanvas.getWidth(), topologyCanvas.getHeight());
         }
         
         // Update the topology canvas directly
@@ -1376,6 +1737,7 @@ public class NetworkTopologyApp extends Application {
             }
             
             topologyCanvas.updateTopology(nodes, links, flows);
+            publishSnapshot();
             
             // Update SideBar with playback data
             sideBar.updateData(flows, links, nodes);
@@ -1387,7 +1749,7 @@ public class NetworkTopologyApp extends Application {
 
 
 
-    private void applyPlaybackNodeLayout(List<Node> nodes, List<Link> links) {
+    static void applyPlaybackNodeLayout(List<Node> nodes, double canvasWidth, double canvasHeight) {
         System.out.println("[PLAYBACK] Applying node layout for " + nodes.size() + " nodes");
         
         
@@ -1399,7 +1761,7 @@ public class NetworkTopologyApp extends Application {
             System.out.println("[PLAYBACK] Loaded " + savedPositions.size() + " saved positions from " + NODE_POSITIONS_PLAYBACK);
             int matchedCount = 0;
             for (Node node : nodes) {
-                if (savedPositions.containsKey(node.ip)) {
+                if (NodePositionStore.lookup(savedPositions, node) != null) {
                     matchedCount++;
                 }
             }
@@ -1412,7 +1774,7 @@ public class NetworkTopologyApp extends Application {
             
             System.out.println("[PLAYBACK] Using saved positions (complete match)");
             for (Node node : nodes) {
-                int[] pos = savedPositions.get(node.ip);
+                int[] pos = NodePositionStore.lookup(savedPositions, node);
                 if (pos != null && pos.length >= 2) {
                     node.x = pos[0];
                     node.y = pos[1];
@@ -1425,14 +1787,14 @@ public class NetworkTopologyApp extends Application {
             } else {
                 System.out.println("[PLAYBACK] No saved positions found, using Fat-Tree auto-layout");
             }
-            applyPlaybackAutoLayout(nodes, topologyCanvas.getWidth(), topologyCanvas.getHeight());
+            applyPlaybackAutoLayout(nodes, canvasWidth, canvasHeight);
         }
     }
     
     
 
 
-    private void applyPlaybackAutoLayout(List<Node> nodes, double canvasWidth, double canvasHeight) {
+    static void applyPlaybackAutoLayout(List<Node> nodes, double canvasWidth, double canvasHeight) {
         
         List<Node> coreNodes = new ArrayList<>();
         List<Node> aggregationNodes = new ArrayList<>();
@@ -1621,6 +1983,9 @@ public class NetworkTopologyApp extends Application {
     // Pause API updates when entering playback mode
     private void pauseApiUpdates() {
         isPlaybackMode = true;
+        if (staleLabel != null) {
+            staleLabel.setVisible(false);
+        }
         System.out.println("[PLAYBACK] API updates paused");
     }
     
@@ -1630,11 +1995,18 @@ public class NetworkTopologyApp extends Application {
         System.out.println("[PLAYBACK] API updates resumed");
     }
     
+    // Tell open dialogs and the side bar the canvas now shows new data
+    private void publishSnapshot() {
+        SnapshotBus.publish(topologyCanvas.getNodes(), topologyCanvas.getLinks(), topologyCanvas.getFlows(),
+            isPlaybackMode, topologyCanvas::convertNodeIdToIp);
+    }
+    
     // Clear topology when entering playback mode
     private void clearTopologyForPlayback() {
         Platform.runLater(() -> {
             // Show empty topology with grid background (same as real-time mode but no data)
             topologyCanvas.updateTopology(new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+            publishSnapshot();
             
             // Clear sidebar data as well
             if (sideBar != null) {
@@ -1757,83 +2129,40 @@ public class NetworkTopologyApp extends Application {
      * This method ensures that all flows are displayed on their complete paths,
      * not just relying on API's edge.flow_set which may be incomplete.
      * 
-     * Similar to PlaybackPanel.assignFlowsToLinks()
+     * Each link's flow_set becomes its slice of a {@link LinkFlowIndex}, the same
+     * structure PlaybackPanel.assignFlowsToLinks() builds. Segments are matched
+     * strictly by direction.
      */
-    private void assignFlowsToLinks(List<Flow> flows, List<Link> links, List<Node> nodes) {
-        System.out.println("[REALTIME-ASSIGN] ========== Flow Assignment Start ==========");
-        System.out.println("[REALTIME-ASSIGN] Total flows: " + flows.size());
-        System.out.println("[REALTIME-ASSIGN] Total links: " + links.size());
-        
-        // Clear existing flow_set from all links first
-        for (Link link : links) {
-            if (link.flow_set == null) {
-                link.flow_set = new ArrayList<>();
-            } else {
-                link.flow_set.clear();
-            }
-        }
-        
-        
-        
-        
-        Map<String, Link> linkMap = new HashMap<>();
-        for (Link link : links) {
-            String key = link.source + "->" + link.target;
-            linkMap.put(key, link);
+    LinkFlowIndex assignFlowsToLinks(List<Flow> flows, List<Link> links, List<Node> nodes) {
+        if (Diagnostics.DEBUG) {
+            Diagnostics.debug("[REALTIME-ASSIGN] ========== Flow Assignment Start ==========");
+            Diagnostics.debug("[REALTIME-ASSIGN] Total flows: " + flows.size());
+            Diagnostics.debug("[REALTIME-ASSIGN] Total links: " + links.size());
         }
-        System.out.println("[OPTIMIZATION] Created Link lookup map with " + linkMap.size() + " entries");
         
-        // Filter flows with valid paths
-        int assignedFlowInstances = 0;
-        int flowsWithNoPath = 0;
-        int flowsWithShortPath = 0;
-        int linksNotFound = 0;
-        
-        for (Flow flow : flows) {
-            if (flow.pathNodes == null) {
-                flowsWithNoPath++;
-                continue;
-            }
-            if (flow.pathNodes.size() < 2) {
-                flowsWithShortPath++;
-                continue;
-            }
-            
-            // For each flow, find all links it passes through based on pathNodes
-            for (int i = 0; i < flow.pathNodes.size() - 1; i++) {
-                String nodeA = flow.pathNodes.get(i);
-                String nodeB = flow.pathNodes.get(i + 1);
-                
-                // pathNodes already in standard IP format (converted in convertDetectedFlows)
-                String ipA = nodeA;
-                String ipB = nodeB;
-                
-                
-                // Find the link between these two nodes (STRICT DIRECTIONAL - no bidirectional)
-                String linkKey = ipA + "->" + ipB;
-                Link link = linkMap.get(linkKey);
-                
-                if (link != null) {
-                    // Add this flow to the link's flow_set
-                    link.flow_set.add(flow);
-                    assignedFlowInstances++;
-                } else {
-                    linksNotFound++;
-                    System.out.println("[REALTIME-ASSIGN] ✗ No link found for path segment: " + ipA + " -> " + ipB +
-                                     " (Flow: " + flow.srcIp + ":" + flow.srcPort + " -> " + flow.dstIp + ":" + flow.dstPort + ")");
+        // pathNodes already in standard IP format (converted in convertDetectedFlows)
+        LinkFlowIndex index = LinkFlowIndex.assign(flows, links, false, null);
+        
+        if (Diagnostics.DEBUG) {
+            int flowsWithNoPath = 0;
+            int flowsWithShortPath = 0;
+            for (Flow flow : flows) {
+                if (flow.pathNodes == null) {
+                    flowsWithNoPath++;
+                } else if (flow.pathNodes.size() < 2) {
+                    flowsWithShortPath++;
                 }
             }
+            
+            Diagnostics.debug("[REALTIME-ASSIGN] ========== Flow Assignment Complete ==========");
+            Diagnostics.debug("[REALTIME-ASSIGN] Valid flows: " + (flows.size() - flowsWithNoPath - flowsWithShortPath));
+            Diagnostics.debug("[REALTIME-ASSIGN] Flows with no path: " + flowsWithNoPath);
+            Diagnostics.debug("[REALTIME-ASSIGN] Flows with short path (< 2 nodes): " + flowsWithShortPath);
+            Diagnostics.debug("[REALTIME-ASSIGN] Assigned flow instances to links: " + index.size());
+            Diagnostics.debug("[REALTIME-ASSIGN] Path segments without matching link: " + index.segmentsMissed);
+            Diagnostics.debug("[REALTIME-ASSIGN] Links with flows: " + index.linksWithFlows() + "/" + links.size());
         }
-        
-        int linksWithFlows = (int) links.stream().filter(l -> l.flow_set != null && !l.flow_set.isEmpty()).count();
-        
-        System.out.println("[REALTIME-ASSIGN] ========== Flow Assignment Complete ==========");
-        System.out.println("[REALTIME-ASSIGN] Valid flows: " + (flows.size() - flowsWithNoPath - flowsWithShortPath));
-        System.out.println("[REALTIME-ASSIGN] Flows with no path: " + flowsWithNoPath);
-        System.out.println("[REALTIME-ASSIGN] Flows with short path (< 2 nodes): " + flowsWithShortPath);
-        System.out.println("[REALTIME-ASSIGN] Assigned flow instances to links: " + assignedFlowInstances);
-        System.out.println("[REALTIME-ASSIGN] Path segments without matching link: " + linksNotFound);
-        System.out.println("[REALTIME-ASSIGN] Links with flows: " + linksWithFlows + "/" + links.size());
+        return index;
     }
 
     public static void main(String[] args) {
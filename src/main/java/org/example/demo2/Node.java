@@ -123,4 +123,18 @@ public class Node {
     public boolean hasUtilizationData() {
         return cpuUtilization != null || memoryUtilization != null;
     }
+
+    // Copy of this node; the IP list is shared
+    public Node copy() {
+        Node copy = new Node(ip, name, x, y, type, is_up, is_enabled, ips);
+        copy.layer = layer;
+        copy.cpuUtilization = cpuUtilization;
+        copy.memoryUtilization = memoryUtilization;
+        copy.dpid = dpid;
+        copy.mac = mac;
+        copy.brandName = brandName;
+        copy.deviceLayer = deviceLayer;
+        copy.originalDeviceName = originalDeviceName;
+        return copy;
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,297 @@
+package org.example.demo2;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/**
+ * A node_positions*.json file kept in memory.
+ *
+ * All file work happens on one background thread. The file is loaded when the store is first asked
+ * for and reloaded, in the background, when it changes on disk (checked by modification time and
+ * size), so the live poll and the canvas can ask for saved positions every update for the cost of
+ * a stat. Saves replace the in-memory positions immediately; the file is written once the
+ * positions have stopped changing for {@code -Dndt.positions.debounce.ms} (default 500), to a temp
+ * file that is then renamed over it, so a burst of drags is one write and a crash never leaves half
+ * a file.
+ *
+ * Each node is stored under its IP and, for switches, its DPID; {@link #lookup} prefers the DPID,
+ * which survives a switch changing its management IP.
+ */
+public final class NodePositionStore {
+
+    static final long DEBOUNCE_MS = Long.getLong("ndt.positions.debounce.ms", 500);
+
+    // A steady stream of saves still reaches the disk at least this often
+    private static final long MAX_DELAY_MS = 4 * DEBOUNCE_MS;
+
+    private static final Map<String, NodePositionStore> STORES = new ConcurrentHashMap<>();
+
+    private static final ScheduledExecutorService IO = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ndt-position-writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static {
+        // Positions saved just before exit are still waiting for the debounce timer
+        Runtime.getRuntime().addShutdownHook(new Thread(NodePositionStore::flushAll, "ndt-position-flush"));
+    }
+
+    /** The shared store for {@code filename}; the first call starts loading the file. */
+    public static NodePositionStore forFile(String filename) {
+        return STORES.computeIfAbsent(filename, name -> {
+            NodePositionStore store = new NodePositionStore(name);
+            store.loading = true;
+            IO.execute(store::reload);
+            return store;
+        });
+    }
+
+    /** Write every store's pending positions now. */
+    public static void flushAll() {
+        for (NodePositionStore store : STORES.values()) {
+            store.flush();
+        }
+    }
+
+    /** Key of a switch's position next to its IP. */
+    static String dpidKey(long dpid) {
+        return "dpid:" + dpid;
+    }
+
+    /** {@code node}'s position in {@code positions}: by DPID if it has one and it was saved, else by IP. */
+    static int[] lookup(Map<String, int[]> positions, Node node) {
+        if (node.dpid != 0) {
+            int[] position = positions.get(dpidKey(node.dpid));
+            if (position != null) return position;
+        }
+        return positions.get(node.ip);
+    }
+
+    // One node as saved, copied off the live Node so the writer never reads it
+    private static final class Saved {
+        final String ip;
+        final long dpid;
+        final int x;
+        final int y;
+
+        Saved(Node node) {
+            this.ip = node.ip;
+            this.dpid = node.dpid;
+            this.x = node.x;
+            this.y = node.y;
+        }
+    }
+
+    private final File file;
+    private final CountDownLatch loaded = new CountDownLatch(1);
+    private Map<String, int[]> positions = Collections.emptyMap();
+    private long loadedModified = Long.MIN_VALUE;
+    private long loadedLength = -1;
+    private long version = 0;
+    private boolean loading;
+    private boolean writing;
+    private List<Saved> pending;
+    private long pendingSince;
+    private ScheduledFuture<?> pendingWrite;
+
+    private NodePositionStore(String filename) {
+        this.file = new File(filename);
+    }
+
+    /**
+     * Saved positions keyed by IP and by {@link #dpidKey}, read-only (use {@link #lookup}). Empty if
+     * there is no usable file. Waits only for the first load; later reloads happen in the background.
+     */
+    public Map<String, int[]> positions() {
+        awaitFirstLoad();
+        synchronized (this) {
+            checkForChanges();
+            return positions;
+        }
+    }
+
+    /** Changes whenever the positions do, through {@link #save} or an edit of the file. */
+    public long version() {
+        awaitFirstLoad();
+        synchronized (this) {
+            checkForChanges();
+            return version;
+        }
+    }
+
+    /** Remember the positions of {@code nodes} now and write them to the file once they settle. */
+    public void save(List<Node> nodes) {
+        List<Saved> snapshot = new ArrayList<>(nodes.size());
+        Map<String, int[]> saved = new HashMap<>(nodes.size() * 3);
+        for (Node node : nodes) {
+            Saved s = new Saved(node);
+            snapshot.add(s);
+            put(saved, s.ip, s.dpid, s.x, s.y);
+        }
+        synchronized (this) {
+            positions = Collections.unmodifiableMap(saved);
+            version++;
+            long now = System.currentTimeMillis();
+            if (pending == null) pendingSince = now;
+            pending = snapshot;
+            if (pendingWrite != null) pendingWrite.cancel(false);
+            long delay = Math.max(0, Math.min(DEBOUNCE_MS, pendingSince + MAX_DELAY_MS - now));
+            pendingWrite = IO.schedule(this::writePending, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Write pending positions now instead of after the debounce delay, and wait for it. */
+    public void flush() {
+        synchronized (this) {
+            if (pending == null) return;
+            if (pendingWrite != null) pendingWrite.cancel(false);
+            pendingWrite = null;
+        }
+        try {
+            IO.submit(this::writePending).get(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.err.println("Error saving node positions to " + file + ": " + e.getMessage());
+        }
+    }
+
+    private void writePending() {
+        List<Saved> snapshot;
+        synchronized (this) {
+            snapshot = pending;
+            pending = null;
+            pendingWrite = null;
+            writing = snapshot != null;
+        }
+        if (snapshot == null) return;
+
+        File tmpFile = NdjsonIndexUtil.tempFileFor(file);
+        try {
+            try (BufferedWriter writer = new BufferedWriter(new FileWriter(tmpFile))) {
+                writeJson(writer, snapshot);
+            }
+            NdjsonIndexUtil.replaceAtomically(tmpFile, file);
+        } catch (IOException e) {
+            tmpFile.delete();
+            synchronized (this) {
+                writing = false;
+            }
+            System.err.println("Error saving node positions to " + file + ": " + e.getMessage());
+            return;
+        }
+        synchronized (this) {
+            // Our own write: the in-memory positions are already current
+            loadedModified = file.lastModified();
+            loadedLength = file.length();
+            writing = false;
+        }
+        System.out.println("[INFO] Node positions saved to: " + file);
+    }
+
+    private static void writeJson(BufferedWriter writer, List<Saved> nodes) throws IOException {
+        writer.write("{\n");
+        writer.write("  \"nodes\": [\n");
+        for (int i = 0; i < nodes.size(); i++) {
+            Saved node = nodes.get(i);
+            writer.write("    {\n");
+            writer.write("      \"ip\": \"" + node.ip + "\",\n");
+            if (node.dpid != 0) {
+                writer.write("      \"dpid\": " + node.dpid + ",\n");
+            }
+            writer.write("      \"x\": " + node.x + ",\n");
+            writer.write("      \"y\": " + node.y + "\n");
+            writer.write(i < nodes.size() - 1 ? "    },\n" : "    }\n");
+        }
+        writer.write(" ]\n");
+        writer.write("}\n");
+    }
+
+    private void awaitFirstLoad() {
+        try {
+            loaded.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Caller holds the lock
+    private void checkForChanges() {
+        // Unwritten saves are newer than whatever is on disk
+        if (loading || writing || pending != null) return;
+        if (file.lastModified() == loadedModified && file.length() == loadedLength) return;
+        loading = true;
+        IO.execute(this::reload);
+    }
+
+    private void reload() {
+        long startVersion;
+        synchronized (this) {
+            startVersion = version;
+        }
+        long modified = file.lastModified();
+        long length = file.length();
+        Map<String, int[]> fromFile = load();
+        synchronized (this) {
+            loading = false;
+            // A save while we were reading wins over the file
+            if (version == startVersion && pending == null) {
+                positions = Collections.unmodifiableMap(fromFile);
+                loadedModified = modified;
+                loadedLength = length;
+                version++;
+            }
+        }
+        loaded.countDown();
+    }
+
+    private Map<String, int[]> load() {
+        Map<String, int[]> fromFile = new HashMap<>();
+        if (!file.isFile()) {
+            return fromFile;
+        }
+        try (FileReader reader = new FileReader(file)) {
+            JsonObject obj = new Gson().fromJson(reader, JsonObject.class);
+            int count = 0;
+            if (obj != null && obj.has("nodes")) {
+                JsonArray arr = obj.getAsJsonArray("nodes");
+                for (int i = 0; i < arr.size(); i++) {
+                    JsonObject n = arr.get(i).getAsJsonObject();
+                    long dpid = n.has("dpid") ? n.get("dpid").getAsLong() : 0;
+                    put(fromFile, n.get("ip").getAsString(), dpid, n.get("x").getAsInt(), n.get("y").getAsInt());
+                    count++;
+                }
+            }
+            System.out.println("[LAYOUT] Loaded " + count + " saved positions from " + file);
+        } catch (Exception e) {
+            // Ignore format errors, as a missing file
+            System.out.println("[DEBUG] Could not load " + file + ": " + e.getMessage());
+        }
+        return fromFile;
+    }
+
+    private static void put(Map<String, int[]> positions, String ip, long dpid, int x, int y) {
+        int[] position = {x, y};
+        positions.put(ip, position);
+        if (dpid != 0) positions.put(dpidKey(dpid), position);
+    }
+}
@@ -21,6 +21,7 @@ public class PlaybackDataReader {
     private final File flowFile;
     private final File topoFile;
     private final Gson gson;
+    private volatile int alignmentStartIndex = -1;
     
     public NdjsonIndexUtil.BuiltIndex getTopoIndex() {
         return topoIndex;
@@ -115,6 +116,85 @@ public class PlaybackDataReader {
         return flows;
     }
     
+    /**
+     * The topology and flow snapshots shown for {@code timestamp}. Topology entries are matched from
+     * the first one at or after the first flow entry, and the N-th of those is paired with the N-th
+     * flow entry, so both files advance together even when their clocks differ. Used by the
+     * Playback panel and by HeadlessRenderer, so both show the same frame for a timestamp.
+     */
+    public AlignedData readAlignedAt(long timestamp) {
+        List<NdjsonIndexUtil.IndexEntry> topoIndexEntries = topoIndex.entries;
+        List<NdjsonIndexUtil.IndexEntry> flowIndexEntries = flowIndex.entries;
+        
+        if (topoIndexEntries.isEmpty()) {
+            System.out.println("[PLAYBACK] No topology data available");
+            return new AlignedData(null, null, -1, -1);
+        }
+        
+        if (flowIndexEntries.isEmpty()) {
+            System.out.println("[PLAYBACK] No flow data available");
+            return new AlignedData(null, null, -1, -1);
+        }
+        
+        int alignmentStartIndex = getAlignmentStartIndex();
+        
+        
+        int targetTopoIndex = alignmentStartIndex;
+        for (int i = alignmentStartIndex; i < topoIndexEntries.size(); i++) {
+            if (topoIndexEntries.get(i).timestamp <= timestamp) {
+                targetTopoIndex = i;
+            } else {
+                break;
+            }
+        }
+        
+        
+        int relativePosition = targetTopoIndex - alignmentStartIndex;
+        int targetFlowIndex = Math.min(relativePosition, flowIndexEntries.size() - 1);
+        
+        if (Diagnostics.DEBUG) Diagnostics.debug("[PLAYBACK] Target indices at " + timestamp + " - topo: " + targetTopoIndex + ", flow: " + targetFlowIndex);
+        
+        
+        TopologySnapshot topoSnapshot = null;
+        List<FlowSnapshot> flowSnapshots = new ArrayList<>();
+        
+        try {
+            topoSnapshot = getTopologyAt(topoIndexEntries.get(targetTopoIndex).timestamp);
+            
+            long flowTimestamp = flowIndexEntries.get(targetFlowIndex).timestamp;
+            List<FlowSnapshot> flows = getFlowsAt(flowTimestamp, 1000);
+            if (flows != null) {
+                flowSnapshots.addAll(flows);
+            } else {
+                System.out.println("[PLAYBACK] No flow data returned for timestamp: " + flowTimestamp);
+            }
+        } catch (Exception e) {
+            System.err.println("[PLAYBACK] Error loading aligned data: " + e.getMessage());
+        }
+        
+        return new AlignedData(topoSnapshot, flowSnapshots, targetTopoIndex, targetFlowIndex);
+    }
+    
+    // Index of the first topology entry at or after the first flow entry (the last one if none is)
+    private int getAlignmentStartIndex() {
+        if (alignmentStartIndex < 0) {
+            long firstFlowTimestamp = Long.MAX_VALUE;
+            for (NdjsonIndexUtil.IndexEntry entry : flowIndex.entries) {
+                firstFlowTimestamp = Math.min(firstFlowTimestamp, entry.timestamp);
+            }
+            int start = topoIndex.entries.size() - 1;
+            for (int i = 0; i < topoIndex.entries.size(); i++) {
+                if (topoIndex.entries.get(i).timestamp >= firstFlowTimestamp) {
+                    start = i;
+                    break;
+                }
+            }
+            alignmentStartIndex = start;
+            System.out.println("[PLAYBACK] First flow timestamp: " + firstFlowTimestamp + ", alignment starts at topology index: " + start);
+        }
+        return alignmentStartIndex;
+    }
+    
     /**
      * Get all available timestamps for timeline navigation
      */
@@ -189,11 +269,11 @@ public class PlaybackDataReader {
         } else {
             // Default timestamp if none found
             snapshot.timestamp = System.currentTimeMillis();
-            System.out.println("[PLAYBACK] No timestamp found, using current time: " + snapshot.timestamp);
+            if (Diagnostics.DEBUG) Diagnostics.debug("[PLAYBACK] No timestamp found, using current time: " + snapshot.timestamp);
         }
         
-        System.out.println("[PLAYBACK] Parsing topology snapshot at timestamp: " + snapshot.timestamp);
-        System.out.println("[PLAYBACK] Available fields in topology data: " + obj.keySet());
+        if (Diagnostics.DEBUG) Diagnostics.debug("[PLAYBACK] Parsing topology snapshot at timestamp: " + snapshot.timestamp);
+        if (Diagnostics.DEBUG) Diagnostics.debug("[PLAYBACK] Available fields in topology data: " + obj.keySet());
         
         // Build helper maps to resolve links to node IPs
         java.util.Map<Long, String> dpidToIp = new java.util.HashMap<>();
@@ -202,13 +282,13 @@ public class PlaybackDataReader {
         // Parse nodes - handle both direct nodes array and nested structure
         if (obj.has("nodes") && obj.get("nodes").isJsonArray()) {
             JsonArray nodesArray = obj.getAsJsonArray("nodes");
-            System.out.println("[PLAYBACK] Found " + nodesArray.size() + " nodes in topology data");
+            if (Diagnostics.DEBUG) Diagnostics.debug("[PLAYBACK] Found " + nodesArray.size() + " nodes in topology data");
             for (JsonElement element : nodesArray) {
                 if (element.isJsonObject()) {
                     Node node = parseNode(element.getAsJsonObject());
                     if (node != null) {
                         snapshot.nodes.add(node);
-                        System.out.println("[PLAYBACK] Parsed node: " + node.name + " (" + node.ip + ")");
+                        if (Diagnostics.TRACE) Diagnostics.trace("[PLAYBACK] Parsed node: " + node.name + " (" + node.ip + ")");
                         // Record mappings for link resolution
                         if (node.dpid != 0) {
                             dpidToIp.put((long) node.dpid, node.ip);
@@ -220,32 +300,32 @@ public class PlaybackDataReader {
                 }
             }
         } else {
-            System.out.println("[PLAYBACK] No nodes array found in topology data");
+            if (Diagnostics.DEBUG) Diagnostics.debug("[PLAYBACK] No nodes array found in topology data");
         }
         
         // Parse edges - handle both direct edges array and nested structure
         if (obj.has("edges") && obj.get("edges").isJsonArray()) {
             JsonArray edgesArray = obj.getAsJsonArray("edges");
-            System.out.println("[PLAYBACK] Found " + edgesArray.size() + " edges in topology data");
+            if (Diagnostics.DEBUG) Diagnostics.debug("[PLAYBACK] Found " + edgesArray.size() + " edges in topology data");
             for (int i = 0; i < edgesArray.size(); i++) {
                 JsonElement element = edgesArray.get(i);
                 if (element.isJsonObject()) {
                     JsonObject linkObj = element.getAsJsonObject();
-                    System.out.println("[PLAYBACK] Edge " + i + " fields: " + linkObj.keySet());
+                    if (Diagnostics.TRACE) Diagnostics.trace("[PLAYBACK] Edge " + i + " fields: " + linkObj.keySet());
                     Link link = parseLink(linkObj, dpidToIp, nameToIp);
                     if (link != null) {
                         snapshot.links.add(link);
-                        System.out.println("[PLAYBACK] Parsed link: " + link.source + " -> " + link.target);
+                        if (Diagnostics.TRACE) Diagnostics.trace("[PLAYBACK] Parsed link: " + link.source + " -> " + link.target);
                     } else {
-                        System.out.println("[PLAYBACK] Failed to parse link " + i);
+                        if (Diagnostics.TRACE) Diagnostics.trace("[PLAYBACK] Failed to parse link " + i);
                     }
                 }
             }
         } else {
-            System.out.println("[PLAYBACK] No edges array found in topology data");
+            if (Diagnostics.DEBUG) Diagnostics.debug("[PLAYBACK] No edges array found in topology data");
         }
         
-        System.out.println("[PLAYBACK] Final topology snapshot: " + snapshot.nodes.size() + " nodes, " + snapshot.links.size() + " links");
+        if (Diagnostics.DEBUG) Diagnostics.debug("[PLAYBACK] Final topology snapshot: " + snapshot.nodes.size() + " nodes, " + snapshot.links.size() + " links");
         return snapshot;
     }
     
@@ -260,37 +340,37 @@ public class PlaybackDataReader {
         } else {
             // Default timestamp if none found
             snapshot.timestamp = System.currentTimeMillis();
-            System.out.println("[PLAYBACK] No timestamp found in flow data, using current time: " + snapshot.timestamp);
+            if (Diagnostics.DEBUG) Diagnostics.debug("[PLAYBACK] No timestamp found in flow data, using current time: " + snapshot.timestamp);
         }
         
-        System.out.println("[PLAYBACK] Parsing flow snapshot at timestamp: " + snapshot.timestamp);
-        System.out.println("[PLAYBACK] Available fields in flow data: " + obj.keySet());
+        if (Diagnostics.DEBUG) Diagnostics.debug("[PLAYBACK] Parsing flow snapshot at timestamp: " + snapshot.timestamp);
+        if (Diagnostics.DEBUG) Diagnostics.debug("[PLAYBACK] Available fields in flow data: " + obj.keySet());
         
         if (obj.has("flow_info") && obj.get("flow_info").isJsonObject()) {
             JsonObject flowInfo = obj.getAsJsonObject("flow_info");
-            System.out.println("[PLAYBACK] Found flow_info object");
+            if (Diagnostics.TRACE) Diagnostics.trace("[PLAYBACK] Found flow_info object");
             Flow flow = parseFlow(flowInfo);
             if (flow != null) {
                 snapshot.flows.add(flow);
-                System.out.println("[PLAYBACK] Parsed flow: " + flow.srcIp + " -> " + flow.dstIp);
+                if (Diagnostics.TRACE) Diagnostics.trace("[PLAYBACK] Parsed flow: " + flow.srcIp + " -> " + flow.dstIp);
             }
         } else if (obj.has("flow_info") && obj.get("flow_info").isJsonArray()) {
             JsonArray flowInfoArray = obj.getAsJsonArray("flow_info");
-            System.out.println("[PLAYBACK] Found " + flowInfoArray.size() + " flows in flow_info array");
+            if (Diagnostics.DEBUG) Diagnostics.debug("[PLAYBACK] Found " + flowInfoArray.size() + " flows in flow_info array");
             for (JsonElement element : flowInfoArray) {
                 if (element.isJsonObject()) {
                     Flow flow = parseFlow(element.getAsJsonObject());
                     if (flow != null) {
                         snapshot.flows.add(flow);
-                        System.out.println("[PLAYBACK] Parsed flow: " + flow.srcIp + " -> " + flow.dstIp);
+                        if (Diagnostics.TRACE) Diagnostics.trace("[PLAYBACK] Parsed flow: " + flow.srcIp + " -> " + flow.dstIp);
                     }
                 }
             }
         } else {
-            System.out.println("[PLAYBACK] No flow_info found in flow data");
+            if (Diagnostics.DEBUG) Diagnostics.debug("[PLAYBACK] No flow_info found in flow data");
         }
         
-        System.out.println("[PLAYBACK] Final flow snapshot: " + snapshot.flows.size() + " flows");
+        if (Diagnostics.DEBUG) Diagnostics.debug("[PLAYBACK] Final flow snapshot: " + snapshot.flows.size() + " flows");
         return snapshot;
     }
     
@@ -351,7 +431,7 @@ public class PlaybackDataReader {
     private Link parseLink(JsonObject linkObj, java.util.Map<Long, String> dpidToIp, java.util.Map<String, String> nameToIp) {
         // Parse link based on real-time topology format
         try {
-            System.out.println("[PLAYBACK] Parsing link with fields: " + linkObj.keySet());
+            if (Diagnostics.TRACE) Diagnostics.trace("[PLAYBACK] Parsing link with fields: " + linkObj.keySet());
             
             // Try different possible field names for source and destination
             String src = "";
@@ -441,7 +521,7 @@ public class PlaybackDataReader {
                 if (nameToIp.containsKey(n)) dst = nameToIp.get(n);
             }
 
-            System.out.println("[PLAYBACK] Extracted src: '" + src + "', dst: '" + dst + "'");
+            if (Diagnostics.TRACE) Diagnostics.trace("[PLAYBACK] Extracted src: '" + src + "', dst: '" + dst + "'");
             
             // Create minimal link with required fields
             List<String> sourceIps = new ArrayList<>();
@@ -542,20 +622,19 @@ public class PlaybackDataReader {
                 }
             }
             
+            // Flows on the same path share one pooled copy of it
+            FlowPaths paths = FlowPaths.current();
+            int pathId = paths.intern(pathNodes, pathPorts);
+            
             // Create flow with all required parameters
-            return new Flow(pathNodes, pathPorts, srcIpStr, dstIpStr, srcPort, dstPort, 
+            return new Flow(paths.nodes(pathId), paths.ports(pathId), srcIpStr, dstIpStr, srcPort, dstPort, 
                           protocolId, 0, 0, lastSecRate, proceedingRate, lastSecPacketRate, proceedingPacketRate);
         }
         return null;
     }
     
     private String convertIpToString(long ip) {
-        // Convert IP integer to dotted decimal string
-        return String.format("%d.%d.%d.%d",
-            (ip >> 24) & 0xFF,
-            (ip >> 16) & 0xFF,
-            (ip >> 8) & 0xFF,
-            ip & 0xFF);
+        return EnrichmentService.ipv4(ip);
     }
     
     // Data classes
@@ -577,6 +656,21 @@ public class PlaybackDataReader {
         public List<Link> links = new ArrayList<>();
     }
     
+    public static class AlignedData {
+        public final TopologySnapshot topoSnapshot;
+        public final List<FlowSnapshot> flowSnapshots;
+        public final int topoIndex;
+        public final int flowIndex;
+        
+        public AlignedData(TopologySnapshot topoSnapshot, List<FlowSnapshot> flowSnapshots,
+                           int topoIndex, int flowIndex) {
+            this.topoSnapshot = topoSnapshot;
+            this.flowSnapshots = flowSnapshots;
+            this.topoIndex = topoIndex;
+            this.flowIndex = flowIndex;
+        }
+    }
+    
     public static class FlowSnapshot {
         public long timestamp;
         public List<Flow> flows = new ArrayList<>();
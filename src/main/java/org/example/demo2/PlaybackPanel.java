@@ -30,22 +30,6 @@ public class PlaybackPanel extends VBox {
     private final NetworkTopologyApp mainApp;
     
     
-    private static class AlignedData {
-        PlaybackDataReader.TopologySnapshot topoSnapshot;
-        List<PlaybackDataReader.FlowSnapshot> flowSnapshots;
-        int topoIndex;
-        int flowIndex;
-        
-        AlignedData(PlaybackDataReader.TopologySnapshot topoSnapshot, 
-                   List<PlaybackDataReader.FlowSnapshot> flowSnapshots,
-                   int topoIndex, int flowIndex) {
-            this.topoSnapshot = topoSnapshot;
-            this.flowSnapshots = flowSnapshots;
-            this.topoIndex = topoIndex;
-            this.flowIndex = flowIndex;
-        }
-    }
-    
     private PlaybackData playbackData;
     private int currentFrameIndex = 0;
     private boolean isPlaying = false;
@@ -117,13 +101,13 @@ public class PlaybackPanel extends VBox {
         flowDataChooser = new FileChooser();
         flowDataChooser.setTitle("Select Flow Data File");
         flowDataChooser.getExtensionFilters().add(
-            new FileChooser.ExtensionFilter("JSON Files", "*.json")
+            new FileChooser.ExtensionFilter("JSON / NDJSON Files", "*.json", "*.ndjson")
         );
         
         graphDataChooser = new FileChooser();
         graphDataChooser.setTitle("Select Topology Data File");
         graphDataChooser.getExtensionFilters().add(
-            new FileChooser.ExtensionFilter("JSON Files", "*.json")
+            new FileChooser.ExtensionFilter("JSON / NDJSON Files", "*.json", "*.ndjson")
         );
         
         // Initialize loading UI
@@ -720,8 +704,32 @@ public class PlaybackPanel extends VBox {
                     // Smooth progress from 10 to 20
                     smoothUpdateProgress(10, 20, 500);
             
-                    // Check if file needs preprocessing (large single JSON)
-                    if (file.length() > 100 * 1024 * 1024) { // > 100MB
+                    if (file.getName().endsWith(".ndjson")) {
+                        // NDJSON (e.g. a recorded session): reuse its index sidecar, never preprocess
+                        try {
+                            smoothUpdateProgress(20, 40, 500);
+                            flowIndex = NdjsonIndexUtil.readOrBuildIndex(file, ".flow.idx");
+                            System.out.println("[PLAYBACK] Flow index ready (NDJSON), entries=" + 
+                                             (flowIndex == null ? 0 : flowIndex.entries.size()));
+                        } catch (Exception ex) {
+                            System.err.println("[PLAYBACK] Failed to index flow data: " + ex.getMessage());
+                            ex.printStackTrace();
+                        }
+                    } else if (file.length() > JsonPreprocessor.PREPROCESS_THRESHOLD_BYTES
+                               && JsonPreprocessor.findPreprocessed(file) != null) {
+                        // Converted earlier (by a previous load or CapturePreparer): open the NDJSON directly
+                        File ndjson = JsonPreprocessor.findPreprocessed(file);
+                        try {
+                            smoothUpdateProgress(20, 40, 500);
+                            flowIndex = NdjsonIndexUtil.readOrBuildIndex(ndjson, ".flow.idx");
+                            flowDataFile = ndjson;
+                            System.out.println("[PLAYBACK] Reusing preprocessed flow data: " + ndjson.getAbsolutePath() + ", entries=" + 
+                                             (flowIndex == null ? 0 : flowIndex.entries.size()));
+                        } catch (Exception ex) {
+                            System.err.println("[PLAYBACK] Failed to index preprocessed flow data: " + ex.getMessage());
+                            ex.printStackTrace();
+                        }
+                    } else if (file.length() > JsonPreprocessor.PREPROCESS_THRESHOLD_BYTES) { // preprocess large single JSON
                         try {
                             // Smooth progress from 20 to 30
                             smoothUpdateProgress(20, 30, 800);
@@ -770,17 +778,22 @@ public class PlaybackPanel extends VBox {
                             
                             File idx = new File(file.getParentFile(), file.getName() + ".flow.idx");
                             
-                            // Try single JSON indexing first
-                            try {
-                                flowIndex = NdjsonIndexUtil.buildIndexForSingleJson(file, idx);
-                                System.out.println("[PLAYBACK] Flow index built (single JSON): " + idx.getAbsolutePath() + ", entries=" + 
-                                                 (flowIndex == null ? 0 : flowIndex.entries.size()));
-                            } catch (Exception ex) {
-                                System.out.println("[PLAYBACK] Single JSON indexing failed, trying NDJSON: " + ex.getMessage());
-                                // Fallback to NDJSON indexing
-                                flowIndex = NdjsonIndexUtil.buildIndex(file, idx);
-                                System.out.println("[PLAYBACK] Flow index built (NDJSON): " + idx.getAbsolutePath() + ", entries=" + 
-                                                 (flowIndex == null ? 0 : flowIndex.entries.size()));
+                            // Reuse an index from an earlier load or CapturePreparer, else try single JSON indexing first
+                            flowIndex = NdjsonIndexUtil.readIndex(file, idx);
+                            if (flowIndex != null) {
+                                System.out.println("[PLAYBACK] Reusing flow index: " + idx.getAbsolutePath());
+                            } else {
+                                try {
+                                    flowIndex = NdjsonIndexUtil.buildIndexForSingleJson(file, idx);
+                                    System.out.println("[PLAYBACK] Flow index built (single JSON): " + idx.getAbsolutePath() + ", entries=" + 
+                                                     (flowIndex == null ? 0 : flowIndex.entries.size()));
+                                } catch (Exception ex) {
+                                    System.out.println("[PLAYBACK] Single JSON indexing failed, trying NDJSON: " + ex.getMessage());
+                                    // Fallback to NDJSON indexing
+                                    flowIndex = NdjsonIndexUtil.buildIndex(file, idx);
+                                    System.out.println("[PLAYBACK] Flow index built (NDJSON): " + idx.getAbsolutePath() + ", entries=" + 
+                                                     (flowIndex == null ? 0 : flowIndex.entries.size()));
+                                }
                             }
                             
                             // Smooth progress from 40 to 70
@@ -853,8 +866,36 @@ public class PlaybackPanel extends VBox {
                     // Smooth progress from 10 to 20
                     smoothUpdateProgress(10, 20, 500);
             
-                    // Check if file needs preprocessing (large single JSON)
-                    if (file.length() > 100 * 1024 * 1024) { // > 100MB
+                    if (file.getName().endsWith(".ndjson")) {
+                        // NDJSON (e.g. a recorded session): reuse its index sidecar, never preprocess
+                        try {
+                            smoothUpdateProgress(20, 40, 500);
+                            topoIndex = NdjsonIndexUtil.readOrBuildIndex(file, ".topo.idx");
+                            System.out.println("[PLAYBACK] Topology index ready (NDJSON), entries=" + 
+                                             (topoIndex == null ? 0 : topoIndex.entries.size()));
+                            updateTimeRangeFromTopoIndex();
+                            initializeDataReader();
+                        } catch (Exception ex) {
+                            System.err.println("[PLAYBACK] Failed to index topology data: " + ex.getMessage());
+                            ex.printStackTrace();
+                        }
+                    } else if (file.length() > JsonPreprocessor.PREPROCESS_THRESHOLD_BYTES
+                               && JsonPreprocessor.findPreprocessed(file) != null) {
+                        // Converted earlier (by a previous load or CapturePreparer): open the NDJSON directly
+                        File ndjson = JsonPreprocessor.findPreprocessed(file);
+                        try {
+                            smoothUpdateProgress(20, 40, 500);
+                            topoIndex = NdjsonIndexUtil.readOrBuildIndex(ndjson, ".topo.idx");
+                            graphDataFile = ndjson;
+                            System.out.println("[PLAYBACK] Reusing preprocessed topology data: " + ndjson.getAbsolutePath() + ", entries=" + 
+                                             (topoIndex == null ? 0 : topoIndex.entries.size()));
+                            updateTimeRangeFromTopoIndex();
+                            initializeDataReader();
+                        } catch (Exception ex) {
+                            System.err.println("[PLAYBACK] Failed to index preprocessed topology data: " + ex.getMessage());
+                            ex.printStackTrace();
+                        }
+                    } else if (file.length() > JsonPreprocessor.PREPROCESS_THRESHOLD_BYTES) { // preprocess large single JSON
                         try {
                             // Smooth progress from 20 to 30
                             smoothUpdateProgress(20, 30, 800);
@@ -908,17 +949,22 @@ public class PlaybackPanel extends VBox {
                             
                             File idx = new File(file.getParentFile(), file.getName() + ".topo.idx");
                             
-                            // Try single JSON indexing first
-                            try {
-                                topoIndex = NdjsonIndexUtil.buildIndexForSingleJson(file, idx);
-                                System.out.println("[PLAYBACK] Topology index built (single JSON): " + idx.getAbsolutePath() + ", entries=" + 
-                                                 (topoIndex == null ? 0 : topoIndex.entries.size()));
-                            } catch (Exception ex) {
-                                System.out.println("[PLAYBACK] Single JSON indexing failed, trying NDJSON: " + ex.getMessage());
-                                // Fallback to NDJSON indexing
-                                topoIndex = NdjsonIndexUtil.buildIndex(file, idx);
-                                System.out.println("[PLAYBACK] Topology index built (NDJSON): " + idx.getAbsolutePath() + ", entries=" + 
-                                                 (topoIndex == null ? 0 : topoIndex.entries.size()));
+                            // Reuse an index from an earlier load or CapturePreparer, else try single JSON indexing first
+                            topoIndex = NdjsonIndexUtil.readIndex(file, idx);
+                            if (topoIndex != null) {
+                                System.out.println("[PLAYBACK] Reusing topology index: " + idx.getAbsolutePath());
+                            } else {
+                                try {
+                                    topoIndex = NdjsonIndexUtil.buildIndexForSingleJson(file, idx);
+                                    System.out.println("[PLAYBACK] Topology index built (single JSON): " + idx.getAbsolutePath() + ", entries=" + 
+                                                     (topoIndex == null ? 0 : topoIndex.entries.size()));
+                                } catch (Exception ex) {
+                                    System.out.println("[PLAYBACK] Single JSON indexing failed, trying NDJSON: " + ex.getMessage());
+                                    // Fallback to NDJSON indexing
+                                    topoIndex = NdjsonIndexUtil.buildIndex(file, idx);
+                                    System.out.println("[PLAYBACK] Topology index built (NDJSON): " + idx.getAbsolutePath() + ", entries=" + 
+                                                     (topoIndex == null ? 0 : topoIndex.entries.size()));
+                                }
                             }
                             
                             // Update time range immediately from topology index
@@ -1557,7 +1603,7 @@ public class PlaybackPanel extends VBox {
         
         try {
             
-            AlignedData alignedData = getAlignedDataAtTime(timestamp);
+            PlaybackDataReader.AlignedData alignedData = dataReader.readAlignedAt(timestamp);
             
             System.out.println("[PLAYBACK] Using smart alignment strategy");
             System.out.println("[PLAYBACK] Aligned topo index: " + alignedData.topoIndex + 
@@ -1599,114 +1645,6 @@ public class PlaybackPanel extends VBox {
     }
     
     
-    private AlignedData getAlignedDataAtTime(long timestamp) {
-        System.out.println("[PLAYBACK] getAlignedDataAtTime called with timestamp: " + timestamp);
-        
-        
-        List<NdjsonIndexUtil.IndexEntry> topoIndexEntries = dataReader.getAllTopologyIndexEntries();
-        List<NdjsonIndexUtil.IndexEntry> flowIndexEntries = dataReader.getAllFlowIndexEntries();
-        
-        System.out.println("[PLAYBACK] Index entries - topo: " + topoIndexEntries.size() + ", flow: " + flowIndexEntries.size());
-        
-        if (topoIndexEntries.isEmpty()) {
-            System.out.println("[PLAYBACK] No topology data available");
-            return new AlignedData(null, null, -1, -1);
-        }
-        
-        if (flowIndexEntries.isEmpty()) {
-            System.out.println("[PLAYBACK] No flow data available");
-            return new AlignedData(null, null, -1, -1);
-        }
-        
-        
-        long firstFlowTimestamp = Long.MAX_VALUE;
-        for (NdjsonIndexUtil.IndexEntry entry : flowIndexEntries) {
-            if (entry.timestamp < firstFlowTimestamp) {
-                firstFlowTimestamp = entry.timestamp;
-            }
-        }
-        
-        System.out.println("[PLAYBACK] First flow timestamp: " + firstFlowTimestamp);
-        
-        
-        int alignmentStartIndex = -1;
-        for (int i = 0; i < topoIndexEntries.size(); i++) {
-            if (topoIndexEntries.get(i).timestamp >= firstFlowTimestamp) {
-                alignmentStartIndex = i;
-                break;
-            }
-        }
-        
-        if (alignmentStartIndex == -1) {
-            System.out.println("[PLAYBACK] No topology data after first flow timestamp, using last topology");
-            alignmentStartIndex = topoIndexEntries.size() - 1;
-        }
-        
-        System.out.println("[PLAYBACK] Alignment starts at topology index: " + alignmentStartIndex);
-        
-        
-        int targetTopoIndex = alignmentStartIndex;
-        int targetFlowIndex = 0;
-        
-        
-        for (int i = alignmentStartIndex; i < topoIndexEntries.size(); i++) {
-            if (topoIndexEntries.get(i).timestamp <= timestamp) {
-                targetTopoIndex = i;
-            } else {
-                break;
-            }
-        }
-        
-        
-        int relativePosition = targetTopoIndex - alignmentStartIndex;
-        targetFlowIndex = Math.min(relativePosition, flowIndexEntries.size() - 1);
-        
-        System.out.println("[PLAYBACK] Target indices - topo: " + targetTopoIndex + ", flow: " + targetFlowIndex);
-        
-        
-        PlaybackDataReader.TopologySnapshot topoSnapshot = null;
-        List<PlaybackDataReader.FlowSnapshot> flowSnapshots = new ArrayList<>();
-        
-        try {
-            
-            if (targetTopoIndex < topoIndexEntries.size()) {
-                long topoTimestamp = topoIndexEntries.get(targetTopoIndex).timestamp;
-                topoSnapshot = dataReader.getTopologyAt(topoTimestamp);
-            }
-            
-            
-            if (targetFlowIndex < flowIndexEntries.size()) {
-                long flowTimestamp = flowIndexEntries.get(targetFlowIndex).timestamp;
-                System.out.println("[PLAYBACK] Loading flow data at timestamp: " + flowTimestamp);
-                List<PlaybackDataReader.FlowSnapshot> flows = dataReader.getFlowsAt(flowTimestamp, 1000);
-                if (flows != null) {
-                    System.out.println("[PLAYBACK] Loaded " + flows.size() + " flow snapshots");
-                    for (PlaybackDataReader.FlowSnapshot snapshot : flows) {
-                        if (snapshot.flows != null) {
-                            System.out.println("[PLAYBACK] Flow snapshot has " + snapshot.flows.size() + " flows");
-                        } else {
-                            System.out.println("[PLAYBACK] Flow snapshot has null flows");
-                        }
-                    }
-                    flowSnapshots.addAll(flows);
-                } else {
-                    System.out.println("[PLAYBACK] No flow data returned for timestamp: " + flowTimestamp);
-                }
-            } else {
-                System.out.println("[PLAYBACK] targetFlowIndex " + targetFlowIndex + " >= flowIndexEntries.size() " + flowIndexEntries.size());
-            }
-        } catch (Exception e) {
-            System.err.println("[PLAYBACK] Error loading aligned data: " + e.getMessage());
-        }
-        
-        System.out.println("[PLAYBACK] Aligned data - topo timestamp: " + 
-                         (topoSnapshot != null ? topoSnapshot.timestamp : "null") + 
-                         ", flow timestamp: " + 
-                         (flowSnapshots.isEmpty() ? "null" : flowSnapshots.get(0).timestamp));
-        
-        return new AlignedData(topoSnapshot, flowSnapshots, targetTopoIndex, targetFlowIndex);
-    }
-    
     private PlaybackData.PlaybackFrame convertToPlaybackFrame(long timestamp, 
                                                              PlaybackDataReader.TopologySnapshot topoSnapshot,
                                                              List<PlaybackDataReader.FlowSnapshot> flowSnapshots) {
@@ -2051,49 +1989,40 @@ public class PlaybackPanel extends VBox {
      * Convert IP integer to dotted decimal string (same as PlaybackDataReader)
      */
     private String convertIpToString(long ip) {
-        return String.format("%d.%d.%d.%d",
-            (ip >> 24) & 0xFF,
-            (ip >> 16) & 0xFF,
-            (ip >> 8) & 0xFF,
-            ip & 0xFF);
+        return EnrichmentService.ipv4(ip);
     }
     
     /**
      * Assign flows to their corresponding links for animation display.
      * This is critical for flow animation to work in playback mode.
-     * Only assigns top 10 flows by sending rate for better performance.
+     * Only assigns top 20 flows by sending rate for better performance.
+     * Links get their slice of a {@link LinkFlowIndex}, as in live mode, but a
+     * path segment matches a link in either direction.
      */
     private void assignFlowsToLinks(List<Flow> flows, List<Link> links) {
         System.out.println("[PLAYBACK] ========== Flow Assignment Start ==========");
         System.out.println("[PLAYBACK] Total flows to assign: " + flows.size());
         System.out.println("[PLAYBACK] Total links: " + links.size());
         
-        // Clear existing flow_set from all links first
-        for (Link link : links) {
-            if (link.flow_set == null) {
-                link.flow_set = new ArrayList<>();
-            } else {
-                link.flow_set.clear();
-            }
-        }
         
-        
-        System.out.println("[PLAYBACK] Sample flows (first 3):");
-        for (int i = 0; i < Math.min(3, flows.size()); i++) {
-            Flow flow = flows.get(i);
-            System.out.println("[PLAYBACK]   Flow " + i + ": " + 
-                             convertIpForDisplay(flow.srcIp) + ":" + flow.srcPort + " -> " +
-                             convertIpForDisplay(flow.dstIp) + ":" + flow.dstPort);
-            System.out.println("[PLAYBACK]     pathNodes: " + (flow.pathNodes != null ? flow.pathNodes : "NULL"));
-            System.out.println("[PLAYBACK]     rate: " + flow.getSendingRateBps());
-        }
-        
-        
-        System.out.println("[PLAYBACK] Sample links (first 3):");
-        for (int i = 0; i < Math.min(3, links.size()); i++) {
-            Link link = links.get(i);
-            System.out.println("[PLAYBACK]   Link " + i + ": " + 
-                             convertIpForDisplay(link.source) + " -> " + convertIpForDisplay(link.target));
+        if (Diagnostics.DEBUG) {
+            Diagnostics.debug("[PLAYBACK] Sample flows (first 3):");
+            for (int i = 0; i < Math.min(3, flows.size()); i++) {
+                Flow flow = flows.get(i);
+                Diagnostics.debug("[PLAYBACK]   Flow " + i + ": " + 
+                                 convertIpForDisplay(flow.srcIp) + ":" + flow.srcPort + " -> " +
+                                 convertIpForDisplay(flow.dstIp) + ":" + flow.dstPort);
+                Diagnostics.debug("[PLAYBACK]     pathNodes: " + (flow.pathNodes != null ? flow.pathNodes : "NULL"));
+                Diagnostics.debug("[PLAYBACK]     rate: " + flow.getSendingRateBps());
+            }
+            
+            
+            Diagnostics.debug("[PLAYBACK] Sample links (first 3):");
+            for (int i = 0; i < Math.min(3, links.size()); i++) {
+                Link link = links.get(i);
+                Diagnostics.debug("[PLAYBACK]   Link " + i + ": " + 
+                                 convertIpForDisplay(link.source) + " -> " + convertIpForDisplay(link.target));
+            }
         }
         
         // Filter flows with valid paths and sort by sending rate (descending)
@@ -2116,71 +2045,49 @@ public class PlaybackPanel extends VBox {
         System.out.println("[PLAYBACK]   No path: " + noPathCount);
         System.out.println("[PLAYBACK]   Path too short (< 2 nodes): " + shortPathCount);
         
-        // Sort by sending rate (highest first) and take top 20
-        validFlows.sort((a, b) -> Double.compare(b.getSendingRateBps(), a.getSendingRateBps()));
-        List<Flow> topFlows = validFlows.subList(0, Math.min(20, validFlows.size()));
-        
-        System.out.println("[PLAYBACK] Selected top " + topFlows.size() + " flows by sending rate:");
-        for (int i = 0; i < topFlows.size(); i++) {
-            Flow flow = topFlows.get(i);
-            System.out.println("[PLAYBACK] Flow " + i + ": " + convertIpForDisplay(flow.srcIp) + ":" + flow.srcPort + 
-                             " -> " + convertIpForDisplay(flow.dstIp) + ":" + flow.dstPort + 
-                             " (rate: " + flow.getSendingRateBps() + ")");
+        // Take the 20 fastest flows (highest first)
+        List<Flow> topFlows = new ArrayList<>();
+        for (int index : TopKFlowTracker.topIndices(validFlows, 20)) {
+            topFlows.add(validFlows.get(index));
         }
         
-        int assignedFlows = 0;
-        
-        // For each top flow, find the links it should be assigned to
-        for (Flow flow : topFlows) {
-            List<String> displayPathNodes = new ArrayList<>();
-            for (String pathNode : flow.pathNodes) {
-                displayPathNodes.add(convertIpForDisplay(convertNodeIdToIp(pathNode)));
+        if (Diagnostics.TRACE) {
+            Diagnostics.trace("[PLAYBACK] Selected top " + topFlows.size() + " flows by sending rate:");
+            for (int i = 0; i < topFlows.size(); i++) {
+                Flow flow = topFlows.get(i);
+                Diagnostics.trace("[PLAYBACK] Flow " + i + ": " + convertIpForDisplay(flow.srcIp) + ":" + flow.srcPort + 
+                                 " -> " + convertIpForDisplay(flow.dstIp) + ":" + flow.dstPort + 
+                                 " (rate: " + flow.getSendingRateBps() + ")");
             }
-            System.out.println("[PLAYBACK] Processing flow path: " + displayPathNodes);
-            
-            // Find all links that this flow passes through
-            for (int i = 0; i < flow.pathNodes.size() - 1; i++) {
-                String srcNodeId = flow.pathNodes.get(i);
-                String dstNodeId = flow.pathNodes.get(i + 1);
-                
-                // Convert node IDs to IP addresses
-                String srcIp = convertNodeIdToIp(srcNodeId);
-                String dstIp = convertNodeIdToIp(dstNodeId);
-                
-                // Find the link between these two nodes
-                boolean foundLink = false;
-                for (Link link : links) {
-                    if ((link.source.equals(srcIp) && link.target.equals(dstIp)) ||
-                        (link.source.equals(dstIp) && link.target.equals(srcIp))) {
-                        
-                        // Add this flow to the link's flow_set
-                        link.flow_set.add(flow);
-                        assignedFlows++;
-                        foundLink = true;
-                        System.out.println("[PLAYBACK] ✓ Assigned flow " + convertIpForDisplay(flow.srcIp) + ":" + flow.srcPort +
-                                         " -> " + convertIpForDisplay(flow.dstIp) + ":" + flow.dstPort +
-                                         " to link " + convertIpForDisplay(link.source) + " -> " + convertIpForDisplay(link.target) +
-                                         " (utilization: " + link.link_bandwidth_utilization_percent + "%)");
-                        break; // Found the link, move to next path segment
-                    }
-                }
-                if (!foundLink) {
-                    System.out.println("[PLAYBACK] ✗ No link found between: " + convertIpForDisplay(srcIp) + " -> " + convertIpForDisplay(dstIp));
+        }
+        
+        if (Diagnostics.TRACE) {
+            for (Flow flow : topFlows) {
+                List<String> displayPathNodes = new ArrayList<>();
+                for (String pathNode : flow.pathNodes) {
+                    displayPathNodes.add(convertIpForDisplay(convertNodeIdToIp(pathNode)));
                 }
+                Diagnostics.trace("[PLAYBACK] Processing flow path: " + displayPathNodes);
             }
         }
         
-        System.out.println("[PLAYBACK] Successfully assigned " + assignedFlows + " flow instances to links");
+        // Path node IDs are converted to IPs to find the links
+        LinkFlowIndex index = LinkFlowIndex.assign(topFlows, links, true, this::convertNodeIdToIp);
+        if (Diagnostics.TRACE && index.segmentsMissed > 0) {
+            Diagnostics.trace("[PLAYBACK] ✗ " + index.segmentsMissed + " path segments without a link");
+        }
+        
+        System.out.println("[PLAYBACK] Successfully assigned " + index.size() + " flow instances to links");
         
         // Debug: Show flow_set counts for each link
         for (Link link : links) {
-            if (link.flow_set != null && !link.flow_set.isEmpty()) {
-                System.out.println("[PLAYBACK] Link " + convertIpForDisplay(link.source) + " -> " + convertIpForDisplay(link.target) + 
+            if (Diagnostics.TRACE && link.flow_set != null && !link.flow_set.isEmpty()) {
+                Diagnostics.trace("[PLAYBACK] Link " + convertIpForDisplay(link.source) + " -> " + convertIpForDisplay(link.target) + 
                                  " has " + link.flow_set.size() + " flows (utilization: " + link.link_bandwidth_utilization_percent + "%)");
             }
         }
         
-        int linksWithFlows = (int) links.stream().filter(l -> l.flow_set != null && !l.flow_set.isEmpty()).count();
+        int linksWithFlows = index.linksWithFlows();
         System.out.println("[PLAYBACK] Flow assignment complete. Links with flows: " + linksWithFlows + "/" + links.size());
         
         
@@ -2188,38 +2095,26 @@ public class PlaybackPanel extends VBox {
         if (linksWithFlows == 0 && !flows.isEmpty()) {
             System.out.println("[PLAYBACK] WARNING: No flows assigned via pathNodes, trying direct assignment...");
             
-            int directlyAssigned = 0;
             List<Flow> sortedFlows = new ArrayList<>(flows);
             sortedFlows.sort((a, b) -> Double.compare(b.getSendingRateBps(), a.getSendingRateBps()));
             List<Flow> topDirectFlows = sortedFlows.subList(0, Math.min(20, sortedFlows.size()));
             
-            for (Flow flow : topDirectFlows) {
-                boolean assigned = false;
-                
-                
-                for (Link link : links) {
-                    if ((link.source.equals(flow.srcIp) && link.target.equals(flow.dstIp)) ||
-                        (link.source.equals(flow.dstIp) && link.target.equals(flow.srcIp))) {
-                        
-                        link.flow_set.add(flow);
-                        directlyAssigned++;
-                        assigned = true;
-                        System.out.println("[PLAYBACK] ✓ Direct assigned: " + 
+            // Each flow as a one-hop path from its source to its destination
+            index = LinkFlowIndex.assign(topDirectFlows, links, flow -> Arrays.asList(flow.srcIp(), flow.dstIp()), true, null);
+            int directlyAssigned = index.size();
+            if (Diagnostics.TRACE) {
+                for (int l = 0; l < links.size(); l++) {
+                    for (Flow flow : index.flowsOn(l)) {
+                        Diagnostics.trace("[PLAYBACK] ✓ Direct assigned: " + 
                                          convertIpForDisplay(flow.srcIp) + ":" + flow.srcPort + " -> " +
                                          convertIpForDisplay(flow.dstIp) + ":" + flow.dstPort +
-                                         " to link " + convertIpForDisplay(link.source) + " -> " + convertIpForDisplay(link.target));
-                        break;
+                                         " to link " + convertIpForDisplay(links.get(l).source) + " -> " + convertIpForDisplay(links.get(l).target));
                     }
                 }
-                
-                if (!assigned) {
-                    System.out.println("[PLAYBACK] ✗ No direct link found for: " + 
-                                     convertIpForDisplay(flow.srcIp) + " -> " + convertIpForDisplay(flow.dstIp));
-                }
             }
             
             System.out.println("[PLAYBACK] Direct assignment complete: " + directlyAssigned + " flows assigned");
-            linksWithFlows = (int) links.stream().filter(l -> l.flow_set != null && !l.flow_set.isEmpty()).count();
+            linksWithFlows = index.linksWithFlows();
             System.out.println("[PLAYBACK] Final links with flows: " + linksWithFlows + "/" + links.size());
         }
         
@@ -0,0 +1,115 @@
+package org.example.demo2;
+
+import java.util.Objects;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * One NDT API endpoint polled on its own cadence, with the last good response kept.
+ *
+ * A failed fetch (null) leaves the last good value in place, so one slow or failing endpoint never
+ * blanks data the others still update. Until there is a good value the endpoint is due on every
+ * tick. At most one fetch is in flight, so a hanging endpoint is not asked again until it answers.
+ *
+ * After {@code -Dndt.poll.breaker.failures} consecutive failures (default 3) the endpoint's circuit
+ * opens: it is not fetched at all for a cool-down that starts at 2 s and doubles, up to a minute,
+ * each time the single trial fetch after it fails again. One good response closes it.
+ *
+ * Fetched on the poll executor; everything else is safe from any thread.
+ */
+final class PolledEndpoint<T> {
+
+    // A tick that fires a little early still counts, or a 1 s cadence on 1 s ticks would skip one
+    private static final long SLACK_MS = 50;
+    private static final int BREAKER_FAILURES = Integer.getInteger("ndt.poll.breaker.failures", 3);
+    private static final long MIN_COOL_DOWN_MS = 2000;
+    private static final long MAX_COOL_DOWN_MS = 60_000;
+
+    final String name;
+    private final LongSupplier intervalMillis;
+    private final Supplier<T> fetch;
+    private volatile T lastGood;
+    private volatile long lastGoodMillis;
+    private volatile boolean inFlight;
+    private volatile long lastAttemptMillis = Long.MIN_VALUE / 2;
+    private volatile long lastLatencyMillis = -1;
+    // Circuit breaker
+    private volatile int failures;
+    private volatile long openUntilMillis;
+    private long coolDownMillis = MIN_COOL_DOWN_MS;
+
+    PolledEndpoint(String name, LongSupplier intervalMillis, Supplier<T> fetch) {
+        this.name = name;
+        this.intervalMillis = intervalMillis;
+        this.fetch = fetch;
+    }
+
+    /** Whether the endpoint should be fetched on a tick at {@code now}. */
+    boolean due(long now) {
+        if (inFlight || now < openUntilMillis) {
+            return false;
+        }
+        return lastGood == null || failures > 0 || now - lastAttemptMillis >= intervalMillis.getAsLong() - SLACK_MS;
+    }
+
+    /** Fetch now. Returns true if this produced a value different from the last good one. */
+    boolean fetch(long now) {
+        inFlight = true;
+        lastAttemptMillis = now;
+        long start = System.nanoTime();
+        try {
+            T value = fetch.get();
+            lastLatencyMillis = (System.nanoTime() - start) / 1_000_000;
+            if (value == null) {
+                failed();
+                return false;
+            }
+            if (failures >= BREAKER_FAILURES) {
+                System.out.println("[POLL] " + name + " is answering again, circuit closed");
+            }
+            failures = 0;
+            coolDownMillis = MIN_COOL_DOWN_MS;
+            lastGoodMillis = System.currentTimeMillis();
+            if (Objects.equals(value, lastGood)) {
+                return false;
+            }
+            lastGood = value;
+            return true;
+        } finally {
+            inFlight = false;
+        }
+    }
+
+    private void failed() {
+        int count = ++failures;
+        if (count < BREAKER_FAILURES) {
+            if (Diagnostics.DEBUG) Diagnostics.debug("[POLL] " + name + " failed, keeping last good value");
+            return;
+        }
+        long now = System.currentTimeMillis();
+        openUntilMillis = now + coolDownMillis;
+        System.out.println("[POLL] " + name + " failed " + count + " times in a row, circuit open for "
+            + coolDownMillis / 1000 + " s");
+        coolDownMillis = Math.min(MAX_COOL_DOWN_MS, coolDownMillis * 2);
+    }
+
+    /** Last good value, or null if there has never been one. */
+    T get() {
+        return lastGood;
+    }
+
+    /** Whether the last fetch failed, i.e. {@link #get} may be out of date. */
+    boolean isFailing() {
+        return failures > 0;
+    }
+
+    /** How long the last fetch took, failed or not, or -1 before the first. */
+    long lastLatencyMillis() {
+        return lastLatencyMillis;
+    }
+
+    /** When the last good value was received (epoch ms), or 0 if never. */
+    long lastGoodMillis() {
+        return lastGoodMillis;
+    }
+}
@@ -0,0 +1,256 @@
+package org.example.demo2;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records live polls to rolling NDJSON segments that Playback Mode can open directly.
+ *
+ * Each segment is a pair of files written in step, one line per poll:
+ *   session-<start>-topology.ndjson  {"t":ms,"type":"topology","nodes":[...],"edges":[...]}
+ *   session-<start>-flow.ndjson      {"t":ms,"flow_info":[...]}
+ * with a ".idx" sidecar next to each file in {@link NdjsonIndexUtil}'s format, appended as lines are
+ * written, so loading a segment never re-scans it.
+ *
+ * The poll thread only enqueues; serialization and disk I/O happen on the "ndt-recorder" thread.
+ * When the queue is full the poll is dropped (and counted) instead of blocking.
+ */
+public class SessionRecorder {
+
+    public static class Config {
+        public File dir = new File("recordings");
+        public long maxSegmentBytes = 256L * 1024 * 1024; // rotate when the flow file grows past this
+        public long maxSegmentMillis = 60L * 60 * 1000;   // ... or when the segment is this old
+        public int queueCapacity = 16;                     // polls buffered while the disk is slow
+        public boolean keepEdgeFlowSets = false;           // playback re-derives flow_set from flow paths
+
+        /** Defaults overridden by -Dndt.record.segment.mb / -Dndt.record.segment.minutes / -Dndt.record.queue */
+        public static Config fromSystemProperties(File dir) {
+            Config config = new Config();
+            config.dir = dir;
+            config.maxSegmentBytes = Long.getLong("ndt.record.segment.mb", config.maxSegmentBytes >> 20) << 20;
+            config.maxSegmentMillis = Long.getLong("ndt.record.segment.minutes", config.maxSegmentMillis / 60_000) * 60_000;
+            config.queueCapacity = Integer.getInteger("ndt.record.queue", config.queueCapacity);
+            return config;
+        }
+    }
+
+    private static final class Poll {
+        final long timestampMs;
+        final GraphData graph;
+        final DetectedFlowData[] flows;
+
+        Poll(long timestampMs, GraphData graph, DetectedFlowData[] flows) {
+            this.timestampMs = timestampMs;
+            this.graph = graph;
+            this.flows = flows;
+        }
+    }
+
+    private static final Poll STOP = new Poll(0, null, null);
+
+    /** One NDJSON file plus its index sidecar, tracking the byte offset of the next line. */
+    private static final class SegmentFile {
+        final File file;
+        final OutputStream out;
+        final BufferedWriter idx;
+        long offset = 0;
+
+        SegmentFile(File file) throws IOException {
+            this.file = file;
+            this.out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+            this.idx = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(NdjsonIndexUtil.indexFileFor(file)), StandardCharsets.UTF_8));
+        }
+
+        void append(long timestampMs, String type, String json) throws IOException {
+            byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+            out.write(bytes);
+            out.write('\n');
+            idx.write(NdjsonIndexUtil.formatIndexLine(timestampMs, offset, bytes.length, type));
+            idx.newLine();
+            offset += bytes.length + 1;
+        }
+
+        // Data before index, so a reader never sees an index line pointing past the data
+        void flush() throws IOException {
+            out.flush();
+            idx.flush();
+        }
+
+        void close() throws IOException {
+            try {
+                out.close();
+            } finally {
+                idx.close();
+            }
+        }
+    }
+
+    private final Config config;
+    private final BlockingQueue<Poll> queue;
+    private final Gson gson = new Gson();
+    private final Thread writer;
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean stopped = false;
+
+    private SegmentFile topoSegment;
+    private SegmentFile flowSegment;
+    private long segmentStartMs;
+
+    public SessionRecorder(Config config) {
+        this.config = config;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, config.queueCapacity));
+        this.writer = new Thread(this::writeLoop, "ndt-recorder");
+        this.writer.setDaemon(true);
+    }
+
+    public void start() {
+        config.dir.mkdirs();
+        writer.start();
+        System.out.println("[RECORDER] Recording live session to " + config.dir.getAbsolutePath()
+            + " (segments up to " + (config.maxSegmentBytes >> 20) + " MB / " + (config.maxSegmentMillis / 60_000) + " min)");
+    }
+
+    /**
+     * Queue one poll for writing. Never blocks; returns false if the poll was dropped because the
+     * writer has fallen behind.
+     */
+    public boolean record(long timestampMs, GraphData graph, DetectedFlowData[] flows) {
+        if (stopped || graph == null || flows == null) {
+            return false;
+        }
+        if (queue.offer(new Poll(timestampMs, graph, flows))) {
+            return true;
+        }
+        long n = dropped.incrementAndGet();
+        if (n == 1 || n % 100 == 0) {
+            System.err.println("[RECORDER] Writer behind, dropped " + n + " poll(s) so far");
+        }
+        return false;
+    }
+
+    public long getRecordedCount() {
+        return recorded.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Write what is already queued, close the current segment and stop the writer thread.
+     */
+    public void stop() {
+        if (stopped) return;
+        stopped = true;
+        try {
+            // Bounded wait: if the writer is wedged on the disk, give up rather than hang shutdown
+            if (!queue.offer(STOP, 5, TimeUnit.SECONDS)) {
+                writer.interrupt();
+            }
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        System.out.println("[RECORDER] Stopped: " + recorded.get() + " polls recorded, " + dropped.get() + " dropped");
+    }
+
+    private void writeLoop() {
+        try {
+            while (true) {
+                Poll poll = queue.take();
+                if (poll == STOP) break;
+                try {
+                    write(poll);
+                    recorded.incrementAndGet();
+                } catch (IOException e) {
+                    System.err.println("[RECORDER] Write failed, starting a new segment: " + e.getMessage());
+                    closeSegment();
+                } catch (RuntimeException e) {
+                    // A bad snapshot must not stop the recording
+                    System.err.println("[RECORDER] Skipping poll at " + poll.timestampMs + ": " + e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeSegment();
+        }
+    }
+
+    private void write(Poll poll) throws IOException {
+        if (flowSegment != null && (flowSegment.offset >= config.maxSegmentBytes
+                || poll.timestampMs - segmentStartMs >= config.maxSegmentMillis)) {
+            closeSegment();
+        }
+        if (flowSegment == null) {
+            openSegment(poll.timestampMs);
+        }
+
+        // Serialize both lines before appending either, so the two files stay line-for-line aligned
+        JsonObject topo = new JsonObject();
+        topo.addProperty("t", poll.timestampMs);
+        topo.addProperty("type", "topology");
+        topo.add("nodes", gson.toJsonTree(poll.graph.nodes));
+        JsonArray edges = gson.toJsonTree(poll.graph.edges).getAsJsonArray();
+        if (!config.keepEdgeFlowSets) {
+            edges.forEach(e -> e.getAsJsonObject().remove("flow_set"));
+        }
+        topo.add("edges", edges);
+        String topoLine = gson.toJson(topo);
+
+        JsonObject flow = new JsonObject();
+        flow.addProperty("t", poll.timestampMs);
+        flow.add("flow_info", gson.toJsonTree(poll.flows));
+        String flowLine = gson.toJson(flow);
+
+        topoSegment.append(poll.timestampMs, "topology", topoLine);
+        flowSegment.append(poll.timestampMs, "flow", flowLine);
+        topoSegment.flush();
+        flowSegment.flush();
+    }
+
+    private void openSegment(long timestampMs) throws IOException {
+        String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date(timestampMs));
+        String base = "session-" + stamp;
+        // Two rotations within the same second would otherwise reuse a name
+        for (int n = 2; new File(config.dir, base + "-flow.ndjson").exists(); n++) {
+            base = "session-" + stamp + "-" + n;
+        }
+        topoSegment = new SegmentFile(new File(config.dir, base + "-topology.ndjson"));
+        flowSegment = new SegmentFile(new File(config.dir, base + "-flow.ndjson"));
+        segmentStartMs = timestampMs;
+        System.out.println("[RECORDER] New segment " + base);
+    }
+
+    private void closeSegment() {
+        for (SegmentFile segment : new SegmentFile[] {topoSegment, flowSegment}) {
+            if (segment == null) continue;
+            try {
+                segment.close();
+            } catch (IOException e) {
+                System.err.println("[RECORDER] Failed to close " + segment.file.getName() + ": " + e.getMessage());
+            }
+        }
+        topoSegment = null;
+        flowSegment = null;
+    }
+}
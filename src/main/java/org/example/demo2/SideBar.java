@@ -20,7 +20,7 @@ import javafx.scene.text.Text;
 
 public class SideBar extends VBox {
     private final TopologyCanvas topologyCanvas;
-    private List<Flow> flows;
+    private FlowTable flows;
 
     private FilterButton filterButton;
     private PlaybackPanel playbackPanel;
@@ -53,11 +53,11 @@ public class SideBar extends VBox {
 
     public SideBar(TopologyCanvas topologyCanvas, List<Flow> flows, NetworkTopologyApp mainApp) {
         this.topologyCanvas = topologyCanvas;
-        this.flows = flows;
+        this.flows = FlowTable.of(flows);
         this.mainApp = mainApp;
         
         // Initialize FilterButton
-        this.filterButton = new FilterButton(topologyCanvas, flows);
+        this.filterButton = new FilterButton(topologyCanvas, this.flows);
 
         setPrefWidth(200);
         setPadding(new Insets(20, 15, 20, 15));
@@ -585,14 +585,16 @@ public class SideBar extends VBox {
         System.out.println("[PATH-FLICKER] Showing " + maxFlowsToShow + " out of " + flows.size() + " flows");
         
         
+        FlowTable shownFlows = flows;
+        FlowTable.Cursor flow = shownFlows.cursor();
         for (int i = 0; i < maxFlowsToShow; i++) {
-            Flow flow = flows.get(i);
+            flow.moveTo(i);
             
-            String srcDeviceNameWithIp = getDeviceNameWithIp(flow.srcIp);
-            String dstDeviceNameWithIp = getDeviceNameWithIp(flow.dstIp);
+            String srcDeviceNameWithIp = getDeviceNameWithIp(flow.srcIp());
+            String dstDeviceNameWithIp = getDeviceNameWithIp(flow.dstIp());
             
             
-            javafx.scene.paint.Color flowColor = topologyCanvas.getColorForFlow(flow);
+            javafx.scene.paint.Color flowColor = topologyCanvas.getColorForFlowId(flow.id());
             
             
             javafx.scene.shape.Rectangle colorIcon = new javafx.scene.shape.Rectangle(40, 30);
@@ -616,15 +618,12 @@ public class SideBar extends VBox {
             flowItemContainer.setStyle("-fx-background-color: white; -fx-border-color: #dee2e6; -fx-border-radius: 5; -fx-background-radius: 5;");
             
             
-            final Flow currentFlow = flow;
+            final int currentRow = i;
+            final int currentFlowId = flow.id();
             flowItemContainer.setOnMouseClicked(e -> {
                 
                 Flow currentFlickeredFlow = topologyCanvas.getFlickeredFlow();
-                if (currentFlickeredFlow != null && 
-                    currentFlickeredFlow.srcIp.equals(currentFlow.srcIp) &&
-                    currentFlickeredFlow.dstIp.equals(currentFlow.dstIp) &&
-                    currentFlickeredFlow.srcPort == currentFlow.srcPort &&
-                    currentFlickeredFlow.dstPort == currentFlow.dstPort) {
+                if (currentFlickeredFlow != null && currentFlickeredFlow.id() == currentFlowId) {
                     
                     topologyCanvas.stopFlickering();
                     
@@ -639,7 +638,8 @@ public class SideBar extends VBox {
                     }
                 } else {
                     
-                    topologyCanvas.startFlickering(currentFlow);
+                    // The row view is only built for the flow that was clicked
+                    topologyCanvas.startFlickering(shownFlows.get(currentRow));
                     
                     
                     for (int j = 0; j < flowContainer.getChildren().size(); j++) {
@@ -748,12 +748,7 @@ public class SideBar extends VBox {
         try {
             int littleEndianIp = Integer.parseInt(ipString);
             
-            return String.format("%d.%d.%d.%d",
-                (littleEndianIp >> 24) & 0xFF,
-                (littleEndianIp >> 16) & 0xFF,
-                (littleEndianIp >> 8) & 0xFF,
-                littleEndianIp & 0xFF
-            );
+            return EnrichmentService.ipv4(littleEndianIp);
         } catch (NumberFormatException e) {
             
             
@@ -892,29 +887,23 @@ public class SideBar extends VBox {
         }
         
         
-        List<Flow> sortedFlows = new java.util.ArrayList<>(flows);
-        sortedFlows.sort((f1, f2) -> Double.compare(
-            f2.getSendingRateBps(), 
-            f1.getSendingRateBps()
-        ));
-        
-        
-        int actualK = Math.min(k, sortedFlows.size());
-        List<Flow> topKFlows = sortedFlows.subList(0, actualK);
+        // The canvas selects from its own flow list and returns indices into it, fastest first
+        int[] topK = topologyCanvas.applyTopK(k);
         
         
-        System.out.println("[SIDEBAR] Top-K Flows (K=" + k + ", actual=" + actualK + "):");
-        for (int i = 0; i < Math.min(5, topKFlows.size()); i++) {
-            Flow flow = topKFlows.get(i);
-            System.out.println("  [" + (i+1) + "] " + getDeviceName(flow.srcIp) + " → " + 
-                             getDeviceName(flow.dstIp) + " | Rate: " + 
-                             flow.getSendingRateBps() + " bps");
+        System.out.println("[SIDEBAR] Top-K Flows (K=" + k + ", actual=" + topK.length + "):");
+        if (topK.length > 0) {
+            // Read from the canvas's flow columns rather than copying its whole flow list
+            FlowTable.Cursor flow = topologyCanvas.getFlowTable().cursor();
+            for (int i = 0; i < Math.min(5, topK.length); i++) {
+                flow.moveTo(topK[i]);
+                System.out.println("  [" + (i+1) + "] " + getDeviceName(flow.srcIp()) + " → " + 
+                                 getDeviceName(flow.dstIp()) + " | Rate: " + 
+                                 flow.rate() + " bps");
+            }
         }
         
         
-        topologyCanvas.setTopKFlows(topKFlows, k);
-        
-        
         updateTopKButtonText();
     }
     
@@ -1237,10 +1226,11 @@ public class SideBar extends VBox {
         
         double maxLabelWidth = 0;
         Font labelFont = Font.font("Arial", 11);
+        FlowTable.Cursor flow = flows.cursor();
         for (int i = 0; i < maxFlowsToShow; i++) {
-            Flow flow = flows.get(i);
-            String srcDeviceNameWithIp = getDeviceNameWithIp(flow.srcIp);
-            String dstDeviceNameWithIp = getDeviceNameWithIp(flow.dstIp);
+            flow.moveTo(i);
+            String srcDeviceNameWithIp = getDeviceNameWithIp(flow.srcIp());
+            String dstDeviceNameWithIp = getDeviceNameWithIp(flow.dstIp());
             String labelText = srcDeviceNameWithIp + " → " + dstDeviceNameWithIp;
             Text measure = new Text(labelText);
             measure.setFont(labelFont);
@@ -1249,10 +1239,10 @@ public class SideBar extends VBox {
         
         
         for (int i = 0; i < maxFlowsToShow; i++) {
-            Flow flow = flows.get(i);
+            flow.moveTo(i);
             
             
-            javafx.scene.paint.Color flowColor = topologyCanvas.getColorForFlow(flow);
+            javafx.scene.paint.Color flowColor = topologyCanvas.getColorForFlowId(flow.id());
             
             
             javafx.scene.shape.Rectangle colorRectangle = new javafx.scene.shape.Rectangle(12, 12);
@@ -1266,8 +1256,8 @@ public class SideBar extends VBox {
             colorBox.setAlignment(Pos.CENTER);
             
             
-            String srcDeviceNameWithIp = getDeviceNameWithIp(flow.srcIp);
-            String dstDeviceNameWithIp = getDeviceNameWithIp(flow.dstIp);
+            String srcDeviceNameWithIp = getDeviceNameWithIp(flow.srcIp());
+            String dstDeviceNameWithIp = getDeviceNameWithIp(flow.dstIp());
             
             
             Label label = new Label(srcDeviceNameWithIp + " → " + dstDeviceNameWithIp);
@@ -1312,11 +1302,11 @@ public class SideBar extends VBox {
 
     
     public void updateData(List<Flow> newFlows, List<Link> newLinks, List<Node> newNodes) {
-        this.flows = newFlows;
+        this.flows = FlowTable.of(newFlows);
 
         
         if (filterButton != null) {
-            filterButton.updateData(newFlows);
+            filterButton.updateData(this.flows);
         }
         
         
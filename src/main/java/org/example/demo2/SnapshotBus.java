@@ -0,0 +1,194 @@
+package org.example.demo2;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import javafx.application.Platform;
+
+/**
+ * Versioned topology/flow snapshots for open views.
+ *
+ * The live poll loop and playback publish a snapshot every time the canvas is updated. Dialogs
+ * subscribe instead of running their own refresh timers, so they only recompute when there is
+ * something new to show. Lookups that several views need (node by IP, link by endpoints, flow by
+ * 5-tuple, flows crossing a hop) are built once per snapshot, on first use, and shared.
+ *
+ * Publish and read on the FX thread.
+ */
+public final class SnapshotBus {
+
+    public static final class Snapshot {
+        public final long version;
+        public final boolean playback;
+        public final List<Node> nodes;
+        public final List<Link> links;
+        final FlowTable flows;
+
+        private final Function<String, String> nodeIdToIp;
+        private final Map<String, String> ipsById = new HashMap<>();
+        private final Map<String, String> namesByIp = new HashMap<>();
+        private Map<String, Node> nodesByIp;
+        private Map<String, Link> linksByEnds;
+        private Map<String, int[]> flowsByHop;
+
+        Snapshot(long version, boolean playback, List<Node> nodes, List<Link> links, List<Flow> flows,
+                 Function<String, String> nodeIdToIp) {
+            this.version = version;
+            this.playback = playback;
+            this.nodes = nodes;
+            this.links = links;
+            this.flows = FlowTable.of(flows);
+            this.nodeIdToIp = nodeIdToIp;
+        }
+
+        /** Same result as TopologyCanvas.findNodeByIp: first node owning the IP, primary or secondary. */
+        public Node nodeByIp(String ip) {
+            if (nodesByIp == null) {
+                Map<String, Node> index = new HashMap<>(nodes.size() * 2);
+                for (Node node : nodes) {
+                    if (node.ip != null) index.putIfAbsent(node.ip, node);
+                    if (node.ips != null) {
+                        for (String secondary : node.ips) {
+                            index.putIfAbsent(secondary, node);
+                        }
+                    }
+                }
+                nodesByIp = index;
+            }
+            return ip == null ? null : nodesByIp.get(ip);
+        }
+
+        /** Device name for an IP, or the IP itself when no node has it. */
+        public String nodeName(String ip) {
+            return namesByIp.computeIfAbsent(ip, k -> {
+                Node node = nodeByIp(k);
+                return node != null ? node.name : k;
+            });
+        }
+
+        /** IP for a flow path node id (DPID or integer IP). */
+        public String nodeIp(String nodeId) {
+            return ipsById.computeIfAbsent(nodeId, nodeIdToIp);
+        }
+
+        /** The link from {@code source} to {@code target} in this snapshot, or null. */
+        public Link link(String source, String target) {
+            if (linksByEnds == null) {
+                Map<String, Link> index = new HashMap<>(links.size() * 2);
+                for (Link link : links) {
+                    index.putIfAbsent(link.source + "|" + link.target, link);
+                }
+                linksByEnds = index;
+            }
+            return linksByEnds.get(source + "|" + target);
+        }
+
+        /** First detected flow with the same 5-tuple, as a row view, or null. */
+        public Flow completeFlow(Flow flow) {
+            int row = completeRow(flow.id());
+            return row >= 0 ? flows.get(row) : null;
+        }
+
+        /** Row in {@link #flows} of the first detected flow with ID {@code flowId}, or -1. */
+        int completeRow(int flowId) {
+            return flows.rowOf(flowId);
+        }
+
+        /**
+         * Rows of {@link #flows}, ascending, of the flows whose path (that of their
+         * {@link #completeRow}) steps from {@code fromIp} to {@code toIp}. Path nodes are compared by
+         * device name, so any IP of a multi-homed switch matches.
+         */
+        public int[] flowsOnHop(String fromIp, String toIp) {
+            if (flowsByHop == null) {
+                flowsByHop = buildHopIndex();
+            }
+            int[] indices = flowsByHop.get(nodeName(fromIp) + "|" + nodeName(toIp));
+            return indices != null ? indices : new int[0];
+        }
+
+        private Map<String, int[]> buildHopIndex() {
+            Map<String, int[]> lists = new HashMap<>();
+            Map<String, Integer> sizes = new HashMap<>();
+            // Hop keys per path ID, worked out once for all the flows sharing the path
+            Map<Integer, String[]> hopsByPath = new HashMap<>();
+            for (int i = 0; i < flows.size; i++) {
+                String[] hops = hopsByPath.computeIfAbsent(flows.path[completeRow(flows.id[i])], pathId -> {
+                    List<String> path = flows.paths.nodes(pathId);
+                    String[] keys = new String[Math.max(0, path.size() - 1)];
+                    for (int h = 0; h < keys.length; h++) {
+                        keys[h] = nodeName(nodeIp(path.get(h))) + "|" + nodeName(nodeIp(path.get(h + 1)));
+                    }
+                    return keys;
+                });
+                for (String hop : hops) {
+                    int n = sizes.getOrDefault(hop, 0);
+                    int[] list = lists.get(hop);
+                    if (list == null) {
+                        list = new int[4];
+                    } else if (list[n - 1] == i) {
+                        continue; // path crosses the same hop twice
+                    } else if (n == list.length) {
+                        list = Arrays.copyOf(list, n * 2);
+                    }
+                    list[n] = i;
+                    lists.put(hop, list);
+                    sizes.put(hop, n + 1);
+                }
+            }
+            lists.replaceAll((hop, list) -> Arrays.copyOf(list, sizes.get(hop)));
+            return lists;
+        }
+    }
+
+    private static Snapshot current = new Snapshot(0, false,
+        Collections.emptyList(), Collections.emptyList(), FlowTable.EMPTY, Function.identity());
+    private static final List<Consumer<Snapshot>> subscribers = new CopyOnWriteArrayList<>();
+    private static boolean notifyPending = false;
+
+    private SnapshotBus() {
+    }
+
+    /**
+     * Make a new snapshot current. The lists are kept as they are, so pass copies the caller will not
+     * modify; a {@link FlowTable} never changes and is kept without a copy. Subscribers are told on a later pulse, once per burst of publishes, and always see the
+     * latest snapshot.
+     */
+    public static Snapshot publish(List<Node> nodes, List<Link> links, List<Flow> flows, boolean playback,
+                                   Function<String, String> nodeIdToIp) {
+        current = new Snapshot(current.version + 1, playback, nodes, links, flows, nodeIdToIp);
+        if (!notifyPending && !subscribers.isEmpty()) {
+            notifyPending = true;
+            Platform.runLater(SnapshotBus::notifySubscribers);
+        }
+        return current;
+    }
+
+    public static Snapshot current() {
+        return current;
+    }
+
+    /** Call {@code subscriber} with each new snapshot. Run the returned action to unsubscribe. */
+    public static Runnable subscribe(Consumer<Snapshot> subscriber) {
+        subscribers.add(subscriber);
+        return () -> subscribers.remove(subscriber);
+    }
+
+    private static void notifySubscribers() {
+        notifyPending = false;
+        Snapshot snapshot = current;
+        for (Consumer<Snapshot> subscriber : subscribers) {
+            try {
+                subscriber.accept(snapshot);
+            } catch (RuntimeException e) {
+                System.err.println("[SNAPSHOT] Subscriber failed on version " + snapshot.version + ": " + e);
+            }
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package org.example.demo2;
+
+import java.util.List;
+
+/**
+ * Top-K flows by sending rate, selected in one pass over the flow list.
+ *
+ * A size-K min-heap of flow indices is kept while streaming the flows: each flow is compared with the
+ * smallest rate in the heap and almost all of them are rejected with that single comparison. Only
+ * the K survivors get sorted. Ties keep the earlier flow, as the old stable full sort did. The scan
+ * reads only the rate and ID columns of a {@link FlowTable}, also when it is passed as a list; any
+ * other flow list is copied into two such arrays first.
+ *
+ * Hysteresis: flows selected by the previous call keep their place until an outsider beats them by
+ * more than the hysteresis fraction (-Dndt.topk.hysteresis, default 0.1 = 10%), so flows near the
+ * cut-off don't flicker in and out between updates. Changing K, or {@link #reset()}, forgets them.
+ * The boost only decides who gets in; the result is still ordered by rate.
+ */
+public class TopKFlowTracker {
+
+    private final double hysteresis;
+    private int[] heap = new int[0];        // flow indices, min-heap by (score, -index)
+    private double[] heapScore = new double[0];
+    private int heapSize;
+    // Previous selection as stable flow IDs (Flow.id()) in an open-addressing table (0 = empty slot)
+    private int[] members = new int[0];
+    private int lastK = -1;
+
+    public TopKFlowTracker() {
+        this(Double.parseDouble(System.getProperty("ndt.topk.hysteresis", "0.1")));
+    }
+
+    public TopKFlowTracker(double hysteresis) {
+        this.hysteresis = Math.max(0.0, hysteresis);
+    }
+
+    public double getHysteresis() {
+        return hysteresis;
+    }
+
+    public void reset() {
+        members = new int[0];
+        lastK = -1;
+    }
+
+    /**
+     * Indices into {@code flows} of the top {@code k} flows, highest rate first, with hysteresis
+     * applied against the previous call.
+     */
+    public int[] select(List<Flow> flows, int k) {
+        if (flows instanceof FlowTable) {
+            return select((FlowTable) flows, k);
+        }
+        double[] rates = new double[flows.size()];
+        int[] ids = new int[flows.size()];
+        copyColumns(flows, rates, ids);
+        return select(rates, ids, k);
+    }
+
+    /** {@link #select(List, int)} over the columns of {@code flows}; indices are its rows. */
+    int[] select(FlowTable flows, int k) {
+        return select(flows.rateBps, flows.id, k);
+    }
+
+    private int[] select(double[] rates, int[] ids, int k) {
+        if (k != lastK) {
+            members = new int[0];
+            lastK = k;
+        }
+        int[] top = select(rates, ids, k, members.length == 0 ? null : members, 1.0 + hysteresis);
+        int[] selected = new int[Integer.highestOneBit(Math.max(1, top.length) * 2) * 2];
+        for (int index : top) {
+            int id = ids[index];
+            int slot = mix(id) & (selected.length - 1);
+            while (selected[slot] != 0 && selected[slot] != id) {
+                slot = (slot + 1) & (selected.length - 1);
+            }
+            selected[slot] = id;
+        }
+        members = selected;
+        return top;
+    }
+
+    /** One-off Top-K without hysteresis. */
+    public static int[] topIndices(List<Flow> flows, int k) {
+        double[] rates;
+        if (flows instanceof FlowTable) {
+            rates = ((FlowTable) flows).rateBps;
+        } else {
+            rates = new double[flows.size()];
+            copyColumns(flows, rates, null);
+        }
+        return new TopKFlowTracker(0.0).select(rates, null, k, null, 1.0);
+    }
+
+    // IDs are only needed for hysteresis
+    private static void copyColumns(List<Flow> flows, double[] rates, int[] ids) {
+        for (int i = 0; i < rates.length; i++) {
+            Flow flow = flows.get(i);
+            rates[i] = flow.getSendingRateBps();
+            if (ids != null) ids[i] = flow.id();
+        }
+    }
+
+    private int[] select(double[] rates, int[] ids, int k, int[] sticky, double boost) {
+        int limit = Math.max(0, Math.min(k, rates.length));
+        if (heap.length < limit) {
+            heap = new int[limit];
+            heapScore = new double[limit];
+        }
+        heapSize = 0;
+
+        for (int i = 0; i < rates.length && limit > 0; i++) {
+            double rate = rates[i];
+            if (heapSize == limit) {
+                // Can't get in even with a member's boost: the common case, one comparison
+                double min = heapScore[0];
+                if (rate * boost <= min || (sticky == null && rate <= min)) continue;
+            }
+            double score = rate;
+            if (sticky != null && contains(sticky, ids[i])) {
+                score = rate * boost;
+            }
+            if (heapSize < limit) {
+                heap[heapSize] = i;
+                heapScore[heapSize] = score;
+                siftUp(heapSize++);
+            } else if (score > heapScore[0]) {
+                heap[0] = i;
+                heapScore[0] = score;
+                siftDown(0);
+            }
+        }
+
+        // Pop smallest first into the back of the result: highest score ends up first
+        int[] result = new int[heapSize];
+        for (int n = heapSize - 1; n >= 0; n--) {
+            result[n] = heap[0];
+            heapSize--;
+            if (heapSize > 0) {
+                heap[0] = heap[heapSize];
+                heapScore[0] = heapScore[heapSize];
+                siftDown(0);
+            }
+        }
+        if (sticky != null) {
+            // Boosted members may be out of rate order; the rest already is, so this is nearly linear
+            for (int n = 1; n < result.length; n++) {
+                int index = result[n];
+                int m = n - 1;
+                while (m >= 0 && (rates[result[m]] < rates[index]
+                        || (rates[result[m]] == rates[index] && result[m] > index))) {
+                    result[m + 1] = result[m];
+                    m--;
+                }
+                result[m + 1] = index;
+            }
+        }
+        return result;
+    }
+
+    // IDs are handed out consecutively; spread them over the table
+    private static int mix(int id) {
+        return id * 0x9E3779B9 >>> 7;
+    }
+
+    private static boolean contains(int[] table, int id) {
+        int slot = mix(id) & (table.length - 1);
+        while (table[slot] != 0) {
+            if (table[slot] == id) return true;
+            slot = (slot + 1) & (table.length - 1);
+        }
+        return false;
+    }
+
+    // Heap order: lower score first; on equal scores the later flow is "smaller" so it is evicted first
+    private boolean less(int a, int b) {
+        if (heapScore[a] != heapScore[b]) return heapScore[a] < heapScore[b];
+        return heap[a] > heap[b];
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!less(i, parent)) break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= heapSize) break;
+            int smallest = left;
+            int right = left + 1;
+            if (right < heapSize && less(right, left)) smallest = right;
+            if (!less(smallest, i)) break;
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int index = heap[a];
+        heap[a] = heap[b];
+        heap[b] = index;
+        double score = heapScore[a];
+        heapScore[a] = heapScore[b];
+        heapScore[b] = score;
+    }
+}
@@ -1,20 +1,17 @@
 package org.example.demo2;
 
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-
-import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javafx.animation.AnimationTimer;
 import javafx.animation.PauseTransition;
@@ -28,7 +25,8 @@ import javafx.util.Duration;
 public class TopologyCanvas extends Canvas {
     private final List<org.example.demo2.Node> nodes;
     private final List<Link> links;
-    private final List<org.example.demo2.Flow> flows;
+    // The current flows; replaced by each update, never modified
+    private volatile FlowTable flows;
     private double[] flowPos;
     
     private final Map<Integer, Color> flowColorMap = new HashMap<>();
@@ -39,16 +37,35 @@ public class TopologyCanvas extends Canvas {
     private InfoPanel infoPanel;
     
     
-    private Set<Integer> visibleFlowIndices = new HashSet<>();
+    // Top-K, Flow Filter and flicker focus layers over the current flow list
+    private final FlowVisibilityMask flowVisibility = new FlowVisibilityMask();
+    // -Dndt.flicker.focus=true: while a path flickers, draw only that flow
+    private static final boolean FOCUS_ON_FLICKER = Boolean.getBoolean("ndt.flicker.focus");
     private Set<String> visibleLinkKeys = new HashSet<>(); 
     
-    // Performance optimization: HashMap cache for flow index lookup
-    private Map<String, Integer> flowIndexCache = new HashMap<>();
-    
-    
-    // Key: flowKey (srcIp_dstIp_srcPort_dstPort_protocolId), Value: color slot for getFlowColor / getDistinctColor
-    private Map<String, Integer> flowColorAssignmentMap = new HashMap<>();
-    /** Next slot for a flow key never seen before; avoids hash % 24 collisions between distinct flows. */
+    // Real-time flow lanes, rebuilt on RENDER_MODEL_BUILDER when the topology or visibility changes
+    private static final ExecutorService RENDER_MODEL_BUILDER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "ndt-render-model");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicReference<FlowRenderModel> renderModel = new AtomicReference<>(FlowRenderModel.EMPTY);
+    private final AtomicLong renderModelRequest = new AtomicLong();
+    private long topologyVersion = 0;
+    private long requestedTopologyVersion = -1;
+    private long requestedMaskVersion = -1;
+    // Scratch for the playback path and the per-segment polygon; FX thread only
+    private Color[] segmentColors = new Color[16];
+    private double[] segmentRatios = new double[16];
+    private final FlowTable.Rows playbackForward = new FlowTable.Rows();
+    private final FlowTable.Rows playbackReverse = new FlowTable.Rows();
+    private final double[] segmentXs = new double[4];
+    private final double[] segmentYs = new double[4];
+    
+    
+    // Key: stable flow ID (Flow.id()), Value: color slot for getFlowColor / getDistinctColor
+    private final Map<Integer, Integer> flowColorAssignmentMap = new HashMap<>();
+    /** Next slot for a flow never seen before; avoids hash % 24 collisions between distinct flows. */
     private int nextFlowColorSlot = 0;
     
     
@@ -56,6 +73,8 @@ public class TopologyCanvas extends Canvas {
     private int topKValueRealtime = 0; 
     private boolean topKEnabledPlayback = false; 
     private int topKValuePlayback = 0; 
+    private final TopKFlowTracker topKTrackerRealtime = new TopKFlowTracker();
+    private final TopKFlowTracker topKTrackerPlayback = new TopKFlowTracker();
     private SideBar sideBar = null; 
     
     
@@ -67,6 +86,10 @@ public class TopologyCanvas extends Canvas {
         return isPlaybackMode ? topKValuePlayback : topKValueRealtime;
     }
     
+    private TopKFlowTracker getTopKTracker() {
+        return isPlaybackMode ? topKTrackerPlayback : topKTrackerRealtime;
+    }
+    
     private void setTopKEnabled(boolean enabled) {
         if (isPlaybackMode) {
             topKEnabledPlayback = enabled;
@@ -90,7 +113,7 @@ public class TopologyCanvas extends Canvas {
     private boolean isDragging = false;
     private static final int GRID_SIZE = 15; 
     public boolean darkMode = false;
-    private static final boolean DEBUG = true;
+    private static final boolean DEBUG = Diagnostics.TRACE;
 
     // Range selection functionality
     private boolean isRangeSelecting = false;
@@ -134,7 +157,7 @@ public class TopologyCanvas extends Canvas {
     public TopologyCanvas(List<org.example.demo2.Node> nodes, List<Link> links, List<org.example.demo2.Flow> flows) {
         this.nodes = nodes;
         this.links = links;
-        this.flows = flows;
+        this.flows = FlowTable.of(flows);
         this.flowPos = new double[flows.size()];
         Arrays.fill(flowPos, 0);
         
@@ -407,7 +430,7 @@ public class TopologyCanvas extends Canvas {
                 if (infoDialog != null) {
                     infoDialog.showFlowSetInfo(clickedLinks);
                 } else {
-                    infoDialog = new InfoDialog(this, flows);
+                    infoDialog = new InfoDialog(this);
                     infoDialog.showFlowSetInfo(clickedLinks);
                 }
             } else if (!showFlows && showLinks) {
@@ -451,7 +474,7 @@ public class TopologyCanvas extends Canvas {
             infoDialog.showLinkOnlyInfo(clickedLinks);
         } else {
             
-            infoDialog = new InfoDialog(this, flows);
+            infoDialog = new InfoDialog(this);
             infoDialog.showLinkOnlyInfo(clickedLinks);
         }
     }
@@ -523,7 +546,7 @@ public class TopologyCanvas extends Canvas {
                         if (infoDialog != null) {
                             infoDialog.showFlowSetInfo(clickedLinks);
                         } else {
-                            infoDialog = new InfoDialog(this, flows);
+                            infoDialog = new InfoDialog(this);
                             infoDialog.showFlowSetInfo(clickedLinks);
                         }
                     } else if (showLinks) {
@@ -877,37 +900,85 @@ public class TopologyCanvas extends Canvas {
     }
 
     private Map<String, Integer> calculateLinkFlowCounts() {
+        return calculateLinkFlowCounts(nodes, links, flows, flowPos);
+    }
+
+    /**
+     * Per-frame count of flows currently travelling over each (undirected) link.
+     * Static so it can be exercised without a JavaFX toolkit (see benchmarks/).
+     * Paths are walked as {@link FlowPaths.Hop}s: whether a hop's link and nodes are up is
+     * checked once per hop, and flows are counted per hop before being keyed by link.
+     */
+    static Map<String, Integer> calculateLinkFlowCounts(List<Node> nodes, List<Link> links, FlowTable flows, double[] flowPos) {
         Map<String, Integer> linkFlowCount = new HashMap<>();
-        for (int i = 0; i < flows.size(); i++) {
+        FlowPaths paths = flows.paths;
+        // Per hop ID: 0 = not checked yet, 1 = passable, 2 = blocked
+        byte[] passable = new byte[paths.hopCount()];
+        int[] travelling = new int[passable.length];
+        FlowPaths.Hop[] counted = new FlowPaths.Hop[passable.length];
+        Map<String, Map<String, Link>> linkByEnds = null;
+        Map<String, Node> nodeByIp = null;
+        FlowTable.Cursor flow = flows.cursor();
+        int count = Math.min(flows.size, flowPos.length);
+        while (flow.next() && flow.row() < count) {
+            int i = flow.row();
             if (flowPos[i] > 1 || flowPos[i] <= 0) continue;
-            Flow flow = flows.get(i);
-            List<String> path = flow.pathNodes;
-            if (path == null || path.size() < 2) continue; 
+            FlowPaths.Hop[] hops = paths.hops(flow.path());
+            if (hops.length < 1) continue; 
             boolean canPass = true;
-            for (int j = 0; j < path.size() - 1; j++) {
-                Link link = getLinkBetween(path.get(j), path.get(j + 1));
-                if (link == null || !link.is_up || !link.is_enabled) {
-                    canPass = false;
-                    break;
+            for (FlowPaths.Hop hop : hops) {
+                if (passable[hop.id] == 0) {
+                    if (linkByEnds == null) {
+                        // Same picks as findLinkBetween / findNodeByIp: first in list order
+                        linkByEnds = new HashMap<>();
+                        for (Link link : links) {
+                            linkByEnds.computeIfAbsent(link.source, k -> new HashMap<>()).putIfAbsent(link.target, link);
+                        }
+                        nodeByIp = new HashMap<>();
+                        for (Node node : nodes) {
+                            if (node.ip != null) nodeByIp.putIfAbsent(node.ip, node);
+                            if (node.ips != null) {
+                                for (String ip : node.ips) nodeByIp.putIfAbsent(ip, node);
+                            }
+                        }
+                    }
+                    passable[hop.id] = (byte) (isPassable(hop, linkByEnds, nodeByIp) ? 1 : 2);
                 }
-                org.example.demo2.Node src = getNodeByIp(path.get(j));
-                org.example.demo2.Node tgt = getNodeByIp(path.get(j + 1));
-                if (src == null || tgt == null || !src.is_enabled || !src.is_up || !tgt.is_enabled || !tgt.is_up) {
+                if (passable[hop.id] != 1) {
                     canPass = false;
                     break;
                 }
             }
             if (!canPass) continue;
-            int seg = (int) (flowPos[i] * (path.size() - 1));
-            if (seg >= path.size() - 1) seg = path.size() - 2;
-            if (seg < 0 || seg + 1 >= path.size()) continue; 
-            String a = path.get(seg), b = path.get(seg + 1);
-            String key = a.compareTo(b) < 0 ? a + "," + b : b + "," + a;
-            linkFlowCount.put(key, linkFlowCount.getOrDefault(key, 0) + 1);
+            int seg = (int) (flowPos[i] * hops.length);
+            if (seg >= hops.length) seg = hops.length - 1;
+            if (seg < 0) continue; 
+            FlowPaths.Hop hop = hops[seg];
+            travelling[hop.id]++;
+            counted[hop.id] = hop;
+        }
+        for (FlowPaths.Hop hop : counted) {
+            if (hop != null) linkFlowCount.merge(hop.key, travelling[hop.id], Integer::sum);
         }
         return linkFlowCount;
     }
 
+    // A hop can carry flows if its link (either direction) and both end nodes are up and enabled
+    private static boolean isPassable(FlowPaths.Hop hop, Map<String, Map<String, Link>> linkByEnds, Map<String, Node> nodeByIp) {
+        Map<String, Link> fromSource = linkByEnds.get(hop.from);
+        Link link = fromSource == null ? null : fromSource.get(hop.to);
+        if (link == null) {
+            Map<String, Link> fromTarget = linkByEnds.get(hop.to);
+            link = fromTarget == null ? null : fromTarget.get(hop.from);
+        }
+        if (link == null || !link.is_up || !link.is_enabled) {
+            return false;
+        }
+        Node src = nodeByIp.get(hop.from);
+        Node tgt = nodeByIp.get(hop.to);
+        return src != null && tgt != null && src.is_enabled && src.is_up && tgt.is_enabled && tgt.is_up;
+    }
+
     private void drawLinks(GraphicsContext gc, Map<String, Integer> linkFlowCount) {
         if (showLinks && !showFlows) {
             
@@ -1311,141 +1382,169 @@ public class TopologyCanvas extends Canvas {
 
 
     private void drawRealtimeFlows(GraphicsContext gc) {
-        if (DEBUG) System.out.println("[DEBUG] drawRealtimeFlows: Processing " + links.size() + " links");
-        if (DEBUG) System.out.println("[DEBUG] drawRealtimeFlows: Top-K enabled=" + getTopKEnabled() + 
-                                     ", visibleFlowIndices.size=" + visibleFlowIndices.size() + 
-                                     ", total flows=" + flows.size());
+        requestRenderModelIfStale();
+        FlowRenderModel model = renderModel.get();
+        if (DEBUG) System.out.println("[DEBUG] drawRealtimeFlows: Drawing " + model.laneCount + " lanes from render model " + model.version);
         
-        int linksWithFlows = 0;
-        int totalFlowsProcessed = 0;
-        int flowsFiltered = 0;
+        for (int lane = 0; lane < model.laneCount; lane++) {
+            drawFlowLane(gc, model.laneFrom[lane], model.laneTo[lane], model.laneUtilization[lane],
+                model.colors, model.cumulativeRatios, model.laneColorStart[lane], model.laneColorCount[lane]);
+        }
+    }
+    
+    /**
+     * Queue a render model build when the topology or the visibility layers changed since the last
+     * request. Inputs are frozen here on the FX thread: each link is copied with its current flow_set
+     * (an immutable {@link LinkFlowIndex} slice), flags and utilization, next to the flow index of the
+     * same update. The built model replaces the current one only if no newer request was made
+     * meanwhile. Until then frames keep drawing the previous model.
+     */
+    private void requestRenderModelIfStale() {
+        long maskVersion = flowVisibility.version();
+        if (requestedTopologyVersion == topologyVersion && requestedMaskVersion == maskVersion) {
+            return;
+        }
+        requestedTopologyVersion = topologyVersion;
+        requestedMaskVersion = maskVersion;
         
+        long request = renderModelRequest.incrementAndGet();
+        List<Node> nodesCopy = new ArrayList<>(nodes);
+        List<Link> linksCopy = new ArrayList<>(links.size());
         for (Link link : links) {
-            if (link.flow_set == null || link.flow_set.isEmpty()) {
+            linksCopy.add(snapshotOf(link));
+        }
+        FlowTable flowsNow = flows;
+        FlowVisibilityMask visibilityCopy = flowVisibility.copy();
+        RENDER_MODEL_BUILDER.execute(() -> {
+            if (request != renderModelRequest.get()) return; // superseded before it started
+            FlowRenderModel model = FlowRenderModel.build(request, nodesCopy, linksCopy, flowsNow, visibilityCopy,
+                flow -> getColorForFlowId(flow.id()));
+            if (request == renderModelRequest.get()) {
+                renderModel.set(model);
+            }
+        });
+    }
+
+    // The fields the render model reads, as they are now
+    private static Link snapshotOf(Link link) {
+        return new Link(link.source, link.target, link.sourceIps, link.targetIps, link.is_up, link.bandwidth,
+            link.is_enabled, link.link_bandwidth_utilization_percent, link.flow_set, link.srcDpid, link.dstDpid,
+            link.dstPort, link.srcInterface, link.dstInterface, link.leftLinkBandwidthBps, link.linkBandwidthUsageBps);
+    }
+    
+    
+
+
+
+    /**
+     * Split the flows of one link into forward (source -> target) and reverse buckets of rows of
+     * {@code flows}, dropping flows that are not in it or hidden. Returns the number of flows
+     * filtered out. Static so the per-frame bucketing can be exercised without a JavaFX toolkit.
+     * Flows placed by a {@link LinkFlowIndex} already know their row and direction; anything else
+     * is looked up by ID and its direction worked out from the flow's path.
+     */
+    static int bucketRealtimeFlows(Link link, FlowTable flows, FlowVisibilityMask visibility,
+                                   FlowTable.Rows forwardFlows, FlowTable.Rows reverseFlows) {
+        int flowsFiltered = 0;
+        List<Flow> flowSet = link.flow_set;
+        if (flowSet instanceof LinkFlowIndex.Slice) {
+            LinkFlowIndex.Slice slice = (LinkFlowIndex.Slice) flowSet;
+            for (int k = 0; k < slice.size(); k++) {
+                int flowIndex = rowIn(flows, slice, k);
+                if (flowIndex < 0 || !visibility.isVisible(flowIndex)) {
+                    flowsFiltered++;
+                    continue;
+                }
+                (slice.reversed(k) ? reverseFlows : forwardFlows).add(flowIndex);
+            }
+            return flowsFiltered;
+        }
+        for (int k = 0; k < flowSet.size(); k++) {
+            Flow flowInSet = flowSet.get(k);
+            int flowIndex = flows.rowOf(flowInSet.id());
+            if (flowIndex < 0) {
+                
+                
+                flowsFiltered++;
                 continue;
             }
             
-            if (DEBUG) System.out.println("[DEBUG] drawRealtimeFlows: Link " + link.source + " -> " + link.target + " has " + link.flow_set.size() + " flows");
-            linksWithFlows++;
-            
-            
-            Node srcNode = getNodeByIp(link.source);
-            Node tgtNode = getNodeByIp(link.target);
-            if (srcNode == null || tgtNode == null) continue;
             
+            if (!visibility.isVisible(flowIndex)) {
+                flowsFiltered++;
+                continue; 
+            }
             
-            List<Flow> forwardFlows = new ArrayList<>();  // link.source -> link.target
-            List<Flow> reverseFlows = new ArrayList<>();  // link.target -> link.source
+            boolean directionFound = false;
             
-            for (Flow flowInSet : link.flow_set) {
-                totalFlowsProcessed++;
+            if (flowInSet.pathNodes != null && flowInSet.pathNodes.size() >= 2) {
                 
                 
-                int flowIndex = findFlowIndex(flowInSet);
-                if (flowIndex < 0) {
+                for (int i = 0; i < flowInSet.pathNodes.size() - 1; i++) {
+                    String node1 = flowInSet.pathNodes.get(i);
+                    String node2 = flowInSet.pathNodes.get(i + 1);
                     
                     
-                    flowsFiltered++;
-                    continue;
-                }
-                
-                
-                if (!isFlowVisible(flowIndex)) {
-                    flowsFiltered++;
-                    continue; 
-                }
-                
-                
-                boolean directionFound = false;
-                
-                if (flowInSet.pathNodes != null && flowInSet.pathNodes.size() >= 2) {
+                    String node1Ip = node1;
+                    String node2Ip = node2;
                     
                     
-                    for (int i = 0; i < flowInSet.pathNodes.size() - 1; i++) {
-                        String node1 = flowInSet.pathNodes.get(i);
-                        String node2 = flowInSet.pathNodes.get(i + 1);
-                        
-                        
-                        String node1Ip = node1;
-                        String node2Ip = node2;
-                        
-                        
-                        if (link.source.equals(node1Ip) && link.target.equals(node2Ip)) {
-                            forwardFlows.add(flowInSet);
-                            directionFound = true;
-                            if (DEBUG) System.out.println("[DEBUG] drawRealtimeFlows: FORWARD Flow (from path) " + flowInSet.srcIp + ":" + flowInSet.srcPort + 
-                                             " -> " + flowInSet.dstIp + ":" + flowInSet.dstPort + 
-                                             ", path segment: " + node1Ip + " -> " + node2Ip);
-                            break;
-                        }
-                        
-                        else if (link.target.equals(node1Ip) && link.source.equals(node2Ip)) {
-                            reverseFlows.add(flowInSet);
-                            directionFound = true;
-                            if (DEBUG) System.out.println("[DEBUG] drawRealtimeFlows: REVERSE Flow (from path) " + flowInSet.srcIp + ":" + flowInSet.srcPort + 
-                                             " -> " + flowInSet.dstIp + ":" + flowInSet.dstPort + 
-                                             ", path segment: " + node1Ip + " -> " + node2Ip);
-                            break;
-                        }
+                    if (link.source.equals(node1Ip) && link.target.equals(node2Ip)) {
+                        forwardFlows.add(flowIndex);
+                        directionFound = true;
+                        if (DEBUG) System.out.println("[DEBUG] drawRealtimeFlows: FORWARD Flow (from path) " + flowInSet.srcIp + ":" + flowInSet.srcPort + 
+                                         " -> " + flowInSet.dstIp + ":" + flowInSet.dstPort + 
+                                         ", path segment: " + node1Ip + " -> " + node2Ip);
+                        break;
                     }
-                }
-                
-                
-                if (!directionFound) {
-                    if (flowInSet.srcIp.equals(link.source)) {
-                        forwardFlows.add(flowInSet);
-                        if (DEBUG) System.out.println("[DEBUG] drawRealtimeFlows: FORWARD Flow (from srcIp) " + flowInSet.srcIp + ":" + flowInSet.srcPort + 
-                                         " -> " + flowInSet.dstIp + ":" + flowInSet.dstPort);
-                    } else if (flowInSet.srcIp.equals(link.target)) {
-                        reverseFlows.add(flowInSet);
-                        if (DEBUG) System.out.println("[DEBUG] drawRealtimeFlows: REVERSE Flow (from srcIp) " + flowInSet.srcIp + ":" + flowInSet.srcPort + 
-                                         " -> " + flowInSet.dstIp + ":" + flowInSet.dstPort);
-                    } else {
-                        
-                        forwardFlows.add(flowInSet);
-                        if (DEBUG) System.out.println("[DEBUG] drawRealtimeFlows: UNKNOWN direction, treating as FORWARD: " + flowInSet.srcIp + ":" + flowInSet.srcPort + 
+                    
+                    else if (link.target.equals(node1Ip) && link.source.equals(node2Ip)) {
+                        reverseFlows.add(flowIndex);
+                        directionFound = true;
+                        if (DEBUG) System.out.println("[DEBUG] drawRealtimeFlows: REVERSE Flow (from path) " + flowInSet.srcIp + ":" + flowInSet.srcPort + 
                                          " -> " + flowInSet.dstIp + ":" + flowInSet.dstPort + 
-                                         " on link " + link.source + " -> " + link.target);
+                                         ", path segment: " + node1Ip + " -> " + node2Ip);
+                        break;
                     }
                 }
             }
             
             
-            if (!forwardFlows.isEmpty()) {
-                double forwardSendingRate = 0;
-                for (Flow flow : forwardFlows) {
-                    forwardSendingRate += flow.getSendingRateBps();
-                }
-                drawMixedFlowAnimation(gc, srcNode, tgtNode, forwardFlows, forwardSendingRate, link);
-            }
-            
-            
-            if (!reverseFlows.isEmpty()) {
-                double reverseSendingRate = 0;
-                for (Flow flow : reverseFlows) {
-                    reverseSendingRate += flow.getSendingRateBps();
+            if (!directionFound) {
+                if (flowInSet.srcIp.equals(link.source)) {
+                    forwardFlows.add(flowIndex);
+                    if (DEBUG) System.out.println("[DEBUG] drawRealtimeFlows: FORWARD Flow (from srcIp) " + flowInSet.srcIp + ":" + flowInSet.srcPort + 
+                                     " -> " + flowInSet.dstIp + ":" + flowInSet.dstPort);
+                } else if (flowInSet.srcIp.equals(link.target)) {
+                    reverseFlows.add(flowIndex);
+                    if (DEBUG) System.out.println("[DEBUG] drawRealtimeFlows: REVERSE Flow (from srcIp) " + flowInSet.srcIp + ":" + flowInSet.srcPort + 
+                                     " -> " + flowInSet.dstIp + ":" + flowInSet.dstPort);
+                } else {
+                    
+                    forwardFlows.add(flowIndex);
+                    if (DEBUG) System.out.println("[DEBUG] drawRealtimeFlows: UNKNOWN direction, treating as FORWARD: " + flowInSet.srcIp + ":" + flowInSet.srcPort + 
+                                     " -> " + flowInSet.dstIp + ":" + flowInSet.dstPort + 
+                                     " on link " + link.source + " -> " + link.target);
                 }
-                
-                drawMixedFlowAnimation(gc, tgtNode, srcNode, reverseFlows, reverseSendingRate, link);
             }
         }
-        
-        if (DEBUG) System.out.println("[DEBUG] drawRealtimeFlows: Processed " + linksWithFlows + " links with flows");
-        System.out.println("[TOP-K] drawRealtimeFlows: Processed=" + totalFlowsProcessed + 
-                         ", Filtered=" + flowsFiltered + 
-                         ", Shown=" + (totalFlowsProcessed - flowsFiltered));
+        return flowsFiltered;
     }
-    
-    
-
-
 
+    // Row of {@code flows} holding entry k of the slice: its own row when the slice indexes this table
+    static int rowIn(FlowTable flows, LinkFlowIndex.Slice slice, int k) {
+        FlowTable table = slice.table();
+        return table == flows ? slice.row(k) : flows.rowOf(table.id[slice.row(k)]);
+    }
+    
     private void drawPlaybackFlows(GraphicsContext gc) {
         if (DEBUG) System.out.println("[DEBUG] ========== drawPlaybackFlows START ==========");
         if (DEBUG) System.out.println("[DEBUG] drawPlaybackFlows: Processing " + links.size() + " links");
         if (DEBUG) System.out.println("[DEBUG] drawPlaybackFlows: Top-K enabled=" + getTopKEnabled() + 
-                                     ", visibleFlowIndices.size=" + visibleFlowIndices.size() + 
+                                     ", topKLayer=" + flowVisibility.count(FlowVisibilityMask.Layer.TOP_K) + 
                                      ", total flows=" + flows.size());
+        FlowTable table = flows;
+        FlowTable.Cursor cursor = table.cursor();
         
         int linksWithFlows = 0;
         int nodesNotFound = 0;
@@ -1472,21 +1571,31 @@ public class TopologyCanvas extends Canvas {
             }
             
             
-            List<Flow> forwardFlows = new ArrayList<>();  // link.source -> link.target
-            List<Flow> reverseFlows = new ArrayList<>();  // link.target -> link.source
+            FlowTable.Rows forwardFlows = playbackForward;  // link.source -> link.target
+            FlowTable.Rows reverseFlows = playbackReverse;  // link.target -> link.source
+            forwardFlows.clear();
+            reverseFlows.clear();
             
-            for (Flow flowInSet : link.flow_set) {
+            List<Flow> flowSet = link.flow_set;
+            LinkFlowIndex.Slice slice = flowSet instanceof LinkFlowIndex.Slice ? (LinkFlowIndex.Slice) flowSet : null;
+            for (int k = 0; k < flowSet.size(); k++) {
                 totalFlowsProcessed++;
                 
-                int flowIndex = findFlowIndex(flowInSet);
-                if (flowIndex >= 0 && !isFlowVisible(flowIndex)) {
+                // Rows only: every flow on a link is one of the frame's flows
+                int flowIndex = slice != null ? rowIn(table, slice, k) : table.rowOf(flowSet.get(k).id());
+                if (flowIndex < 0 || !isFlowVisible(flowIndex)) {
                     flowsFiltered++;
-                    if (DEBUG) System.out.println("[DEBUG] drawPlaybackFlows: Flow " + flowInSet.srcIp + ":" + flowInSet.srcPort + 
-                                     " -> " + flowInSet.dstIp + ":" + flowInSet.dstPort + " is filtered out");
+                    if (DEBUG) System.out.println("[DEBUG] drawPlaybackFlows: Flow " + k + " on the link is filtered out");
                     continue; 
                 }
                 
+                // Direction already found when the flow was put on the link
+                if (slice != null) {
+                    (slice.reversed(k) ? reverseFlows : forwardFlows).add(flowIndex);
+                    continue;
+                }
                 
+                Flow flowInSet = flowSet.get(k);
                 boolean directionFound = false;
                 
                 if (flowInSet.pathNodes != null && flowInSet.pathNodes.size() >= 2) {
@@ -1509,7 +1618,7 @@ public class TopologyCanvas extends Canvas {
                         
                         
                         if (node1MatchesSource && node2MatchesTarget) {
-                            forwardFlows.add(flowInSet);
+                            forwardFlows.add(flowIndex);
                             directionFound = true;
                             if (DEBUG) System.out.println("[DEBUG] drawPlaybackFlows: FORWARD Flow (from path) " + flowInSet.srcIp + ":" + flowInSet.srcPort + 
                                              " -> " + flowInSet.dstIp + ":" + flowInSet.dstPort + 
@@ -1518,7 +1627,7 @@ public class TopologyCanvas extends Canvas {
                         }
                         
                         else if (node1MatchesTarget && node2MatchesSource) {
-                            reverseFlows.add(flowInSet);
+                            reverseFlows.add(flowIndex);
                             directionFound = true;
                             if (DEBUG) System.out.println("[DEBUG] drawPlaybackFlows: REVERSE Flow (from path) " + flowInSet.srcIp + ":" + flowInSet.srcPort + 
                                              " -> " + flowInSet.dstIp + ":" + flowInSet.dstPort + 
@@ -1531,16 +1640,16 @@ public class TopologyCanvas extends Canvas {
                 
                 if (!directionFound) {
                     if (flowInSet.srcIp.equals(link.source)) {
-                        forwardFlows.add(flowInSet);
+                        forwardFlows.add(flowIndex);
                         if (DEBUG) System.out.println("[DEBUG] drawPlaybackFlows: FORWARD Flow (from srcIp) " + flowInSet.srcIp + ":" + flowInSet.srcPort + 
                                          " -> " + flowInSet.dstIp + ":" + flowInSet.dstPort);
                     } else if (flowInSet.srcIp.equals(link.target)) {
-                        reverseFlows.add(flowInSet);
+                        reverseFlows.add(flowIndex);
                         if (DEBUG) System.out.println("[DEBUG] drawPlaybackFlows: REVERSE Flow (from srcIp) " + flowInSet.srcIp + ":" + flowInSet.srcPort + 
                                          " -> " + flowInSet.dstIp + ":" + flowInSet.dstPort);
                     } else {
                         
-                        forwardFlows.add(flowInSet);
+                        forwardFlows.add(flowIndex);
                         if (DEBUG) System.out.println("[DEBUG] drawPlaybackFlows: UNKNOWN direction, treating as FORWARD: " + flowInSet.srcIp + ":" + flowInSet.srcPort + 
                                          " -> " + flowInSet.dstIp + ":" + flowInSet.dstPort);
                     }
@@ -1549,26 +1658,16 @@ public class TopologyCanvas extends Canvas {
             
             
             if (!forwardFlows.isEmpty()) {
-                double forwardSendingRate = 0;
-                for (Flow flow : forwardFlows) {
-                    forwardSendingRate += flow.getSendingRateBps();
-                }
-                
-                if (DEBUG) System.out.println("[DEBUG] drawPlaybackFlows: Drawing " + forwardFlows.size() + " FORWARD flows with totalRate=" + forwardSendingRate);
-                drawMixedFlowAnimation(gc, srcNode, tgtNode, forwardFlows, forwardSendingRate, link);
+                if (DEBUG) System.out.println("[DEBUG] drawPlaybackFlows: Drawing " + forwardFlows.size() + " FORWARD flows");
+                drawMixedFlowAnimation(gc, srcNode, tgtNode, cursor, forwardFlows, link);
                 actuallyDrawn++;
             }
             
             
             if (!reverseFlows.isEmpty()) {
-                double reverseSendingRate = 0;
-                for (Flow flow : reverseFlows) {
-                    reverseSendingRate += flow.getSendingRateBps();
-                }
+                if (DEBUG) System.out.println("[DEBUG] drawPlaybackFlows: Drawing " + reverseFlows.size() + " REVERSE flows");
                 
-                if (DEBUG) System.out.println("[DEBUG] drawPlaybackFlows: Drawing " + reverseFlows.size() + " REVERSE flows with totalRate=" + reverseSendingRate);
-                
-                drawMixedFlowAnimation(gc, tgtNode, srcNode, reverseFlows, reverseSendingRate, link);
+                drawMixedFlowAnimation(gc, tgtNode, srcNode, cursor, reverseFlows, link);
                 actuallyDrawn++;
             }
         }
@@ -1582,150 +1681,42 @@ public class TopologyCanvas extends Canvas {
             System.out.println("[DEBUG] ========== drawPlaybackFlows END ==========");
         }
         
-        System.out.println("[TOP-K] drawPlaybackFlows: Processed=" + totalFlowsProcessed + 
+        if (Diagnostics.DEBUG) Diagnostics.debug("[TOP-K] drawPlaybackFlows: Processed=" + totalFlowsProcessed + 
                          ", Filtered=" + flowsFiltered + 
                          ", Shown=" + (totalFlowsProcessed - flowsFiltered));
     }
     
-    private void drawMixedFlowAnimation(GraphicsContext gc, Node srcNode, Node tgtNode, List<Flow> flows, double totalSendingRate, Link link) {
-        
-        double dx = tgtNode.x - srcNode.x;
-        double dy = tgtNode.y - srcNode.y;
-        double length = Math.sqrt(dx * dx + dy * dy);
-        if (length == 0) return;
-        
-        
-        double totalUtilization = link.link_bandwidth_utilization_percent / 100.0; 
-        totalUtilization = Math.max(0.1, Math.min(1.0, totalUtilization)); 
-        
-        
-        double animationLength = length * totalUtilization;
-        
-        
-        double segmentDuration = flowMoveSpeed;
-        double segProgress = (animationTime % segmentDuration) / segmentDuration;
-        
-        
-        double rectLength = 8; 
-        double rectWidth = 4;   
-        double spacing = rectLength * 1.2; 
-        
-        int numRectangles = Math.max(1, (int) Math.floor(animationLength / spacing));
-        
-        
-        double perpX = dy / length;
-        double perpY = -dx / length;
-        double offset = -3.5; 
-        
-        
-        List<Color> flowColors = new ArrayList<>();
-        List<Double> flowRatios = new ArrayList<>();
-        
-        if (flows.isEmpty()) {
-            
-            flowColors.add(Color.GRAY);
-            flowRatios.add(1.0);
-        } else {
-            
-            double totalRate = 0;
-            for (Flow flow : flows) {
-                totalRate += flow.getSendingRateBps();
-            }
-            
-            
-            if (totalRate == 0) {
-                totalRate = flows.size();
-            }
-            
-            for (Flow flow : flows) {
-                // Use stable base color so all views (topology, sidebar legends, dialogs)
-                // see the same color for the same flow, independent of rate changes.
-                Color flowColor = getColorForFlow(flow);
-                flowColors.add(flowColor);
-
-                if (DEBUG) System.out.println("[DEBUG] Flow color assignment (hash-based, fixed): " +
-                    flow.srcIp + ":" + flow.srcPort + " -> " + flow.dstIp + ":" + flow.dstPort +
-                    " rate=" + flow.getSendingRateBps() + " color=" + flowColor);
-
-                double ratio = totalRate > 0 ? flow.getSendingRateBps() / totalRate : 1.0 / flows.size();
-                flowRatios.add(ratio);
-            }
-        }
-        
-        
-        for (int j = 0; j < numRectangles; j++) {
-            double flowProgress = segProgress - (j * spacing / length);
-            
-            
-            if (flowProgress < 0) {
-                flowProgress = 1.0 + flowProgress;
-            }
-            
-            
-            double centerX = srcNode.x + (tgtNode.x - srcNode.x) * flowProgress;
-            double centerY = srcNode.y + (tgtNode.y - srcNode.y) * flowProgress;
-            centerX += perpX * offset;
-            centerY += perpY * offset;
-            
-            
-            double dirX = dx / length;
-            double dirY = dy / length;
-            double[] xPoints = new double[4];
-            double[] yPoints = new double[4];
-            
-            xPoints[0] = centerX + dirX * rectLength/2 + perpX * rectWidth/2;
-            yPoints[0] = centerY + dirY * rectLength/2 + perpY * rectWidth/2;
-            xPoints[1] = centerX + dirX * rectLength/2 - perpX * rectWidth/2;
-            yPoints[1] = centerY + dirY * rectLength/2 - perpY * rectWidth/2;
-            xPoints[2] = centerX - dirX * rectLength/2 - perpX * rectWidth/2;
-            yPoints[2] = centerY - dirY * rectLength/2 - perpY * rectWidth/2;
-            xPoints[3] = centerX - dirX * rectLength/2 + perpX * rectWidth/2;
-            yPoints[3] = centerY - dirY * rectLength/2 + perpY * rectWidth/2;
-            
-            
-            
-            Color segmentColor = determineSegmentColor(j, numRectangles, flowColors, flowRatios);
-            
-            
-            gc.setFill(segmentColor);
-            gc.setStroke(segmentColor);
-            gc.setLineWidth(2);
-            gc.fillPolygon(xPoints, yPoints, 4);
-            gc.strokePolygon(xPoints, yPoints, 4);
+    private void drawMixedFlowAnimation(GraphicsContext gc, Node srcNode, Node tgtNode, FlowTable.Cursor cursor,
+                                        FlowTable.Rows rows, Link link) {
+        if (segmentColors.length < rows.size()) {
+            segmentColors = new Color[rows.size()];
+            segmentRatios = new double[rows.size()];
         }
+        int count = FlowRenderModel.fillSegments(cursor, rows, flow -> getColorForFlowId(flow.id()), segmentColors, segmentRatios, 0);
+        double totalUtilization = Math.max(0.1, Math.min(1.0, link.link_bandwidth_utilization_percent / 100.0));
+        drawFlowLane(gc, srcNode, tgtNode, totalUtilization, segmentColors, segmentRatios, 0, count);
     }
     
-    
-
-
-
-
-
-
-
-    private Color determineSegmentColor(int rectangleIndex, int totalRectangles, List<Color> flowColors, List<Double> flowRatios) {
-        if (flowColors.isEmpty() || flowRatios.isEmpty()) {
-            return Color.GRAY;
-        }
-        
-        if (flowColors.size() == 1) {
-            return flowColors.get(0);
-        }
-        
-        
-        double cumulativeRatio = 0.0;
-        double rectanglePosition = (double) rectangleIndex / totalRectangles;
-        
-        for (int i = 0; i < flowRatios.size(); i++) {
-            cumulativeRatio += flowRatios.get(i);
-            if (rectanglePosition < cumulativeRatio) {
-                return flowColors.get(i);
-            }
-        }
-        
-        
-        return flowColors.get(flowColors.size() - 1);
+    /**
+     * Animate one direction of a link: a train of small rectangles over {@code utilization} of its
+     * length, colored by the flows' share of the rate ({@code count} entries of {@code colors} /
+     * {@code cumulativeRatios} from {@code start}).
+     */
+    private void drawFlowLane(GraphicsContext gc, Node srcNode, Node tgtNode, double utilization,
+                              Color[] colors, double[] cumulativeRatios, int start, int count) {
+        FlowRenderModel.laneSegments(srcNode.x, srcNode.y, tgtNode.x, tgtNode.y, utilization,
+            animationTime, flowMoveSpeed, colors, cumulativeRatios, start, count, segmentXs, segmentYs,
+            segmentPainter);
     }
+    
+    private final FlowRenderModel.SegmentSink segmentPainter = (xs, ys, segmentColor) -> {
+        GraphicsContext gc = getGraphicsContext2D();
+        gc.setFill(segmentColor);
+        gc.setStroke(segmentColor);
+        gc.setLineWidth(2);
+        gc.fillPolygon(xs, ys, 4);
+        gc.strokePolygon(xs, ys, 4);
+    };
 
 
     private void drawInfo(GraphicsContext gc) {
@@ -1796,6 +1787,10 @@ public class TopologyCanvas extends Canvas {
     }
 
     public org.example.demo2.Node getNodeByIp(String ip) {
+        return findNodeByIp(nodes, ip);
+    }
+
+    static org.example.demo2.Node findNodeByIp(List<Node> nodes, String ip) {
         // Unified approach: check both primary IP and all secondary IPs
         for (Node n : nodes) {
             // Check primary IP
@@ -1852,14 +1847,14 @@ public class TopologyCanvas extends Canvas {
      * Convert IP integer to dotted decimal string
      */
     private String convertIpToString(long ip) {
-        return String.format("%d.%d.%d.%d",
-            (ip >> 24) & 0xFF,
-            (ip >> 16) & 0xFF,
-            (ip >> 8) & 0xFF,
-            ip & 0xFF);
+        return EnrichmentService.ipv4(ip);
     }
 
     private Link getLinkBetween(String a, String b) {
+        return findLinkBetween(links, a, b);
+    }
+
+    static Link findLinkBetween(List<Link> links, String a, String b) {
         // First try to find exact direction match (a -> b)
         Link exactMatch = links.stream()
             .filter(l -> l.source.equals(a) && l.target.equals(b))
@@ -1907,7 +1902,7 @@ public class TopologyCanvas extends Canvas {
     }
 
     
-    private Color getDistinctColor(int index, int total) {
+    static Color getDistinctColor(int index, int total) {
         
         System.out.println("[DEBUG] getDistinctColor called with index=" + index + ", total=" + total);
         
@@ -2020,34 +2015,45 @@ public class TopologyCanvas extends Canvas {
 
 
 
-    private String generateFlowKey(Flow flow) {
+    static String generateFlowKey(Flow flow) {
         return flow.srcIp + "_" + flow.dstIp + "_" +
                flow.srcPort + "_" + flow.dstPort + "_" + flow.protocolId;
     }
+
+    /** {@link #generateFlowKey(Flow)} of the cursor's row. */
+    static String generateFlowKey(FlowTable.Cursor flow) {
+        return flow.srcIp() + "_" + flow.dstIp() + "_" +
+               flow.srcPort() + "_" + flow.dstPort() + "_" + flow.protocolId();
+    }
     
     
 
 
 
     private int findFlowIndex(Flow targetFlow) {
-        String key = generateFlowKey(targetFlow);
-        return flowIndexCache.getOrDefault(key, -1);
+        return flows.rowOf(targetFlow.id());
     }
     
     
 
 
 
+    // The table's own ID index is built on the first lookup after an update
     private void rebuildFlowIndexCache() {
-        flowIndexCache.clear();
-        for (int i = 0; i < flows.size(); i++) {
-            Flow flow = flows.get(i);
-            String key = generateFlowKey(flow);
-            flowIndexCache.put(key, i);
-        }
-        if (flows.size() > 0) {
-            System.out.println("[CACHE] Rebuilt flow index cache with " + flowIndexCache.size() + " entries for " + flows.size() + " flows");
+        FlowTable table = flows;
+        if (table.size > 0) {
+            System.out.println("[CACHE] New flow table with " + table.size + " flows");
+            if (Diagnostics.DEBUG) {
+                int busiest = table.path[0];
+                for (int row = 1; row < table.size; row++) {
+                    if (table.rateOnPath(table.path[row]) > table.rateOnPath(busiest)) busiest = table.path[row];
+                }
+                Diagnostics.debug("[CACHE] " + table.size + " flows take " + table.distinctPaths() + " distinct paths; busiest "
+                    + table.paths.nodes(busiest) + " carries " + table.flowsOnPath(busiest) + " flows, "
+                    + String.format("%.0f", table.rateOnPath(busiest)) + " bps");
+            }
         }
+        refreshFocusLayer();
     }
     
     // =============================
@@ -2065,19 +2071,25 @@ public class TopologyCanvas extends Canvas {
 
 
 
+    // Color slots are also assigned from the render model thread, hence the locking
     private void clearFlowColorAssignments() {
-        flowColorAssignmentMap.clear();
-        nextFlowColorSlot = 0;
+        synchronized (flowColorAssignmentMap) {
+            flowColorAssignmentMap.clear();
+            nextFlowColorSlot = 0;
+        }
+        topologyVersion++;
     }
 
-    private int getStableColorIndex(String flowKey) {
-        Integer cached = flowColorAssignmentMap.get(flowKey);
-        if (cached != null) {
-            return cached;
+    private int getStableColorIndex(int flowId) {
+        synchronized (flowColorAssignmentMap) {
+            Integer cached = flowColorAssignmentMap.get(flowId);
+            if (cached != null) {
+                return cached;
+            }
+            int index = nextFlowColorSlot++;
+            flowColorAssignmentMap.put(flowId, index);
+            return index;
         }
-        int index = nextFlowColorSlot++;
-        flowColorAssignmentMap.put(flowKey, index);
-        return index;
     }
     
     
@@ -2088,14 +2100,20 @@ public class TopologyCanvas extends Canvas {
         if (flow == null) {
             return Color.GRAY;
         }
-        String key = generateFlowKey(flow);
-        int colorIndex = getStableColorIndex(key);
-        return getFlowColor(colorIndex);
+        return getColorForFlowId(flow.id());
+    }
+
+    /** Color of the flow with ID {@code flowId}; what {@link #getColorForFlow} gives its row view. */
+    Color getColorForFlowId(int flowId) {
+        return getFlowColor(getStableColorIndex(flowId));
     }
 
     public Color getFlowColor(int flowIndex) {
         
-        Color color = flowColorMap.computeIfAbsent(flowIndex, k -> getDistinctColor(flowIndex, 24)); 
+        Color color;
+        synchronized (flowColorMap) {
+            color = flowColorMap.computeIfAbsent(flowIndex, k -> getDistinctColor(flowIndex, 24));
+        }
         
         
         if (DEBUG) System.out.println("[DEBUG] Flow " + flowIndex + " assigned color: " + 
@@ -2123,35 +2141,13 @@ public class TopologyCanvas extends Canvas {
         return nodePositionFile;
     }
     
+    // Written in the background once dragging settles; the next poll already sees the new positions
     private void saveNodePositions() {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(nodePositionFile))) {
-            positionrecord(writer, nodes);
-            System.out.println("[INFO] Node positions saved to: " + nodePositionFile);
-        } catch (IOException e) {
-            System.err.println("Error saving node positions to " + nodePositionFile + ": " + e.getMessage());
-        }
-    }
-
-    static void positionrecord(PrintWriter writer, List<Node> nodes) {
-        writer.println("{");
-        writer.println("  \"nodes\": [");
-        for (int i = 0; i < nodes.size(); i++) {
-            Node node = nodes.get(i);
-            writer.println("    {");
-            writer.println("      \"ip\": \"" + node.ip + "\",");
-            writer.println("      \"x\": " + node.x + ",");
-            writer.println("      \"y\": " + node.y);
-            if (i < nodes.size() - 1) {
-                writer.println("    },");
-            } else {
-                writer.println("    }");
-            }
-        }
-        writer.println(" ]");
-        writer.println("}");
+        NodePositionStore.forFile(nodePositionFile).save(nodes);
     }
 
 
+
     
     public static class FlowWithDirection {
         public final Flow flow;
@@ -2177,6 +2173,16 @@ public class TopologyCanvas extends Canvas {
         return new ArrayList<>(nodes);
     }
 
+    /** The current flows, read-only; see {@link #getFlowTable}. */
+    public List<Flow> getFlows() {
+        return flows;
+    }
+
+    /** The current flows; an update replaces the table, never modifies it. */
+    FlowTable getFlowTable() {
+        return flows;
+    }
+
     public void setDarkMode(boolean dark) {
         this.darkMode = dark;
         setStyle(!dark ? "-fx-background-color: white;" : "-fx-background-color: #23272e;");
@@ -2360,13 +2366,12 @@ public class TopologyCanvas extends Canvas {
         flickeredFlow = flow;
         
         
-        String flowKey = generateFlowKey(flow);
         int colorIndex;
         
         
         flickeredFlowColor = getColorForFlow(flow);
         
-        colorIndex = getStableColorIndex(flowKey);
+        colorIndex = getStableColorIndex(flow.id());
         System.out.println("[DEBUG] Starting flicker for flow with stable color index " + colorIndex);
         
         System.out.println("[DEBUG] Starting flicker for flow: " + flow.srcIp + " -> " + flow.dstIp + " with color: " + flickeredFlowColor);
@@ -2395,6 +2400,7 @@ public class TopologyCanvas extends Canvas {
         
         flickerOn = true;
         System.out.println("[DEBUG] Set flickerOn to: " + flickerOn);
+        refreshFocusLayer();
         
         
         draw();
@@ -2408,11 +2414,22 @@ public class TopologyCanvas extends Canvas {
         flickeredFlowColor = null;
         flickerAlpha = 1.0;
         flickerPulse = 0.0;
+        flowVisibility.clearLayer(FlowVisibilityMask.Layer.FOCUS);
         
         
         draw();
     }
     
+    // Flicker focus layer: the flickered flow's index, which moves whenever the flow list changes
+    private void refreshFocusLayer() {
+        if (!FOCUS_ON_FLICKER || flickeredFlow == null) {
+            flowVisibility.clearLayer(FlowVisibilityMask.Layer.FOCUS);
+            return;
+        }
+        int index = findFlowIndex(flickeredFlow);
+        flowVisibility.setLayer(FlowVisibilityMask.Layer.FOCUS, index >= 0 ? new int[] {index} : new int[0]);
+    }
+    
     
     private String generateLinkKey(String a, String b) {
         return a.compareTo(b) < 0 ? a + "," + b : b + "," + a;
@@ -2473,40 +2490,18 @@ public class TopologyCanvas extends Canvas {
 
     
     private boolean isFlowVisible(int flowIndex) {
-        boolean visible = visibleFlowIndices.isEmpty() || visibleFlowIndices.contains(flowIndex);
-        
-        if (!visibleFlowIndices.isEmpty() && DEBUG) {
-            System.out.println("[TOP-K] isFlowVisible(" + flowIndex + ") = " + visible + 
-                             " (visibleFlowIndices.size=" + visibleFlowIndices.size() + ")");
-        }
-        return visible;
+        return flowVisibility.isVisible(flowIndex);
     }
     
     
-    public void setVisibleFlowIndices(Set<Integer> indices) {
+    /** Top-K layer: show only these indices into the current flow list. */
+    private void setTopKIndices(int[] indices) {
         String mode = isPlaybackMode ? "Playback" : "Real-time";
-        boolean topKEnabled = getTopKEnabled();
-        
-        
-        if (topKEnabled && (indices == null || indices.isEmpty())) {
-            System.out.println("\n[WARNING] setVisibleFlowIndices called with null/empty while Top-K is enabled!");
-            System.out.println("[WARNING] Mode: " + mode + ", topKValue=" + getTopKValue());
-            System.out.println("[WARNING] Call stack:");
-            StackTraceElement[] stackTrace = Thread.currentThread().getStackTrace();
-            for (int i = 2; i < Math.min(8, stackTrace.length); i++) {
-                System.out.println("[WARNING]   " + stackTrace[i]);
-            }
-            System.out.println();
-        }
-        
-        if (indices == null) {
-            System.out.println("[FLOW-INDICES] [" + mode + "] Clearing visibleFlowIndices (showing all)");
-            visibleFlowIndices.clear(); 
-        } else {
-            System.out.println("[FLOW-INDICES] [" + mode + "] Setting visibleFlowIndices to " + indices.size() + " flows");
-            visibleFlowIndices.clear();
-            visibleFlowIndices.addAll(indices);
+        if (indices.length == 0 && getTopKEnabled()) {
+            System.out.println("[WARNING] [" + mode + "] Empty Top-K selection while Top-K is enabled (K=" + getTopKValue() + ")");
         }
+        System.out.println("[FLOW-INDICES] [" + mode + "] Setting Top-K layer to " + indices.length + " flows");
+        flowVisibility.setLayer(FlowVisibilityMask.Layer.TOP_K, indices);
     }
     
     
@@ -2514,6 +2509,15 @@ public class TopologyCanvas extends Canvas {
 
 
 
+    /**
+     * Restrict drawing to the flows set in {@code mask} (indices into the current flow list), on
+     * top of any Top-K selection. Null removes the filter.
+     */
+    public void setFlowFilterMask(BitSet mask) {
+        flowVisibility.setLayer(FlowVisibilityMask.Layer.FILTER, mask);
+        draw();
+    }
+    
     public void setTopKFlows(List<Flow> topKFlows, int k) {
         String mode = isPlaybackMode ? "Playback" : "Real-time";
         
@@ -2521,7 +2525,8 @@ public class TopologyCanvas extends Canvas {
             
             setTopKEnabled(false);
             setTopKValue(0);
-            visibleFlowIndices.clear();
+            getTopKTracker().reset();
+            flowVisibility.clearLayer(FlowVisibilityMask.Layer.TOP_K);
             System.out.println("[TOP-K] [" + mode + "] Cleared flow filter - showing all flows");
         } else {
             
@@ -2531,31 +2536,23 @@ public class TopologyCanvas extends Canvas {
             System.out.println("[TOP-K] [" + mode + "] Setting Top-K: enabled=true, K=" + k);
             
             
-            Set<Integer> topKIndices = new HashSet<>();
+            int[] topKIndices = new int[topKFlows.size()];
+            int matched = 0;
             
             for (Flow topKFlow : topKFlows) {
-                
-                for (int i = 0; i < flows.size(); i++) {
-                    Flow flow = flows.get(i);
-                    
-                    if (flow.srcIp.equals(topKFlow.srcIp) && 
-                        flow.dstIp.equals(topKFlow.dstIp) &&
-                        flow.srcPort == topKFlow.srcPort &&
-                        flow.dstPort == topKFlow.dstPort &&
-                        flow.protocolId == topKFlow.protocolId) {
-                        topKIndices.add(i);
-                        System.out.println("[TOP-K] Flow " + i + " matched: " + 
-                                         flow.srcIp + ":" + flow.srcPort + " -> " + 
-                                         flow.dstIp + ":" + flow.dstPort + 
-                                         " (Rate: " + flow.getSendingRateBps() + " bps)");
-                        break; 
-                    }
+                int i = findFlowIndex(topKFlow);
+                if (i >= 0) {
+                    topKIndices[matched++] = i;
+                    if (DEBUG) System.out.println("[TOP-K] Flow " + i + " matched: " + 
+                                     topKFlow.srcIp + ":" + topKFlow.srcPort + " -> " + 
+                                     topKFlow.dstIp + ":" + topKFlow.dstPort + 
+                                     " (Rate: " + topKFlow.getSendingRateBps() + " bps)");
                 }
             }
             
             
-            setVisibleFlowIndices(topKIndices);
-            System.out.println("[TOP-K] [" + mode + "] Applied filter (K=" + k + ") - showing " + topKIndices.size() + " flows out of " + flows.size() + " total");
+            setTopKIndices(Arrays.copyOf(topKIndices, matched));
+            System.out.println("[TOP-K] [" + mode + "] Applied filter (K=" + k + ") - showing " + matched + " flows out of " + flows.size() + " total");
         }
         
         
@@ -2570,6 +2567,25 @@ public class TopologyCanvas extends Canvas {
         setTopKFlows(topKFlows, topKFlows != null ? topKFlows.size() : 0);
     }
     
+    /**
+     * Show only the K fastest of the current flows and keep following them on later updates.
+     * Returns the selected indices into the current flow list, highest rate first.
+     */
+    public int[] applyTopK(int k) {
+        String mode = isPlaybackMode ? "Playback" : "Real-time";
+        setTopKEnabled(true);
+        setTopKValue(k);
+        
+        TopKFlowTracker tracker = getTopKTracker();
+        tracker.reset(); // an explicit choice starts from the current rates
+        int[] top = tracker.select(flows, k);
+        setTopKIndices(top);
+        System.out.println("[TOP-K] [" + mode + "] Applied filter (K=" + k + ") - showing " + top.length + " flows out of " + flows.size() + " total");
+        
+        draw();
+        return top;
+    }
+    
     
 
 
@@ -2581,7 +2597,7 @@ public class TopologyCanvas extends Canvas {
         System.out.println("\n[TOP-K] ========== reapplyTopKFilter START ==========");
         System.out.println("[TOP-K] [" + mode + "] topKEnabled=" + topKEnabled + ", topKValue=" + topKValue);
         System.out.println("[TOP-K] [" + mode + "] flows.size=" + flows.size());
-        System.out.println("[TOP-K] [" + mode + "] visibleFlowIndices.size (before)=" + visibleFlowIndices.size());
+        System.out.println("[TOP-K] [" + mode + "] Top-K layer size (before)=" + flowVisibility.count(FlowVisibilityMask.Layer.TOP_K));
         
         if (!topKEnabled || topKValue <= 0) {
             System.out.println("[TOP-K] [" + mode + "] Top-K not enabled or K <= 0, skipping reapply");
@@ -2595,54 +2611,32 @@ public class TopologyCanvas extends Canvas {
             System.out.println("[TOP-K] [" + mode + "] No flows available, but keeping Top-K state enabled");
             
             
-            visibleFlowIndices.clear(); 
+            flowVisibility.clearLayer(FlowVisibilityMask.Layer.TOP_K);
             notifySideBarToUpdateButton();
             System.out.println("[TOP-K] ========== reapplyTopKFilter END (no flows, state preserved) ==========\n");
             return;
         }
         
         
-        List<Flow> sortedFlows = new ArrayList<>(flows);
-        sortedFlows.sort((f1, f2) -> Double.compare(
-            f2.getSendingRateBps(), 
-            f1.getSendingRateBps()
-        ));
-        
+        // Streaming selection; flows already shown keep their place unless clearly overtaken
+        long startNanos = System.nanoTime();
+        int[] top = getTopKTracker().select(flows, topKValue);
+        long selectMicros = (System.nanoTime() - startNanos) / 1000;
         
-        int actualK = Math.min(topKValue, sortedFlows.size());
-        List<Flow> topKFlows = sortedFlows.subList(0, actualK);
-        
-        System.out.println("[TOP-K] [" + mode + "] Sorting complete, top " + actualK + " flows selected");
+        System.out.println("[TOP-K] [" + mode + "] Selected top " + top.length + " flows in " + selectMicros + " us");
         System.out.println("[TOP-K] [" + mode + "] Top-3 flows by sending rate:");
-        for (int i = 0; i < Math.min(3, topKFlows.size()); i++) {
-            Flow f = topKFlows.get(i);
+        for (int i = 0; i < Math.min(3, top.length); i++) {
+            Flow f = flows.get(top[i]);
             System.out.println("[TOP-K] [" + mode + "]   #" + (i+1) + ": " + f.srcIp + ":" + f.srcPort + " -> " + 
                              f.dstIp + ":" + f.dstPort + " | Rate: " + f.getSendingRateBps() + " bps");
         }
         
         
-        Set<Integer> topKIndices = new HashSet<>();
-        for (Flow topKFlow : topKFlows) {
-            for (int i = 0; i < flows.size(); i++) {
-                Flow flow = flows.get(i);
-                if (flow.srcIp.equals(topKFlow.srcIp) && 
-                    flow.dstIp.equals(topKFlow.dstIp) &&
-                    flow.srcPort == topKFlow.srcPort &&
-                    flow.dstPort == topKFlow.dstPort &&
-                    flow.protocolId == topKFlow.protocolId) {
-                    topKIndices.add(i);
-                    break;
-                }
-            }
-        }
-        
-        System.out.println("[TOP-K] [" + mode + "] Matched " + topKIndices.size() + " flows in current list");
-        System.out.println("[TOP-K] [" + mode + "] Flow indices: " + topKIndices);
+        if (DEBUG) System.out.println("[TOP-K] [" + mode + "] Flow indices: " + Arrays.toString(top));
         
         
-        setVisibleFlowIndices(topKIndices);
-        System.out.println("[TOP-K] [" + mode + "] visibleFlowIndices.size (after)=" + visibleFlowIndices.size());
-        System.out.println("[TOP-K] [" + mode + "] Reapplied filter - showing " + topKIndices.size() + " flows out of " + flows.size() + " total");
+        setTopKIndices(top);
+        System.out.println("[TOP-K] [" + mode + "] Reapplied filter - showing " + top.length + " flows out of " + flows.size() + " total");
         
         
         notifySideBarToUpdateButton();
@@ -2672,24 +2666,21 @@ public class TopologyCanvas extends Canvas {
         String mode = isPlaybackMode ? "Playback" : "Real-time";
         
         int count;
+        int topKCount = flowVisibility.count(FlowVisibilityMask.Layer.TOP_K);
         
         if (topKEnabled && topKValue > 0) {
             
-            count = Math.min(topKValue, Math.min(visibleFlowIndices.size(), flows.size()));
-            
-            if (flows.isEmpty() || visibleFlowIndices.isEmpty()) {
-                count = 0;
-            }
-        } else if (visibleFlowIndices.isEmpty()) {
+            count = Math.min(topKValue, Math.min(topKCount, flows.size()));
+        } else if (!flowVisibility.isActive(FlowVisibilityMask.Layer.TOP_K)) {
             
             count = flows.size();
         } else {
             
-            count = visibleFlowIndices.size();
+            count = topKCount;
         }
         System.out.println("[TOP-K] [" + mode + "] getVisibleFlowCount() called - topKEnabled=" + topKEnabled + 
                          ", returning " + count + 
-                         " (visibleFlowIndices.size=" + visibleFlowIndices.size() + 
+                         " (topKLayer=" + topKCount + 
                          ", flows.size=" + flows.size() + 
                          ", topKValue=" + topKValue + ")");
         return count;
@@ -2898,27 +2889,11 @@ public class TopologyCanvas extends Canvas {
 
     
     private Map<String, int[]> loadLocalNodePositions() {
-        Map<String, int[]> posMap = new HashMap<>();
-        try (FileReader reader = new FileReader("node_positions.json")) {
-            Gson gson = new Gson();
-            JsonObject obj = gson.fromJson(reader, JsonObject.class);
-            if (obj.has("nodes")) {
-                JsonArray arr = obj.getAsJsonArray("nodes");
-                for (int i = 0; i < arr.size(); i++) {
-                    JsonObject n = arr.get(i).getAsJsonObject();
-                    String ip = n.get("ip").getAsString();
-                    int x = n.get("x").getAsInt();
-                    int y = n.get("y").getAsInt();
-                    posMap.put(ip, new int[]{x, y});
-                }
-            }
-        } catch (Exception e) {
-            
-        }
-        return posMap;
+        return NodePositionStore.forFile("node_positions.json").positions();
     }
 
     public void updateTopology(List<Node> newNodes, List<Link> newLinks, List<Flow> newFlows) {
+        topologyVersion++;
         System.out.println("[DEBUG] TopologyCanvas.updateTopology called, nodes=" + (newNodes == null ? "null" : newNodes.size()) + ", links=" + (newLinks == null ? "null" : newLinks.size()) + ", flows=" + (newFlows == null ? "null" : newFlows.size()));
         
         
@@ -2935,8 +2910,7 @@ public class TopologyCanvas extends Canvas {
         if (isDragging && draggedNode != null) {
             this.links.clear();
             this.links.addAll(newLinks);
-            this.flows.clear();
-            this.flows.addAll(newFlows);
+            this.flows = FlowTable.of(newFlows);
             
             // Rebuild flow index cache for performance optimization
             rebuildFlowIndexCache();
@@ -2944,9 +2918,7 @@ public class TopologyCanvas extends Canvas {
             
             if (newFlows.isEmpty()) {
                 for (Link link : this.links) {
-                    if (link.flow_set != null) {
-                        link.flow_set.clear();
-                    }
+                    link.flow_set = List.of();
                 }
             
             clearFlowColorAssignments();
@@ -2962,7 +2934,7 @@ public class TopologyCanvas extends Canvas {
         if (newNodes == null || newLinks == null || newFlows == null) {
             this.nodes.clear();
             this.links.clear();
-            this.flows.clear();
+            this.flows = FlowTable.EMPTY;
             selectedNodes.clear(); 
             
             if (this.flows.isEmpty()) {
@@ -2976,7 +2948,7 @@ public class TopologyCanvas extends Canvas {
         if (newNodes.isEmpty()) {
             this.nodes.clear();
             this.links.clear();
-            this.flows.clear();
+            this.flows = FlowTable.EMPTY;
             selectedNodes.clear();
             
             clearFlowColorAssignments();
@@ -2998,10 +2970,11 @@ public class TopologyCanvas extends Canvas {
         for (Node n : newNodes) {
             int x = n.x, y = n.y;
             
-            // Check if we have saved position for this node (by primary IP)
-            if (localPos.containsKey(n.ip)) {
-                x = localPos.get(n.ip)[0];
-                y = localPos.get(n.ip)[1];
+            // Check if we have saved position for this node (by DPID, else primary IP)
+            int[] saved = NodePositionStore.lookup(localPos, n);
+            if (saved != null) {
+                x = saved[0];
+                y = saved[1];
             }
             
             
@@ -3051,8 +3024,7 @@ public class TopologyCanvas extends Canvas {
         this.links.clear();
         this.links.addAll(newLinks);
         
-        this.flows.clear();
-        this.flows.addAll(newFlows);
+        this.flows = FlowTable.of(newFlows);
         
         // Rebuild flow index cache for performance optimization
         rebuildFlowIndexCache();
@@ -3060,9 +3032,7 @@ public class TopologyCanvas extends Canvas {
         
         if (newFlows.isEmpty()) {
             for (Link link : this.links) {
-                if (link.flow_set != null) {
-                    link.flow_set.clear();
-                }
+                link.flow_set = List.of();
             }
             
             clearFlowColorAssignments();
@@ -0,0 +1,89 @@
+package org.example.demo2;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The last layout computed for the live topology, so an unchanged topology is not laid out again
+ * on every poll.
+ *
+ * A layout is reused while the topology signature (which nodes exist and their layers), the canvas
+ * size and the saved-positions version all match. After a change, {@link #previousPosition} lets
+ * the incremental layout start from where surviving nodes already are.
+ *
+ * Poll thread only.
+ */
+public class TopologyLayoutCache {
+
+    private long signature;
+    private int width = -1;
+    private int height = -1;
+    private long positionsVersion = -1;
+    private Map<String, int[]> positions = new HashMap<>();
+
+    /** Order-independent hash of the nodes' identities and layers. */
+    public static long signature(List<Node> nodes) {
+        long sum = 0;
+        long xor = 0;
+        for (Node node : nodes) {
+            long h = hash64(key(node) + "|" + node.layer);
+            sum += h;
+            xor ^= Long.rotateLeft(h, 29);
+        }
+        return sum * 31 + xor + nodes.size();
+    }
+
+    /** Identity of a node across polls; IP-less hosts are told apart by name. */
+    static String key(Node node) {
+        return node.ip + "|" + node.name;
+    }
+
+    /**
+     * Position {@code nodes} from the cached layout if it was made for the same topology, canvas
+     * size and saved positions. Returns false, leaving the nodes untouched, when a layout is needed.
+     */
+    public boolean apply(List<Node> nodes, long signature, int width, int height, long positionsVersion) {
+        if (signature != this.signature || width != this.width || height != this.height
+                || positionsVersion != this.positionsVersion || nodes.size() != positions.size()) {
+            return false;
+        }
+        for (Node node : nodes) {
+            if (!positions.containsKey(key(node))) return false;
+        }
+        for (Node node : nodes) {
+            int[] position = positions.get(key(node));
+            node.x = position[0];
+            node.y = position[1];
+        }
+        return true;
+    }
+
+    /** Keep the positions just computed for {@code nodes}. */
+    public void remember(List<Node> nodes, long signature, int width, int height, long positionsVersion) {
+        Map<String, int[]> laidOut = new HashMap<>(nodes.size() * 2);
+        for (Node node : nodes) {
+            laidOut.put(key(node), new int[] {node.x, node.y});
+        }
+        this.positions = laidOut;
+        this.signature = signature;
+        this.width = width;
+        this.height = height;
+        this.positionsVersion = positionsVersion;
+    }
+
+    /** Where {@code node} was in the last layout, or null if it is new. */
+    public int[] previousPosition(Node node) {
+        return positions.get(key(node));
+    }
+
+    // FNV-1a, 64 bit: String.hashCode's 32 bits collide too easily across thousands of nodes
+    private static long hash64(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+}
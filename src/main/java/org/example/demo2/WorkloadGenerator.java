@@ -0,0 +1,518 @@
+package org.example.demo2;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Deterministic synthetic workload for benchmarks and soak tests.
+ *
+ * Builds a k-ary fat-tree (core / aggregation / edge switches plus hosts) and a flow set
+ * routed over it, then evolves the flows second by second (churn + rate jitter). It can
+ * emit the same shapes the NDT API returns (get_graph_data, get_detected_flow_data,
+ * cpu / memory utilization) and multi-hour topology / flow histories for playback.
+ *
+ * Same Config (including seed) always produces byte-identical output.
+ *
+ * Usage:
+ *   java -cp NDTanimation.jar org.example.demo2.WorkloadGenerator --k 8 --flows 5000 --hours 2 --out workload/
+ */
+public class WorkloadGenerator {
+
+    private static final DateTimeFormatter SAMPLED_TIME_FORMAT =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.of("UTC"));
+
+    public static class Config {
+        public int k = 4;                    // fat-tree arity (even)
+        public int hosts = 0;                // 0 = k^3/4 (one host per edge port)
+        public int flows = 1000;
+        public double churnRate = 0.05;      // fraction of flows replaced per second
+        public String rateDistribution = "pareto"; // uniform | pareto | bimodal
+        public double meanFlowRateBps = 2_000_000;
+        public long linkBandwidthBps = 1_000_000_000L;
+        public long seed = 42L;
+        public long startTimeMs = 1_762_828_235_000L;
+        public int firstOctet = 10;          // all addresses are <firstOctet>.x.x.x, so fabrics can be told apart
+    }
+
+    // Per-flow state kept next to the API object
+    private static final class FlowState {
+        final DetectedFlowData data;
+        final int[] edgeIndices; // edges (into graph.edges) the flow traverses, in path order
+        final long startMs;
+
+        FlowState(DetectedFlowData data, int[] edgeIndices, long startMs) {
+            this.data = data;
+            this.edgeIndices = edgeIndices;
+            this.startMs = startMs;
+        }
+    }
+
+    private final Config config;
+    private final Random random;
+    private final GraphData graph = new GraphData();
+    private final List<long[]> hosts = new ArrayList<>(); // {ipValue, edgeDpid, pod}
+    private final Map<Long, Long> switchIpByDpid = new LinkedHashMap<>();
+    private final Map<String, Integer> edgeIndexByPair = new HashMap<>();
+    private final List<FlowState> flows = new ArrayList<>();
+    private long[][] coreDpids;   // [aggIndex][j]
+    private long[][] aggDpids;    // [pod][a]
+    private long nowMs;
+
+    public WorkloadGenerator(Config config) {
+        if (config.k < 2 || config.k % 2 != 0) {
+            throw new IllegalArgumentException("Fat-tree arity k must be an even number >= 2: " + config.k);
+        }
+        this.config = config;
+        this.random = new Random(config.seed);
+        this.nowMs = config.startTimeMs;
+        buildFatTree();
+        for (int i = 0; i < config.flows; i++) {
+            flows.add(newFlow());
+        }
+        refreshEdgeState();
+    }
+
+    public long getCurrentTimeMs() {
+        return nowMs;
+    }
+
+    public int getHostCount() {
+        return hosts.size();
+    }
+
+    // =============================
+    // Topology
+    // =============================
+
+    private void buildFatTree() {
+        int k = config.k;
+        int half = k / 2;
+        int edgeSwitches = k * half;
+        int targetHosts = config.hosts > 0 ? config.hosts : edgeSwitches * half;
+        int hostsPerEdge = (targetHosts + edgeSwitches - 1) / edgeSwitches;
+        graph.nodes = new ArrayList<>();
+        graph.edges = new ArrayList<>();
+
+        // Small sequential DPIDs: playback parses node dpid as int
+        long nextDpid = 1;
+        coreDpids = new long[half][half];
+        for (int a = 0; a < half; a++) {
+            for (int j = 0; j < half; j++) {
+                int c = a * half + j;
+                coreDpids[a][j] = addSwitch("core-" + c, nextDpid++, 0, ipValue(config.firstOctet, 255, c / 250, c % 250 + 1));
+            }
+        }
+        aggDpids = new long[k][half];
+        for (int p = 0; p < k; p++) {
+            for (int a = 0; a < half; a++) {
+                aggDpids[p][a] = addSwitch("agg-" + p + "-" + a, nextDpid++, 1, ipValue(config.firstOctet, 254, p, a + 1));
+                for (int j = 0; j < half; j++) {
+                    addLinkPair(coreDpids[a][j], aggDpids[p][a], p + 1, j + 1);
+                }
+            }
+            for (int e = 0; e < half; e++) {
+                long edgeDpid = addSwitch("edge-" + p + "-" + e, nextDpid++, 2, ipValue(config.firstOctet, 253, p, e + 1));
+                for (int a = 0; a < half; a++) {
+                    addLinkPair(aggDpids[p][a], edgeDpid, half + e + 1, a + 1);
+                }
+                for (int h = 0; h < hostsPerEdge && hosts.size() < targetHosts; h++) {
+                    long hostIp = ipValue(config.firstOctet, p, e, h + 2);
+                    addHost("h-" + p + "-" + e + "-" + h, hostIp);
+                    addLinkPair(edgeDpid, hostIp, half + h + 1, 1);
+                    hosts.add(new long[] {hostIp, edgeDpid, p});
+                }
+            }
+        }
+        System.out.println("[WORKLOAD] Fat-tree k=" + k + ": " + graph.nodes.size() + " nodes ("
+            + hosts.size() + " hosts), " + graph.edges.size() + " directed edges");
+    }
+
+    static long ipValue(int a, int b, int c, int d) {
+        return ((long) a << 24) | ((long) b << 16) | ((long) c << 8) | d;
+    }
+
+    static String ipString(long value) {
+        return ((value >> 24) & 0xFF) + "." + ((value >> 16) & 0xFF) + "." + ((value >> 8) & 0xFF) + "." + (value & 0xFF);
+    }
+
+    private long addSwitch(String name, long dpid, int layer, long ip) {
+        GraphData.Node n = new GraphData.Node();
+        n.device_name = name;
+        n.ip = new ArrayList<>(List.of(ip));
+        n.is_enabled = true;
+        n.is_up = true;
+        n.mac = 0x020000000000L | dpid;
+        n.vertex_type = 0;
+        n.device_layer = layer;
+        n.dpid = dpid;
+        n.brand_name = "synthetic";
+        graph.nodes.add(n);
+        switchIpByDpid.put(dpid, ip);
+        return dpid;
+    }
+
+    private void addHost(String name, long ip) {
+        GraphData.Node n = new GraphData.Node();
+        n.device_name = name;
+        n.ip = new ArrayList<>(List.of(ip));
+        n.is_enabled = true;
+        n.is_up = true;
+        n.mac = 0x060000000000L | ip;
+        n.vertex_type = 1;
+        n.device_layer = 3;
+        graph.nodes.add(n);
+    }
+
+    // Hops are identified by DPID for switches and by IP value for hosts (as in flow paths)
+    private void addLinkPair(long a, long b, int aPort, int bPort) {
+        addLink(a, b, aPort, bPort);
+        addLink(b, a, bPort, aPort);
+    }
+
+    private void addLink(long from, long to, int fromPort, int toPort) {
+        GraphData.Edge e = new GraphData.Edge();
+        e.src_ip = new ArrayList<>(List.of(switchIpByDpid.getOrDefault(from, from)));
+        e.dst_ip = new ArrayList<>(List.of(switchIpByDpid.getOrDefault(to, to)));
+        e.src_dpid = switchIpByDpid.containsKey(from) ? from : 0L;
+        e.dst_dpid = switchIpByDpid.containsKey(to) ? to : 0L;
+        e.src_interface = fromPort;
+        e.dst_interface = toPort;
+        e.dst_port = toPort;
+        e.is_enabled = true;
+        e.is_up = true;
+        e.link_bandwidth_bps = config.linkBandwidthBps;
+        e.flow_set = new ArrayList<>();
+        edgeIndexByPair.put(from + ">" + to, graph.edges.size());
+        graph.edges.add(e);
+    }
+
+    // =============================
+    // Flows
+    // =============================
+
+    private FlowState newFlow() {
+        int half = config.k / 2;
+        long[] src = hosts.get(random.nextInt(hosts.size()));
+        long[] dst = hosts.get(random.nextInt(hosts.size()));
+        if (src == dst && hosts.size() > 1) {
+            dst = hosts.get((hosts.indexOf(src) + 1) % hosts.size());
+        }
+
+        // ECMP-style path: host, edge, [agg, [core, agg], edge], host
+        List<Long> hops = new ArrayList<>();
+        hops.add(src[0]);
+        hops.add(src[1]);
+        if (src[1] != dst[1]) {
+            int a = random.nextInt(half);
+            hops.add(aggDpids[(int) src[2]][a]);
+            if (src[2] != dst[2]) {
+                hops.add(coreDpids[a][random.nextInt(half)]);
+                hops.add(aggDpids[(int) dst[2]][a]);
+            }
+            hops.add(dst[1]);
+        }
+        hops.add(dst[0]);
+
+        DetectedFlowData f = new DetectedFlowData();
+        f.src_ip = src[0];
+        f.dst_ip = dst[0];
+        f.src_port = 1024 + random.nextInt(64000);
+        f.dst_port = pickDstPort();
+        f.protocol_id = random.nextInt(10) == 0 ? 17 : 6;
+        f.path = new ArrayList<>();
+        int[] edgeIndices = new int[hops.size() - 1];
+        for (int h = 0; h < hops.size(); h++) {
+            DetectedFlowData.PathNode pn = new DetectedFlowData.PathNode();
+            pn.node = hops.get(h);
+            if (h > 0) {
+                int idx = edgeIndexByPair.get(hops.get(h - 1) + ">" + hops.get(h));
+                edgeIndices[h - 1] = idx;
+                pn.interface_id = graph.edges.get(idx).dst_interface;
+                if (h == 1) f.path.get(0).interface_id = graph.edges.get(idx).src_interface;
+            }
+            f.path.add(pn);
+        }
+        FlowState state = new FlowState(f, edgeIndices, nowMs);
+        setRate(f, drawRate());
+        f.first_sampled_time = SAMPLED_TIME_FORMAT.format(Instant.ofEpochMilli(nowMs));
+        f.latest_sampled_time = f.first_sampled_time;
+        return state;
+    }
+
+    private int pickDstPort() {
+        int[] common = {80, 443, 22, 53, 3306, 5201, 8080};
+        return random.nextInt(4) == 0 ? 10000 + random.nextInt(50000) : common[random.nextInt(common.length)];
+    }
+
+    private double drawRate() {
+        double mean = config.meanFlowRateBps;
+        double rate;
+        switch (config.rateDistribution) {
+            case "uniform":
+                rate = mean * (0.5 + random.nextDouble());
+                break;
+            case "bimodal":
+                // 90% mice, 10% elephants, same overall mean
+                rate = random.nextInt(10) == 0 ? mean * 9.1 : mean * 0.1;
+                break;
+            case "pareto":
+            default:
+                double alpha = 1.5;
+                double xm = mean * (alpha - 1) / alpha;
+                rate = xm / Math.pow(1 - random.nextDouble(), 1 / alpha);
+                break;
+        }
+        return Math.min(rate, config.linkBandwidthBps);
+    }
+
+    private static void setRate(DetectedFlowData f, double bps) {
+        long rate = Math.max(1, (long) bps);
+        f.estimated_flow_sending_rate_bps_in_the_last_sec = f.estimated_flow_sending_rate_bps_in_the_proceeding_1sec_timeslot;
+        f.estimated_packet_rate_in_the_last_sec = f.estimated_packet_rate_in_the_proceeding_1sec_timeslot;
+        f.estimated_flow_sending_rate_bps_in_the_proceeding_1sec_timeslot = rate;
+        f.estimated_packet_rate_in_the_proceeding_1sec_timeslot = Math.max(1, rate / (1200 * 8));
+        if (f.estimated_flow_sending_rate_bps_in_the_last_sec == 0) {
+            f.estimated_flow_sending_rate_bps_in_the_last_sec = f.estimated_flow_sending_rate_bps_in_the_proceeding_1sec_timeslot;
+            f.estimated_packet_rate_in_the_last_sec = f.estimated_packet_rate_in_the_proceeding_1sec_timeslot;
+        }
+    }
+
+    /**
+     * Advance the simulation clock: replace churnRate of the flows and jitter the others' rates.
+     */
+    public void advance(long stepMs) {
+        nowMs += stepMs;
+        int replace = (int) Math.round(flows.size() * config.churnRate * stepMs / 1000.0);
+        for (int i = 0; i < replace && !flows.isEmpty(); i++) {
+            flows.set(random.nextInt(flows.size()), newFlow());
+        }
+        String latest = SAMPLED_TIME_FORMAT.format(Instant.ofEpochMilli(nowMs));
+        for (FlowState state : flows) {
+            if (state.startMs == nowMs) continue;
+            double jitter = Math.exp(random.nextGaussian() * 0.1);
+            setRate(state.data, Math.min(config.linkBandwidthBps,
+                state.data.estimated_flow_sending_rate_bps_in_the_proceeding_1sec_timeslot * jitter));
+            state.data.latest_sampled_time = latest;
+        }
+        refreshEdgeState();
+    }
+
+    // Recompute per-edge flow_set, usage and utilization from the current flows
+    private void refreshEdgeState() {
+        long[] usage = new long[graph.edges.size()];
+        for (GraphData.Edge e : graph.edges) {
+            e.flow_set.clear();
+        }
+        for (FlowState state : flows) {
+            DetectedFlowData f = state.data;
+            for (int idx : state.edgeIndices) {
+                usage[idx] += f.estimated_flow_sending_rate_bps_in_the_proceeding_1sec_timeslot;
+                GraphData.FlowSet fs = new GraphData.FlowSet();
+                fs.src_ip = f.src_ip;
+                fs.dst_ip = f.dst_ip;
+                fs.src_port = f.src_port;
+                fs.dst_port = f.dst_port;
+                fs.protocol_number = f.protocol_id;
+                graph.edges.get(idx).flow_set.add(fs);
+            }
+        }
+        for (int i = 0; i < usage.length; i++) {
+            GraphData.Edge e = graph.edges.get(i);
+            long used = Math.min(usage[i], e.link_bandwidth_bps);
+            e.link_bandwidth_usage_bps = used;
+            e.left_link_bandwidth_bps = e.link_bandwidth_bps - used;
+            e.link_bandwidth_utilization_percent = used * 100.0 / e.link_bandwidth_bps;
+        }
+    }
+
+    // =============================
+    // API-shaped views
+    // =============================
+
+    /** Current topology, shaped like /ndt/get_graph_data. */
+    public GraphData getGraphData() {
+        return graph;
+    }
+
+    /** Current flows, shaped like /ndt/get_detected_flow_data. */
+    public DetectedFlowData[] getDetectedFlowData() {
+        DetectedFlowData[] out = new DetectedFlowData[flows.size()];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = flows.get(i).data;
+        }
+        return out;
+    }
+
+    /** The k flows with the highest sending rate, shaped like /ndt/get_detected_top_k_flow_data. */
+    public DetectedFlowData[] getDetectedTopKFlowData(int k) {
+        DetectedFlowData[] all = getDetectedFlowData();
+        java.util.Arrays.sort(all, (a, b) -> Long.compare(
+            b.estimated_flow_sending_rate_bps_in_the_proceeding_1sec_timeslot,
+            a.estimated_flow_sending_rate_bps_in_the_proceeding_1sec_timeslot));
+        return java.util.Arrays.copyOf(all, Math.min(Math.max(k, 0), all.length));
+    }
+
+    /** Switch CPU utilization keyed by switch IP, shaped like /ndt/get_cpu_utilization. */
+    public Map<String, Integer> getCpuUtilization() {
+        return switchUtilization(0x5DEECE66DL);
+    }
+
+    /** Switch memory utilization keyed by switch IP, shaped like /ndt/get_memory_utilization. */
+    public Map<String, Integer> getMemoryUtilization() {
+        return switchUtilization(0xB5297A4DL);
+    }
+
+    private Map<String, Integer> switchUtilization(long salt) {
+        // Derived from (seed, time, switch) so it is stable and does not disturb the flow RNG
+        Map<String, Integer> out = new LinkedHashMap<>();
+        long second = nowMs / 1000;
+        for (Map.Entry<Long, Long> entry : switchIpByDpid.entrySet()) {
+            Random r = new Random(config.seed ^ salt ^ (entry.getKey() * 31 + second));
+            out.put(ipString(entry.getValue()), 5 + r.nextInt(70));
+        }
+        return out;
+    }
+
+    // =============================
+    // File output
+    // =============================
+
+    public void writeGraphJson(File file) throws Exception {
+        try (Writer writer = newWriter(file)) {
+            new Gson().toJson(graph, writer);
+        }
+    }
+
+    public void writeDetectedFlowJson(File file) throws Exception {
+        try (Writer writer = newWriter(file)) {
+            new Gson().toJson(getDetectedFlowData(), writer);
+        }
+    }
+
+    /**
+     * Write topology and flow histories, advancing the simulation one second at a time.
+     *
+     * preprocessed = false writes the controller's history layout, one snapshot per line:
+     *   {"timestamp":"ms","nodes":[...],"edges":[...]} and {"timestamp":"ms","flow_info":[...]}
+     * which JsonPreprocessor (topology) and NdjsonIndexUtil.buildIndex (both) accept.
+     * preprocessed = true writes what JsonPreprocessor produces and PlaybackDataReader reads:
+     *   {"t":ms,"type":"topology","nodes":[...],"edges":[...]} and one {"t":ms,"flow_info":{...}} per flow.
+     * Edge flow_set lists are left out of topology history; playback re-derives them from flow paths.
+     */
+    public void writeHistories(File topologyFile, File flowFile, int durationSeconds,
+                               int topologyIntervalSeconds, boolean preprocessed) throws Exception {
+        Gson gson = new Gson();
+        int interval = Math.max(1, topologyIntervalSeconds);
+        long topoLines = 0;
+        long flowLines = 0;
+        try (BufferedWriter topo = newWriter(topologyFile);
+             BufferedWriter flow = newWriter(flowFile)) {
+            for (int s = 0; s < durationSeconds; s++) {
+                if (s > 0) advance(1000);
+
+                if (s % interval == 0) {
+                    JsonObject snapshot = new JsonObject();
+                    if (preprocessed) {
+                        snapshot.addProperty("t", nowMs);
+                        snapshot.addProperty("type", "topology");
+                    } else {
+                        snapshot.addProperty("timestamp", String.valueOf(nowMs));
+                    }
+                    snapshot.add("nodes", gson.toJsonTree(graph.nodes));
+                    JsonArray edges = gson.toJsonTree(graph.edges).getAsJsonArray();
+                    edges.forEach(e -> e.getAsJsonObject().remove("flow_set"));
+                    snapshot.add("edges", edges);
+                    topo.write(gson.toJson(snapshot));
+                    topo.write('\n');
+                    topoLines++;
+                }
+
+                if (preprocessed) {
+                    for (FlowState state : flows) {
+                        JsonObject line = new JsonObject();
+                        line.addProperty("t", nowMs);
+                        line.add("flow_info", gson.toJsonTree(state.data));
+                        flow.write(gson.toJson(line));
+                        flow.write('\n');
+                        flowLines++;
+                    }
+                } else {
+                    JsonObject line = new JsonObject();
+                    line.addProperty("timestamp", String.valueOf(nowMs));
+                    line.add("flow_info", gson.toJsonTree(getDetectedFlowData()));
+                    flow.write(gson.toJson(line));
+                    flow.write('\n');
+                    flowLines++;
+                }
+            }
+        }
+        System.out.println("[WORKLOAD] Wrote " + topoLines + " topology lines to " + topologyFile.getName()
+            + " and " + flowLines + " flow lines to " + flowFile.getName());
+    }
+
+    private static BufferedWriter newWriter(File file) throws Exception {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) parent.mkdirs();
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    // =============================
+    // Command line
+    // =============================
+
+    public static void main(String[] args) throws Exception {
+        Config config = new Config();
+        File outDir = new File("workload");
+        double hours = 1;
+        int topologyInterval = 10;
+        boolean preprocessed = true;
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--k": config.k = Integer.parseInt(value); break;
+                case "--hosts": config.hosts = Integer.parseInt(value); break;
+                case "--flows": config.flows = Integer.parseInt(value); break;
+                case "--churn": config.churnRate = Double.parseDouble(value); break;
+                case "--rate-dist": config.rateDistribution = value; break;
+                case "--mean-rate": config.meanFlowRateBps = Double.parseDouble(value); break;
+                case "--seed": config.seed = Long.parseLong(value); break;
+                case "--start": config.startTimeMs = Long.parseLong(value); break;
+                case "--first-octet": config.firstOctet = Integer.parseInt(value); break;
+                case "--hours": hours = Double.parseDouble(value); break;
+                case "--topology-interval": topologyInterval = Integer.parseInt(value); break;
+                case "--layout": preprocessed = !"raw".equals(value); break;
+                case "--out": outDir = new File(value); break;
+                default:
+                    System.err.println("[WORKLOAD] Unknown option: " + args[i]);
+                    System.err.println("Options: --k --hosts --flows --churn --rate-dist uniform|pareto|bimodal --mean-rate"
+                        + " --seed --start --first-octet --hours --topology-interval --layout raw|preprocessed --out");
+                    return;
+            }
+        }
+
+        WorkloadGenerator generator = new WorkloadGenerator(config);
+        generator.writeGraphJson(new File(outDir, "get_graph_data.json"));
+        generator.writeDetectedFlowJson(new File(outDir, "get_detected_flow_data.json"));
+        generator.writeHistories(new File(outDir, "topology_history.ndjson"), new File(outDir, "flow_history.ndjson"),
+            (int) Math.round(hours * 3600), topologyInterval, preprocessed);
+        System.out.println("[WORKLOAD] Done: " + outDir.getAbsolutePath());
+    }
+}
@@ -0,0 +1,198 @@
+package org.example.demo2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.google.gson.Gson;
+
+/**
+ * Two halls, each served by a stand-in from recorded files. East has switch 1 and hosts 1001, 1002;
+ * west has switch 7 and hosts 2001, 2002; a cross-hall link joins switch 1 to switch 7.
+ */
+class ControllerFederationTest {
+
+    @TempDir
+    File dir;
+
+    private final List<NdtStandInServer> servers = new ArrayList<>();
+    private ControllerFederation federation;
+
+    @AfterEach
+    void stop() {
+        if (federation != null) federation.close();
+        for (NdtStandInServer server : servers) server.stop();
+    }
+
+    private static GraphData.Node node(String name, long dpid, long ip) {
+        GraphData.Node node = new GraphData.Node();
+        node.device_name = name;
+        node.dpid = dpid;
+        node.ip = List.of(ip);
+        node.is_up = true;
+        node.is_enabled = true;
+        return node;
+    }
+
+    private static GraphData.Edge edge(Long srcDpid, long srcIp, Long dstDpid, long dstIp) {
+        GraphData.Edge edge = new GraphData.Edge();
+        edge.src_dpid = srcDpid;
+        edge.dst_dpid = dstDpid;
+        edge.src_ip = List.of(srcIp);
+        edge.dst_ip = List.of(dstIp);
+        edge.is_up = true;
+        edge.is_enabled = true;
+        return edge;
+    }
+
+    private static DetectedFlowData flow(long src, long dst, long... path) {
+        DetectedFlowData flow = new DetectedFlowData();
+        flow.src_ip = src;
+        flow.dst_ip = dst;
+        flow.src_port = 1000;
+        flow.dst_port = 80;
+        flow.protocol_id = 6;
+        flow.path = new ArrayList<>();
+        for (long node : path) {
+            DetectedFlowData.PathNode hop = new DetectedFlowData.PathNode();
+            hop.node = node;
+            flow.path.add(hop);
+        }
+        return flow;
+    }
+
+    private String serve(String name, GraphData graph, DetectedFlowData... flows) throws Exception {
+        File data = new File(dir, name);
+        data.mkdirs();
+        Gson gson = new Gson();
+        Files.writeString(new File(data, NdtStandInServer.GRAPH + ".json").toPath(), gson.toJson(graph), StandardCharsets.UTF_8);
+        Files.writeString(new File(data, NdtStandInServer.FLOWS + ".json").toPath(), gson.toJson(flows), StandardCharsets.UTF_8);
+        NdtStandInServer.Config config = new NdtStandInServer.Config();
+        config.port = 0;
+        config.dataDir = data;
+        config.push = false;
+        NdtStandInServer server = new NdtStandInServer(config);
+        server.start();
+        servers.add(server);
+        return "http://localhost:" + server.getPort();
+    }
+
+    private static GraphData graph(List<GraphData.Node> nodes, List<GraphData.Edge> edges) {
+        GraphData graph = new GraphData();
+        graph.nodes = nodes;
+        graph.edges = edges;
+        return graph;
+    }
+
+    /** Federation over the halls in {@code order} ("east", "west"), with everything fetched once. */
+    private ControllerFederation federate(List<String> order, DetectedFlowData[] eastFlows, DetectedFlowData[] westFlows)
+            throws Exception {
+        Map<String, String> urls = new LinkedHashMap<>();
+        for (String hall : order) {
+            if (hall.equals("east")) {
+                urls.put(hall, serve(hall, graph(
+                    List.of(node("s1", 1, 101), node("h1", 0, 1001), node("h2", 0, 1002)),
+                    List.of(edge(0L, 1001, 1L, 101), edge(1L, 101, 7L, 201))), eastFlows));
+            } else {
+                urls.put(hall, serve(hall, graph(
+                    List.of(node("s7", 7, 201), node("h3", 0, 2001), node("h4", 0, 2002)),
+                    List.of(edge(7L, 201, 0L, 2001), edge(7L, 201, 1L, 101))), westFlows));
+            }
+        }
+        federation = new ControllerFederation(urls, () -> 60_000, () -> 0, 60_000, 60_000, () -> true, () -> { });
+        long now = System.currentTimeMillis();
+        for (ControllerFederation.Hall hall : federation.halls()) {
+            assertTrue(hall.graph.fetch(now), hall.name + " graph");
+            assertTrue(hall.flows.fetch(now), hall.name + " flows");
+        }
+        return federation;
+    }
+
+    private static List<Long> path(DetectedFlowData flow) {
+        List<Long> nodes = new ArrayList<>();
+        for (DetectedFlowData.PathNode hop : flow.path) nodes.add(hop.node);
+        return nodes;
+    }
+
+    private static DetectedFlowData find(DetectedFlowData[] flows, long src) {
+        for (DetectedFlowData flow : flows) {
+            if (flow.src_ip == src) return flow;
+        }
+        return null;
+    }
+
+    @Test
+    void parseNamesHalls() {
+        assertEquals(Map.of("hall1", "http://a:8000", "hall2", "http://b:8000?x=1"),
+            ControllerFederation.parse("http://a:8000, http://b:8000?x=1"));
+        assertEquals(List.of("east", "west"),
+            new ArrayList<>(ControllerFederation.parse("east=http://a:8000,west=http://b:8000").keySet()));
+    }
+
+    @Test
+    void dpidsAreNamespacedByHallPosition() {
+        assertEquals(0, ControllerFederation.namespace(3, 0));
+        assertEquals((1L << 48) | 5, ControllerFederation.namespace(0, 5));
+        assertEquals((2L << 48) | 5, ControllerFederation.namespace(1, (9L << 48) | 5));
+    }
+
+    @Test
+    void graphsMergeWithNamespacedSwitchesAndCrossHallLinks() throws Exception {
+        GraphData graph = federate(List.of("east", "west"), new DetectedFlowData[0], new DetectedFlowData[0]).graph();
+        long east1 = ControllerFederation.namespace(0, 1);
+        long west7 = ControllerFederation.namespace(1, 7);
+        List<String> names = new ArrayList<>();
+        for (GraphData.Node node : graph.nodes) names.add(node.device_name);
+        assertEquals(List.of("s1@east", "h1@east", "h2@east", "s7@west", "h3@west", "h4@west"), names);
+        assertEquals(east1, graph.nodes.get(0).dpid);
+        assertEquals(west7, graph.nodes.get(3).dpid);
+        // The cross-hall link as each hall reports it, far end resolved to the other hall
+        int crossLinks = 0;
+        for (GraphData.Edge edge : graph.edges) {
+            if (edge.src_dpid == east1 && edge.dst_dpid == west7) crossLinks++;
+            if (edge.src_dpid == west7 && edge.dst_dpid == east1) crossLinks++;
+        }
+        assertEquals(2, crossLinks);
+        assertEquals(4, graph.edges.size());
+    }
+
+    @Test
+    void aFlowSeenByTwoHallsIsJoinedInPathOrderWhicheverHallIsListedFirst() throws Exception {
+        for (List<String> order : List.of(List.of("east", "west"), List.of("west", "east"))) {
+            stop();
+            servers.clear();
+            long ns1 = ControllerFederation.namespace(order.indexOf("east"), 1);
+            long ns7 = ControllerFederation.namespace(order.indexOf("west"), 7);
+            DetectedFlowData[] flows = federate(order,
+                new DetectedFlowData[] {flow(1001, 2001, 1001, 1, 7), flow(1002, 2002, 1002, 1)},
+                new DetectedFlowData[] {flow(1001, 2001, 1, 7, 2001), flow(1002, 2002, 7, 2002)}).flows();
+
+            assertEquals(2, flows.length, order.toString());
+            // Overlapping hops (switch 1 -> switch 7) are kept once
+            assertEquals(List.of(1001L, ns1, ns7, 2001L), path(find(flows, 1001)), order.toString());
+            // No overlap: the segment of the hall owning the source host goes first
+            assertEquals(List.of(1002L, ns1, ns7, 2002L), path(find(flows, 1002)), order.toString());
+        }
+    }
+
+    @Test
+    void aNodeRepeatedAwayFromTheBoundaryIsKept() throws Exception {
+        long e1 = ControllerFederation.namespace(0, 1);
+        long w7 = ControllerFederation.namespace(1, 7);
+        DetectedFlowData[] flows = federate(List.of("east", "west"),
+            new DetectedFlowData[] {flow(1001, 2001, 1001, 1, 7)},
+            new DetectedFlowData[] {flow(1001, 2001, 7, 1, 7, 2001)}).flows();
+        assertEquals(List.of(1001L, e1, w7, e1, w7, 2001L), path(flows[0]));
+    }
+}
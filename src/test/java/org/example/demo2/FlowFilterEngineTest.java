@@ -0,0 +1,124 @@
+package org.example.demo2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class FlowFilterEngineTest {
+
+    private static Flow flow(String src, String dst, int sport, int dport, int proto, double rate, String... path) {
+        return new Flow(List.of(path), List.of(), src, dst, sport, dport, proto, 0, 0, 0, rate, 0, 0);
+    }
+
+    private static FlowFilterEngine engine(SnapshotBus.Snapshot names, Flow... flows) {
+        FlowFilterEngine engine = new FlowFilterEngine();
+        engine.setFlows(new ArrayList<>(List.of(flows)), names);
+        return engine;
+    }
+
+    private static BitSet bits(int... set) {
+        BitSet bits = new BitSet();
+        for (int i : set) bits.set(i);
+        return bits;
+    }
+
+    private static BitSet match(FlowFilterEngine engine, String query) {
+        return engine.evaluate(FlowFilterEngine.Query.parse(query));
+    }
+
+    private final FlowFilterEngine engine = engine(null,
+        flow("10.0.0.1", "10.0.1.9", 40000, 80, 6, 2_000_000, "10.0.0.1", "s1", "10.0.1.9"),
+        flow("10.0.0.2", "10.0.2.9", 40001, 443, 6, 500_000, "10.0.0.2", "s2", "10.0.2.9"),
+        flow("10.0.2.9", "10.0.0.1", 53, 5353, 17, 1_000, "10.0.2.9", "s2", "s1", "10.0.0.1"),
+        flow("not-an-ip", "10.0.0.1", 1, 2, 1, 0));
+
+    @Test
+    void emptyQueryMatchesEverything() {
+        assertTrue(FlowFilterEngine.Query.parse(null).isEmpty());
+        assertTrue(FlowFilterEngine.Query.parse("   ").isEmpty());
+        assertEquals(bits(0, 1, 2, 3), match(engine, ""));
+    }
+
+    @Test
+    void addressesMatchByCidr() {
+        assertEquals(bits(0, 1), match(engine, "src=10.0.0.0/24"));
+        assertEquals(bits(1), match(engine, "dst=10.0.2.9"));
+        // Either end; a flow whose IPs don't parse never matches an address term
+        assertEquals(bits(0, 2), match(engine, "ip=10.0.0.1"));
+        assertEquals(bits(0, 1, 2), match(engine, "ip=0.0.0.0/0"));
+    }
+
+    @Test
+    void portsProtocolsAndRates() {
+        assertEquals(bits(0, 1), match(engine, "dport=80,443"));
+        assertEquals(bits(0, 1), match(engine, "sport=40000-40001"));
+        assertEquals(bits(2), match(engine, "port=53"));
+        assertEquals(bits(2, 3), match(engine, "proto=udp,1"));
+        assertEquals(bits(0), match(engine, "rate>500k"));
+        assertEquals(bits(0, 1), match(engine, "rate>=500k"));
+        assertEquals(bits(2, 3), match(engine, "rate<500k"));
+        assertEquals(bits(1), match(engine, "rate>1k rate<=0.5M"));
+    }
+
+    @Test
+    void pathTermsAreAndedCommasAreOred() {
+        assertEquals(bits(0, 2), match(engine, "s1"));
+        assertEquals(bits(0, 1, 2), match(engine, "path=s1,s2"));
+        assertEquals(bits(2), match(engine, "s1 S2"));
+        assertEquals(bits(0), match(engine, "s1 proto=tcp"));
+        assertEquals(bits(), match(engine, "s9"));
+    }
+
+    @Test
+    void pathNodesMatchByNameAndUnknownIdsAsThemselves() {
+        SnapshotBus.Snapshot names = new SnapshotBus.Snapshot(1, false,
+            List.of(new Node("10.9.9.1", "core-1", 0, 0, "switch", true, true)), List.of(), List.of(),
+            id -> Map.of("1001", "10.9.9.1").get(id));
+        FlowFilterEngine named = engine(names,
+            flow("10.0.0.1", "10.0.0.2", 1, 2, 6, 0, "10.0.0.1", "1001", "10.0.0.2"),
+            flow("10.0.0.3", "10.0.0.4", 1, 2, 6, 0, "10.0.0.3", "2002", "10.0.0.4"));
+        assertEquals(bits(0), match(named, "core-1"));
+        assertEquals(bits(0), match(named, "10.9.9.1"));
+        assertEquals(bits(1), match(named, "2002"));
+    }
+
+    @Test
+    void badTermsAreRejectedByName() {
+        for (String bad : new String[] {"foo=1", "src=10.0.0.300", "src=10.0.0.0/33", "dst=host",
+                "sport=70000", "dport=90-80", "port=abc", "proto=999", "proto=nosuch", "rate=5", "rate>fast"}) {
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> FlowFilterEngine.Query.parse("s1 " + bad), bad);
+            assertTrue(e.getMessage().startsWith("'" + bad + "'"), e.getMessage());
+        }
+    }
+
+    @Test
+    void ratesAndAddressesParse() {
+        assertEquals(1500, FlowFilterEngine.Query.parseRate("1.5k"));
+        assertEquals(2e6, FlowFilterEngine.Query.parseRate("2m"));
+        assertEquals(3e9, FlowFilterEngine.Query.parseRate("3g"));
+        assertEquals(42, FlowFilterEngine.Query.parseRate("42"));
+        assertEquals(0x0A000102L, FlowFilterEngine.parseIpv4("10.0.1.2"));
+        assertEquals(0xFFFFFFFFL, FlowFilterEngine.parseIpv4("255.255.255.255"));
+        for (String bad : new String[] {null, "", "10.0.0", "10.0.0.1.2", "10.0.0.256", "10..0.1", "1000.0.0.1", "a.b.c.d"}) {
+            assertEquals(-1, FlowFilterEngine.parseIpv4(bad), bad);
+        }
+        assertFalse(FlowFilterEngine.Query.parse("rate>0").isEmpty());
+    }
+
+    @Test
+    void newFlowsReplaceTheIndex() {
+        FlowFilterEngine changing = engine(null, flow("10.0.0.1", "10.0.0.2", 1, 2, 6, 0, "s1"));
+        assertEquals(bits(0), match(changing, "s1"));
+        changing.setFlows(List.of(flow("10.0.0.1", "10.0.0.2", 1, 2, 6, 0, "s2"), flow("10.0.0.1", "10.0.0.2", 1, 2, 6, 0, "s1")), null);
+        assertEquals(bits(1), match(changing, "s1"));
+    }
+}
@@ -0,0 +1,105 @@
+package org.example.demo2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class FlowIdentityTableTest {
+
+    private static final int A = 0x0A000001; // 10.0.0.1
+    private static final int B = 0x0A000002;
+
+    @Test
+    void sameFiveTupleKeepsItsEntry() {
+        FlowIdentityTable table = new FlowIdentityTable(1000);
+        FlowIdentityTable.Entry first = table.observe(A, B, 1000, 80, 6, 0);
+        FlowIdentityTable.Entry again = table.observe(A, B, 1000, 80, 6, 500);
+        assertSame(first, again);
+        assertEquals(500, again.lastSeenMillis);
+        assertEquals(0, again.firstSeenMillis);
+        assertEquals("10.0.0.1", first.srcIp);
+        assertEquals("10.0.0.2", first.dstIp);
+        // An older sighting doesn't move last-seen back
+        table.observe(A, B, 1000, 80, 6, 100);
+        assertEquals(500, again.lastSeenMillis);
+    }
+
+    @Test
+    void everyFieldOfTheTupleMatters() {
+        FlowIdentityTable table = new FlowIdentityTable(1000);
+        Set<Integer> ids = new HashSet<>();
+        ids.add(table.observe(A, B, 1000, 80, 6, 0).id);
+        ids.add(table.observe(B, A, 1000, 80, 6, 0).id);
+        ids.add(table.observe(A, A, 1000, 80, 6, 0).id);
+        ids.add(table.observe(A, B, 1001, 80, 6, 0).id);
+        ids.add(table.observe(A, B, 1000, 81, 6, 0).id);
+        ids.add(table.observe(A, B, 1000, 80, 17, 0).id);
+        assertEquals(6, ids.size());
+        assertEquals(6, table.size());
+        assertFalse(ids.contains(0));
+    }
+
+    @Test
+    void evictedFlowComesBackWithANewId() {
+        FlowIdentityTable table = new FlowIdentityTable(1000);
+        int kept = table.observe(A, B, 1, 2, 6, 0).id;
+        int idle = table.observe(B, A, 1, 2, 6, 0).id;
+        table.observe(A, B, 1, 2, 6, 900);
+        assertEquals(0, table.evictIdle(1000));
+        assertEquals(1, table.evictIdle(1500));
+        assertEquals(1, table.size());
+        assertEquals(kept, table.observe(A, B, 1, 2, 6, 1600).id);
+        int returned = table.observe(B, A, 1, 2, 6, 1600).id;
+        assertNotEquals(idle, returned);
+        assertTrue(returned > Math.max(kept, idle), "IDs are not reused");
+    }
+
+    @Test
+    void idOfMatchesObserveByDottedIps() {
+        FlowIdentityTable table = new FlowIdentityTable(60_000);
+        Flow flow = new Flow(List.of(), List.of(), "10.0.0.1", "10.0.0.2", 1000, 80, 6, 0, 0, 0, 0, 0, 0);
+        int id = table.idOf(flow);
+        assertEquals(id, table.observe(A, B, 1000, 80, 6, System.currentTimeMillis()).id);
+        assertEquals(id, table.idOf(flow));
+    }
+
+    @Test
+    void startTimeIsParsedPerEntry() {
+        FlowIdentityTable.Entry entry = new FlowIdentityTable(1000).observe(A, B, 1, 2, 6, 0);
+        assertEquals(37_835_000, entry.startTimeMs("2025-11-11 10:30:35"));
+        assertEquals(37_835_000, entry.startTimeMs("2025-11-11 10:30:35"));
+        assertEquals(3_723_000, entry.startTimeMs("2025-11-12 01:02:03"));
+        assertEquals(0, entry.startTimeMs(null));
+    }
+
+    @Test
+    void timeOfDay() {
+        assertEquals(37_835_000, FlowIdentityTable.timeOfDayMs("2025-11-11 10:30:35"));
+        assertEquals(37_835_000, FlowIdentityTable.timeOfDayMs("2025-11-11 10:30:35 "));
+        assertEquals(0, FlowIdentityTable.timeOfDayMs("2025-11-11 00:00:00"));
+        assertEquals(86_399_000, FlowIdentityTable.timeOfDayMs("x 23:59:59"));
+        for (String bad : new String[] {null, "", "2025-11-11", "2025-11-11 10:30", "2025-11-11 10:30:35:01",
+                "2025-11-11 10:3a:35", "2025-11-11 :30:35"}) {
+            assertEquals(0, FlowIdentityTable.timeOfDayMs(bad), bad);
+        }
+    }
+
+    @Test
+    void parseIpv4IsTheInverseOfIpv4() {
+        for (int ip : new int[] {A, 0xC0A80101, 0xFFFFFFFF, 0x01020304, 0x7F000001}) {
+            assertEquals(ip, FlowIdentityTable.parseIpv4(EnrichmentService.ipv4(ip)));
+        }
+        assertEquals(A, FlowIdentityTable.parseIpv4("10.0.0.1"));
+        for (String bad : new String[] {null, "", "10.0.0", "host", "10.0.0.1/24", "fe80::1"}) {
+            assertEquals(0, FlowIdentityTable.parseIpv4(bad), bad);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package org.example.demo2;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class LinkFlowIndexTest {
+
+    private static Link link(String source, String target) {
+        return new Link(source, target, List.of(), List.of(), true, 1000, true, 0, new ArrayList<>(),
+            null, null, 0, 0, 0, 0, 0);
+    }
+
+    private static Flow flow(List<String> path) {
+        return new Flow(path, List.of(), "10.0.0.1", "10.0.0.2", 1, 2, 6, 0, 0, 0, 0, 0, 0);
+    }
+
+    private static Flow flow(String... path) {
+        return flow(List.of(path));
+    }
+
+    // Rows of the flows on the link; a list passed to assign becomes a table row for row
+    private static List<Integer> flowsOn(Link link) {
+        LinkFlowIndex.Slice slice = (LinkFlowIndex.Slice) link.flow_set;
+        List<Integer> rows = new ArrayList<>();
+        for (int i = 0; i < slice.size(); i++) rows.add(slice.row(i));
+        return rows;
+    }
+
+    private static boolean[] directions(Link link) {
+        LinkFlowIndex.Slice slice = (LinkFlowIndex.Slice) link.flow_set;
+        boolean[] reversed = new boolean[slice.size()];
+        for (int i = 0; i < reversed.length; i++) reversed[i] = slice.reversed(i);
+        return reversed;
+    }
+
+    @Test
+    void slicesHoldTheFlowsOnEachLinkInFlowOrder() {
+        Link ab = link("a", "b");
+        Link bc = link("b", "c");
+        Link cd = link("c", "d");
+        List<Link> links = List.of(ab, bc, cd);
+        Flow f0 = flow("a", "b", "c");
+        Flow f1 = flow("b", "c", "d");
+        Flow f2 = flow("a", "x", "d");
+        Flow f3 = flow("c");
+        List<Flow> flows = List.of(f0, f1, f2, f3);
+
+        LinkFlowIndex index = LinkFlowIndex.assign(flows, links, false, null);
+
+        assertEquals(List.of(0), flowsOn(ab));
+        assertEquals(List.of(0, 1), flowsOn(bc));
+        assertEquals(List.of(1), flowsOn(cd));
+        assertEquals(f1.srcPort, bc.flow_set.get(1).srcPort);
+        assertEquals(1, index.count(0));
+        assertEquals(2, index.count(1));
+        assertEquals(3, index.linksWithFlows());
+        assertEquals(4, index.size());
+        assertEquals(2, index.segmentsMissed);
+        assertThrows(IndexOutOfBoundsException.class, () -> ab.flow_set.get(1));
+        assertThrows(UnsupportedOperationException.class, () -> bc.flow_set.add(f2));
+    }
+
+    @Test
+    void aLinkWithoutFlowsGetsAnEmptyList() {
+        Link ab = link("a", "b");
+        Link idle = link("y", "z");
+        LinkFlowIndex.assign(List.of(flow("a", "b")), List.of(ab, idle), false, null);
+        assertSame(List.of(), idle.flow_set);
+    }
+
+    @Test
+    void reverseSegmentsMatchOnlyWithEitherDirection() {
+        Link ab = link("a", "b");
+        Flow forward = flow("a", "b");
+        Flow backward = flow("b", "a");
+
+        LinkFlowIndex strict = LinkFlowIndex.assign(List.of(forward, backward), List.of(ab), false, null);
+        assertEquals(List.of(0), flowsOn(ab));
+        assertEquals(1, strict.segmentsMissed);
+
+        LinkFlowIndex either = LinkFlowIndex.assign(List.of(forward, backward), List.of(ab), true, null);
+        assertEquals(List.of(0, 1), flowsOn(ab));
+        assertTrue(Arrays.equals(new boolean[] {false, true}, directions(ab)));
+        assertEquals(0, either.segmentsMissed);
+    }
+
+    @Test
+    void aLinkInItsOwnDirectionWinsOverTheReverseOne() {
+        Link ab = link("a", "b");
+        Link ba = link("b", "a");
+        Flow backward = flow("b", "a");
+        LinkFlowIndex.assign(List.of(backward), List.of(ab, ba), true, null);
+        assertSame(List.of(), ab.flow_set);
+        assertEquals(List.of(0), flowsOn(ba));
+        assertFalse(directions(ba)[0]);
+    }
+
+    @Test
+    void theFirstOfTwoLinksBetweenTheSameEndsIsUsed() {
+        Link first = link("a", "b");
+        Link second = link("a", "b");
+        LinkFlowIndex.assign(List.of(flow("a", "b")), List.of(first, second), false, null);
+        assertEquals(1, first.flow_set.size());
+        assertSame(List.of(), second.flow_set);
+    }
+
+    @Test
+    void nodeToIpMapsPathNodesToLinkEnds() {
+        Link ab = link("10.0.0.1", "10.0.0.2");
+        Flow flow = flow("n1", "n2");
+        LinkFlowIndex.assign(List.of(flow), List.of(ab), false, id -> "10.0.0." + id.substring(1));
+        assertEquals(List.of(0), flowsOn(ab));
+    }
+
+    @Test
+    void pathOfChoosesThePath() {
+        Link ab = link("a", "b");
+        Flow flow = flow("x", "y");
+        LinkFlowIndex.assign(List.of(flow), List.of(ab), f -> List.of("a", "b"), false, null);
+        assertEquals(List.of(0), flowsOn(ab));
+        // The row view still carries the flow's own path
+        assertEquals(List.of("x", "y"), ab.flow_set.get(0).pathNodes);
+    }
+
+    @Test
+    void pooledPathsGiveTheSameResult() {
+        FlowPaths pool = new FlowPaths();
+        Link ab = link("a", "b");
+        Link bc = link("b", "c");
+        List<Flow> plain = List.of(flow("a", "b", "c"), flow("c", "b"), flow("a", "b"));
+        List<Flow> pooled = new ArrayList<>();
+        for (Flow f : plain) {
+            pooled.add(flow(pool.nodes(pool.intern(f.pathNodes, List.of()))));
+        }
+        LinkFlowIndex.assign(pooled, List.of(ab, bc), true, null);
+        assertEquals(List.of(0, 2), flowsOn(ab));
+        assertEquals(List.of(0, 1), flowsOn(bc));
+        assertTrue(Arrays.equals(new boolean[] {false, true}, directions(bc)));
+    }
+
+    // Serial below ndt.links.parallel.flows (default 20000), chunked in parallel above it
+    @Test
+    void smallAndLargeFlowSetsMatchAPlainScan() {
+        for (int flowCount : new int[] {500, 25_000}) {
+            Random random = new Random(flowCount);
+            int nodeCount = 12;
+            List<Link> links = new ArrayList<>();
+            for (int a = 0; a < nodeCount; a++) {
+                for (int b = 0; b < nodeCount; b++) {
+                    if (a != b && random.nextInt(3) == 0) links.add(link("n" + a, "n" + b));
+                }
+            }
+            List<Flow> flows = new ArrayList<>();
+            for (int f = 0; f < flowCount; f++) {
+                List<String> path = new ArrayList<>();
+                for (int hop = 1 + random.nextInt(5); hop >= 0; hop--) path.add("n" + random.nextInt(nodeCount));
+                flows.add(flow(path));
+            }
+
+            LinkFlowIndex index = LinkFlowIndex.assign(flows, links, true, null);
+
+            List<List<Integer>> expectedFlows = new ArrayList<>();
+            List<List<Boolean>> expectedReversed = new ArrayList<>();
+            for (int l = 0; l < links.size(); l++) {
+                expectedFlows.add(new ArrayList<>());
+                expectedReversed.add(new ArrayList<>());
+            }
+            int missed = 0;
+            for (int f = 0; f < flows.size(); f++) {
+                Flow flow = flows.get(f);
+                for (int i = 0; i + 1 < flow.pathNodes.size(); i++) {
+                    String a = flow.pathNodes.get(i);
+                    String b = flow.pathNodes.get(i + 1);
+                    int l = find(links, a, b);
+                    boolean reversed = false;
+                    if (l < 0) {
+                        l = find(links, b, a);
+                        reversed = true;
+                    }
+                    if (l < 0) {
+                        missed++;
+                        continue;
+                    }
+                    expectedFlows.get(l).add(f);
+                    expectedReversed.get(l).add(reversed);
+                }
+            }
+            for (int l = 0; l < links.size(); l++) {
+                Link link = links.get(l);
+                assertEquals(expectedFlows.get(l), flowsOn(link), flowCount + " flows, link " + l);
+                for (int i = 0; i < link.flow_set.size(); i++) {
+                    assertEquals(expectedReversed.get(l).get(i), ((LinkFlowIndex.Slice) link.flow_set).reversed(i));
+                }
+            }
+            assertEquals(missed, index.segmentsMissed);
+        }
+    }
+
+    private static int find(List<Link> links, String source, String target) {
+        for (int l = 0; l < links.size(); l++) {
+            if (links.get(l).source.equals(source) && links.get(l).target.equals(target)) return l;
+        }
+        return -1;
+    }
+}
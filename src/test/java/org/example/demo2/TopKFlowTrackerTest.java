@@ -0,0 +1,77 @@
+package org.example.demo2;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class TopKFlowTrackerTest {
+
+    private static List<Flow> flows(double... rates) {
+        List<Flow> flows = new ArrayList<>();
+        for (int i = 0; i < rates.length; i++) {
+            Flow flow = new Flow(List.of(), List.of(), "10.0.0.1", "10.0.0.2", 1000 + i, 80, 6, 0, 0, 0, rates[i], 0, 0);
+            flow.id = i + 1;
+            flows.add(flow);
+        }
+        return flows;
+    }
+
+    @Test
+    void selectsHighestRatesFirst() {
+        int[] top = TopKFlowTracker.topIndices(flows(5, 1, 9, 3, 7), 3);
+        assertArrayEquals(new int[] {2, 4, 0}, top);
+    }
+
+    @Test
+    void kLargerThanFlowsReturnsAllInRateOrder() {
+        assertArrayEquals(new int[] {1, 2, 0}, TopKFlowTracker.topIndices(flows(1, 3, 2), 10));
+        assertEquals(0, TopKFlowTracker.topIndices(flows(1, 2), 0).length);
+        assertEquals(0, TopKFlowTracker.topIndices(flows(), 3).length);
+    }
+
+    @Test
+    void tiesKeepTheEarlierFlow() {
+        assertArrayEquals(new int[] {0, 2}, TopKFlowTracker.topIndices(flows(4, 1, 4, 4), 2));
+        assertArrayEquals(new int[] {1, 0, 2, 3}, TopKFlowTracker.topIndices(flows(4, 6, 4, 4), 4));
+    }
+
+    @Test
+    void memberStaysUntilBeatenByMoreThanHysteresis() {
+        TopKFlowTracker tracker = new TopKFlowTracker(0.1);
+        assertArrayEquals(new int[] {0, 1}, tracker.select(flows(100, 50, 10), 2));
+        // 54 is within 10% of the member's 50: the member keeps its place
+        assertArrayEquals(new int[] {0, 1}, tracker.select(flows(100, 50, 54), 2));
+        // 56 beats 50 * 1.1
+        assertArrayEquals(new int[] {0, 2}, tracker.select(flows(100, 50, 56), 2));
+    }
+
+    @Test
+    void boostedMembersAreStillOrderedByRate() {
+        TopKFlowTracker tracker = new TopKFlowTracker(0.5);
+        assertArrayEquals(new int[] {0, 1, 2}, tracker.select(flows(100, 90, 80, 1), 3));
+        // Member 0 (70, boosted to 105) outscores outsider 3 (100) but is listed after it
+        assertArrayEquals(new int[] {1, 3, 0}, tracker.select(flows(70, 110, 20, 100), 3));
+        // Equal rates: earlier flow first
+        assertArrayEquals(new int[] {0, 1, 3}, tracker.select(flows(60, 60, 60, 60), 3));
+    }
+
+    @Test
+    void changingKOrResetForgetsMembers() {
+        TopKFlowTracker tracker = new TopKFlowTracker(0.1);
+        tracker.select(flows(100, 50, 10), 2);
+        assertArrayEquals(new int[] {0, 2, 1}, tracker.select(flows(100, 50, 54), 3));
+        tracker.reset();
+        assertArrayEquals(new int[] {0, 2}, tracker.select(flows(100, 50, 54), 2));
+    }
+
+    @Test
+    void flowTableColumnsGiveTheSameSelection() {
+        List<Flow> list = flows(3, 8, 8, 1, 6);
+        FlowTable table = FlowTable.of(list);
+        assertArrayEquals(new TopKFlowTracker(0.0).select(list, 3), new TopKFlowTracker(0.0).select(table, 3));
+    }
+}